@@ -0,0 +1,82 @@
+package org.wso2.carbon.event.admin.internal;
+
+import java.util.Calendar;
+
+/**
+ * a notification which could not be delivered to its subscriber
+ */
+public class DeadLetter {
+
+    private String id;
+    private String topicName;
+    private String subscriptionId;
+    private String eventSinkURL;
+    private String failureReason;
+    private int attempts;
+    private Calendar failedTime;
+    private String message;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTopicName() {
+        return topicName;
+    }
+
+    public void setTopicName(String topicName) {
+        this.topicName = topicName;
+    }
+
+    public String getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public void setSubscriptionId(String subscriptionId) {
+        this.subscriptionId = subscriptionId;
+    }
+
+    public String getEventSinkURL() {
+        return eventSinkURL;
+    }
+
+    public void setEventSinkURL(String eventSinkURL) {
+        this.eventSinkURL = eventSinkURL;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    public void setFailureReason(String failureReason) {
+        this.failureReason = failureReason;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Calendar getFailedTime() {
+        return failedTime;
+    }
+
+    public void setFailedTime(Calendar failedTime) {
+        this.failedTime = failedTime;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -2,15 +2,21 @@ package org.wso2.carbon.event.admin.internal;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.event.admin.internal.exception.EventAdminException;
 import org.wso2.carbon.event.admin.internal.util.EventAdminHolder;
 import org.wso2.carbon.event.core.EventBroker;
+import org.wso2.carbon.event.core.delivery.DeadLetterStore;
+import org.wso2.carbon.event.core.delivery.EndpointCircuitBreaker;
+import org.wso2.carbon.event.core.delivery.EndpointHealth;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
 import org.wso2.carbon.event.core.topic.TopicManager;
 import org.wso2.carbon.event.core.topic.TopicNode;
 import org.wso2.carbon.event.core.topic.TopicRolePermission;
+import org.wso2.carbon.event.core.topic.TopicStatistics;
 
 import java.util.Calendar;
+import java.util.List;
 
 /**
  * Provides topic related functions as a web service.
@@ -38,6 +44,28 @@ public class TopicManagerAdminService {
         }
     }
 
+    /**
+     * Gets a page of the sub topics of a topic
+     * Suppressing warning as this is used as a web service
+     *
+     * @param topic      Topic name, / for the root topic
+     * @param startIndex Index of the first sub topic
+     * @param count      Maximum number of sub topics
+     * @return An array of topic nodes without their children
+     * @throws EventAdminException Thrown when topic manager cannot be accessed.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public TopicNode[] getTopicChildren(String topic, int startIndex, int count) throws EventAdminException {
+        EventBroker eventBroker = EventAdminHolder.getInstance().getEventBroker();
+        try {
+            return eventBroker.getTopicManager().getTopicChildren(topic, startIndex, count);
+        } catch (EventBrokerException e) {
+            String errorMessage = "Error in accessing topic manager";
+            log.error(errorMessage, e);
+            throw new EventAdminException(errorMessage, e);
+        }
+    }
+
     /**
      * Gets the permission roles for a topic
      * Suppressing warning as this is used as a web service
@@ -244,6 +272,149 @@ public class TopicManagerAdminService {
         }
     }
 
+    /**
+     * Gets the notifications of the tenant which could not be delivered after the retries
+     * Suppressing warning as this is used as a web service
+     *
+     * @return An array of dead letters, oldest first
+     * @throws EventAdminException Thrown when the dead letter store is not enabled.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public DeadLetter[] getDeadLetters() throws EventAdminException {
+        List<org.wso2.carbon.event.core.delivery.DeadLetter> deadLetters =
+                getDeadLetterStore().getDeadLetters(CarbonContext.getThreadLocalCarbonContext().getTenantId());
+        DeadLetter[] adminDeadLetters = new DeadLetter[deadLetters.size()];
+        int index = 0;
+        for (org.wso2.carbon.event.core.delivery.DeadLetter deadLetter : deadLetters) {
+            adminDeadLetters[index] = adaptDeadLetter(deadLetter);
+            index++;
+        }
+        return adminDeadLetters;
+    }
+
+    /**
+     * Gets the number of notifications of the tenant which could not be delivered
+     * Suppressing warning as this is used as a web service
+     *
+     * @return Number of dead letters
+     * @throws EventAdminException Thrown when the dead letter store is not enabled.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public int getDeadLetterCount() throws EventAdminException {
+        return getDeadLetterStore().getDeadLetters(CarbonContext.getThreadLocalCarbonContext().getTenantId()).size();
+    }
+
+    /**
+     * Sends a dead letter to its subscriber again
+     * Suppressing warning as this is used as a web service
+     *
+     * @param id Dead letter id
+     * @return true if the dead letter existed and is scheduled to be sent, false otherwise.
+     * @throws EventAdminException Thrown when the notification can not be scheduled.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public boolean redeliverDeadLetter(String id) throws EventAdminException {
+        try {
+            return getDeadLetterStore().redeliver(CarbonContext.getThreadLocalCarbonContext().getTenantId(), id);
+        } catch (EventBrokerException e) {
+            String errorMessage = "Error in redelivering the dead letter " + id;
+            log.error(errorMessage, e);
+            throw new EventAdminException(errorMessage, e);
+        }
+    }
+
+    /**
+     * Removes a dead letter
+     * Suppressing warning as this is used as a web service
+     *
+     * @param id Dead letter id
+     * @return true if the dead letter existed and is removed, false otherwise.
+     * @throws EventAdminException Thrown when the dead letter store is not enabled.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public boolean removeDeadLetter(String id) throws EventAdminException {
+        return getDeadLetterStore().remove(CarbonContext.getThreadLocalCarbonContext().getTenantId(), id);
+    }
+
+    /**
+     * Gets the publish and delivery statistics of the topics of the tenant
+     * Suppressing warning as this is used as a web service
+     *
+     * @return An array of topic statistics, empty if the topic metrics are not enabled
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public TopicStatistics[] getTopicStatistics() {
+        List<TopicStatistics> topicStatistics = EventAdminHolder.getInstance().getEventBroker().getTopicStatistics();
+        return topicStatistics.toArray(new TopicStatistics[topicStatistics.size()]);
+    }
+
+    /**
+     * Gets the circuit state of the subscriber endpoints of the tenant, to find the tripped ones
+     * Suppressing warning as this is used as a web service
+     *
+     * @return An array of endpoint health
+     * @throws EventAdminException Thrown when circuit breaking is not enabled.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public EndpointHealth[] getEndpointHealth() throws EventAdminException {
+        List<EndpointHealth> endpointHealth =
+                getEndpointCircuitBreaker().getEndpointHealth(CarbonContext.getThreadLocalCarbonContext().getTenantId());
+        return endpointHealth.toArray(new EndpointHealth[endpointHealth.size()]);
+    }
+
+    /**
+     * Closes the circuit of a subscriber endpoint, so that notifications are sent to it again
+     * Suppressing warning as this is used as a web service
+     *
+     * @param endpoint Address of the subscriber
+     * @return true if the endpoint was tracked and its circuit is closed, false otherwise.
+     * @throws EventAdminException Thrown when circuit breaking is not enabled.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public boolean resetEndpointCircuit(String endpoint) throws EventAdminException {
+        return getEndpointCircuitBreaker().reset(CarbonContext.getThreadLocalCarbonContext().getTenantId(), endpoint);
+    }
+
+    private EndpointCircuitBreaker getEndpointCircuitBreaker() throws EventAdminException {
+        EndpointCircuitBreaker endpointCircuitBreaker =
+                EventAdminHolder.getInstance().getEventBroker().getEndpointCircuitBreaker();
+        if (endpointCircuitBreaker == null) {
+            throw new EventAdminException("Circuit breaking is not enabled in the event broker");
+        }
+        return endpointCircuitBreaker;
+    }
+
+    private DeadLetterStore getDeadLetterStore() throws EventAdminException {
+        DeadLetterStore deadLetterStore = EventAdminHolder.getInstance().getEventBroker().getDeadLetterStore();
+        if (deadLetterStore == null) {
+            throw new EventAdminException("Delivery retries are not enabled in the event broker");
+        }
+        return deadLetterStore;
+    }
+
+    /**
+     * Converting carbon event core dead letter to carbon event internal dead letter
+     *
+     * @param coreDeadLetter A carbon event core dead letter
+     * @return A carbon event internal dead letter
+     */
+    private DeadLetter adaptDeadLetter(org.wso2.carbon.event.core.delivery.DeadLetter coreDeadLetter) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(coreDeadLetter.getFailedTime());
+        DeadLetter adminDeadLetter = new DeadLetter();
+        adminDeadLetter.setId(coreDeadLetter.getId());
+        adminDeadLetter.setTopicName(coreDeadLetter.getSubscription().getTopicName());
+        adminDeadLetter.setSubscriptionId(coreDeadLetter.getSubscription().getId());
+        adminDeadLetter.setEventSinkURL(coreDeadLetter.getSubscription().getEventSinkURL());
+        adminDeadLetter.setFailureReason(coreDeadLetter.getFailureReason());
+        adminDeadLetter.setAttempts(coreDeadLetter.getAttempts());
+        adminDeadLetter.setFailedTime(calendar);
+        if (coreDeadLetter.getMessage().getMessage() != null) {
+            adminDeadLetter.setMessage(coreDeadLetter.getMessage().getMessage().toString());
+        }
+        return adminDeadLetter;
+    }
+
     /**
      * Converting carbon event core subscription array to carbon event internal subscription array
      *
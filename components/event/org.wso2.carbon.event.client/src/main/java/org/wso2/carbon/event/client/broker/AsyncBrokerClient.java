@@ -0,0 +1,339 @@
+package org.wso2.carbon.event.client.broker;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.impl.builder.StAXOMBuilder;
+import org.apache.axiom.soap.SOAP11Constants;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axiom.soap.SOAPFactory;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.addressing.EndpointReference;
+import org.apache.axis2.client.OperationClient;
+import org.apache.axis2.client.Options;
+import org.apache.axis2.client.ServiceClient;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.context.MessageContext;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous variant of the BrokerClient. A pool of service clients and a pool of keep alive
+ * connections to the broker are used for all the calls, instead of configuring a new stub for
+ * each of them. Calls run in a pool with as many threads as connections and return futures, so a
+ * producer is not held by the round trip of each message. Messages are sent to the same
+ * EventBrokerService endpoints as the BrokerClient.
+ * <p/>
+ * A service client keeps the session of its calls, so it is not shared by the threads. Each
+ * message is sent by a service client taken from the pool, which has one for each thread.
+ */
+@Deprecated
+public class AsyncBrokerClient {
+    private static final Log log = LogFactory.getLog(AsyncBrokerClient.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 10;
+
+    private static final String TOPIC_HEADER_NAME = "topic";
+
+    private static final String TOPIC_HEADER_NS = "http://wso2.org/ns/2009/09/eventing/notify";
+
+    private final int maxConnections;
+    private final MultiThreadedHttpConnectionManager connectionManager;
+    private final List<ServiceClient> publishClients;
+    private final BlockingQueue<ServiceClient> idlePublishClients;
+    private final BrokerClient brokerClient;
+    private final ExecutorService executor;
+
+    public AsyncBrokerClient(ConfigurationContext configurationContext, String brokerUrl, String cookie)
+            throws AxisFault {
+        this(configurationContext, brokerUrl, cookie, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * @param configurationContext client configuration context, or null to use a default one
+     * @param brokerUrl            url of the EventBrokerService
+     * @param cookie               session cookie of an authenticated user, or null
+     * @param maxConnections       connections kept open to the broker, and calls sent at the same time
+     * @throws AxisFault if the service client can not be created
+     */
+    public AsyncBrokerClient(ConfigurationContext configurationContext, String brokerUrl, String cookie,
+                             int maxConnections) throws AxisFault {
+        this.maxConnections = maxConnections;
+        this.connectionManager = new MultiThreadedHttpConnectionManager();
+        HttpConnectionManagerParams params = this.connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(maxConnections);
+        params.setMaxTotalConnections(maxConnections);
+        HttpClient httpClient = new HttpClient(this.connectionManager);
+
+        // subscriptions are rare, they are sent by a broker client whose stubs share the connections
+        this.brokerClient = new BrokerClient(configurationContext, brokerUrl, cookie);
+        this.brokerClient.setHttpClient(httpClient);
+
+        this.publishClients = new ArrayList<ServiceClient>(maxConnections);
+        this.idlePublishClients = new ArrayBlockingQueue<ServiceClient>(maxConnections);
+        for (int i = 0; i < maxConnections; i++) {
+            ServiceClient publishClient = new ServiceClient(configurationContext, null);
+            Options options = publishClient.getOptions();
+            options.setTo(new EndpointReference(brokerUrl + "/publish"));
+            options.setAction("urn:publish");
+            this.brokerClient.configureCookie(publishClient);
+            this.publishClients.add(publishClient);
+            this.idlePublishClients.add(publishClient);
+        }
+
+        this.executor = Executors.newFixedThreadPool(maxConnections, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AsyncBrokerClient-" + this.threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Publishes a message to a topic.
+     *
+     * @param topic   The name of the topic which the message should be published.
+     * @param element The message.
+     * @return future which completes once the broker accepted the message, or fails with a
+     *         BrokerClientException
+     * @throws BrokerClientException if the client is shut down
+     */
+    public Future<Void> publish(final String topic, final OMElement element) throws BrokerClientException {
+        return submit(new Callable<Void>() {
+            public Void call() throws BrokerClientException {
+                sendMessage(topic, element);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Publishes a message to a topic. The message should be XML structured.
+     *
+     * @param topic          The name of the topic which the message should be published.
+     * @param messageContent The message content.
+     * @return future which completes once the broker accepted the message
+     * @throws BrokerClientException if the message is not XML or the client is shut down
+     */
+    public Future<Void> publish(String topic, String messageContent) throws BrokerClientException {
+        return publish(topic, buildMessage(messageContent));
+    }
+
+    /**
+     * Publishes a batch of messages to a topic. The batch is split into one part per connection,
+     * each part is sent back to back over its kept alive connection by a single task, and the
+     * parts are sent in parallel. Messages of a part are sent in order. The messages which are
+     * not sent when the client is shut down are cancelled.
+     *
+     * @param topic    The name of the topic which the messages should be published.
+     * @param elements The messages.
+     * @return one future for each message, in the order of the messages
+     * @throws BrokerClientException if the client is shut down
+     */
+    public List<Future<Void>> publishBatch(final String topic, List<OMElement> elements)
+            throws BrokerClientException {
+        List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(elements.size());
+        for (final OMElement element : elements) {
+            tasks.add(new FutureTask<Void>(new Callable<Void>() {
+                public Void call() throws BrokerClientException {
+                    sendMessage(topic, element);
+                    return null;
+                }
+            }));
+        }
+        int partCount = Math.min(this.maxConnections, tasks.size());
+        for (int i = 0; i < partCount; i++) {
+            final List<FutureTask<Void>> part =
+                    tasks.subList(i * tasks.size() / partCount, (i + 1) * tasks.size() / partCount);
+            try {
+                this.executor.execute(new Runnable() {
+                    public void run() {
+                        for (FutureTask<Void> task : part) {
+                            if (Thread.currentThread().isInterrupted()) {
+                                // the client was shut down, the rest of the part is not sent
+                                task.cancel(false);
+                            } else {
+                                task.run();
+                            }
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the messages which were not handed over are never sent
+                for (FutureTask<Void> task : tasks.subList(i * tasks.size() / partCount, tasks.size())) {
+                    task.cancel(false);
+                }
+                throw new BrokerClientException("Broker client is shut down", e);
+            }
+        }
+        return new ArrayList<Future<Void>>(tasks);
+    }
+
+    /**
+     * Publishes a batch of XML structured messages to a topic.
+     *
+     * @see #publishBatch(String, List)
+     */
+    public List<Future<Void>> publishBatchContent(String topic, List<String> messageContents)
+            throws BrokerClientException {
+        List<OMElement> elements = new ArrayList<OMElement>(messageContents.size());
+        for (String messageContent : messageContents) {
+            elements.add(buildMessage(messageContent));
+        }
+        return publishBatch(topic, elements);
+    }
+
+    /**
+     * @return future of the subscription id
+     */
+    public Future<String> subscribe(final String topic, final String eventSinkUrl, final long expirationTime,
+                                    final OMElement[] extensions) throws BrokerClientException {
+        return submit(new Callable<String>() {
+            public String call() throws BrokerClientException {
+                return brokerClient.subscribe(topic, eventSinkUrl, expirationTime, extensions);
+            }
+        });
+    }
+
+    public Future<String> subscribe(String topic, String eventSinkUrl) throws BrokerClientException {
+        return subscribe(topic, eventSinkUrl, -1, null);
+    }
+
+    public Future<Void> unsubscribe(final String subscriptionID) throws BrokerClientException {
+        return submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                brokerClient.unsubscribe(subscriptionID);
+                return null;
+            }
+        });
+    }
+
+    public Future<Void> renewSubscription(final String subscriptionID, final long time)
+            throws BrokerClientException {
+        return submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                brokerClient.renewSubscription(subscriptionID, time);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Stops accepting calls, waits for the pending ones and closes the connections.
+     *
+     * @param timeout milli seconds to wait for the pending calls
+     * @return false if some of the calls were not finished within the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout) throws InterruptedException {
+        this.executor.shutdown();
+        boolean terminated = this.executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        if (!terminated) {
+            this.executor.shutdownNow();
+        }
+        for (ServiceClient publishClient : this.publishClients) {
+            try {
+                publishClient.cleanup();
+            } catch (AxisFault e) {
+                log.debug("Can not clean up the publish client", e);
+            }
+        }
+        this.connectionManager.shutdown();
+        return terminated;
+    }
+
+    private <T> Future<T> submit(Callable<T> callable) throws BrokerClientException {
+        try {
+            return this.executor.submit(callable);
+        } catch (RejectedExecutionException e) {
+            throw new BrokerClientException("Broker client is shut down", e);
+        }
+    }
+
+    /**
+     * sends a message with a service client of the pool. There is a service client for each
+     * thread, so one is always idle when a call runs.
+     */
+    private void sendMessage(String topic, OMElement element) throws BrokerClientException {
+        ServiceClient publishClient;
+        try {
+            publishClient = this.idlePublishClients.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BrokerClientException("Interrupted while waiting for a publish client", e);
+        }
+        try {
+            sendMessage(publishClient, topic, element);
+        } finally {
+            this.idlePublishClients.add(publishClient);
+        }
+    }
+
+    /**
+     * sends a message as sendRobust of the BrokerClient does, with an operation client of its own
+     * so that the options of the service client are not changed
+     */
+    private void sendMessage(ServiceClient publishClient, String topic, OMElement element)
+            throws BrokerClientException {
+        SOAPFactory factory = SOAP11Constants.SOAP_ENVELOPE_NAMESPACE_URI.equals(
+                publishClient.getOptions().getSoapVersionURI()) ?
+                              OMAbstractFactory.getSOAP11Factory() : OMAbstractFactory.getSOAP12Factory();
+        SOAPEnvelope envelope = factory.getDefaultEnvelope();
+        OMElement header = factory.createOMElement(new QName(TOPIC_HEADER_NS, TOPIC_HEADER_NAME));
+        header.setText(topic);
+        envelope.getHeader().addChild(header);
+        envelope.getBody().addChild(element);
+
+        MessageContext messageContext = new MessageContext();
+        OperationClient operationClient = null;
+        try {
+            messageContext.setEnvelope(envelope);
+            operationClient = publishClient.createClient(ServiceClient.ANON_ROBUST_OUT_ONLY_OP);
+            operationClient.addMessageContext(messageContext);
+            operationClient.execute(true);
+        } catch (AxisFault e) {
+            throw new BrokerClientException("Error while publishing message  : " + e.getMessage(), e);
+        } finally {
+            if (operationClient != null) {
+                // gives the connection back to the pool
+                try {
+                    operationClient.complete(messageContext);
+                } catch (AxisFault e) {
+                    log.debug("Can not release the connection of the publish client", e);
+                }
+            }
+        }
+    }
+
+    private static OMElement buildMessage(String messageContent) throws BrokerClientException {
+        try {
+            StAXOMBuilder builder = new StAXOMBuilder(new ByteArrayInputStream(messageContent.getBytes()));
+            return builder.getDocumentElement();
+        } catch (XMLStreamException e) {
+            throw new BrokerClientException("Unable to convert message to OMElement. Make sure the message is an XML " +
+                                            "message. :" + e.getMessage(), e);
+        }
+    }
+}
@@ -11,6 +11,8 @@ import org.apache.axis2.client.ServiceClient;
 import org.apache.axis2.context.ConfigurationContext;
 import org.apache.axis2.databinding.types.URI;
 import org.apache.axis2.databinding.types.URI.MalformedURIException;
+import org.apache.axis2.transport.http.HTTPConstants;
+import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.event.client.AuthenticationClient;
@@ -48,6 +50,8 @@ public class BrokerClient {
     
     private ConfigurationContext configurationContext;
 
+    private HttpClient httpClient;
+
     public BrokerClient(String brokerUrl, String userName, String password)
             throws AxisFault, AuthenticationExceptionException {
         this(null, brokerUrl, userName, password);
@@ -97,6 +101,13 @@ public class BrokerClient {
         this.brokerUrl = brokerUrl;
     }
 
+    /**
+     * the stubs send their calls through the given http client, to reuse its connections
+     */
+    void setHttpClient(HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
     public String subscribe(String topic, String eventSinkUrl)throws BrokerClientException{
         return subscribe(topic, eventSinkUrl, -1, null);
     }
@@ -220,13 +231,18 @@ public class BrokerClient {
         return allSubscriptions.getSubscriptionDetail();
     }
     
-    private void configureCookie(ServiceClient client) throws AxisFault {
+    void configureCookie(ServiceClient client) throws AxisFault {
         if(cookie != null){
             Options option = client.getOptions();
             option.setManageSession(true);
             option.setProperty(org.apache.axis2.transport.http.HTTPConstants.COOKIE_STRING, cookie);
         }
         
+        if(httpClient != null){
+            client.getOptions().setProperty(HTTPConstants.REUSE_HTTP_CLIENT, Boolean.TRUE);
+            client.getOptions().setProperty(HTTPConstants.CACHED_HTTP_CLIENT, httpClient);
+        }
+
         if(propertyToSortBy != null){
             client.addStringHeader(Constants.SORTING_DATA, propertyToSortBy);
         }
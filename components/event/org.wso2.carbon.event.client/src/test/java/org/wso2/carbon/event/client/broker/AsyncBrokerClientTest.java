@@ -0,0 +1,231 @@
+package org.wso2.carbon.event.client.broker;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * publishes to a local http endpoint, which records the message, the client port and the cookie
+ * of each request.
+ */
+@Deprecated
+public class AsyncBrokerClientTest extends TestCase {
+
+    private static final String BROKER_CONTEXT = "/services/EventBrokerService";
+    private static final String SLOW_BROKER_CONTEXT = "/services/SlowEventBrokerService";
+    private static final String FAILING_BROKER_CONTEXT = "/services/FailingEventBrokerService";
+    private static final String COOKIE = "JSESSIONID=1234";
+    private static final Pattern EVENT_PATTERN = Pattern.compile("<event[^>]*>(\\d+)</event>");
+
+    private HttpServer server;
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    private final List<String> cookies = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch slowBrokerReceived = new CountDownLatch(1);
+    private final CountDownLatch slowBrokerReleased = new CountDownLatch(1);
+
+    @Override
+    protected void setUp() throws Exception {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext(BROKER_CONTEXT + "/publish", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String request = readRequest(exchange);
+                Matcher matcher = EVENT_PATTERN.matcher(request);
+                if (matcher.find() && request.contains("/a</")) {
+                    events.add(matcher.group(1));
+                }
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                cookies.add(exchange.getRequestHeaders().getFirst("Cookie"));
+                exchange.sendResponseHeaders(202, -1);
+                exchange.close();
+            }
+        });
+        this.server.createContext(SLOW_BROKER_CONTEXT + "/publish", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                readRequest(exchange);
+                slowBrokerReceived.countDown();
+                try {
+                    slowBrokerReleased.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(202, -1);
+                exchange.close();
+            }
+        });
+        this.server.createContext(FAILING_BROKER_CONTEXT + "/publish", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                readRequest(exchange);
+                // drops the connection without a response
+                exchange.close();
+            }
+        });
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.slowBrokerReleased.countDown();
+        this.server.stop(0);
+    }
+
+    public void testPublishFutures() throws Exception {
+        AsyncBrokerClient client = new AsyncBrokerClient(null, getBrokerUrl(BROKER_CONTEXT), null, 2);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(client.publish("/a", createEvent(i)));
+        }
+        for (Future<Void> future : futures) {
+            assertNull(future.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(3, this.events.size());
+
+        // a broker which drops the connection fails the future
+        AsyncBrokerClient failingClient = new AsyncBrokerClient(null, getBrokerUrl(FAILING_BROKER_CONTEXT), null, 1);
+        try {
+            failingClient.publish("/a", createEvent(3)).get(10, TimeUnit.SECONDS);
+            fail("Message rejected by the broker is published");
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof BrokerClientException);
+        }
+        assertTrue(failingClient.shutdown(1000));
+        assertTrue(client.shutdown(1000));
+    }
+
+    public void testBatchSplitting() throws Exception {
+        AsyncBrokerClient client = new AsyncBrokerClient(null, getBrokerUrl(BROKER_CONTEXT), null, 2);
+        List<String> messageContents = new ArrayList<String>();
+        for (int i = 0; i < 6; i++) {
+            messageContents.add(createEvent(i));
+        }
+        List<Future<Void>> futures = client.publishBatchContent("/a", messageContents);
+        assertEquals(6, futures.size());
+        for (Future<Void> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(6, this.events.size());
+        // each of the two parts is sent in order
+        assertInOrder("0", "1", "2");
+        assertInOrder("3", "4", "5");
+        assertTrue(this.clientPorts.size() <= 2);
+        assertTrue(client.shutdown(1000));
+    }
+
+    public void testShutdownCancelsPendingMessages() throws Exception {
+        AsyncBrokerClient client = new AsyncBrokerClient(null, getBrokerUrl(SLOW_BROKER_CONTEXT), null, 1);
+        List<Future<Void>> futures = client.publishBatchContent("/a", createEvents(3));
+        assertTrue(this.slowBrokerReceived.await(10, TimeUnit.SECONDS));
+
+        // the first message is held by the broker, the others are never sent
+        assertFalse(client.shutdown(100));
+        this.slowBrokerReleased.countDown();
+        try {
+            futures.get(0).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            // the connection was closed while it was being sent
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!futures.get(2).isDone() && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertTrue(futures.get(1).isCancelled());
+        assertTrue(futures.get(2).isCancelled());
+
+        try {
+            client.publish("/a", createEvent(3));
+            fail("Message is published after shut down");
+        } catch (BrokerClientException e) {
+            // expected
+        }
+        try {
+            client.publishBatchContent("/a", createEvents(2));
+            fail("Batch is published after shut down");
+        } catch (BrokerClientException e) {
+            // expected
+        }
+    }
+
+    public void testConnectionReuse() throws Exception {
+        AsyncBrokerClient client = new AsyncBrokerClient(null, getBrokerUrl(BROKER_CONTEXT), COOKIE, 1);
+        for (int i = 0; i < 5; i++) {
+            client.publish("/a", createEvent(i)).get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(5, this.events.size());
+        // all the messages are sent over one kept alive connection
+        assertEquals(1, this.clientPorts.size());
+        assertTrue(client.shutdown(1000));
+    }
+
+    public void testConcurrentPublishWithSession() throws Exception {
+        AsyncBrokerClient client = new AsyncBrokerClient(null, getBrokerUrl(BROKER_CONTEXT), COOKIE, 4);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; i < 40; i++) {
+            futures.add(client.publish("/a", createEvent(i)));
+        }
+        for (Future<Void> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(40, new HashSet<String>(this.events).size());
+        assertTrue(this.clientPorts.size() <= 4);
+        // every message carries the session of the user
+        for (String cookie : this.cookies) {
+            assertNotNull(cookie);
+            assertTrue(cookie.contains(COOKIE));
+        }
+        assertTrue(client.shutdown(1000));
+    }
+
+    private String getBrokerUrl(String context) {
+        return "http://localhost:" + this.server.getAddress().getPort() + context;
+    }
+
+    private void assertInOrder(String... expected) {
+        List<String> received = new ArrayList<String>(this.events);
+        for (int i = 1; i < expected.length; i++) {
+            assertTrue(received + " is not in order",
+                       received.indexOf(expected[i - 1]) < received.indexOf(expected[i]));
+        }
+    }
+
+    private static String createEvent(int id) {
+        return "<event xmlns=\"http://wso2.org/test\">" + id + "</event>";
+    }
+
+    private static List<String> createEvents(int count) {
+        List<String> events = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            events.add(createEvent(i));
+        }
+        return events;
+    }
+
+    private static String readRequest(HttpExchange exchange) throws IOException {
+        InputStream requestBody = exchange.getRequestBody();
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = requestBody.read(buffer)) != -1) {
+            request.write(buffer, 0, length);
+        }
+        return request.toString("UTF-8");
+    }
+}
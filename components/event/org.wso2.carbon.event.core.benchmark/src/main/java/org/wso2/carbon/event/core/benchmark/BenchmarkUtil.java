@@ -0,0 +1,95 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.benchmark;
+
+import org.wso2.carbon.CarbonConstants;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.event.core.subscription.Subscription;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+/**
+ * topic names, subscriptions and the carbon context shared by the benchmarks.
+ * <p/>
+ * Topics are four levels below /bench, the levels being the last four digits of the topic index,
+ * so that topics with close indexes share their parents. A subscription with wild card depth n
+ * subscribes with # to the parent n levels above a topic.
+ */
+@Deprecated
+public final class BenchmarkUtil {
+
+    public static final String TOPIC_ROOT = "/bench";
+    public static final int TOPIC_LEVELS = 4;
+
+    private BenchmarkUtil() {
+    }
+
+    /**
+     * sets the super tenant and the system user to the carbon context of the current thread. the
+     * system user is not authorized against the user store, so the benchmarks need no realm.
+     */
+    public static void startSuperTenantFlow() {
+        PrivilegedCarbonContext.startTenantFlow();
+        PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+        carbonContext.setTenantId(MultitenantConstants.SUPER_TENANT_ID);
+        carbonContext.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        carbonContext.setUsername(CarbonConstants.REGISTRY_SYSTEM_USERNAME);
+    }
+
+    public static void endTenantFlow() {
+        PrivilegedCarbonContext.endTenantFlow();
+    }
+
+    /**
+     * @param index       topic index
+     * @param cardinality number of distinct topics
+     * @return name of the topic
+     */
+    public static String getTopicName(int index, int cardinality) {
+        int topicIndex = index % cardinality;
+        StringBuilder topicName = new StringBuilder(TOPIC_ROOT);
+        int divisor = 1000;
+        for (int level = 0; level < TOPIC_LEVELS; level++) {
+            topicName.append("/l").append((topicIndex / divisor) % 10);
+            divisor /= 10;
+        }
+        return topicName.toString();
+    }
+
+    /**
+     * @param topicName     a topic name returned by getTopicName
+     * @param wildcardDepth number of levels covered by the # wild card, 0 for none
+     * @return name of the topic to subscribe to
+     */
+    public static String getSubscribedTopicName(String topicName, int wildcardDepth) {
+        String subscribedTopicName = topicName;
+        for (int level = 0; level < wildcardDepth; level++) {
+            subscribedTopicName = subscribedTopicName.substring(0, subscribedTopicName.lastIndexOf('/'));
+        }
+        return (wildcardDepth > 0) ? subscribedTopicName + "/#" : subscribedTopicName;
+    }
+
+    public static Subscription createSubscription(String id, String topicName) {
+        Subscription subscription = new Subscription();
+        subscription.setId(id);
+        subscription.setTopicName(topicName);
+        subscription.setEventSinkURL("http://localhost/" + id);
+        subscription.setOwner(CarbonConstants.REGISTRY_SYSTEM_USERNAME);
+        subscription.setTenantId(MultitenantConstants.SUPER_TENANT_ID);
+        subscription.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        return subscription;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.benchmark;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.delivery.DeliveryManager;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.delivery.ShardedExecutor;
+import org.wso2.carbon.event.core.internal.delivery.inmemory.InMemoryDeliveryManager;
+import org.wso2.carbon.event.core.internal.delivery.inmemory.InMemoryMatchingManager;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.notify.NotificationManager;
+import org.wso2.carbon.event.core.sharedmemory.SharedMemoryDeliveryManager;
+import org.wso2.carbon.event.core.sharedmemory.partition.ConsistentHashRing;
+import org.wso2.carbon.event.core.sharedmemory.partition.SubscriptionPartitioner;
+import org.wso2.carbon.event.core.subscription.Subscription;
+import org.wso2.carbon.event.core.util.EventBrokerConstants;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures publishing a message through a delivery manager until it is handed to the notification
+ * manager for every subscriber, against the number of subscribers. The notification manager only
+ * counts the notifications, so the numbers do not include sending them.
+ * <p/>
+ * The shared memory delivery manager runs on an embedded Hazelcast member, partitioning the
+ * subscriptions across the event broker members. With the single member of the benchmark every
+ * topic is owned locally, so the numbers include the ownership lookup but no forwarding.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@Deprecated
+public class PublishFanOutBenchmark {
+
+    private static final String TOPIC_NAME = BenchmarkUtil.TOPIC_ROOT + "/fanout";
+    private static final String TOPIC_STORAGE_PATH = "event/topics";
+    private static final int DELIVERY_THREADS = 16;
+    private static final long DELIVERY_TIMEOUT = 60;
+
+    @Param({"inMemory", "sharedMemory"})
+    public String deliveryManagerType;
+
+    @Param({EventBrokerConstants.EB_DM_EXECUTOR_POOLED, EventBrokerConstants.EB_DM_EXECUTOR_SHARDED})
+    public String executorType;
+
+    @Param({"1", "10", "100", "1000"})
+    public int subscriberCount;
+
+    private ExecutorService executor;
+    private HazelcastInstance hazelcastInstance;
+    private DeliveryManager deliveryManager;
+    private CountingNotificationManager notificationManager;
+    private Message message;
+
+    @Setup
+    public void setUp() throws EventBrokerException {
+        BenchmarkUtil.startSuperTenantFlow();
+        // the queues are not bounded, a publish must not be rejected in the middle of a fan out
+        if (EventBrokerConstants.EB_DM_EXECUTOR_SHARDED.equals(this.executorType)) {
+            this.executor = new ShardedExecutor(DELIVERY_THREADS, Integer.MAX_VALUE);
+        } else {
+            this.executor = new ThreadPoolExecutor(DELIVERY_THREADS, DELIVERY_THREADS, 0, TimeUnit.MILLISECONDS,
+                                                   new LinkedBlockingQueue<Runnable>());
+        }
+        this.notificationManager = new CountingNotificationManager();
+
+        if ("sharedMemory".equals(this.deliveryManagerType)) {
+            this.hazelcastInstance = Hazelcast.newHazelcastInstance(getHazelcastConfig());
+            SharedMemoryDeliveryManager sharedMemoryDeliveryManager =
+                    new SharedMemoryDeliveryManager(this.executor, TOPIC_STORAGE_PATH);
+            SubscriptionPartitioner subscriptionPartitioner = new SubscriptionPartitioner(
+                    this.hazelcastInstance, ConsistentHashRing.DEFAULT_VIRTUAL_NODES, -1,
+                    SubscriptionPartitioner.DEFAULT_FORWARD_TIMEOUT);
+            subscriptionPartitioner.setDeliveryManager(sharedMemoryDeliveryManager);
+            EventBrokerHolder.getInstance().registerSubscriptionPartitioner(subscriptionPartitioner);
+            subscriptionPartitioner.start();
+            this.deliveryManager = sharedMemoryDeliveryManager;
+        } else {
+            InMemoryDeliveryManager inMemoryDeliveryManager =
+                    new InMemoryDeliveryManager(this.executor, TOPIC_STORAGE_PATH);
+            inMemoryDeliveryManager.setMatchingManager(new InMemoryMatchingManager());
+            this.deliveryManager = inMemoryDeliveryManager;
+        }
+        this.deliveryManager.initializeTenant();
+        for (int i = 0; i < this.subscriberCount; i++) {
+            this.deliveryManager.subscribe(BenchmarkUtil.createSubscription("sub" + i, TOPIC_NAME));
+        }
+        this.deliveryManager.setNotificationManager(this.notificationManager);
+
+        OMFactory factory = OMAbstractFactory.getOMFactory();
+        OMElement payload = factory.createOMElement("event", factory.createOMNamespace("http://bench", "b"));
+        payload.setText("benchmark event");
+        this.message = new Message();
+        this.message.setMessage(payload);
+    }
+
+    @TearDown
+    public void tearDown() throws EventBrokerException {
+        for (int i = 0; i < this.subscriberCount; i++) {
+            this.deliveryManager.unSubscribe("sub" + i);
+        }
+        this.deliveryManager.cleanUp();
+        this.executor.shutdownNow();
+        if (this.hazelcastInstance != null) {
+            EventBrokerHolder.getInstance().registerSubscriptionPartitioner(null);
+            this.hazelcastInstance.getLifecycleService().terminate();
+            this.hazelcastInstance = null;
+        }
+        BenchmarkUtil.endTenantFlow();
+    }
+
+    @Benchmark
+    public void publish() throws EventBrokerException, InterruptedException {
+        CountDownLatch delivered = this.notificationManager.expect(this.subscriberCount);
+        this.deliveryManager.publish(this.message, TOPIC_NAME, EventBrokerConstants.EB_NON_PERSISTENT);
+        if (!delivered.await(DELIVERY_TIMEOUT, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Only " + (this.subscriberCount - delivered.getCount()) + " of "
+                                            + this.subscriberCount + " notifications are delivered");
+        }
+    }
+
+    /**
+     * a member which does not join the other members on the network
+     */
+    private Config getHazelcastConfig() {
+        Config config = new Config();
+        config.setProperty("hazelcast.logging.type", "none");
+        config.setProperty("hazelcast.wait.seconds.before.join", "0");
+        config.setProperty("hazelcast.health.monitoring.level", "OFF");
+        config.getGroupConfig().setName(getClass().getName());
+        JoinConfig joinConfig = config.getNetworkConfig().getJoin();
+        joinConfig.getMulticastConfig().setEnabled(false);
+        joinConfig.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+        return config;
+    }
+
+    private static final class CountingNotificationManager implements NotificationManager {
+
+        private volatile CountDownLatch delivered;
+
+        private CountDownLatch expect(int notificationCount) {
+            this.delivered = new CountDownLatch(notificationCount);
+            return this.delivered;
+        }
+
+        public void sendNotification(Message message, Subscription subscription) {
+            this.delivered.countDown();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.event.core.internal.delivery.inmemory.InMemorySubscriptionStorage;
+import org.wso2.carbon.event.core.internal.delivery.inmemory.SubscriptionStorage;
+import org.wso2.carbon.event.core.internal.delivery.inmemory.TrieSubscriptionStorage;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures finding the subscriptions of a published topic in the subscription storages of the in
+ * memory matching manager, against the number of subscriptions, the number of distinct topics and
+ * the depth of the wild card subscriptions.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@Deprecated
+public class TopicMatchingBenchmark {
+
+    @Param({"trie", "hash"})
+    public String storage;
+
+    @Param({"10", "1000", "100000"})
+    public int subscriberCount;
+
+    @Param({"100", "10000"})
+    public int topicCardinality;
+
+    @Param({"0", "1", "2"})
+    public int wildcardDepth;
+
+    private SubscriptionStorage subscriptionStorage;
+    private String[] topicNames;
+    private int nextTopic;
+
+    @Setup
+    public void setUp() {
+        this.subscriptionStorage = "trie".equals(this.storage) ?
+                                   new TrieSubscriptionStorage() : new InMemorySubscriptionStorage();
+        this.topicNames = new String[this.topicCardinality];
+        for (int i = 0; i < this.topicCardinality; i++) {
+            this.topicNames[i] = BenchmarkUtil.getTopicName(i, this.topicCardinality);
+        }
+        for (int i = 0; i < this.subscriberCount; i++) {
+            String topicName = BenchmarkUtil.getSubscribedTopicName(
+                    this.topicNames[i % this.topicCardinality], this.wildcardDepth);
+            this.subscriptionStorage.addSubscription(BenchmarkUtil.createSubscription("sub" + i, topicName));
+        }
+    }
+
+    @Benchmark
+    public List<Subscription> getMatchingSubscriptions() {
+        // all the topics are published in turn, so the result does not depend on a lucky topic
+        String topicName = this.topicNames[this.nextTopic];
+        this.nextTopic = (this.nextTopic + 1) % this.topicNames.length;
+        return this.subscriptionStorage.getMatchingSubscriptions(topicName);
+    }
+}
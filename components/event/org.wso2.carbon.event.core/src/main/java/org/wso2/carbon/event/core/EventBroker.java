@@ -16,10 +16,14 @@
 
 package org.wso2.carbon.event.core;
 
+import org.apache.axiom.om.OMElement;
+import org.wso2.carbon.event.core.delivery.DeadLetterStore;
+import org.wso2.carbon.event.core.delivery.EndpointCircuitBreaker;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
 import org.wso2.carbon.event.core.subscription.EventDispatcher;
 import org.wso2.carbon.event.core.subscription.Subscription;
 import org.wso2.carbon.event.core.topic.TopicManager;
+import org.wso2.carbon.event.core.topic.TopicStatistics;
 import org.wso2.carbon.user.api.UserStoreException;
 
 import java.util.List;
@@ -104,6 +108,26 @@ public interface EventBroker {
     public void publish(Message message, String topicName, int deliveryMode)
             throws EventBrokerException;
 
+    /**
+     * Publish a batch of events to the given topic asynchronously. The publisher is authorized
+     * and the subscriptions are matched once for the whole batch and each subscriber receives
+     * its messages in one go.
+     *
+     * @param messages  messages to publish
+     * @param topicName topic name
+     */
+    public void publish(List<Message> messages, String topicName) throws EventBrokerException;
+
+    /**
+     * Publish a batch of events to the given topic asynchronously.
+     *
+     * @param messages     messages to publish
+     * @param topicName    topic name
+     * @param deliveryMode - persist or not
+     */
+    public void publish(List<Message> messages, String topicName, int deliveryMode)
+            throws EventBrokerException;
+
     /**
      * Publish an event to the given topic synchronously. i.e it uses the same thread to send the
      * message.
@@ -135,6 +159,14 @@ public interface EventBroker {
     public void registerEventDispatcher(String eventDispatcherName,
                                         EventDispatcher eventDispatcher);
 
+    /**
+     * Gets the configuration of an event dispatcher given in the event broker configuration
+     *
+     * @param eventDispatcherName event dispatcher name
+     * @return eventDispatcher element of the dispatcher or null if it is not configured
+     */
+    public OMElement getEventDispatcherConfig(String eventDispatcherName);
+
     /**
      * Gets the topic manager
      *
@@ -143,6 +175,27 @@ public interface EventBroker {
      */
     public TopicManager getTopicManager() throws EventBrokerException;
 
+    /**
+     * Gets the store of the notifications which could not be delivered after the retries
+     *
+     * @return dead letter store or null if the failed notifications are not retried
+     */
+    public DeadLetterStore getDeadLetterStore();
+
+    /**
+     * Gets the circuit breaker which keeps the health of the subscriber endpoints
+     *
+     * @return endpoint circuit breaker or null if circuits are not used
+     */
+    public EndpointCircuitBreaker getEndpointCircuitBreaker();
+
+    /**
+     * Gets the publish and delivery statistics of the topics of the current tenant
+     *
+     * @return statistics of the topics, empty if the metrics are not collected
+     */
+    public List<TopicStatistics> getTopicStatistics();
+
     /**
      * This method is called when a tenant initialize. to do the initialization works for tenants
      * for event broker
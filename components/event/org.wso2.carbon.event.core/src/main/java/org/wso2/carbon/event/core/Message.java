@@ -17,12 +17,21 @@
 package org.wso2.carbon.event.core;
 
 import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMOutputFormat;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
 
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
 import java.util.Map;
 import java.util.HashMap;
 
 /**
- * this class is used to keep the OMMessage and 
+ * this class is used to keep the OMMessage and its properties. The serialized form of the
+ * OMMessage is computed when first requested and is shared by all the deliveries.
+ * <p/>
+ * The OMMessage must not be changed in place once it is serialized. A new payload is given with
+ * {@link #setMessage(OMElement)}; code which still changes the tree must call
+ * {@link #resetSerializedMessage()} afterwards, otherwise the old payload is delivered.
  */
 @Deprecated
 public class Message {
@@ -31,6 +40,8 @@ public class Message {
 
     private OMElement message;
 
+    private volatile SerializedMessage serializedMessage;
+
     public Message() {
         this.properties = new HashMap();
     }
@@ -51,8 +62,58 @@ public class Message {
         return message;
     }
 
-    public void setMessage(OMElement message) {
+    /**
+     * sets the payload and drops the serialized form of the previous one
+     *
+     * @param message payload, which must not be changed in place afterwards
+     */
+    public synchronized void setMessage(OMElement message) {
         this.message = message;
+        this.serializedMessage = null;
+    }
+
+    /**
+     * drops the serialized form, so that the OMMessage is serialized again when next requested.
+     * Must be called after changing the OMMessage in place.
+     */
+    public synchronized void resetSerializedMessage() {
+        this.serializedMessage = null;
+    }
+
+    /**
+     * serializes the OMMessage with the default character set encoding. The message is serialized
+     * only once, the same instance is returned to all the callers.
+     *
+     * @return serialized form of the OMMessage
+     * @throws EventBrokerException if the OMMessage can not be serialized
+     */
+    public SerializedMessage getSerializedMessage() throws EventBrokerException {
+        SerializedMessage serializedMessage = this.serializedMessage;
+        if (serializedMessage == null) {
+            synchronized (this) {
+                serializedMessage = this.serializedMessage;
+                if (serializedMessage == null) {
+                    serializedMessage = serialize(this.message);
+                    this.serializedMessage = serializedMessage;
+                }
+            }
+        }
+        return serializedMessage;
+    }
+
+    private static SerializedMessage serialize(OMElement message) throws EventBrokerException {
+        if (message == null) {
+            throw new EventBrokerException("Message does not have a payload to serialize");
+        }
+        OMOutputFormat outputFormat = new OMOutputFormat();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            // the tree is kept since filters and dispatchers may still read it
+            message.serialize(outputStream, outputFormat);
+        } catch (XMLStreamException e) {
+            throw new EventBrokerException("Can not serialize the message", e);
+        }
+        return new SerializedMessage(outputStream.toByteArray(), outputFormat.getCharSetEncoding());
     }
 
     public String getProperty(String propertyName){
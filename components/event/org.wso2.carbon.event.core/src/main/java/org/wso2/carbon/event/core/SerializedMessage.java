@@ -0,0 +1,87 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * immutable serialized form of a message payload. It is computed once per message and shared by
+ * all the deliveries of that message, so the bytes must never be modified.
+ */
+@Deprecated
+public final class SerializedMessage {
+
+    private final byte[] bytes;
+    private final String charsetEncoding;
+
+    private volatile String text;
+
+    public SerializedMessage(byte[] bytes, String charsetEncoding) {
+        this.bytes = bytes;
+        this.charsetEncoding = charsetEncoding;
+    }
+
+    public String getCharsetEncoding() {
+        return charsetEncoding;
+    }
+
+    public int getLength() {
+        return this.bytes.length;
+    }
+
+    /**
+     * @return a stream to read the serialized payload
+     */
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(this.bytes);
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(this.bytes);
+    }
+
+    /**
+     * returns the bytes without copying them. callers must not modify the returned array.
+     *
+     * @return serialized payload
+     */
+    public byte[] getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * @return serialized payload as a string, decoded once and cached
+     */
+    public String getText() {
+        String text = this.text;
+        if (text == null) {
+            try {
+                text = new String(this.bytes, this.charsetEncoding);
+            } catch (UnsupportedEncodingException e) {
+                // the encoding was used to serialize the payload, so it is supported
+                throw new IllegalStateException("Unsupported encoding " + this.charsetEncoding, e);
+            }
+            this.text = text;
+        }
+        return text;
+    }
+}
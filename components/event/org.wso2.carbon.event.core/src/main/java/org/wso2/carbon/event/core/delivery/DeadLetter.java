@@ -0,0 +1,77 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.delivery;
+
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+/**
+ * a notification which could not be delivered to its subscriber
+ */
+@Deprecated
+public class DeadLetter {
+
+    private String id;
+    private Message message;
+    private Subscription subscription;
+    private String failureReason;
+    private int attempts;
+    private long failedTime;
+
+    public DeadLetter(String id, Message message, Subscription subscription, String failureReason,
+                      int attempts, long failedTime) {
+        this.id = id;
+        this.message = message;
+        this.subscription = subscription;
+        this.failureReason = failureReason;
+        this.attempts = attempts;
+        this.failedTime = failedTime;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public Subscription getSubscription() {
+        return subscription;
+    }
+
+    /**
+     * @return message of the last failure
+     */
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    /**
+     * @return number of failed delivery attempts
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return time of the last failure in milli seconds
+     */
+    public long getFailedTime() {
+        return failedTime;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.delivery;
+
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+
+import java.util.List;
+
+/**
+ * keeps the notifications which could not be delivered after all the retries, so that they can
+ * be inspected and redelivered. notifications are only visible to their own tenant.
+ */
+@Deprecated
+public interface DeadLetterStore {
+
+    /**
+     * @param tenantId tenant id
+     * @return dead letters of the tenant, oldest first
+     */
+    public List<DeadLetter> getDeadLetters(int tenantId);
+
+    /**
+     * @param tenantId tenant id
+     * @param id       dead letter id
+     * @return the dead letter or null if there is no such dead letter for the tenant
+     */
+    public DeadLetter getDeadLetter(int tenantId, String id);
+
+    /**
+     * sends the notification to the current subscription of its subscriber again. it is
+     * removed from the store and added back if the delivery fails again.
+     *
+     * @param tenantId tenant id
+     * @param id       dead letter id
+     * @return false if there is no such dead letter for the tenant
+     * @throws EventBrokerException if the subscription was removed or expired, or the
+     *                              notification can not be scheduled. the dead letter is kept.
+     */
+    public boolean redeliver(int tenantId, String id) throws EventBrokerException;
+
+    /**
+     * removes the notification for good, it is not sent again after a restart
+     *
+     * @param tenantId tenant id
+     * @param id       dead letter id
+     * @return false if there is no such dead letter for the tenant
+     */
+    public boolean remove(int tenantId, String id);
+}
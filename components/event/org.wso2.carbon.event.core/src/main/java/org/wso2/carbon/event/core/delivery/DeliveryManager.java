@@ -21,6 +21,8 @@ import org.wso2.carbon.event.core.exception.EventBrokerException;
 import org.wso2.carbon.event.core.notify.NotificationManager;
 import org.wso2.carbon.event.core.subscription.Subscription;
 
+import java.util.List;
+
 /**
  * event broker uses the Delivery manager to do the actuall pub/sub. event broker passes an
  * notification manager instance to delivery manager in order to have the reusable code across
@@ -48,6 +50,17 @@ public interface DeliveryManager {
      */
     public void publish(Message message, String topicName, int deliveryMode) throws EventBrokerException;
 
+    /**
+     * publish a batch of messages to a topic. authorization and subscription matching is done
+     * once for the whole batch.
+     * @param messages
+     * @param topicName
+     * @throws org.wso2.carbon.event.core.exception.PartialPublishException if the messages are
+     *         handed to the message broker one by one and only the first ones of the batch could be
+     *         published
+     */
+    public void publish(List<Message> messages, String topicName, int deliveryMode) throws EventBrokerException;
+
 
     public void unSubscribe(String id) throws EventBrokerException;
 
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.delivery;
+
+import java.util.List;
+
+/**
+ * keeps the health of the subscriber endpoints, so that the notifications to an endpoint which
+ * keeps failing or responding slowly are not sent until it recovers. the circuit of an endpoint
+ * opens when too many of its recent notifications fail or are slow. once it has been open for a
+ * while it lets a few trial notifications through, and closes again if they succeed. endpoints
+ * are tracked separately for each tenant.
+ */
+@Deprecated
+public interface EndpointCircuitBreaker {
+
+    /**
+     * checks whether a notification can be sent to the endpoint. if it returns true the outcome
+     * of the notification must be recorded with recordSuccess or recordFailure.
+     *
+     * @param tenantId tenant id of the subscription
+     * @param endpoint address of the subscriber
+     * @return false if the circuit of the endpoint is open
+     */
+    public boolean allowRequest(int tenantId, String endpoint);
+
+    /**
+     * @param nanos time taken to send the notification
+     */
+    public void recordSuccess(int tenantId, String endpoint, long nanos);
+
+    /**
+     * @param nanos time taken until the notification failed
+     */
+    public void recordFailure(int tenantId, String endpoint, long nanos);
+
+    /**
+     * @param tenantId tenant id of the subscription
+     * @param endpoint address of the subscriber
+     * @return milli seconds until the open circuit of the endpoint lets a trial notification
+     *         through, 0 if it is not open
+     */
+    public long getOpenTimeRemaining(int tenantId, String endpoint);
+
+    /**
+     * @param tenantId tenant id
+     * @return health of the endpoints the tenant has sent notifications to
+     */
+    public List<EndpointHealth> getEndpointHealth(int tenantId);
+
+    /**
+     * closes the circuit of the endpoint and forgets its recent notifications
+     *
+     * @param tenantId tenant id
+     * @param endpoint address of the subscriber
+     * @return false if the endpoint is not tracked for the tenant
+     */
+    public boolean reset(int tenantId, String endpoint);
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.delivery;
+
+/**
+ * snapshot of the health of a subscriber endpoint. rates are percentages of the notifications in
+ * the recent window of the endpoint.
+ */
+@Deprecated
+public class EndpointHealth {
+
+    public static final String STATE_CLOSED = "closed";
+    public static final String STATE_OPEN = "open";
+    public static final String STATE_HALF_OPEN = "halfOpen";
+
+    private String endpoint;
+    private String state;
+    private int callCount;
+    private double failureRate;
+    private double slowCallRate;
+    private long tripCount;
+    private long stateChangedTime;
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * @return closed, open or halfOpen
+     */
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    /**
+     * @return number of notifications in the recent window
+     */
+    public int getCallCount() {
+        return callCount;
+    }
+
+    public void setCallCount(int callCount) {
+        this.callCount = callCount;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public double getSlowCallRate() {
+        return slowCallRate;
+    }
+
+    public void setSlowCallRate(double slowCallRate) {
+        this.slowCallRate = slowCallRate;
+    }
+
+    /**
+     * @return number of times the circuit has opened
+     */
+    public long getTripCount() {
+        return tripCount;
+    }
+
+    public void setTripCount(long tripCount) {
+        this.tripCount = tripCount;
+    }
+
+    /**
+     * @return time in milli seconds the circuit went to its current state
+     */
+    public long getStateChangedTime() {
+        return stateChangedTime;
+    }
+
+    public void setStateChangedTime(long stateChangedTime) {
+        this.stateChangedTime = stateChangedTime;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.exception;
+
+import org.wso2.carbon.event.core.Message;
+
+import java.util.List;
+
+/**
+ * thrown when a batch of messages could be published only in part. Messages of a batch are
+ * published in order, so the ones before the failed message are published and the failed message
+ * and the ones after it are not. If the send of the failed message itself failed, the message
+ * broker may still have received it.
+ */
+@Deprecated
+public class PartialPublishException extends EventBrokerException {
+
+    private final int publishedCount;
+    private final List<Message> unpublishedMessages;
+
+    public PartialPublishException(String message, Throwable cause, int publishedCount,
+                                   List<Message> unpublishedMessages) {
+        super(message, cause);
+        this.publishedCount = publishedCount;
+        this.unpublishedMessages = unpublishedMessages;
+    }
+
+    /**
+     * @return number of messages at the start of the batch which are published
+     */
+    public int getPublishedCount() {
+        return this.publishedCount;
+    }
+
+    /**
+     * @return the failed message followed by the messages which were not tried
+     */
+    public List<Message> getUnpublishedMessages() {
+        return this.unpublishedMessages;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.core.exception;
+
+/**
+ * thrown by an event dispatcher which did not send a notification since too many notifications
+ * are being sent, or no connection got free in time. The notification never reached the endpoint,
+ * so it is sent again later instead of being counted as a failed attempt.
+ */
+@Deprecated
+public class SendRejectedException extends EventBrokerException {
+
+    public SendRejectedException(String message) {
+        super(message);
+    }
+
+    public SendRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
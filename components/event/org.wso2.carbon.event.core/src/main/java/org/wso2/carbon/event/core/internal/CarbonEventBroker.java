@@ -16,25 +16,43 @@
 
 package org.wso2.carbon.event.core.internal;
 
+import org.apache.axiom.om.OMElement;
 import org.apache.axiom.util.UIDGenerator;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.event.core.EventBroker;
 import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.delivery.DeadLetterStore;
 import org.wso2.carbon.event.core.delivery.DeliveryManager;
+import org.wso2.carbon.event.core.delivery.EndpointCircuitBreaker;
 import org.wso2.carbon.event.core.exception.EventBrokerConfigurationException;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.delivery.CircuitHoldingQueue;
+import org.wso2.carbon.event.core.internal.delivery.RetryScheduler;
+import org.wso2.carbon.event.core.internal.journal.EventJournal;
+import org.wso2.carbon.event.core.internal.journal.JournalRecord;
+import org.wso2.carbon.event.core.internal.metrics.TopicMetrics;
 import org.wso2.carbon.event.core.internal.notify.CarbonNotificationManager;
 import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.wso2.carbon.event.core.subscription.EventDispatcher;
 import org.wso2.carbon.event.core.subscription.Subscription;
 import org.wso2.carbon.event.core.subscription.SubscriptionManager;
 import org.wso2.carbon.event.core.topic.TopicManager;
+import org.wso2.carbon.event.core.topic.TopicStatistics;
 import org.wso2.carbon.event.core.util.EventBrokerConstants;
 import org.wso2.carbon.user.api.UserStoreException;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The following class contains the carbon eventing implementation related to subscriptions and
@@ -43,11 +61,20 @@ import java.util.concurrent.ExecutorService;
 @Deprecated
 public class CarbonEventBroker implements EventBroker {
 
+    private static final Log log = LogFactory.getLog(CarbonEventBroker.class);
+
     private SubscriptionManager subscriptionManager;
     private TopicManager topicManager;
     private DeliveryManager deliveryManager;
     private CarbonNotificationManager notificationManager;
-    private ExecutorService executor;
+    private PublishPipeline publishPipeline;
+    private EventJournal eventJournal;
+    private RetryScheduler retryScheduler;
+    private SubscriptionLoader subscriptionLoader;
+    private TopicMetrics topicMetrics;
+    private EndpointCircuitBreaker endpointCircuitBreaker;
+    private CircuitHoldingQueue circuitHoldingQueue;
+    private Map<String, OMElement> eventDispatcherConfigs = new ConcurrentHashMap<String, OMElement>();
 
     /**
      * Initializes the carbon event broker. Loads subscriptions new notifier manager set to delivery
@@ -63,32 +90,124 @@ public class CarbonEventBroker implements EventBroker {
         // this way delivery manager can use the persisted repository of the subscription manager
         // to notify subscriptions if wanted.
         this.deliveryManager.setNotificationManager(this.notificationManager);
+        if (this.retryScheduler != null) {
+            this.retryScheduler.setNotificationManager(this.notificationManager);
+            this.retryScheduler.setSubscriptionManager(this.subscriptionManager);
+        }
+        if (this.circuitHoldingQueue != null) {
+            this.circuitHoldingQueue.setNotificationManager(this.notificationManager);
+        }
         // re subscribe the already existing subscriptions.
         // TODO: do the validations eg. expiraty time
         loadExistingSubscriptions();
+        if (this.eventJournal != null) {
+            replayEventJournal();
+        }
     }
 
     /**
-     * Loads existing subscriptions. Delivery manager is subscribed with non expired subscriptions
+     * publishes the journaled events which were not delivered to all their subscribers before the
+     * last shutdown. subscriptions of the other tenants are loaded before their first event.
      *
      * @throws EventBrokerConfigurationException
      */
-    private void loadExistingSubscriptions() throws EventBrokerConfigurationException {
+    private void replayEventJournal() throws EventBrokerConfigurationException {
+        final Set<Integer> initializedTenants = new HashSet<Integer>();
+        initializedTenants.add(MultitenantConstants.SUPER_TENANT_ID);
         try {
-            Calendar calendar = Calendar.getInstance();
-            for (Subscription subscription : this.subscriptionManager.getAllSubscriptions()) {
-                if ((subscription.getExpires() == null) ||
-                    (calendar.before(subscription.getExpires()))) {
-                    if (EventBrokerHolder.getInstance().getTenantDomain() != null) {
-                        subscription
-                                .setTenantDomain(EventBrokerHolder.getInstance().getTenantDomain());
-                        subscription.setTenantId(EventBrokerHolder.getInstance().getTenantId());
+            this.eventJournal.replay(new EventJournal.RecordHandler() {
+                public void handle(JournalRecord record) {
+                    if (initializedTenants.add(record.getTenantId())) {
+                        initializeReplayedTenant(record.getTenantId());
+                    }
+                    try {
+                        subscriptionLoader.awaitLoaded(record.getTenantId());
+                    } catch (EventBrokerException e) {
+                        // not dispatched, the event is kept in the journal for the next start
+                        log.error("Can not replay the event published to " + record.getTopicName()
+                                  + " without the subscriptions of tenant " + record.getTenantId(), e);
+                        return;
+                    }
+                    try {
+                        new EventPublisher(Collections.<Message>singletonList(record.getMessage()),
+                                           record.getTopicName(),
+                                           deliveryManager,
+                                           record.getDeliveryMode(),
+                                           record.getTenantId()).run();
+                    } catch (RuntimeException e) {
+                        log.error("Can not replay the event published to " + record.getTopicName(), e);
                     }
-                    deliveryManager.subscribe(subscription);
+                }
+            });
+        } catch (EventBrokerException e) {
+            throw new EventBrokerConfigurationException("Can not replay the event journal ", e);
+        }
+    }
+
+    private void initializeReplayedTenant(int tenantId) {
+        try {
+            PrivilegedCarbonContext.startTenantFlow();
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId);
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantDomain(true);
+            initializeTenant();
+        } catch (Exception e) {
+            log.error("Can not initialize tenant " + tenantId + " to replay its events", e);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    /**
+     * Loads existing subscriptions of the current tenant in a loader thread. Delivery manager is
+     * subscribed with non expired subscriptions as they are read, and the tenant can publish once
+     * all of them are loaded. If some of them can not be loaded the tenant can not publish until
+     * it is initialized again.
+     */
+    private void loadExistingSubscriptions() {
+        final int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        this.subscriptionLoader.load(tenantId, new SubscriptionLoader.LoadTask() {
+            public void load() throws EventBrokerException {
+                try {
+                    PrivilegedCarbonContext.startTenantFlow();
+                    PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId, true);
+                    loadExistingSubscriptions(tenantId);
+                } finally {
+                    PrivilegedCarbonContext.endTenantFlow();
                 }
             }
+        });
+    }
+
+    private void loadExistingSubscriptions(int tenantId) throws EventBrokerException {
+        final Calendar calendar = Calendar.getInstance();
+        final List<String> failedSubscriptionIds = new ArrayList<String>();
+        try {
+            this.subscriptionManager.loadSubscriptions(new SubscriptionManager.SubscriptionHandler() {
+                public void handle(Subscription subscription) {
+                    if ((subscription.getExpires() == null) ||
+                        (calendar.before(subscription.getExpires()))) {
+                        if (EventBrokerHolder.getInstance().getTenantDomain() != null) {
+                            subscription
+                                    .setTenantDomain(EventBrokerHolder.getInstance().getTenantDomain());
+                            subscription.setTenantId(EventBrokerHolder.getInstance().getTenantId());
+                        }
+                        try {
+                            deliveryManager.subscribe(subscription);
+                        } catch (EventBrokerException e) {
+                            // the other subscriptions of the tenant are still loaded
+                            log.error("Can not load the subscription " + subscription.getId()
+                                      + " to " + subscription.getTopicName(), e);
+                            failedSubscriptionIds.add(subscription.getId());
+                        }
+                    }
+                }
+            });
         } catch (EventBrokerException e) {
-            throw new EventBrokerConfigurationException("Cannot get the subscriptions ", e);
+            throw new EventBrokerConfigurationException("Cannot get the subscriptions of tenant " + tenantId, e);
+        }
+        if (!failedSubscriptionIds.isEmpty()) {
+            throw new EventBrokerConfigurationException("Can not load the subscriptions "
+                                                        + failedSubscriptionIds + " of tenant " + tenantId);
         }
     }
 
@@ -107,8 +226,10 @@ public class CarbonEventBroker implements EventBroker {
     @Override
     public String subscribe(Subscription subscription)
             throws EventBrokerException {
+        // an existing subscription which is not loaded yet would be added again
+        this.subscriptionLoader.awaitLoaded(CarbonContext.getThreadLocalCarbonContext().getTenantId());
 
-        //if there is a subscription with the same topic and event sink url then
+        //if there is a subscription with the same topic, event sink url and owner then
         //we think it is the same subscription.
         Subscription existingSubscription = getExistingNonExpiredSubscription(subscription);
         if (existingSubscription != null) {
@@ -145,23 +266,18 @@ public class CarbonEventBroker implements EventBroker {
      */
     private Subscription getExistingNonExpiredSubscription(Subscription newSubscription)
             throws EventBrokerException {
-        Subscription[] subscriptions =
-                this.topicManager.getSubscriptions(newSubscription.getTopicName(), false);
-        Subscription existingSubscription = null;
-        Calendar calendar = Calendar.getInstance();
-        for (Subscription subscription : subscriptions) {
-            if (subscription.getEventSinkURL() != null) {
-                if (subscription.getEventSinkURL()
-                        .equalsIgnoreCase(newSubscription.getEventSinkURL())) {
-                    if ((subscription.getExpires() == null) ||
-                        (calendar.before(subscription.getExpires()))) {
-                        existingSubscription = subscription;
-                        break;
-                    }
-                }
-            }
+        if (newSubscription.getEventSinkURL() == null) {
+            return null;
+        }
+        Subscription subscription =
+                this.subscriptionManager.getSubscription(newSubscription.getTopicName(),
+                                                         newSubscription.getEventSinkURL(),
+                                                         newSubscription.getOwner());
+        if ((subscription != null) && ((subscription.getExpires() == null) ||
+                                       (Calendar.getInstance().before(subscription.getExpires())))) {
+            return subscription;
         }
-        return existingSubscription;
+        return null;
     }
 
     /**
@@ -169,8 +285,13 @@ public class CarbonEventBroker implements EventBroker {
      */
     @Override
     public void unsubscribe(String id) throws EventBrokerException {
+        // otherwise the loader could subscribe the delivery manager again after it is removed
+        this.subscriptionLoader.awaitLoaded(CarbonContext.getThreadLocalCarbonContext().getTenantId());
         this.subscriptionManager.unSubscribe(id);
         this.deliveryManager.unSubscribe(id);
+        if (this.eventJournal != null) {
+            this.eventJournal.removeSubscriber(id);
+        }
     }
 
     /**
@@ -213,13 +334,51 @@ public class CarbonEventBroker implements EventBroker {
     @Override
     public void publish(Message message, String topicName, int deliveryMode)
             throws EventBrokerException {
+        publish(Collections.singletonList(message), topicName, deliveryMode);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void publish(List<Message> messages, String topicName) throws EventBrokerException {
+        publish(messages, topicName, EventBrokerConstants.EB_NON_PERSISTENT);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void publish(List<Message> messages, String topicName, int deliveryMode)
+            throws EventBrokerException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        this.subscriptionLoader.awaitLoaded(tenantId);
+        if (this.eventJournal != null) {
+            // the messages are on the disk before the publisher gets the control back
+            messages = this.eventJournal.append(tenantId, topicName, deliveryMode, messages);
+        } else {
+            messages = new ArrayList<Message>(messages);
+        }
+        // the whole batch takes one slot of the tenant queue
         EventPublisher eventPublisher =
-                new EventPublisher(message,
+                new EventPublisher(messages,
                                    topicName,
                                    this.deliveryManager,
                                    deliveryMode,
-                                   CarbonContext.getThreadLocalCarbonContext().getTenantId());
-        this.executor.execute(eventPublisher);
+                                   tenantId);
+        try {
+            this.publishPipeline.submit(tenantId, eventPublisher);
+        } catch (EventBrokerException e) {
+            // the publisher is told the messages are not accepted, so they are not replayed
+            eventPublisher.discard();
+            throw e;
+        }
+        if (this.topicMetrics != null) {
+            this.topicMetrics.published(tenantId, topicName, messages.size());
+        }
     }
 
     /**
@@ -236,7 +395,22 @@ public class CarbonEventBroker implements EventBroker {
     @Override
     public void publishRobust(Message message, String topicName, int deliveryMode)
             throws EventBrokerException {
-        this.deliveryManager.publish(message, topicName, deliveryMode);
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        this.subscriptionLoader.awaitLoaded(tenantId);
+        if (this.topicMetrics != null) {
+            this.topicMetrics.published(tenantId, topicName, 1);
+        }
+        if (this.eventJournal == null) {
+            this.deliveryManager.publish(message, topicName, deliveryMode);
+            return;
+        }
+        List<Message> messages = this.eventJournal.append(
+                tenantId, topicName, deliveryMode, Collections.singletonList(message));
+        try {
+            this.deliveryManager.publish(messages, topicName, deliveryMode);
+        } finally {
+            this.eventJournal.dispatched(messages);
+        }
     }
 
     /**
@@ -248,6 +422,24 @@ public class CarbonEventBroker implements EventBroker {
         this.notificationManager.registerEventDispatcher(eventDispatcherName, eventDispatcher);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OMElement getEventDispatcherConfig(String eventDispatcherName) {
+        return this.eventDispatcherConfigs.get(eventDispatcherName);
+    }
+
+    /**
+     * Sets the configuration of an event dispatcher
+     *
+     * @param eventDispatcherName event dispatcher name
+     * @param config              eventDispatcher element of the dispatcher
+     */
+    public void setEventDispatcherConfig(String eventDispatcherName, OMElement config) {
+        this.eventDispatcherConfigs.put(eventDispatcherName, config);
+    }
+
     /**
      * Sets new subscription manager
      *
@@ -284,12 +476,93 @@ public class CarbonEventBroker implements EventBroker {
     }
 
     /**
-     * Sets the executor service
+     * Sets the pipeline which queues the messages to publish
+     *
+     * @param publishPipeline new publish pipeline
+     */
+    public void setPublishPipeline(PublishPipeline publishPipeline) {
+        this.publishPipeline = publishPipeline;
+    }
+
+    /**
+     * Sets the journal which keeps the published events until they are delivered
+     *
+     * @param eventJournal opened event journal
+     */
+    public void setEventJournal(EventJournal eventJournal) {
+        this.eventJournal = eventJournal;
+    }
+
+    /**
+     * Sets the scheduler which retries the failed notifications
+     *
+     * @param retryScheduler new retry scheduler
+     */
+    public void setRetryScheduler(RetryScheduler retryScheduler) {
+        this.retryScheduler = retryScheduler;
+    }
+
+    /**
+     * Sets the loader which loads the existing subscriptions of the tenants
+     *
+     * @param subscriptionLoader new subscription loader
+     */
+    public void setSubscriptionLoader(SubscriptionLoader subscriptionLoader) {
+        this.subscriptionLoader = subscriptionLoader;
+    }
+
+    /**
+     * Sets the per topic metrics
+     *
+     * @param topicMetrics new topic metrics
+     */
+    public void setTopicMetrics(TopicMetrics topicMetrics) {
+        this.topicMetrics = topicMetrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeadLetterStore getDeadLetterStore() {
+        return (this.retryScheduler != null) ? this.retryScheduler.getDeadLetterStore() : null;
+    }
+
+    /**
+     * Sets the circuit breaker of the subscriber endpoints
      *
-     * @param executor new executor service
+     * @param endpointCircuitBreaker new endpoint circuit breaker
+     */
+    public void setEndpointCircuitBreaker(EndpointCircuitBreaker endpointCircuitBreaker) {
+        this.endpointCircuitBreaker = endpointCircuitBreaker;
+    }
+
+    /**
+     * Sets the queue which holds the notifications to the endpoints whose circuit is open
+     *
+     * @param circuitHoldingQueue new circuit holding queue
+     */
+    public void setCircuitHoldingQueue(CircuitHoldingQueue circuitHoldingQueue) {
+        this.circuitHoldingQueue = circuitHoldingQueue;
+    }
+
+    /**
+     * {@inheritDoc}
      */
-    public void setExecutor(ExecutorService executor) {
-        this.executor = executor;
+    @Override
+    public EndpointCircuitBreaker getEndpointCircuitBreaker() {
+        return this.endpointCircuitBreaker;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TopicStatistics> getTopicStatistics() {
+        if (this.topicMetrics == null) {
+            return new ArrayList<TopicStatistics>();
+        }
+        return this.topicMetrics.getTopicStatistics(CarbonContext.getThreadLocalCarbonContext().getTenantId());
     }
 
     /**
@@ -298,6 +571,24 @@ public class CarbonEventBroker implements EventBroker {
      * @throws EventBrokerException
      */
     public void cleanUp() throws EventBrokerException {
+        this.subscriptionLoader.shutdown();
+        try {
+            // queued messages are published before the delivery manager is cleaned up
+            this.publishPipeline.shutdown(PublishPipeline.DEFAULT_SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while publishing the queued messages");
+        }
         this.deliveryManager.cleanUp();
+        if (this.retryScheduler != null) {
+            this.retryScheduler.shutdown();
+        }
+        if (this.circuitHoldingQueue != null) {
+            this.circuitHoldingQueue.shutdown();
+        }
+        if (this.eventJournal != null) {
+            // events still in the publish queues are replayed in the next start
+            this.eventJournal.close();
+        }
     }
 }
@@ -23,12 +23,23 @@ import org.wso2.carbon.event.core.topic.TopicManager;
 import org.wso2.carbon.event.core.topic.TopicManagerFactory;
 import org.wso2.carbon.event.core.delivery.DeliveryManagerFactory;
 import org.wso2.carbon.event.core.exception.EventBrokerConfigurationException;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.authorization.AuthorizationCache;
+import org.wso2.carbon.event.core.internal.delivery.CircuitBreakerRegistry;
+import org.wso2.carbon.event.core.internal.delivery.CircuitHoldingQueue;
+import org.wso2.carbon.event.core.internal.delivery.RetryScheduler;
+import org.wso2.carbon.event.core.internal.journal.EventJournal;
+import org.wso2.carbon.event.core.internal.metrics.TopicMetrics;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.wso2.carbon.event.core.util.EventBrokerConstants;
 import org.wso2.carbon.event.core.internal.util.JavaUtil;
 import org.wso2.carbon.event.core.subscription.SubscriptionManagerFactory;
+import org.wso2.carbon.utils.MBeanRegistrar;
+import org.wso2.carbon.utils.ServerConstants;
 
 import javax.xml.namespace.QName;
-import java.util.concurrent.*;
+import java.io.File;
+import java.util.Iterator;
 
 /**
  * factory to create new carbon event brokers
@@ -40,11 +51,49 @@ public class CarbonEventBrokerFactory implements EventBrokerFactory {
     public static final String EB_MAX_THREADS = "maxThreads";
     public static final String EB_MAX_QUEUED_REQUESTS = "maxQueuedRequests";
     public static final String EB_KEEP_ALIVE_TIME = "keepAliveTime";
+    public static final String EB_MAX_QUEUED_REQUESTS_PER_TENANT = "maxQueuedRequestsPerTenant";
+    public static final String EB_BACKPRESSURE_POLICY = "backpressurePolicy";
+    public static final String EB_DEFAULT_TENANT_WEIGHT = "defaultTenantWeight";
+    public static final String EB_TIME_TO_LIVE = "timeToLive";
+    public static final String EB_MAX_ENTRIES = "maxEntries";
+    public static final String EB_JOURNAL_DIRECTORY = "directory";
+    public static final String EB_JOURNAL_SEGMENT_SIZE = "segmentSize";
+    public static final String EB_JOURNAL_FLUSH_INTERVAL = "flushInterval";
+    public static final String EB_JOURNAL_CHECKPOINT_INTERVAL = "checkpointInterval";
+    public static final String EB_RETRY_INITIAL_DELAY = "initialDelay";
+    public static final String EB_RETRY_MAX_DELAY = "maxDelay";
+    public static final String EB_RETRY_MAX_ATTEMPTS = "maxAttempts";
+    public static final String EB_RETRY_MAX_RETRIES_PER_SUBSCRIBER = "maxRetriesPerSubscriber";
+    public static final String EB_RETRY_THREADS = "retryThreads";
+    public static final String EB_RETRY_DEAD_LETTER_CAPACITY = "deadLetterCapacity";
+    public static final String EB_LOAD_THREADS = "loadThreads";
+    public static final String EB_LOAD_TIMEOUT = "loadTimeout";
+    public static final String EB_METRICS_MAX_TOPICS = "maxTopics";
+    public static final String EB_CIRCUIT_WINDOW_SIZE = "windowSize";
+    public static final String EB_CIRCUIT_MINIMUM_CALLS = "minimumCalls";
+    public static final String EB_CIRCUIT_FAILURE_RATE_THRESHOLD = "failureRateThreshold";
+    public static final String EB_CIRCUIT_SLOW_CALL_THRESHOLD = "slowCallThreshold";
+    public static final String EB_CIRCUIT_SLOW_CALL_RATE_THRESHOLD = "slowCallRateThreshold";
+    public static final String EB_CIRCUIT_OPEN_DURATION = "openDuration";
+    public static final String EB_CIRCUIT_HALF_OPEN_CALLS = "halfOpenCalls";
+    public static final String EB_CIRCUIT_MAX_HELD_PER_ENDPOINT = "maxHeldPerEndpoint";
+    public static final String EB_CIRCUIT_IDLE_TIMEOUT = "idleTimeout";
 
     public EventBroker getEventBroker(OMElement config) throws EventBrokerConfigurationException {
 
         CarbonEventBroker carbonEventBroker = new CarbonEventBroker();
 
+        // authorization decision cache is optional, defaults are used if it is not configured
+        OMElement authorizationCacheElement =
+                config.getFirstChildWithName(new QName(EventBrokerConstants.EB_CONF_NAMESPACE,
+                                                       EventBrokerConstants.EB_CONF_ELE_AUTHORIZATION_CACHE));
+        long authorizationTimeToLive = Long.parseLong(JavaUtil.getValue(authorizationCacheElement,
+                EB_TIME_TO_LIVE, String.valueOf(AuthorizationCache.DEFAULT_TIME_TO_LIVE)));
+        int authorizationMaxEntries = Integer.parseInt(JavaUtil.getValue(authorizationCacheElement,
+                EB_MAX_ENTRIES, String.valueOf(AuthorizationCache.DEFAULT_MAX_ENTRIES)));
+        EventBrokerHolder.getInstance().registerAuthorizationCache(
+                new AuthorizationCache(authorizationTimeToLive, authorizationMaxEntries));
+
         // setting the topic manager
         OMElement topicManagerElement =
                 config.getFirstChildWithName(new QName(EventBrokerConstants.EB_CONF_NAMESPACE,
@@ -72,7 +121,7 @@ public class CarbonEventBrokerFactory implements EventBrokerFactory {
         carbonEventBroker.setDeliveryManager(
                 delivaryManagerfactory.getDeliveryManger(delivaryManager));
 
-        // getting the event publisher properties and setting the executor
+        // getting the event publisher properties and setting the publish pipeline
         OMElement eventPublisher = config.getFirstChildWithName(new QName(EventBrokerConstants.EB_CONF_NAMESPACE,
                                                                           EventBrokerConstants.EB_CONF_ELE_EVENT_PUBLISHER));
         int minSpareThreads = Integer.parseInt(JavaUtil.getValue(eventPublisher, EB_MIN_SPARE_THREADS));
@@ -80,16 +129,157 @@ public class CarbonEventBrokerFactory implements EventBrokerFactory {
         int maxQueuedRequests =
                 Integer.parseInt(JavaUtil.getValue(eventPublisher, EB_MAX_QUEUED_REQUESTS));
         long keepAliveTime = Integer.parseInt(JavaUtil.getValue(eventPublisher, EB_KEEP_ALIVE_TIME));
+        int maxQueuedRequestsPerTenant = Integer.parseInt(JavaUtil.getValue(eventPublisher,
+                EB_MAX_QUEUED_REQUESTS_PER_TENANT, String.valueOf(maxQueuedRequests)));
+        int defaultTenantWeight = Integer.parseInt(JavaUtil.getValue(eventPublisher,
+                EB_DEFAULT_TENANT_WEIGHT, String.valueOf(PublishPipeline.DEFAULT_TENANT_WEIGHT)));
+        // rejecting the messages of a full queue is what the thread pool executor used to do
+        PublishPipeline.BackpressurePolicy backpressurePolicy = PublishPipeline.BackpressurePolicy.getPolicy(
+                JavaUtil.getValue(eventPublisher, EB_BACKPRESSURE_POLICY, "reject"));
+
+        PublishPipeline publishPipeline = new PublishPipeline(minSpareThreads, maxThreads, keepAliveTime,
+                maxQueuedRequests, maxQueuedRequestsPerTenant, backpressurePolicy, defaultTenantWeight);
+        MBeanRegistrar.registerMBean(publishPipeline);
+        carbonEventBroker.setPublishPipeline(publishPipeline);
+
+        // published events are journaled only if the journal is configured
+        OMElement eventJournalElement =
+                config.getFirstChildWithName(new QName(EventBrokerConstants.EB_CONF_NAMESPACE,
+                                                       EventBrokerConstants.EB_CONF_ELE_EVENT_JOURNAL));
+        if (eventJournalElement != null) {
+            EventJournal eventJournal = createEventJournal(eventJournalElement);
+            EventBrokerHolder.getInstance().registerEventJournal(eventJournal);
+            carbonEventBroker.setEventJournal(eventJournal);
+        }
+
+        // failed notifications are retried only if retries are configured
+        OMElement deliveryRetryElement =
+                config.getFirstChildWithName(new QName(EventBrokerConstants.EB_CONF_NAMESPACE,
+                                                       EventBrokerConstants.EB_CONF_ELE_DELIVERY_RETRY));
+        if (deliveryRetryElement != null) {
+            RetryScheduler retryScheduler = createRetryScheduler(deliveryRetryElement);
+            EventBrokerHolder.getInstance().registerRetryScheduler(retryScheduler);
+            carbonEventBroker.setRetryScheduler(retryScheduler);
+        }
+
+        // per topic metrics are collected only if they are configured
+        OMElement topicMetricsElement =
+                config.getFirstChildWithName(new QName(EventBrokerConstants.EB_CONF_NAMESPACE,
+                                                       EventBrokerConstants.EB_CONF_ELE_TOPIC_METRICS));
+        if (topicMetricsElement != null) {
+            int maxTopics = Integer.parseInt(JavaUtil.getValue(topicMetricsElement,
+                    EB_METRICS_MAX_TOPICS, String.valueOf(TopicMetrics.DEFAULT_MAX_TOPICS)));
+            TopicMetrics topicMetrics = new TopicMetrics(maxTopics);
+            MBeanRegistrar.registerMBean(topicMetrics);
+            EventBrokerHolder.getInstance().registerTopicMetrics(topicMetrics);
+            carbonEventBroker.setTopicMetrics(topicMetrics);
+        }
 
+        // endpoint circuits are used only if they are configured
+        OMElement circuitBreakerElement =
+                config.getFirstChildWithName(new QName(EventBrokerConstants.EB_CONF_NAMESPACE,
+                                                       EventBrokerConstants.EB_CONF_ELE_CIRCUIT_BREAKER));
+        if (circuitBreakerElement != null) {
+            CircuitBreakerRegistry circuitBreakerRegistry =
+                    createCircuitBreakerRegistry(circuitBreakerElement);
+            MBeanRegistrar.registerMBean(circuitBreakerRegistry);
+            EventBrokerHolder.getInstance().registerEndpointCircuitBreaker(circuitBreakerRegistry);
+            carbonEventBroker.setEndpointCircuitBreaker(circuitBreakerRegistry);
+            int maxHeldPerEndpoint = Integer.parseInt(JavaUtil.getValue(circuitBreakerElement,
+                    EB_CIRCUIT_MAX_HELD_PER_ENDPOINT, String.valueOf(CircuitHoldingQueue.DEFAULT_MAX_HELD_PER_ENDPOINT)));
+            CircuitHoldingQueue circuitHoldingQueue =
+                    new CircuitHoldingQueue(maxHeldPerEndpoint, CircuitHoldingQueue.DEFAULT_THREADS);
+            EventBrokerHolder.getInstance().registerCircuitHoldingQueue(circuitHoldingQueue);
+            carbonEventBroker.setCircuitHoldingQueue(circuitHoldingQueue);
+        }
 
-        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(maxQueuedRequests);
+        // subscriptions are loaded with the defaults if the loader is not configured
+        OMElement subscriptionLoaderElement =
+                config.getFirstChildWithName(new QName(EventBrokerConstants.EB_CONF_NAMESPACE,
+                                                       EventBrokerConstants.EB_CONF_ELE_SUBSCRIPTION_LOADER));
+        int loadThreads = Integer.parseInt(JavaUtil.getValue(subscriptionLoaderElement,
+                EB_LOAD_THREADS, String.valueOf(SubscriptionLoader.DEFAULT_LOAD_THREADS)));
+        long loadTimeout = Long.parseLong(JavaUtil.getValue(subscriptionLoaderElement,
+                EB_LOAD_TIMEOUT, String.valueOf(SubscriptionLoader.DEFAULT_LOAD_TIMEOUT)));
+        carbonEventBroker.setSubscriptionLoader(new SubscriptionLoader(loadThreads, loadTimeout));
 
-        ExecutorService executor = new ThreadPoolExecutor(minSpareThreads, maxThreads,
-                                                          keepAliveTime, TimeUnit.MILLISECONDS, queue);
-        carbonEventBroker.setExecutor(executor);
+        // event dispatchers are registered by other components, which read their configuration from here
+        for (Iterator iterator = config.getChildrenWithName(new QName(EventBrokerConstants.EB_CONF_NAMESPACE,
+                EventBrokerConstants.EB_CONF_ELE_EVENT_DISPATCHER)); iterator.hasNext();) {
+            OMElement eventDispatcherElement = (OMElement) iterator.next();
+            String name = eventDispatcherElement.getAttributeValue(
+                    new QName(null, EventBrokerConstants.EB_CONF_ATTR_NAME));
+            if (name == null) {
+                throw new EventBrokerConfigurationException("Event dispatcher configuration without a name");
+            }
+            carbonEventBroker.setEventDispatcherConfig(name, eventDispatcherElement);
+        }
 
         carbonEventBroker.init();
 
         return carbonEventBroker;
     }
+
+    private RetryScheduler createRetryScheduler(OMElement config) {
+        long initialDelay = Long.parseLong(JavaUtil.getValue(config,
+                EB_RETRY_INITIAL_DELAY, String.valueOf(RetryScheduler.DEFAULT_INITIAL_DELAY)));
+        long maxDelay = Long.parseLong(JavaUtil.getValue(config,
+                EB_RETRY_MAX_DELAY, String.valueOf(RetryScheduler.DEFAULT_MAX_DELAY)));
+        int maxAttempts = Integer.parseInt(JavaUtil.getValue(config,
+                EB_RETRY_MAX_ATTEMPTS, String.valueOf(RetryScheduler.DEFAULT_MAX_ATTEMPTS)));
+        int maxRetriesPerSubscriber = Integer.parseInt(JavaUtil.getValue(config,
+                EB_RETRY_MAX_RETRIES_PER_SUBSCRIBER, String.valueOf(RetryScheduler.DEFAULT_MAX_RETRIES_PER_SUBSCRIBER)));
+        int retryThreads = Integer.parseInt(JavaUtil.getValue(config,
+                EB_RETRY_THREADS, String.valueOf(RetryScheduler.DEFAULT_THREADS)));
+        int deadLetterCapacity = Integer.parseInt(JavaUtil.getValue(config,
+                EB_RETRY_DEAD_LETTER_CAPACITY, String.valueOf(RetryScheduler.DEFAULT_DEAD_LETTER_CAPACITY)));
+        return new RetryScheduler(initialDelay, maxDelay, maxAttempts, maxRetriesPerSubscriber,
+                                  retryThreads, deadLetterCapacity);
+    }
+
+    private CircuitBreakerRegistry createCircuitBreakerRegistry(OMElement config) {
+        int windowSize = Integer.parseInt(JavaUtil.getValue(config, EB_CIRCUIT_WINDOW_SIZE,
+                String.valueOf(CircuitBreakerRegistry.DEFAULT_WINDOW_SIZE)));
+        int minimumCalls = Integer.parseInt(JavaUtil.getValue(config, EB_CIRCUIT_MINIMUM_CALLS,
+                String.valueOf(CircuitBreakerRegistry.DEFAULT_MINIMUM_CALLS)));
+        int failureRateThreshold = Integer.parseInt(JavaUtil.getValue(config, EB_CIRCUIT_FAILURE_RATE_THRESHOLD,
+                String.valueOf(CircuitBreakerRegistry.DEFAULT_FAILURE_RATE_THRESHOLD)));
+        long slowCallThreshold = Long.parseLong(JavaUtil.getValue(config, EB_CIRCUIT_SLOW_CALL_THRESHOLD,
+                String.valueOf(CircuitBreakerRegistry.DEFAULT_SLOW_CALL_THRESHOLD)));
+        int slowCallRateThreshold = Integer.parseInt(JavaUtil.getValue(config, EB_CIRCUIT_SLOW_CALL_RATE_THRESHOLD,
+                String.valueOf(CircuitBreakerRegistry.DEFAULT_SLOW_CALL_RATE_THRESHOLD)));
+        long openDuration = Long.parseLong(JavaUtil.getValue(config, EB_CIRCUIT_OPEN_DURATION,
+                String.valueOf(CircuitBreakerRegistry.DEFAULT_OPEN_DURATION)));
+        int halfOpenCalls = Integer.parseInt(JavaUtil.getValue(config, EB_CIRCUIT_HALF_OPEN_CALLS,
+                String.valueOf(CircuitBreakerRegistry.DEFAULT_HALF_OPEN_CALLS)));
+        long idleTimeout = Long.parseLong(JavaUtil.getValue(config, EB_CIRCUIT_IDLE_TIMEOUT,
+                String.valueOf(CircuitBreakerRegistry.DEFAULT_IDLE_TIMEOUT)));
+        return new CircuitBreakerRegistry(windowSize, minimumCalls, failureRateThreshold, slowCallThreshold,
+                                          slowCallRateThreshold, openDuration, halfOpenCalls, idleTimeout);
+    }
+
+    private EventJournal createEventJournal(OMElement config) throws EventBrokerConfigurationException {
+        String directoryName = JavaUtil.getValue(config, EB_JOURNAL_DIRECTORY, null);
+        if (directoryName == null) {
+            throw new EventBrokerConfigurationException("Event journal directory is not configured");
+        }
+        File directory = new File(directoryName);
+        if (!directory.isAbsolute()) {
+            directory = new File(System.getProperty(ServerConstants.CARBON_HOME), directoryName);
+        }
+        int segmentSize = Integer.parseInt(JavaUtil.getValue(config,
+                EB_JOURNAL_SEGMENT_SIZE, String.valueOf(EventJournal.DEFAULT_SEGMENT_SIZE)));
+        long flushInterval = Long.parseLong(JavaUtil.getValue(config,
+                EB_JOURNAL_FLUSH_INTERVAL, String.valueOf(EventJournal.DEFAULT_FLUSH_INTERVAL)));
+        long checkpointInterval = Long.parseLong(JavaUtil.getValue(config,
+                EB_JOURNAL_CHECKPOINT_INTERVAL, String.valueOf(EventJournal.DEFAULT_CHECKPOINT_INTERVAL)));
+
+        EventJournal eventJournal = new EventJournal(directory, segmentSize, flushInterval, checkpointInterval);
+        try {
+            eventJournal.open();
+        } catch (EventBrokerException e) {
+            throw new EventBrokerConfigurationException("Can not open the event journal", e);
+        }
+        return eventJournal;
+    }
 }
@@ -19,10 +19,16 @@ package org.wso2.carbon.event.core.internal;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.event.core.Message;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.exception.PartialPublishException;
 import org.wso2.carbon.event.core.delivery.DeliveryManager;
+import org.wso2.carbon.event.core.internal.journal.EventJournal;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * this class use as the worker for the executor pool which publish the message
  */
@@ -31,7 +37,7 @@ public class EventPublisher implements Runnable{
 
     private static final Log log = LogFactory.getLog(EventPublisher.class);
 
-    private Message message;
+    private List<Message> messages;
     private String topicName;
     private DeliveryManager delivaryManager;
     private int deliveryMode;
@@ -42,7 +48,15 @@ public class EventPublisher implements Runnable{
                           DeliveryManager delivaryManager,
                           int deliveryMode,
                           int tenantID) {
-        this.message = message;
+        this(Collections.singletonList(message), topicName, delivaryManager, deliveryMode, tenantID);
+    }
+
+    public EventPublisher(List<Message> messages,
+                          String topicName,
+                          DeliveryManager delivaryManager,
+                          int deliveryMode,
+                          int tenantID) {
+        this.messages = messages;
         this.topicName = topicName;
         this.delivaryManager = delivaryManager;
         this.deliveryMode = deliveryMode;
@@ -54,11 +68,27 @@ public class EventPublisher implements Runnable{
             PrivilegedCarbonContext.startTenantFlow();
             PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantID);
             PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantDomain(true);
-            this.delivaryManager.publish(this.message, this.topicName, this.deliveryMode);
+            this.delivaryManager.publish(this.messages, this.topicName, this.deliveryMode);
+        } catch (PartialPublishException e) {
+            log.error("Can not publish " + e.getUnpublishedMessages().size() + " of the "
+                      + this.messages.size() + " messages to topic " + this.topicName
+                      + ", the first " + e.getPublishedCount() + " messages are published", e);
         } catch (EventBrokerException e) {
             log.error("Can not publish the message ", e);
         } finally {
             PrivilegedCarbonContext.endTenantFlow();
+            discard();
+        }
+    }
+
+    /**
+     * releases the journaled messages once they are matched with the subscriptions, or if they
+     * are dropped before that
+     */
+    public void discard() {
+        EventJournal eventJournal = EventBrokerHolder.getInstance().getEventJournal();
+        if (eventJournal != null) {
+            eventJournal.dispatched(this.messages);
         }
     }
 }
@@ -0,0 +1,506 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.exception.EventBrokerConfigurationException;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * bounded pipeline which queues the messages to publish per tenant, so that a tenant flooding the
+ * event broker only fills its own queue. The tenant queues are drained by the worker threads in
+ * weighted round robin order, each tenant publishing up to its weight number of messages per
+ * round.
+ * <p/>
+ * All the tenant queues together hold at most the maximum number of queued messages, and each of
+ * them holds at most the per tenant share of that. When either is full, the backpressure policy
+ * decides whether the publisher waits for space, the oldest queued message is dropped or the new
+ * message is rejected. A queue is removed once it is empty, so idle tenants take no memory.
+ * <p/>
+ * Worker threads are created as messages arrive, up to the maximum number of threads, and the
+ * ones exceeding the minimum number of threads stop after being idle for the keep alive time.
+ */
+@Deprecated
+public class PublishPipeline implements PublishPipelineMBean {
+
+    private static final Log log = LogFactory.getLog(PublishPipeline.class);
+
+    public static final int DEFAULT_TENANT_WEIGHT = 1;
+
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT = 10000;
+
+    /**
+     * what to do when the queue of a tenant is full
+     */
+    public enum BackpressurePolicy {
+        BLOCK, DROP_OLDEST, REJECT;
+
+        public static BackpressurePolicy getPolicy(String name)
+                throws EventBrokerConfigurationException {
+            if ("block".equalsIgnoreCase(name)) {
+                return BLOCK;
+            } else if ("dropOldest".equalsIgnoreCase(name)) {
+                return DROP_OLDEST;
+            } else if ("reject".equalsIgnoreCase(name)) {
+                return REJECT;
+            }
+            throw new EventBrokerConfigurationException("Unknown backpressure policy " + name);
+        }
+    }
+
+    private final int minThreads;
+    private final int maxThreads;
+    private final long keepAliveTime;
+    private final int maxQueuedRequests;
+    private final int maxQueuedRequestsPerTenant;
+    private final BackpressurePolicy backpressurePolicy;
+    private final int defaultTenantWeight;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+    private final Condition noWorkers = this.lock.newCondition();
+
+    private final Map<Integer, TenantQueue> tenantIDQueueMap = new HashMap<Integer, TenantQueue>();
+    private final Map<Integer, Integer> tenantIDWeightMap = new HashMap<Integer, Integer>();
+
+    /**
+     * queues of the tenants which have messages, in the order they are served
+     */
+    private final Deque<TenantQueue> activeQueues = new ArrayDeque<TenantQueue>();
+
+    private int queueDepth;
+    private int workerCount;
+    private int idleWorkerCount;
+    private boolean shutdown;
+    private boolean stopped;
+
+    private long publishedCount;
+    private long droppedCount;
+    private long rejectedCount;
+    private long totalWaitTime;
+    private long maxWaitTime;
+
+    /**
+     * @param minThreads                 worker threads kept when idle
+     * @param maxThreads                 maximum number of worker threads
+     * @param keepAliveTime              milli seconds the extra worker threads wait for messages
+     * @param maxQueuedRequests          messages queued by all the tenants together
+     * @param maxQueuedRequestsPerTenant messages queued by one tenant, at most maxQueuedRequests
+     * @param backpressurePolicy         what to do when a queue is full
+     * @param defaultTenantWeight        messages a tenant publishes in one round if not set
+     */
+    public PublishPipeline(int minThreads,
+                           int maxThreads,
+                           long keepAliveTime,
+                           int maxQueuedRequests,
+                           int maxQueuedRequestsPerTenant,
+                           BackpressurePolicy backpressurePolicy,
+                           int defaultTenantWeight) {
+        this.minThreads = minThreads;
+        this.maxThreads = Math.max(maxThreads, 1);
+        this.keepAliveTime = keepAliveTime;
+        this.maxQueuedRequests = Math.max(maxQueuedRequests, 1);
+        this.maxQueuedRequestsPerTenant = Math.max(Math.min(maxQueuedRequestsPerTenant, this.maxQueuedRequests), 1);
+        this.backpressurePolicy = backpressurePolicy;
+        this.defaultTenantWeight = Math.max(defaultTenantWeight, 1);
+    }
+
+    /**
+     * queues the task to be run by a worker thread
+     *
+     * @param tenantId tenant of the message
+     * @param task     publishes the message
+     * @throws EventBrokerException if the tenant queue or the pipeline is full and the policy is
+     *                              reject, or the pipeline is shut down
+     */
+    public void submit(int tenantId, Runnable task) throws EventBrokerException {
+        this.lock.lock();
+        try {
+            if (this.shutdown) {
+                throw new EventBrokerException("Event publisher is shut down");
+            }
+            TenantQueue tenantQueue;
+            while (true) {
+                // looked up again after waiting, an emptied queue is removed
+                tenantQueue = this.tenantIDQueueMap.get(tenantId);
+                int tenantQueueDepth = (tenantQueue == null) ? 0 : tenantQueue.tasks.size();
+                if ((tenantQueueDepth < this.maxQueuedRequestsPerTenant)
+                    && (this.queueDepth < this.maxQueuedRequests)) {
+                    break;
+                }
+                if (this.backpressurePolicy == BackpressurePolicy.REJECT) {
+                    this.rejectedCount++;
+                    throw new EventBrokerException((tenantQueueDepth < this.maxQueuedRequestsPerTenant) ?
+                                                   "Publish queue is full" :
+                                                   "Publish queue of tenant " + tenantId + " is full");
+                } else if (this.backpressurePolicy == BackpressurePolicy.DROP_OLDEST) {
+                    // a tenant makes room in its own queue, or in the longest one if it has none
+                    dropOldest((tenantQueue != null) ? tenantQueue : getLongestQueue());
+                } else {
+                    try {
+                        this.notFull.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new EventBrokerException("Interrupted while waiting to publish", e);
+                    }
+                    if (this.shutdown) {
+                        throw new EventBrokerException("Event publisher is shut down");
+                    }
+                }
+            }
+
+            if (tenantQueue == null) {
+                tenantQueue = new TenantQueue(tenantId);
+                tenantQueue.credit = getTenantWeight(tenantId);
+                this.tenantIDQueueMap.put(tenantId, tenantQueue);
+                this.activeQueues.addLast(tenantQueue);
+            }
+            tenantQueue.tasks.addLast(new QueuedTask(task, System.currentTimeMillis()));
+            this.queueDepth++;
+
+            if ((this.idleWorkerCount == 0) && (this.workerCount < this.maxThreads)) {
+                startWorker();
+            } else {
+                this.notEmpty.signal();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * stops accepting messages and waits for the worker threads to publish the queued ones. The
+     * worker threads are stopped once the timeout elapses, messages still queued then are not
+     * published. Journaled messages among them are replayed in the next start.
+     *
+     * @param timeout milli seconds to wait for the queued messages to be published
+     * @return false if some of the queued messages were not published
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout) throws InterruptedException {
+        this.lock.lock();
+        try {
+            this.shutdown = true;
+            this.notEmpty.signalAll();
+            this.notFull.signalAll();
+
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+            while ((this.workerCount > 0) && (nanos > 0)) {
+                nanos = this.noWorkers.awaitNanos(nanos);
+            }
+            this.stopped = true;
+            this.notEmpty.signalAll();
+            if (this.queueDepth == 0) {
+                return true;
+            }
+            log.warn(this.queueDepth + " queued messages of " + this.tenantIDQueueMap.size()
+                     + " tenants are not published since the event publisher is shut down");
+            this.tenantIDQueueMap.clear();
+            this.activeQueues.clear();
+            this.queueDepth = 0;
+            return false;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * takes the next task in weighted round robin order
+     *
+     * @return the next task or null if the worker should stop
+     */
+    private QueuedTask take() throws InterruptedException {
+        this.lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(this.keepAliveTime);
+            while (this.activeQueues.isEmpty()) {
+                // queued messages are still published after the shut down
+                if (this.shutdown) {
+                    return null;
+                }
+                if ((nanos <= 0) && (this.workerCount > this.minThreads)) {
+                    return null;
+                }
+                this.idleWorkerCount++;
+                try {
+                    if (this.workerCount > this.minThreads) {
+                        nanos = this.notEmpty.awaitNanos(nanos);
+                    } else {
+                        this.notEmpty.await();
+                    }
+                } finally {
+                    this.idleWorkerCount--;
+                }
+            }
+            if (this.stopped) {
+                return null;
+            }
+
+            TenantQueue tenantQueue = this.activeQueues.peekFirst();
+            QueuedTask queuedTask = tenantQueue.tasks.removeFirst();
+            this.queueDepth--;
+            tenantQueue.credit--;
+            if (tenantQueue.tasks.isEmpty()) {
+                this.activeQueues.removeFirst();
+                this.tenantIDQueueMap.remove(tenantQueue.tenantId);
+            } else if (tenantQueue.credit <= 0) {
+                // used up its turn, goes to the end of the round
+                this.activeQueues.removeFirst();
+                tenantQueue.credit = getTenantWeight(tenantQueue.tenantId);
+                this.activeQueues.addLast(tenantQueue);
+            }
+
+            long waitTime = System.currentTimeMillis() - queuedTask.queuedTime;
+            this.publishedCount++;
+            this.totalWaitTime += waitTime;
+            this.maxWaitTime = Math.max(this.maxWaitTime, waitTime);
+            if (this.backpressurePolicy == BackpressurePolicy.BLOCK) {
+                this.notFull.signalAll();
+            }
+            return queuedTask;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * must be called while holding the lock
+     */
+    private void startWorker() {
+        this.workerCount++;
+        Thread thread = new Thread(new Worker(), "EventPublisher-" + this.workerCount);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * must be called while holding the lock
+     */
+    private TenantQueue getLongestQueue() {
+        TenantQueue longestQueue = null;
+        for (TenantQueue tenantQueue : this.activeQueues) {
+            if ((longestQueue == null) || (tenantQueue.tasks.size() > longestQueue.tasks.size())) {
+                longestQueue = tenantQueue;
+            }
+        }
+        return longestQueue;
+    }
+
+    /**
+     * must be called while holding the lock
+     */
+    private void dropOldest(TenantQueue tenantQueue) {
+        QueuedTask droppedTask = tenantQueue.tasks.removeFirst();
+        if (droppedTask.task instanceof EventPublisher) {
+            ((EventPublisher) droppedTask.task).discard();
+        }
+        this.queueDepth--;
+        this.droppedCount++;
+        if (tenantQueue.tasks.isEmpty()) {
+            this.activeQueues.remove(tenantQueue);
+            this.tenantIDQueueMap.remove(tenantQueue.tenantId);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Dropped the oldest message of tenant " + tenantQueue.tenantId);
+        }
+    }
+
+    public int getQueueDepth() {
+        this.lock.lock();
+        try {
+            return this.queueDepth;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int getTenantQueueDepth(int tenantId) {
+        this.lock.lock();
+        try {
+            TenantQueue tenantQueue = this.tenantIDQueueMap.get(tenantId);
+            return (tenantQueue == null) ? 0 : tenantQueue.tasks.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int getActiveTenantCount() {
+        this.lock.lock();
+        try {
+            return this.tenantIDQueueMap.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getPublishedCount() {
+        this.lock.lock();
+        try {
+            return this.publishedCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getDroppedCount() {
+        this.lock.lock();
+        try {
+            return this.droppedCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getRejectedCount() {
+        this.lock.lock();
+        try {
+            return this.rejectedCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public double getAverageWaitTime() {
+        this.lock.lock();
+        try {
+            return (this.publishedCount == 0) ? 0 : ((double) this.totalWaitTime) / this.publishedCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getMaxWaitTime() {
+        this.lock.lock();
+        try {
+            return this.maxWaitTime;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int getWorkerCount() {
+        this.lock.lock();
+        try {
+            return this.workerCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public String getBackpressurePolicy() {
+        return this.backpressurePolicy.name();
+    }
+
+    public int getTenantWeight(int tenantId) {
+        this.lock.lock();
+        try {
+            Integer weight = this.tenantIDWeightMap.get(tenantId);
+            return (weight == null) ? this.defaultTenantWeight : weight;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void setTenantWeight(int tenantId, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight must be positive " + weight);
+        }
+        this.lock.lock();
+        try {
+            this.tenantIDWeightMap.put(tenantId, weight);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void resetStatistics() {
+        this.lock.lock();
+        try {
+            this.publishedCount = 0;
+            this.droppedCount = 0;
+            this.rejectedCount = 0;
+            this.totalWaitTime = 0;
+            this.maxWaitTime = 0;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        public void run() {
+            try {
+                QueuedTask queuedTask;
+                while ((queuedTask = take()) != null) {
+                    try {
+                        queuedTask.task.run();
+                    } catch (Throwable e) {
+                        log.error("Can not publish the message ", e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.lock();
+                try {
+                    workerCount--;
+                    if (workerCount == 0) {
+                        noWorkers.signalAll();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private static final class TenantQueue {
+
+        private final int tenantId;
+        private final Deque<QueuedTask> tasks = new ArrayDeque<QueuedTask>();
+
+        /**
+         * messages this tenant can still publish in its current turn
+         */
+        private int credit;
+
+        private TenantQueue(int tenantId) {
+            this.tenantId = tenantId;
+        }
+    }
+
+    private static final class QueuedTask {
+
+        private final Runnable task;
+        private final long queuedTime;
+
+        private QueuedTask(Runnable task, long queuedTime) {
+            this.task = task;
+            this.queuedTime = queuedTime;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal;
+
+/**
+ * MBean interface of the publish pipeline of the event broker
+ */
+@Deprecated
+public interface PublishPipelineMBean {
+
+    /**
+     * @return number of messages waiting to be published, in all the tenant queues
+     */
+    int getQueueDepth();
+
+    /**
+     * @param tenantId tenant id
+     * @return number of messages of the tenant waiting to be published
+     */
+    int getTenantQueueDepth(int tenantId);
+
+    /**
+     * @return number of tenants with messages waiting to be published
+     */
+    int getActiveTenantCount();
+
+    /**
+     * @return number of messages taken from the queues for publishing
+     */
+    long getPublishedCount();
+
+    /**
+     * @return number of messages dropped to make room for newer ones
+     */
+    long getDroppedCount();
+
+    /**
+     * @return number of messages rejected since the tenant queue was full
+     */
+    long getRejectedCount();
+
+    /**
+     * @return average time in milli seconds the messages waited in the queues
+     */
+    double getAverageWaitTime();
+
+    /**
+     * @return maximum time in milli seconds a message waited in the queues
+     */
+    long getMaxWaitTime();
+
+    /**
+     * @return number of worker threads
+     */
+    int getWorkerCount();
+
+    String getBackpressurePolicy();
+
+    /**
+     * @param tenantId tenant id
+     * @return number of messages the tenant can publish in one round of the scheduler
+     */
+    int getTenantWeight(int tenantId);
+
+    /**
+     * sets the number of messages the tenant can publish in one round of the scheduler
+     *
+     * @param tenantId tenant id
+     * @param weight   weight of the tenant, must be positive
+     */
+    void setTenantWeight(int tenantId, int weight);
+
+    /**
+     * resets the published, dropped and rejected counts and the wait times
+     */
+    void resetStatistics();
+}
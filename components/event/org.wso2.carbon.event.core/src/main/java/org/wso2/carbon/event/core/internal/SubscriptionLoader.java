@@ -0,0 +1,166 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.exception.EventBrokerConfigurationException;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * loads the existing subscriptions of the tenants with a bounded number of threads, so that the
+ * tenants are loaded in parallel and the thread initializing a tenant does not wait for the
+ * registry. Publishing and subscribing for a tenant wait until its subscriptions are loaded,
+ * otherwise the events would not reach the subscribers which are not loaded yet. Tenants which are
+ * not loaded through the loader are not gated.
+ * <p/>
+ * If the subscriptions of a tenant can not be loaded the tenant stays closed, and waiting for it
+ * fails with the cause, until the tenant is loaded again.
+ */
+@Deprecated
+public class SubscriptionLoader {
+
+    private static final Log log = LogFactory.getLog(SubscriptionLoader.class);
+
+    public static final int DEFAULT_LOAD_THREADS = 4;
+    public static final long DEFAULT_LOAD_TIMEOUT = 60000;
+
+    private final ExecutorService executor;
+    private final long loadTimeout;
+
+    /**
+     * loads the subscriptions of a tenant
+     */
+    public interface LoadTask {
+
+        void load() throws EventBrokerException;
+    }
+
+    /**
+     * open when the tenant is loaded. replaced when the tenant is loaded again
+     */
+    private final ConcurrentMap<Integer, Gate> tenantIDGateMap = new ConcurrentHashMap<Integer, Gate>();
+
+    public SubscriptionLoader(int loadThreads, long loadTimeout) {
+        this.loadTimeout = loadTimeout;
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+                Math.max(loadThreads, 1), Math.max(loadThreads, 1), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SubscriptionLoader-" + this.threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // the threads are only needed while the tenants are being loaded
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        this.executor = threadPoolExecutor;
+    }
+
+    /**
+     * closes the tenant for publishing and runs the load task in a loader thread. the tenant is
+     * opened again when the task finishes. if it fails, waiting for the tenant fails too.
+     *
+     * @param tenantId tenant id
+     * @param loadTask loads the subscriptions of the tenant
+     */
+    public void load(final int tenantId, final LoadTask loadTask) {
+        final Gate gate = new Gate();
+        this.tenantIDGateMap.put(tenantId, gate);
+        this.executor.execute(new Runnable() {
+            public void run() {
+                long startTime = System.currentTimeMillis();
+                try {
+                    loadTask.load();
+                } catch (Exception e) {
+                    log.error("Can not load the subscriptions of tenant " + tenantId, e);
+                    gate.failure = e;
+                } finally {
+                    gate.latch.countDown();
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Loaded the subscriptions of tenant " + tenantId + " in "
+                              + (System.currentTimeMillis() - startTime) + " ms");
+                }
+            }
+        });
+    }
+
+    /**
+     * @param tenantId tenant id
+     * @return false if the subscriptions of the tenant are being loaded
+     */
+    public boolean isLoaded(int tenantId) {
+        Gate gate = this.tenantIDGateMap.get(tenantId);
+        return (gate == null) || (gate.latch.getCount() == 0);
+    }
+
+    /**
+     * waits until the subscriptions of the tenant are loaded
+     *
+     * @param tenantId tenant id
+     * @throws EventBrokerConfigurationException if they could not be loaded
+     * @throws EventBrokerException              if they are not loaded within the load timeout
+     */
+    public void awaitLoaded(int tenantId) throws EventBrokerException {
+        Gate gate = this.tenantIDGateMap.get(tenantId);
+        if (gate == null) {
+            return;
+        }
+        if (gate.latch.getCount() > 0) {
+            try {
+                if (!gate.latch.await(this.loadTimeout, TimeUnit.MILLISECONDS)) {
+                    throw new EventBrokerException("Subscriptions of tenant " + tenantId + " are still being loaded");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EventBrokerException("Interrupted while waiting for the subscriptions of tenant "
+                                               + tenantId + " to be loaded", e);
+            }
+        }
+        if (gate.failure != null) {
+            throw new EventBrokerConfigurationException("Can not load the subscriptions of tenant " + tenantId,
+                                                        gate.failure);
+        }
+    }
+
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    private static final class Gate {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        /**
+         * written before the latch is opened
+         */
+        private volatile Exception failure;
+    }
+}
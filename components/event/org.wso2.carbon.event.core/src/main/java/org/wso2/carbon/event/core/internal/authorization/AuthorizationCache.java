@@ -0,0 +1,374 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.authorization;
+
+import org.apache.axis2.clustering.ClusteringAgent;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.user.api.UserRealm;
+import org.wso2.carbon.user.api.UserStoreException;
+import org.wso2.carbon.utils.ConfigurationContextService;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * caches the results of the user store authorization checks done when publishing and
+ * subscribing, keyed by tenant, user, topic resource path and action. Decisions expire after the
+ * time to live and the number of cached decisions is bounded.
+ * <p/>
+ * Decisions are invalidated when the permissions of a topic are changed through the topic manager
+ * or the authorization manager (see {@link EventBrokerAuthorizationManagerListener}) and when the
+ * roles of the users are changed (see {@link EventBrokerUserOperationListener}). The other nodes
+ * of the cluster are informed with an {@link AuthorizationCacheInvalidationClusterMessage}.
+ * <p/>
+ * The authorization manager calls its listeners before it writes the permission, so those
+ * decisions are invalidated once before the change and once more after the change delay.
+ */
+@Deprecated
+public class AuthorizationCache {
+
+    private static final Log log = LogFactory.getLog(AuthorizationCache.class);
+
+    public static final long DEFAULT_TIME_TO_LIVE = 60000;
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    public static final long DEFAULT_CHANGE_DELAY = 1000;
+
+    /**
+     * time in milli seconds a decision is kept. Zero disables the cache.
+     */
+    private final long timeToLive;
+
+    private final int maxEntries;
+
+    /**
+     * time in milli seconds after which a permission change announced by a listener is expected
+     * to be written
+     */
+    private final long changeDelay;
+
+    private final ConcurrentMap<AuthorizationKey, AuthorizationDecision> decisionMap;
+
+    /**
+     * incremented with every invalidation so that a decision read from the user store
+     * concurrently with an invalidation is not cached.
+     */
+    private final AtomicLong invalidationCount;
+
+    private volatile ScheduledExecutorService changeExecutor;
+
+    public AuthorizationCache() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_ENTRIES);
+    }
+
+    public AuthorizationCache(long timeToLive, int maxEntries) {
+        this(timeToLive, maxEntries, DEFAULT_CHANGE_DELAY);
+    }
+
+    public AuthorizationCache(long timeToLive, int maxEntries, long changeDelay) {
+        this.timeToLive = timeToLive;
+        this.maxEntries = maxEntries;
+        this.changeDelay = changeDelay;
+        this.decisionMap = new ConcurrentHashMap<AuthorizationKey, AuthorizationDecision>();
+        this.invalidationCount = new AtomicLong();
+    }
+
+    /**
+     * checks whether the user is authorized for the action on the resource, using the cached
+     * decision if there is one.
+     *
+     * @param tenantId     tenant of the user
+     * @param userName     tenant aware user name
+     * @param resourcePath topic resource path
+     * @param action       publish or subscribe
+     * @return true if the user is authorized
+     * @throws UserStoreException if can not access the user store
+     */
+    public boolean isUserAuthorized(int tenantId, String userName, String resourcePath, String action)
+            throws UserStoreException {
+        AuthorizationKey authorizationKey =
+                new AuthorizationKey(tenantId, userName, resourcePath, action);
+        long currentTime = System.currentTimeMillis();
+        if (this.timeToLive > 0) {
+            AuthorizationDecision authorizationDecision = this.decisionMap.get(authorizationKey);
+            if ((authorizationDecision != null) && (authorizationDecision.expiryTime > currentTime)) {
+                return authorizationDecision.authorized;
+            }
+        }
+
+        long invalidationCountBeforeCheck = this.invalidationCount.get();
+        UserRealm userRealm =
+                EventBrokerHolder.getInstance().getRealmService().getTenantUserRealm(tenantId);
+        boolean authorized =
+                userRealm.getAuthorizationManager().isUserAuthorized(userName, resourcePath, action);
+
+        if (this.timeToLive > 0) {
+            if (this.decisionMap.size() >= this.maxEntries) {
+                evict(currentTime);
+            }
+            this.decisionMap.put(authorizationKey,
+                    new AuthorizationDecision(authorized, currentTime + this.timeToLive));
+            if (this.invalidationCount.get() != invalidationCountBeforeCheck) {
+                // permissions changed while checking, the decision may be stale
+                this.decisionMap.remove(authorizationKey);
+            }
+        }
+        return authorized;
+    }
+
+    /**
+     * removes the decisions of the resource and its child resources on all the nodes
+     *
+     * @param tenantId     tenant of the resource
+     * @param resourcePath topic resource path
+     */
+    public void invalidateResource(int tenantId, String resourcePath) {
+        removeResource(tenantId, resourcePath);
+        sendClusterMessage(new AuthorizationCacheInvalidationClusterMessage(tenantId, resourcePath));
+    }
+
+    /**
+     * removes all the decisions of the tenant on all the nodes
+     *
+     * @param tenantId tenant id
+     */
+    public void invalidateTenant(int tenantId) {
+        removeTenant(tenantId);
+        sendClusterMessage(new AuthorizationCacheInvalidationClusterMessage(tenantId, null));
+    }
+
+    /**
+     * removes all the decisions on all the nodes
+     */
+    public void invalidateAll() {
+        removeAll();
+        sendClusterMessage(new AuthorizationCacheInvalidationClusterMessage());
+    }
+
+    /**
+     * removes the decisions of the resource and its child resources on all the nodes, now and
+     * again after the change delay. Used before the permissions of the resource are written, since
+     * a decision read in between would otherwise be kept until it expires.
+     *
+     * @param tenantId     tenant of the resource
+     * @param resourcePath topic resource path
+     */
+    public void invalidateResourceOnChange(final int tenantId, final String resourcePath) {
+        invalidateResource(tenantId, resourcePath);
+        scheduleInvalidation(new Runnable() {
+            public void run() {
+                invalidateResource(tenantId, resourcePath);
+            }
+        });
+    }
+
+    /**
+     * removes all the decisions of the tenant on all the nodes, now and again after the change
+     * delay
+     *
+     * @param tenantId tenant id
+     */
+    public void invalidateTenantOnChange(final int tenantId) {
+        invalidateTenant(tenantId);
+        scheduleInvalidation(new Runnable() {
+            public void run() {
+                invalidateTenant(tenantId);
+            }
+        });
+    }
+
+    /**
+     * removes all the decisions on all the nodes, now and again after the change delay
+     */
+    public void invalidateAllOnChange() {
+        invalidateAll();
+        scheduleInvalidation(new Runnable() {
+            public void run() {
+                invalidateAll();
+            }
+        });
+    }
+
+    void removeResource(int tenantId, String resourcePath) {
+        this.invalidationCount.incrementAndGet();
+        String childPathPrefix = resourcePath.endsWith("/") ? resourcePath : resourcePath + "/";
+        for (Iterator<AuthorizationKey> iterator = this.decisionMap.keySet().iterator();
+             iterator.hasNext();) {
+            AuthorizationKey authorizationKey = iterator.next();
+            if ((authorizationKey.tenantId == tenantId)
+                    && (authorizationKey.resourcePath.equals(resourcePath)
+                        || authorizationKey.resourcePath.startsWith(childPathPrefix))) {
+                iterator.remove();
+            }
+        }
+    }
+
+    void removeTenant(int tenantId) {
+        this.invalidationCount.incrementAndGet();
+        for (Iterator<AuthorizationKey> iterator = this.decisionMap.keySet().iterator();
+             iterator.hasNext();) {
+            if (iterator.next().tenantId == tenantId) {
+                iterator.remove();
+            }
+        }
+    }
+
+    void removeAll() {
+        this.invalidationCount.incrementAndGet();
+        this.decisionMap.clear();
+    }
+
+    public int size() {
+        return this.decisionMap.size();
+    }
+
+    private void scheduleInvalidation(final Runnable invalidation) {
+        if (this.timeToLive <= 0) {
+            return;
+        }
+        getChangeExecutor().schedule(new Runnable() {
+            public void run() {
+                try {
+                    invalidation.run();
+                } catch (Throwable e) {
+                    log.error("Can not invalidate the cached authorization decisions after a permission change", e);
+                }
+            }
+        }, this.changeDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private ScheduledExecutorService getChangeExecutor() {
+        if (this.changeExecutor == null) {
+            synchronized (this) {
+                if (this.changeExecutor == null) {
+                    this.changeExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "AuthorizationCacheInvalidator");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return this.changeExecutor;
+    }
+
+    private void sendClusterMessage(AuthorizationCacheInvalidationClusterMessage clusterMessage) {
+        if (this.timeToLive <= 0) {
+            return;
+        }
+        ConfigurationContextService configurationContextService =
+                EventBrokerHolder.getInstance().getConfigurationContextService();
+        if (configurationContextService == null) {
+            return;
+        }
+        ClusteringAgent agent =
+                configurationContextService.getServerConfigContext().getAxisConfiguration().getClusteringAgent();
+        if (agent == null) {
+            // not clustered, there are no other nodes to inform
+            return;
+        }
+        try {
+            agent.sendMessage(clusterMessage, false);
+        } catch (ClusteringFault e) {
+            // other nodes drop their decisions only when they expire
+            log.error("Authorization cache invalidation cluster message sending failed", e);
+        }
+    }
+
+    /**
+     * removes the expired decisions. If the cache is still full some of the other decisions are
+     * removed as well to make room for new ones.
+     */
+    private void evict(long currentTime) {
+        for (Iterator<AuthorizationDecision> iterator = this.decisionMap.values().iterator();
+             iterator.hasNext();) {
+            if (iterator.next().expiryTime <= currentTime) {
+                iterator.remove();
+            }
+        }
+
+        int entriesToRemove = this.decisionMap.size() - (this.maxEntries - this.maxEntries / 10);
+        for (Iterator<Map.Entry<AuthorizationKey, AuthorizationDecision>> iterator =
+                     this.decisionMap.entrySet().iterator();
+             iterator.hasNext() && (entriesToRemove > 0); entriesToRemove--) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static final class AuthorizationKey {
+
+        private final int tenantId;
+        private final String userName;
+        private final String resourcePath;
+        private final String action;
+        private final int hashCode;
+
+        private AuthorizationKey(int tenantId, String userName, String resourcePath, String action) {
+            this.tenantId = tenantId;
+            this.userName = userName;
+            this.resourcePath = resourcePath;
+            this.action = action;
+
+            int result = tenantId;
+            result = 31 * result + userName.hashCode();
+            result = 31 * result + resourcePath.hashCode();
+            result = 31 * result + action.hashCode();
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof AuthorizationKey)) {
+                return false;
+            }
+            AuthorizationKey that = (AuthorizationKey) o;
+            return (this.tenantId == that.tenantId) && this.userName.equals(that.userName)
+                   && this.resourcePath.equals(that.resourcePath) && this.action.equals(that.action);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+    private static final class AuthorizationDecision {
+
+        private final boolean authorized;
+        private final long expiryTime;
+
+        private AuthorizationDecision(boolean authorized, long expiryTime) {
+            this.authorized = authorized;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
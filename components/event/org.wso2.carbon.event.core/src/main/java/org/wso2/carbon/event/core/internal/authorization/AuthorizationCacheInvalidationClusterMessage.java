@@ -0,0 +1,73 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.authorization;
+
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.ClusteringMessage;
+import org.apache.axis2.context.ConfigurationContext;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+
+import java.io.Serializable;
+
+/**
+ * cluster message sent when topic permissions or user roles change, so that the other nodes drop
+ * the authorization decisions cached in their {@link AuthorizationCache}
+ */
+@Deprecated
+public class AuthorizationCacheInvalidationClusterMessage extends ClusteringMessage implements Serializable {
+
+    private static final long serialVersionUID = -2470321865263315474L;
+
+    private boolean allTenants;
+    private int tenantId;
+    private String resourcePath;
+
+    /**
+     * invalidates the decisions of all the tenants
+     */
+    AuthorizationCacheInvalidationClusterMessage() {
+        this.allTenants = true;
+    }
+
+    /**
+     * @param tenantId     tenant of the decisions
+     * @param resourcePath resource whose decisions are invalidated, or null for all the resources
+     *                     of the tenant
+     */
+    AuthorizationCacheInvalidationClusterMessage(int tenantId, String resourcePath) {
+        this.tenantId = tenantId;
+        this.resourcePath = resourcePath;
+    }
+
+    @Override
+    public ClusteringCommand getResponse() {
+        return null;
+    }
+
+    @Override
+    public void execute(ConfigurationContext configurationContext) throws ClusteringFault {
+        AuthorizationCache authorizationCache = EventBrokerHolder.getInstance().getAuthorizationCache();
+        if (this.allTenants) {
+            authorizationCache.removeAll();
+        } else if (this.resourcePath == null) {
+            authorizationCache.removeTenant(this.tenantId);
+        } else {
+            authorizationCache.removeResource(this.tenantId, this.resourcePath);
+        }
+    }
+}
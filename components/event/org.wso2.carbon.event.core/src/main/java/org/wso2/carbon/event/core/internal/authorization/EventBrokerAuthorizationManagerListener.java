@@ -0,0 +1,146 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.authorization;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.user.core.AuthorizationManager;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.listener.AuthorizationManagerListener;
+
+/**
+ * invalidates the cached authorization decisions when permissions are changed through the
+ * authorization manager, e.g. when a role is authorized for a topic from the permission UI
+ * instead of the topic manager.
+ * <p/>
+ * The listener is called before the permission is changed, and the authorization manager has no
+ * listener called after it. The decisions are therefore invalidated before the change and again
+ * after the change delay of the cache, so that a decision read before the change is written is
+ * not kept until it expires.
+ */
+@Deprecated
+public class EventBrokerAuthorizationManagerListener implements AuthorizationManagerListener {
+
+    private static final Log log = LogFactory.getLog(EventBrokerAuthorizationManagerListener.class);
+
+    private static final int EXECUTION_ORDER_ID = 9500;
+
+    public int getExecutionOrderId() {
+        return EXECUTION_ORDER_ID;
+    }
+
+    public boolean isUserAuthorized(String userName, String resourceId, String action,
+                                    AuthorizationManager authorizationManager) throws UserStoreException {
+        return true;
+    }
+
+    public boolean isRoleAuthorized(String roleName, String resourceId, String action,
+                                    AuthorizationManager authorizationManager) throws UserStoreException {
+        return true;
+    }
+
+    public boolean authorizeUser(String userName, String resourceId, String action,
+                                 AuthorizationManager authorizationManager) throws UserStoreException {
+        invalidateResource(resourceId, authorizationManager);
+        return true;
+    }
+
+    public boolean authorizeRole(String roleName, String resourceId, String action,
+                                 AuthorizationManager authorizationManager) throws UserStoreException {
+        invalidateResource(resourceId, authorizationManager);
+        return true;
+    }
+
+    public boolean clearUserAuthorization(String userName, String resourceId, String action,
+                                          AuthorizationManager authorizationManager) throws UserStoreException {
+        invalidateResource(resourceId, authorizationManager);
+        return true;
+    }
+
+    public boolean clearUserAuthorization(String userName, AuthorizationManager authorizationManager)
+            throws UserStoreException {
+        invalidateTenant(authorizationManager);
+        return true;
+    }
+
+    public boolean clearRoleAuthorization(String roleName, String resourceId, String action,
+                                          AuthorizationManager authorizationManager) throws UserStoreException {
+        invalidateResource(resourceId, authorizationManager);
+        return true;
+    }
+
+    public boolean clearRoleActionOnAllResources(String roleName, String action,
+                                                 AuthorizationManager authorizationManager)
+            throws UserStoreException {
+        invalidateTenant(authorizationManager);
+        return true;
+    }
+
+    public boolean clearRoleAuthorization(String roleName, AuthorizationManager authorizationManager)
+            throws UserStoreException {
+        invalidateTenant(authorizationManager);
+        return true;
+    }
+
+    public boolean clearResourceAuthorizations(String resourceId, AuthorizationManager authorizationManager)
+            throws UserStoreException {
+        invalidateResource(resourceId, authorizationManager);
+        return true;
+    }
+
+    public boolean denyUser(String userName, String resourceId, String action,
+                            AuthorizationManager authorizationManager) throws UserStoreException {
+        invalidateResource(resourceId, authorizationManager);
+        return true;
+    }
+
+    public boolean denyRole(String roleName, String resourceId, String action,
+                            AuthorizationManager authorizationManager) throws UserStoreException {
+        invalidateResource(resourceId, authorizationManager);
+        return true;
+    }
+
+    public boolean resetPermissionOnUpdateRole(String roleName, String newRoleName,
+                                               AuthorizationManager authorizationManager)
+            throws UserStoreException {
+        invalidateTenant(authorizationManager);
+        return true;
+    }
+
+    private void invalidateResource(String resourceId, AuthorizationManager authorizationManager) {
+        AuthorizationCache authorizationCache = EventBrokerHolder.getInstance().getAuthorizationCache();
+        try {
+            authorizationCache.invalidateResourceOnChange(authorizationManager.getTenantId(), resourceId);
+        } catch (UserStoreException e) {
+            log.warn("Can not find the tenant of the updated permission, " +
+                     "invalidating all the cached authorization decisions", e);
+            authorizationCache.invalidateAllOnChange();
+        }
+    }
+
+    private void invalidateTenant(AuthorizationManager authorizationManager) {
+        AuthorizationCache authorizationCache = EventBrokerHolder.getInstance().getAuthorizationCache();
+        try {
+            authorizationCache.invalidateTenantOnChange(authorizationManager.getTenantId());
+        } catch (UserStoreException e) {
+            log.warn("Can not find the tenant of the updated permissions, " +
+                     "invalidating all the cached authorization decisions", e);
+            authorizationCache.invalidateAllOnChange();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.authorization;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.user.api.Permission;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.common.AbstractUserOperationEventListener;
+
+import java.util.Map;
+
+/**
+ * invalidates the cached authorization decisions of a tenant when the roles of its users change,
+ * since the topic permissions are given to the roles. The user store manager calls these after
+ * the change is written.
+ */
+@Deprecated
+public class EventBrokerUserOperationListener extends AbstractUserOperationEventListener {
+
+    private static final Log log = LogFactory.getLog(EventBrokerUserOperationListener.class);
+
+    private static final int EXECUTION_ORDER_ID = 9500;
+
+    @Override
+    public int getExecutionOrderId() {
+        return EXECUTION_ORDER_ID;
+    }
+
+    @Override
+    public boolean doPostAddUser(String userName, Object credential, String[] roleList,
+                                 Map<String, String> claims, String profile,
+                                 UserStoreManager userStoreManager)
+            throws UserStoreException {
+        // a user with the name of a deleted one may have been denied before
+        invalidate(userStoreManager);
+        return true;
+    }
+
+    @Override
+    public boolean doPostAddRole(String roleName, String[] userList, Permission[] permissions,
+                                 UserStoreManager userStoreManager)
+            throws UserStoreException {
+        invalidate(userStoreManager);
+        return true;
+    }
+
+    @Override
+    public boolean doPostUpdateRoleListOfUser(String userName, String[] deletedRoles,
+                                              String[] newRoles,
+                                              UserStoreManager userStoreManager)
+            throws UserStoreException {
+        invalidate(userStoreManager);
+        return true;
+    }
+
+    @Override
+    public boolean doPostUpdateUserListOfRole(String roleName, String[] deletedUsers,
+                                              String[] newUsers,
+                                              UserStoreManager userStoreManager)
+            throws UserStoreException {
+        invalidate(userStoreManager);
+        return true;
+    }
+
+    @Override
+    public boolean doPostUpdateRoleName(String roleName, String newRoleName,
+                                        UserStoreManager userStoreManager)
+            throws UserStoreException {
+        invalidate(userStoreManager);
+        return true;
+    }
+
+    @Override
+    public boolean doPostDeleteRole(String roleName, UserStoreManager userStoreManager)
+            throws UserStoreException {
+        invalidate(userStoreManager);
+        return true;
+    }
+
+    @Override
+    public boolean doPostDeleteUser(String userName, UserStoreManager userStoreManager)
+            throws UserStoreException {
+        invalidate(userStoreManager);
+        return true;
+    }
+
+    private void invalidate(UserStoreManager userStoreManager) {
+        AuthorizationCache authorizationCache = EventBrokerHolder.getInstance().getAuthorizationCache();
+        try {
+            authorizationCache.invalidateTenant(userStoreManager.getTenantId());
+        } catch (UserStoreException e) {
+            log.warn("Can not find the tenant of the updated user store, " +
+                     "invalidating all the cached authorization decisions", e);
+            authorizationCache.invalidateAll();
+        }
+    }
+}
@@ -22,8 +22,12 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.ComponentContext;
 import org.wso2.carbon.event.core.EventBundleNotificationService;
+import org.wso2.carbon.event.core.internal.authorization.EventBrokerAuthorizationManagerListener;
+import org.wso2.carbon.event.core.internal.authorization.EventBrokerUserOperationListener;
 import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.wso2.carbon.registry.core.service.RegistryService;
+import org.wso2.carbon.user.core.listener.AuthorizationManagerListener;
+import org.wso2.carbon.user.core.listener.UserOperationEventListener;
 import org.wso2.carbon.user.core.service.RealmService;
 import org.wso2.carbon.utils.ConfigurationContextService;
 
@@ -53,6 +57,13 @@ public class EventBrokerBuilderDS {
     protected void activate(ComponentContext context) {
 
         this.eventBrokerHandler = new EventBrokerHandler(context);
+
+        // cached authorization decisions must be dropped when the user roles or permissions change
+        context.getBundleContext().registerService(UserOperationEventListener.class.getName(),
+                new EventBrokerUserOperationListener(), null);
+        context.getBundleContext().registerService(AuthorizationManagerListener.class.getName(),
+                new EventBrokerAuthorizationManagerListener(), null);
+
         //need to differ the bundle deployment if the Qpid bundle is in the plugins directory and it is not
         //started
         boolean isQpidBundlePresent = false;
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.delivery.EndpointCircuitBreaker;
+import org.wso2.carbon.event.core.delivery.EndpointHealth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * circuit breakers of the subscriber endpoints. Each endpoint keeps the outcomes of its last
+ * windowSize notifications. Once there are at least minimumCalls of them, the circuit opens if
+ * the percentage of the failed ones reaches failureRateThreshold, or the percentage of the ones
+ * which took longer than slowCallThreshold (0 does not count the slow ones) reaches
+ * slowCallRateThreshold. An open circuit lets halfOpenCalls trial notifications through after
+ * openDuration, and closes if none of them fail or are slow, otherwise it opens again.
+ * <p/>
+ * Closed circuits of the endpoints which had no notification for idleTimeout are removed, so the
+ * registry only keeps the endpoints still in use. They are looked for at most once in half of
+ * that time, when a notification is recorded.
+ */
+@Deprecated
+public class CircuitBreakerRegistry implements EndpointCircuitBreaker, CircuitBreakerRegistryMBean {
+
+    private static final Log log = LogFactory.getLog(CircuitBreakerRegistry.class);
+
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+    public static final int DEFAULT_MINIMUM_CALLS = 10;
+    public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    public static final long DEFAULT_SLOW_CALL_THRESHOLD = 10000;
+    public static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 80;
+    public static final long DEFAULT_OPEN_DURATION = 30000;
+    public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+    public static final long DEFAULT_IDLE_TIMEOUT = 600000;
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long slowCallThresholdNanos;
+    private final int slowCallRateThreshold;
+    private final long openDuration;
+    private final int halfOpenCalls;
+    private final long idleTimeout;
+
+    private final ConcurrentMap<EndpointKey, Circuit> circuits = new ConcurrentHashMap<EndpointKey, Circuit>();
+    private final AtomicLong nextEvictionTime;
+
+    public CircuitBreakerRegistry(int windowSize, int minimumCalls, int failureRateThreshold,
+                                  long slowCallThreshold, int slowCallRateThreshold,
+                                  long openDuration, int halfOpenCalls) {
+        this(windowSize, minimumCalls, failureRateThreshold, slowCallThreshold, slowCallRateThreshold,
+             openDuration, halfOpenCalls, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param idleTimeout milli seconds after which the closed circuit of an endpoint without
+     *                    notifications is removed
+     */
+    public CircuitBreakerRegistry(int windowSize, int minimumCalls, int failureRateThreshold,
+                                  long slowCallThreshold, int slowCallRateThreshold,
+                                  long openDuration, int halfOpenCalls, long idleTimeout) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThresholdNanos = slowCallThreshold * 1000000;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+        this.idleTimeout = idleTimeout;
+        this.nextEvictionTime = new AtomicLong(System.currentTimeMillis() + idleTimeout / 2);
+    }
+
+    public boolean allowRequest(int tenantId, String endpoint) {
+        return allowRequest(tenantId, endpoint, System.currentTimeMillis());
+    }
+
+    public void recordSuccess(int tenantId, String endpoint, long nanos) {
+        record(tenantId, endpoint, false, nanos, System.currentTimeMillis());
+    }
+
+    public void recordFailure(int tenantId, String endpoint, long nanos) {
+        record(tenantId, endpoint, true, nanos, System.currentTimeMillis());
+    }
+
+    public long getOpenTimeRemaining(int tenantId, String endpoint) {
+        return getOpenTimeRemaining(tenantId, endpoint, System.currentTimeMillis());
+    }
+
+    public List<EndpointHealth> getEndpointHealth(int tenantId) {
+        List<EndpointHealth> endpointHealthList = new ArrayList<EndpointHealth>();
+        for (Map.Entry<EndpointKey, Circuit> entry : this.circuits.entrySet()) {
+            if (entry.getKey().tenantId == tenantId) {
+                endpointHealthList.add(entry.getValue().getEndpointHealth(entry.getKey().endpoint));
+            }
+        }
+        return endpointHealthList;
+    }
+
+    public boolean reset(int tenantId, String endpoint) {
+        Circuit circuit = this.circuits.get(new EndpointKey(tenantId, endpoint));
+        if (circuit == null) {
+            return false;
+        }
+        circuit.close(System.currentTimeMillis());
+        return true;
+    }
+
+    boolean allowRequest(int tenantId, String endpoint, long currentTime) {
+        Circuit circuit = this.circuits.get(new EndpointKey(tenantId, endpoint));
+        // endpoints are only tracked once they have a recorded notification
+        return (circuit == null) || circuit.allowRequest(currentTime);
+    }
+
+    void record(int tenantId, String endpoint, boolean failed, long nanos, long currentTime) {
+        boolean slow = (this.slowCallThresholdNanos > 0) && (nanos >= this.slowCallThresholdNanos);
+        Boolean opened;
+        do {
+            // the circuit may have been removed meanwhile
+            opened = getCircuit(tenantId, endpoint).record(failed, slow, currentTime);
+        } while (opened == null);
+        if (opened) {
+            log.warn("Circuit of the endpoint " + endpoint + " of tenant " + tenantId
+                     + " is opened, notifications to it are held for " + this.openDuration + " ms");
+        }
+        long evictionTime = this.nextEvictionTime.get();
+        if ((currentTime >= evictionTime)
+            && this.nextEvictionTime.compareAndSet(evictionTime, currentTime + this.idleTimeout / 2)) {
+            evictIdle(currentTime);
+        }
+    }
+
+    /**
+     * removes the closed circuits which had no notification for idleTimeout
+     */
+    void evictIdle(long currentTime) {
+        for (Map.Entry<EndpointKey, Circuit> entry : this.circuits.entrySet()) {
+            if (entry.getValue().evictIfIdle(currentTime)) {
+                this.circuits.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    long getOpenTimeRemaining(int tenantId, String endpoint, long currentTime) {
+        Circuit circuit = this.circuits.get(new EndpointKey(tenantId, endpoint));
+        return (circuit != null) ? circuit.getOpenTimeRemaining(currentTime) : 0;
+    }
+
+    public String[] getTrippedEndpoints() {
+        List<String> endpoints = new ArrayList<String>();
+        for (Map.Entry<EndpointKey, Circuit> entry : this.circuits.entrySet()) {
+            if (entry.getValue().getState() != State.CLOSED) {
+                endpoints.add(entry.getKey().tenantId + ":" + entry.getKey().endpoint);
+            }
+        }
+        return endpoints.toArray(new String[endpoints.size()]);
+    }
+
+    public int getEndpointCount() {
+        return this.circuits.size();
+    }
+
+    public String getState(int tenantId, String endpoint) {
+        return getExistingCircuit(tenantId, endpoint).getEndpointHealth(endpoint).getState();
+    }
+
+    public double getFailureRate(int tenantId, String endpoint) {
+        return getExistingCircuit(tenantId, endpoint).getEndpointHealth(endpoint).getFailureRate();
+    }
+
+    public double getSlowCallRate(int tenantId, String endpoint) {
+        return getExistingCircuit(tenantId, endpoint).getEndpointHealth(endpoint).getSlowCallRate();
+    }
+
+    private Circuit getCircuit(int tenantId, String endpoint) {
+        EndpointKey endpointKey = new EndpointKey(tenantId, endpoint);
+        Circuit circuit = this.circuits.get(endpointKey);
+        if (circuit == null) {
+            Circuit newCircuit = new Circuit();
+            circuit = this.circuits.putIfAbsent(endpointKey, newCircuit);
+            if (circuit == null) {
+                circuit = newCircuit;
+            }
+        }
+        return circuit;
+    }
+
+    private Circuit getExistingCircuit(int tenantId, String endpoint) {
+        Circuit circuit = this.circuits.get(new EndpointKey(tenantId, endpoint));
+        if (circuit == null) {
+            throw new IllegalArgumentException("Endpoint " + endpoint + " of tenant " + tenantId + " is not tracked");
+        }
+        return circuit;
+    }
+
+    private enum State {
+        CLOSED(EndpointHealth.STATE_CLOSED),
+        OPEN(EndpointHealth.STATE_OPEN),
+        HALF_OPEN(EndpointHealth.STATE_HALF_OPEN);
+
+        private final String name;
+
+        State(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class EndpointKey {
+
+        private final int tenantId;
+        private final String endpoint;
+
+        private EndpointKey(int tenantId, String endpoint) {
+            this.tenantId = tenantId;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof EndpointKey)) {
+                return false;
+            }
+            EndpointKey endpointKey = (EndpointKey) object;
+            return (this.tenantId == endpointKey.tenantId) && this.endpoint.equals(endpointKey.endpoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.tenantId + this.endpoint.hashCode();
+        }
+    }
+
+    /**
+     * state of one endpoint. the window is a ring of the outcomes of the last notifications.
+     */
+    private final class Circuit {
+
+        private final boolean[] failedCalls = new boolean[windowSize];
+        private final boolean[] slowCalls = new boolean[windowSize];
+        private int nextIndex;
+        private int callCount;
+        private int failedCallCount;
+        private int slowCallCount;
+
+        private State state = State.CLOSED;
+        private long stateChangedTime = System.currentTimeMillis();
+        private long tripCount;
+        private int trialCount;
+        private int successfulTrialCount;
+        private long lastUsedTime = System.currentTimeMillis();
+        private boolean evicted;
+
+        private synchronized boolean allowRequest(long currentTime) {
+            if ((this.state == State.OPEN) && (currentTime - this.stateChangedTime >= openDuration)) {
+                changeState(State.HALF_OPEN, currentTime);
+            }
+            if (this.state == State.HALF_OPEN) {
+                if ((this.trialCount >= halfOpenCalls)
+                    && (currentTime - this.stateChangedTime >= openDuration)) {
+                    // the outcomes of the trials never came back, lets new ones through
+                    changeState(State.HALF_OPEN, currentTime);
+                }
+                if (this.trialCount < halfOpenCalls) {
+                    this.trialCount++;
+                    return true;
+                }
+                return false;
+            }
+            return this.state == State.CLOSED;
+        }
+
+        /**
+         * @return true if the circuit is opened by this outcome, or null if the circuit was
+         *         removed and the outcome is not recorded
+         */
+        private synchronized Boolean record(boolean failed, boolean slow, long currentTime) {
+            if (this.evicted) {
+                return null;
+            }
+            this.lastUsedTime = currentTime;
+            if (this.state == State.HALF_OPEN) {
+                if (failed || slow) {
+                    trip(currentTime);
+                    return true;
+                }
+                this.successfulTrialCount++;
+                if (this.successfulTrialCount >= halfOpenCalls) {
+                    close(currentTime);
+                }
+                return false;
+            }
+            if (this.state == State.OPEN) {
+                // sent before the circuit opened
+                return false;
+            }
+            if (this.callCount == windowSize) {
+                this.failedCallCount -= this.failedCalls[this.nextIndex] ? 1 : 0;
+                this.slowCallCount -= this.slowCalls[this.nextIndex] ? 1 : 0;
+            } else {
+                this.callCount++;
+            }
+            this.failedCalls[this.nextIndex] = failed;
+            this.slowCalls[this.nextIndex] = slow;
+            this.failedCallCount += failed ? 1 : 0;
+            this.slowCallCount += slow ? 1 : 0;
+            this.nextIndex = (this.nextIndex + 1) % windowSize;
+
+            if ((this.callCount >= minimumCalls)
+                && ((this.failedCallCount * 100 >= failureRateThreshold * this.callCount)
+                    || ((slowCallThresholdNanos > 0)
+                        && (this.slowCallCount * 100 >= slowCallRateThreshold * this.callCount)))) {
+                trip(currentTime);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return true if the circuit is closed and had no notification for idleTimeout, it is
+         *         then marked as removed
+         */
+        private synchronized boolean evictIfIdle(long currentTime) {
+            if ((this.state == State.CLOSED) && (currentTime - this.lastUsedTime >= idleTimeout)) {
+                this.evicted = true;
+            }
+            return this.evicted;
+        }
+
+        private synchronized long getOpenTimeRemaining(long currentTime) {
+            if (this.state != State.OPEN) {
+                return 0;
+            }
+            return Math.max(openDuration - (currentTime - this.stateChangedTime), 0);
+        }
+
+        private synchronized State getState() {
+            return this.state;
+        }
+
+        private synchronized void close(long currentTime) {
+            this.nextIndex = 0;
+            this.callCount = 0;
+            this.failedCallCount = 0;
+            this.slowCallCount = 0;
+            changeState(State.CLOSED, currentTime);
+        }
+
+        private synchronized EndpointHealth getEndpointHealth(String endpoint) {
+            EndpointHealth endpointHealth = new EndpointHealth();
+            endpointHealth.setEndpoint(endpoint);
+            endpointHealth.setState(this.state.name);
+            endpointHealth.setCallCount(this.callCount);
+            if (this.callCount > 0) {
+                endpointHealth.setFailureRate(this.failedCallCount * 100d / this.callCount);
+                endpointHealth.setSlowCallRate(this.slowCallCount * 100d / this.callCount);
+            }
+            endpointHealth.setTripCount(this.tripCount);
+            endpointHealth.setStateChangedTime(this.stateChangedTime);
+            return endpointHealth;
+        }
+
+        private void trip(long currentTime) {
+            this.tripCount++;
+            changeState(State.OPEN, currentTime);
+        }
+
+        private void changeState(State newState, long currentTime) {
+            this.state = newState;
+            this.stateChangedTime = currentTime;
+            this.trialCount = 0;
+            this.successfulTrialCount = 0;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+/**
+ * MBean interface of the circuit breakers of the subscriber endpoints. endpoints are identified
+ * by the tenant id and the endpoint address.
+ */
+@Deprecated
+public interface CircuitBreakerRegistryMBean {
+
+    /**
+     * @return endpoints whose circuit is open or half open, as tenantId:endpoint
+     */
+    String[] getTrippedEndpoints();
+
+    /**
+     * @return number of endpoints tracked
+     */
+    int getEndpointCount();
+
+    /**
+     * @return closed, open or halfOpen
+     */
+    String getState(int tenantId, String endpoint);
+
+    /**
+     * @return percentage of the recent notifications to the endpoint which failed
+     */
+    double getFailureRate(int tenantId, String endpoint);
+
+    /**
+     * @return percentage of the recent notifications to the endpoint which were slow
+     */
+    double getSlowCallRate(int tenantId, String endpoint);
+
+    /**
+     * closes the circuit of the endpoint
+     *
+     * @return false if the endpoint is not tracked
+     */
+    boolean reset(int tenantId, String endpoint);
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.delivery.EndpointCircuitBreaker;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.notify.NotificationManager;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * holds the notifications to the endpoints whose circuit is open, so that they neither use up
+ * the retry attempts and budget of their subscribers nor hold a delivery thread. Each endpoint
+ * has a queue of its own. Once the circuit lets trials through, the held notifications are given
+ * to the delivery executor in order, keyed by their subscription, so that they are sent before
+ * the later notifications of their subscribers, which are held behind them until then.
+ * Notifications the worker can not send then are held again or retried as usual.
+ * <p/>
+ * Held notifications stay unacknowledged in the event journal. At most maxHeldPerEndpoint
+ * notifications are held for an endpoint, the workers park the others in the retry scheduler,
+ * or drop them if there is none.
+ */
+@Deprecated
+public class CircuitHoldingQueue {
+
+    private static final Log log = LogFactory.getLog(CircuitHoldingQueue.class);
+
+    public static final int DEFAULT_MAX_HELD_PER_ENDPOINT = 10000;
+    public static final int DEFAULT_THREADS = 2;
+
+    /**
+     * milli seconds to wait before sending again when the circuit is half open, its trials are
+     * still being sent
+     */
+    static final long HALF_OPEN_WAIT = 1000;
+
+    private final int maxHeldPerEndpoint;
+    private final ScheduledThreadPoolExecutor executor;
+    private final ConcurrentMap<EndpointKey, HeldNotifications> endpointNotificationsMap =
+            new ConcurrentHashMap<EndpointKey, HeldNotifications>();
+
+    private volatile NotificationManager notificationManager;
+
+    public CircuitHoldingQueue(int maxHeldPerEndpoint, int threads) {
+        this.maxHeldPerEndpoint = maxHeldPerEndpoint;
+        this.executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "EventDeliveryHolding-" + this.threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void setNotificationManager(NotificationManager notificationManager) {
+        this.notificationManager = notificationManager;
+    }
+
+    /**
+     * holds a notification until the circuit of its endpoint lets trials through
+     *
+     * @param message      message to send
+     * @param subscription subscriber, with the endpoint whose circuit is open
+     * @param topicName    topic the message is published to
+     * @return false if the endpoint already has maxHeldPerEndpoint notifications held or the
+     *         queue is shut down
+     */
+    public boolean hold(Message message, Subscription subscription, String topicName) {
+        EndpointKey endpointKey = new EndpointKey(subscription.getTenantId(), subscription.getEventSinkURL());
+        while (true) {
+            HeldNotifications heldNotifications = getHeldNotifications(endpointKey);
+            synchronized (heldNotifications) {
+                if (heldNotifications.released) {
+                    // emptied and removed meanwhile
+                    continue;
+                }
+                if (heldNotifications.notifications.size() >= this.maxHeldPerEndpoint) {
+                    return false;
+                }
+                heldNotifications.notifications.add(new HeldNotification(message, subscription, topicName));
+                if (heldNotifications.scheduled) {
+                    return true;
+                }
+                if (!schedule(endpointKey, getWaitTime(endpointKey))) {
+                    heldNotifications.notifications.remove(heldNotifications.notifications.size() - 1);
+                    return false;
+                }
+                heldNotifications.scheduled = true;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if notifications are held for the endpoint of the subscriber, its later
+     *         notifications should then be held behind them
+     */
+    public boolean isHolding(Subscription subscription) {
+        return (subscription.getEventSinkURL() != null) && this.endpointNotificationsMap.containsKey(
+                new EndpointKey(subscription.getTenantId(), subscription.getEventSinkURL()));
+    }
+
+    /**
+     * @return number of notifications held for the endpoint
+     */
+    public int getHeldCount(int tenantId, String endpoint) {
+        HeldNotifications heldNotifications = this.endpointNotificationsMap.get(new EndpointKey(tenantId, endpoint));
+        if (heldNotifications == null) {
+            return 0;
+        }
+        synchronized (heldNotifications) {
+            return heldNotifications.notifications.size();
+        }
+    }
+
+    /**
+     * stops sending the held notifications, they are replayed from the journal in the next start
+     */
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    private HeldNotifications getHeldNotifications(EndpointKey endpointKey) {
+        HeldNotifications heldNotifications = this.endpointNotificationsMap.get(endpointKey);
+        if (heldNotifications == null) {
+            HeldNotifications newHeldNotifications = new HeldNotifications();
+            heldNotifications = this.endpointNotificationsMap.putIfAbsent(endpointKey, newHeldNotifications);
+            if (heldNotifications == null) {
+                heldNotifications = newHeldNotifications;
+            }
+        }
+        return heldNotifications;
+    }
+
+    private long getWaitTime(EndpointKey endpointKey) {
+        EndpointCircuitBreaker circuitBreaker = EventBrokerHolder.getInstance().getEndpointCircuitBreaker();
+        long openTimeRemaining = (circuitBreaker != null) ?
+                                 circuitBreaker.getOpenTimeRemaining(endpointKey.tenantId, endpointKey.endpoint) : 0;
+        return Math.max(openTimeRemaining, HALF_OPEN_WAIT);
+    }
+
+    private boolean schedule(final EndpointKey endpointKey, long delay) {
+        try {
+            this.executor.schedule(new Runnable() {
+                public void run() {
+                    try {
+                        release(endpointKey);
+                    } catch (Throwable e) {
+                        log.error("Can not send the notifications held for " + endpointKey.endpoint, e);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            return false;
+        }
+    }
+
+    /**
+     * sends the held notifications of the endpoint in order, each run of notifications of one
+     * subscription and topic by one worker
+     */
+    private void release(EndpointKey endpointKey) {
+        HeldNotifications heldNotifications = this.endpointNotificationsMap.get(endpointKey);
+        if (heldNotifications == null) {
+            return;
+        }
+        Executor deliveryExecutor = EventBrokerHolder.getInstance().getDeliveryExecutor();
+        List<Worker> workers;
+        synchronized (heldNotifications) {
+            workers = createWorkers(heldNotifications.notifications);
+            heldNotifications.notifications = new ArrayList<HeldNotification>();
+            heldNotifications.scheduled = false;
+            if (deliveryExecutor != null) {
+                // the workers are queued while the endpoint is still holding, so the later
+                // notifications of the subscribers are queued behind them
+                for (Worker worker : workers) {
+                    execute(deliveryExecutor, worker);
+                }
+            }
+            heldNotifications.released = true;
+            this.endpointNotificationsMap.remove(endpointKey, heldNotifications);
+        }
+        if (deliveryExecutor == null) {
+            for (Worker worker : workers) {
+                worker.run();
+            }
+        }
+    }
+
+    private List<Worker> createWorkers(List<HeldNotification> notifications) {
+        List<Worker> workers = new ArrayList<Worker>();
+        int start = 0;
+        for (int i = 1; i <= notifications.size(); i++) {
+            if ((i == notifications.size()) || !notifications.get(i).isSameRun(notifications.get(start))) {
+                HeldNotification first = notifications.get(start);
+                List<Message> messages = new ArrayList<Message>(i - start);
+                for (HeldNotification notification : notifications.subList(start, i)) {
+                    messages.add(notification.message);
+                }
+                // a worker holds the messages again if the circuit is still open
+                workers.add(new Worker(this.notificationManager, messages, first.subscription,
+                                       first.topicName, true));
+                start = i;
+            }
+        }
+        return workers;
+    }
+
+    private void execute(Executor deliveryExecutor, Worker worker) {
+        try {
+            deliveryExecutor.execute(worker);
+        } catch (RejectedExecutionException e) {
+            worker.rejected(e);
+        }
+    }
+
+    private static final class HeldNotifications {
+
+        private List<HeldNotification> notifications = new ArrayList<HeldNotification>();
+        private boolean scheduled;
+        private boolean released;
+    }
+
+    private static final class HeldNotification {
+
+        private final Message message;
+        private final Subscription subscription;
+        private final String topicName;
+
+        private HeldNotification(Message message, Subscription subscription, String topicName) {
+            this.message = message;
+            this.subscription = subscription;
+            this.topicName = topicName;
+        }
+
+        private boolean isSameRun(HeldNotification notification) {
+            return (this.subscription == notification.subscription) && this.topicName.equals(notification.topicName);
+        }
+    }
+
+    private static final class EndpointKey {
+
+        private final int tenantId;
+        private final String endpoint;
+
+        private EndpointKey(int tenantId, String endpoint) {
+            this.tenantId = tenantId;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof EndpointKey)) {
+                return false;
+            }
+            EndpointKey endpointKey = (EndpointKey) object;
+            return (this.tenantId == endpointKey.tenantId) && this.endpoint.equals(endpointKey.endpoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.tenantId + this.endpoint.hashCode();
+        }
+    }
+}
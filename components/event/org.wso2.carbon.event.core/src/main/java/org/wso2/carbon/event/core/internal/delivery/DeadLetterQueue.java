@@ -0,0 +1,140 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+import org.apache.axiom.util.UIDGenerator;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.delivery.DeadLetter;
+import org.wso2.carbon.event.core.delivery.DeadLetterStore;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.journal.EventJournal;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * in memory dead letter store. It keeps a bounded number of dead letters in the order they
+ * failed and drops the oldest one when it is full.
+ * <p/>
+ * The store itself is not persisted. Dead letters are acknowledged in the event journal only
+ * when they are removed or dropped, so the journaled ones are sent again after a restart.
+ */
+@Deprecated
+public class DeadLetterQueue implements DeadLetterStore {
+
+    private static final Log log = LogFactory.getLog(DeadLetterQueue.class);
+
+    private final int capacity;
+    private final RetryScheduler retryScheduler;
+    private final Map<String, DeadLetter> deadLetters = new LinkedHashMap<String, DeadLetter>();
+
+    DeadLetterQueue(int capacity, RetryScheduler retryScheduler) {
+        this.capacity = capacity;
+        this.retryScheduler = retryScheduler;
+    }
+
+    void add(Message message, Subscription subscription, String failureReason, int attempts) {
+        DeadLetter deadLetter = new DeadLetter(UIDGenerator.generateUID(), message, subscription,
+                                               failureReason, attempts, System.currentTimeMillis());
+        DeadLetter droppedDeadLetter = null;
+        synchronized (this.deadLetters) {
+            if (this.deadLetters.size() >= this.capacity) {
+                Iterator<DeadLetter> iterator = this.deadLetters.values().iterator();
+                droppedDeadLetter = iterator.next();
+                iterator.remove();
+            }
+            this.deadLetters.put(deadLetter.getId(), deadLetter);
+        }
+        if (droppedDeadLetter != null) {
+            log.warn("Dead letter store is full, dropped the notification of topic "
+                     + droppedDeadLetter.getSubscription().getTopicName() + " to "
+                     + droppedDeadLetter.getSubscription().getEventSinkURL());
+            acknowledge(droppedDeadLetter);
+        }
+    }
+
+    /**
+     * takes a dead letter out of the store to send it again. It is not acknowledged.
+     *
+     * @return false if the dead letter is not in the store
+     */
+    boolean take(String id) {
+        synchronized (this.deadLetters) {
+            return this.deadLetters.remove(id) != null;
+        }
+    }
+
+    public List<DeadLetter> getDeadLetters(int tenantId) {
+        List<DeadLetter> tenantDeadLetters = new ArrayList<DeadLetter>();
+        synchronized (this.deadLetters) {
+            for (DeadLetter deadLetter : this.deadLetters.values()) {
+                if (deadLetter.getSubscription().getTenantId() == tenantId) {
+                    tenantDeadLetters.add(deadLetter);
+                }
+            }
+        }
+        return tenantDeadLetters;
+    }
+
+    public DeadLetter getDeadLetter(int tenantId, String id) {
+        synchronized (this.deadLetters) {
+            DeadLetter deadLetter = this.deadLetters.get(id);
+            if ((deadLetter == null) || (deadLetter.getSubscription().getTenantId() != tenantId)) {
+                return null;
+            }
+            return deadLetter;
+        }
+    }
+
+    public boolean redeliver(int tenantId, String id) throws EventBrokerException {
+        DeadLetter deadLetter = getDeadLetter(tenantId, id);
+        return (deadLetter != null) && this.retryScheduler.redeliver(deadLetter);
+    }
+
+    public boolean remove(int tenantId, String id) {
+        DeadLetter deadLetter;
+        synchronized (this.deadLetters) {
+            deadLetter = getDeadLetter(tenantId, id);
+            if (deadLetter == null) {
+                return false;
+            }
+            this.deadLetters.remove(id);
+        }
+        acknowledge(deadLetter);
+        return true;
+    }
+
+    public int size() {
+        synchronized (this.deadLetters) {
+            return this.deadLetters.size();
+        }
+    }
+
+    private void acknowledge(DeadLetter deadLetter) {
+        EventJournal eventJournal = EventBrokerHolder.getInstance().getEventJournal();
+        if (eventJournal != null) {
+            eventJournal.acknowledge(deadLetter.getSubscription().getId(), deadLetter.getMessage());
+        }
+    }
+}
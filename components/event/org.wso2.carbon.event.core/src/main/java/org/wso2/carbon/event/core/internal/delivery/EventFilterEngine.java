@@ -0,0 +1,170 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+import org.apache.axiom.om.xpath.AXIOMXPath;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jaxen.JaxenException;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.subscription.EventFilter;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * evaluates the content filters of the subscriptions so that a message is only sent to the
+ * subscribers whose filter selects it. Filters of the XPath dialects are compiled once and the
+ * compiled expression is shared by all the subscriptions with the same filter. Filters of other
+ * dialects are used to select the topic and always match here. Once too many expressions are
+ * kept, an arbitrary one is dropped for each new one, so that looking up an expression never
+ * takes a lock.
+ * <p/>
+ * A filter matches if the boolean value of the expression evaluated against the message payload
+ * is true. Namespace prefixes are not bound, so expressions need to use local-name() to refer to
+ * qualified elements.
+ */
+@Deprecated
+public class EventFilterEngine {
+
+    private static final Log log = LogFactory.getLog(EventFilterEngine.class);
+
+    /**
+     * default upper bound for the number of distinct compiled expressions kept
+     */
+    public static final int DEFAULT_MAX_COMPILED_FILTERS = 10000;
+
+    private final int maxCompiledFilters;
+
+    private final ConcurrentMap<String, AXIOMXPath> expressionXPathMap;
+
+    public EventFilterEngine() {
+        this(DEFAULT_MAX_COMPILED_FILTERS);
+    }
+
+    /**
+     * @param maxCompiledFilters number of distinct compiled expressions kept
+     */
+    public EventFilterEngine(int maxCompiledFilters) {
+        this.maxCompiledFilters = maxCompiledFilters;
+        this.expressionXPathMap = new ConcurrentHashMap<String, AXIOMXPath>();
+    }
+
+    /**
+     * @return number of compiled expressions kept
+     */
+    public int getCompiledFilterCount() {
+        return this.expressionXPathMap.size();
+    }
+
+    /**
+     * @param expression filter value
+     * @return true if the compiled expression is kept
+     */
+    public boolean isCompiled(String expression) {
+        return this.expressionXPathMap.containsKey(expression.trim());
+    }
+
+    /**
+     * compiles the filter of the subscription, if it has an XPath filter. This is called at
+     * subscribe time so that invalid filters are rejected and the first publish does not pay
+     * the compile cost.
+     *
+     * @param subscription new subscription
+     * @throws EventBrokerException if the filter is not a valid XPath expression
+     */
+    public void compile(Subscription subscription) throws EventBrokerException {
+        EventFilter eventFilter = subscription.getEventFilter();
+        if ((eventFilter != null) && eventFilter.isXPathDialect()) {
+            try {
+                getXPath(eventFilter.getValue());
+            } catch (JaxenException e) {
+                throw new EventBrokerException("Invalid XPath filter " + eventFilter.getValue()
+                                               + " in subscription " + subscription.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * checks whether the message should be sent to the subscriber
+     *
+     * @param subscription matching subscription
+     * @param message      message to be published
+     * @return true if the subscription has no XPath filter or the filter selects the message
+     */
+    public boolean isMatching(Subscription subscription, Message message) {
+        EventFilter eventFilter = subscription.getEventFilter();
+        if ((eventFilter == null) || !eventFilter.isXPathDialect()) {
+            return true;
+        }
+        if (message.getMessage() == null) {
+            return false;
+        }
+        try {
+            return getXPath(eventFilter.getValue()).booleanValueOf(message.getMessage());
+        } catch (JaxenException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Can not evaluate the filter " + eventFilter.getValue()
+                          + " of subscription " + subscription.getId(), e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * selects the messages of a batch which should be sent to the subscriber
+     *
+     * @param subscription matching subscription
+     * @param messages     messages to be published
+     * @return the given list if the subscription has no XPath filter, otherwise the messages
+     *         selected by the filter in the original order
+     */
+    public List<Message> getMatchingMessages(Subscription subscription, List<Message> messages) {
+        EventFilter eventFilter = subscription.getEventFilter();
+        if ((eventFilter == null) || !eventFilter.isXPathDialect()) {
+            return messages;
+        }
+        List<Message> matchingMessages = new ArrayList<Message>(messages.size());
+        for (Message message : messages) {
+            if (isMatching(subscription, message)) {
+                matchingMessages.add(message);
+            }
+        }
+        return matchingMessages;
+    }
+
+    private AXIOMXPath getXPath(String expression) throws JaxenException {
+        String key = expression.trim();
+        AXIOMXPath xpath = this.expressionXPathMap.get(key);
+        if (xpath == null) {
+            // compiling the same expression twice concurrently is harmless, one of them is kept
+            xpath = new AXIOMXPath(key);
+            Iterator<String> iterator = this.expressionXPathMap.keySet().iterator();
+            while ((this.expressionXPathMap.size() >= this.maxCompiledFilters) && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+            this.expressionXPathMap.put(key, xpath);
+        }
+        return xpath;
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.delivery.DeadLetter;
+import org.wso2.carbon.event.core.delivery.DeadLetterStore;
+import org.wso2.carbon.event.core.delivery.EndpointCircuitBreaker;
+import org.wso2.carbon.event.core.exception.CircuitOpenException;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.exception.SendRejectedException;
+import org.wso2.carbon.event.core.internal.journal.EventJournal;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.notify.NotificationManager;
+import org.wso2.carbon.event.core.subscription.Subscription;
+import org.wso2.carbon.event.core.subscription.SubscriptionManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * retries the notifications which the workers failed to send. Retries wait and run in a pool of
+ * their own, so a failing sink does not hold the delivery threads. The wait doubles with each
+ * attempt up to the maximum delay, and a random part of it is added so that the retries of
+ * many notifications do not hit the sink at once.
+ * <p/>
+ * The notifications of a subscriber are retried one at a time, in the order they failed. Workers
+ * park the later notifications of a subscriber behind its pending retries instead of sending them,
+ * so that the subscriber receives its notifications in order. A parked notification was not sent
+ * yet, it does not use up an attempt.
+ * <p/>
+ * Each subscriber can have a limited number of notifications waiting to be retried. Notifications
+ * which fail all their attempts, or exceed that limit, are moved to the dead letter store. They
+ * stay unacknowledged in the event journal until they are delivered, removed from the store or
+ * evicted from it, so the journal replays them after a restart.
+ * <p/>
+ * A retry of a subscriber whose endpoint circuit is open, or which was not sent since the circuit
+ * opened meanwhile, is put off until the circuit lets a trial through, without using up one of
+ * its attempts. A retry the dispatcher rejects since it is sending too many notifications is put
+ * off the same way.
+ */
+@Deprecated
+public class RetryScheduler {
+
+    private static final Log log = LogFactory.getLog(RetryScheduler.class);
+
+    public static final long DEFAULT_INITIAL_DELAY = 1000;
+    public static final long DEFAULT_MAX_DELAY = 60000;
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final int DEFAULT_MAX_RETRIES_PER_SUBSCRIBER = 100;
+    public static final int DEFAULT_THREADS = 2;
+    public static final int DEFAULT_DEAD_LETTER_CAPACITY = 1000;
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final int maxAttempts;
+    private final int maxRetriesPerSubscriber;
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final DeadLetterQueue deadLetterQueue;
+
+    /**
+     * notifications waiting to be retried, per subscription id. Only the first one of a subscriber
+     * is scheduled, the rest wait for it to be delivered or given up. Changed under the retry lock.
+     */
+    private final ConcurrentMap<String, Deque<RetryTask>> pendingRetries =
+            new ConcurrentHashMap<String, Deque<RetryTask>>();
+    private final Object retryLock = new Object();
+
+    private volatile NotificationManager notificationManager;
+    private volatile SubscriptionManager subscriptionManager;
+
+    public RetryScheduler(long initialDelay, long maxDelay, int maxAttempts, int maxRetriesPerSubscriber,
+                          int threads, int deadLetterCapacity) {
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.maxAttempts = maxAttempts;
+        this.maxRetriesPerSubscriber = maxRetriesPerSubscriber;
+        this.deadLetterQueue = new DeadLetterQueue(deadLetterCapacity, this);
+        this.executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "EventDeliveryRetry-" + this.threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void setNotificationManager(NotificationManager notificationManager) {
+        this.notificationManager = notificationManager;
+    }
+
+    /**
+     * @param subscriptionManager subscriptions the dead letters are checked against before they
+     *                            are sent again
+     */
+    public void setSubscriptionManager(SubscriptionManager subscriptionManager) {
+        this.subscriptionManager = subscriptionManager;
+    }
+
+    public DeadLetterStore getDeadLetterStore() {
+        return this.deadLetterQueue;
+    }
+
+    /**
+     * schedules a notification which failed at the first attempt
+     *
+     * @param message      message to send
+     * @param subscription subscriber
+     * @param failure      reason of the failure
+     */
+    public void retry(Message message, Subscription subscription, Throwable failure) {
+        add(new RetryTask(message, subscription, 1), "Retry limit of the subscriber is reached, " + failure);
+    }
+
+    /**
+     * queues a notification which was not sent yet behind the pending retries of its subscriber.
+     * It is sent once the earlier ones are delivered or given up, and has all its attempts.
+     *
+     * @param message      message to send
+     * @param subscription subscriber
+     * @param reason       why the notification was not sent
+     */
+    public void park(Message message, Subscription subscription, String reason) {
+        add(new RetryTask(message, subscription, 0), "Retry limit of the subscriber is reached, " + reason);
+    }
+
+    /**
+     * @return true if notifications of the subscriber are waiting to be retried, later ones should
+     *         then be parked
+     */
+    public boolean isRetrying(Subscription subscription) {
+        return this.pendingRetries.containsKey(subscription.getId());
+    }
+
+    /**
+     * sends a dead letter again, with a new set of attempts, to the current subscription of its
+     * subscriber. The dead letter is kept if it can not be sent again.
+     *
+     * @return false if the dead letter was taken out of the store meanwhile
+     * @throws EventBrokerException if the subscription was removed or expired, or too many
+     *                              notifications of the subscriber are being retried
+     */
+    boolean redeliver(DeadLetter deadLetter) throws EventBrokerException {
+        Subscription subscription = getCurrentSubscription(deadLetter);
+        RetryTask retryTask = new RetryTask(deadLetter.getMessage(), subscription, 0);
+        Boolean first = offer(retryTask);
+        if (first == null) {
+            throw new EventBrokerException("Too many notifications of subscription "
+                                           + subscription.getId() + " are being retried");
+        }
+        if (!this.deadLetterQueue.take(deadLetter.getId())) {
+            withdraw(retryTask);
+            return false;
+        }
+        if (first) {
+            try {
+                this.executor.execute(retryTask);
+            } catch (RejectedExecutionException e) {
+                withdraw(retryTask);
+                this.deadLetterQueue.add(deadLetter.getMessage(), subscription,
+                                         deadLetter.getFailureReason(), deadLetter.getAttempts());
+                throw new EventBrokerException("Event delivery retries are shut down", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * stops the retries. notifications waiting to be retried are dropped, the journaled ones are
+     * replayed in the next start.
+     */
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @param attempts number of failed attempts
+     * @return milli seconds to wait before the next attempt
+     */
+    long getDelay(int attempts) {
+        long delay = this.initialDelay << Math.min(attempts - 1, 30);
+        if ((delay <= 0) || (delay > this.maxDelay)) {
+            delay = this.maxDelay;
+        }
+        // waits at least half of the delay
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    /**
+     * the dead letter holds the subscription as it was when the notification failed, the
+     * subscriber may have changed its sink or unsubscribed since then
+     */
+    private Subscription getCurrentSubscription(DeadLetter deadLetter) throws EventBrokerException {
+        Subscription failedSubscription = deadLetter.getSubscription();
+        if (this.subscriptionManager == null) {
+            throw new EventBrokerException("Can not check subscription " + failedSubscription.getId()
+                                           + " of the dead letter " + deadLetter.getId());
+        }
+        Subscription subscription = this.subscriptionManager.getSubscription(failedSubscription.getId());
+        if (subscription == null) {
+            throw new EventBrokerException("Subscription " + failedSubscription.getId()
+                                           + " of the dead letter " + deadLetter.getId() + " does not exist");
+        }
+        if ((subscription.getExpires() != null) &&
+            (System.currentTimeMillis() > subscription.getExpires().getTimeInMillis())) {
+            throw new EventBrokerException("Subscription " + failedSubscription.getId()
+                                           + " of the dead letter " + deadLetter.getId() + " is expired");
+        }
+        // dispatcher instances are not stored with the subscription
+        if ((subscription.getEventDispatcher() == null) && (subscription.getEventDispatcherName() == null)) {
+            subscription.setEventDispatcher(failedSubscription.getEventDispatcher());
+        }
+        return subscription;
+    }
+
+    private void schedule(RetryTask retryTask, long delay) {
+        try {
+            this.executor.schedule(retryTask, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down, the journaled notifications are replayed in the next start
+            this.pendingRetries.remove(retryTask.subscription.getId());
+        }
+    }
+
+    /**
+     * queues the task behind the pending retries of its subscriber, and schedules it if it is the
+     * first one. The task is moved to the dead letter store if the subscriber has too many
+     * notifications waiting.
+     */
+    private void add(RetryTask retryTask, String limitReason) {
+        Boolean first = offer(retryTask);
+        if (first == null) {
+            resolve(retryTask.message, retryTask.subscription, false, limitReason, retryTask.attempts);
+        } else if (first) {
+            schedule(retryTask, getDelay(retryTask));
+        }
+    }
+
+    /**
+     * @return true if the task is the first one of its subscriber, false if it waits behind others,
+     *         or null if the subscriber has too many notifications waiting
+     */
+    private Boolean offer(RetryTask retryTask) {
+        String subscriptionId = retryTask.subscription.getId();
+        synchronized (this.retryLock) {
+            Deque<RetryTask> retryTasks = this.pendingRetries.get(subscriptionId);
+            int pendingCount = (retryTasks == null) ? 0 : retryTasks.size();
+            if (pendingCount >= this.maxRetriesPerSubscriber) {
+                return null;
+            }
+            if (retryTasks == null) {
+                retryTasks = new ArrayDeque<RetryTask>();
+                this.pendingRetries.put(subscriptionId, retryTasks);
+            }
+            retryTasks.addLast(retryTask);
+            return pendingCount == 0;
+        }
+    }
+
+    /**
+     * removes a task which was not scheduled yet
+     */
+    private void withdraw(RetryTask retryTask) {
+        String subscriptionId = retryTask.subscription.getId();
+        synchronized (this.retryLock) {
+            Deque<RetryTask> retryTasks = this.pendingRetries.get(subscriptionId);
+            if ((retryTasks != null) && retryTasks.remove(retryTask) && retryTasks.isEmpty()) {
+                this.pendingRetries.remove(subscriptionId);
+            }
+        }
+    }
+
+    /**
+     * the first task of the subscriber is delivered or given up, the next one is sent now since it
+     * already waited for the earlier one
+     */
+    private void next(RetryTask retryTask) {
+        String subscriptionId = retryTask.subscription.getId();
+        RetryTask nextTask;
+        synchronized (this.retryLock) {
+            Deque<RetryTask> retryTasks = this.pendingRetries.get(subscriptionId);
+            if ((retryTasks == null) || (retryTasks.peekFirst() != retryTask)) {
+                // dropped while shutting down
+                return;
+            }
+            retryTasks.pollFirst();
+            nextTask = retryTasks.peekFirst();
+            if (nextTask == null) {
+                this.pendingRetries.remove(subscriptionId);
+            }
+        }
+        if (nextTask != null) {
+            schedule(nextTask, 0);
+        }
+    }
+
+    /**
+     * @return the wait before the first attempt of a task, a task which was not sent yet is sent
+     *         without waiting
+     */
+    private long getDelay(RetryTask retryTask) {
+        return (retryTask.attempts == 0) ? 0 : getDelay(retryTask.attempts);
+    }
+
+    /**
+     * the notification is either delivered or given up. A notification which is given up is
+     * acknowledged once it leaves the dead letter store.
+     */
+    private void resolve(Message message, Subscription subscription, boolean delivered,
+                         String failureReason, int attempts) {
+        if (!delivered) {
+            log.warn("Can not send the notification of topic " + subscription.getTopicName() + " to "
+                     + subscription.getEventSinkURL() + " after " + attempts
+                     + " attempts, moved it to the dead letter store");
+            this.deadLetterQueue.add(message, subscription, failureReason, attempts);
+            return;
+        }
+        EventJournal eventJournal = EventBrokerHolder.getInstance().getEventJournal();
+        if (eventJournal != null) {
+            eventJournal.acknowledge(subscription.getId(), message);
+        }
+    }
+
+    private final class RetryTask implements Runnable {
+
+        private final Message message;
+        private final Subscription subscription;
+
+        /**
+         * number of failed attempts so far, only changed by the retry thread running the task
+         */
+        private int attempts;
+
+        private RetryTask(Message message, Subscription subscription, int attempts) {
+            this.message = message;
+            this.subscription = subscription;
+            this.attempts = attempts;
+        }
+
+        public void run() {
+            long openTimeRemaining = getOpenTimeRemaining();
+            if (openTimeRemaining > 0) {
+                schedule(this, openTimeRemaining);
+                return;
+            }
+            Exception failure = null;
+            try {
+                PrivilegedCarbonContext.startTenantFlow();
+                PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(this.subscription.getTenantId());
+                PrivilegedCarbonContext.getThreadLocalCarbonContext().setUsername(this.subscription.getOwner());
+                PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantDomain(true);
+                notificationManager.sendNotification(this.message, this.subscription);
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+
+            if (failure == null) {
+                resolve(this.message, this.subscription, true, null, this.attempts);
+                next(this);
+                return;
+            }
+            if (failure instanceof CircuitOpenException) {
+                schedule(this, Math.max(getOpenTimeRemaining(), CircuitHoldingQueue.HALF_OPEN_WAIT));
+                return;
+            }
+            if (failure instanceof SendRejectedException) {
+                // the dispatcher was too busy to send it, which does not use up an attempt
+                schedule(this, getDelay(Math.max(this.attempts, 1)));
+                return;
+            }
+            this.attempts++;
+            if (this.attempts >= maxAttempts) {
+                resolve(this.message, this.subscription, false, failure.toString(), this.attempts);
+                next(this);
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug("Attempt " + this.attempts + " to send the notification to "
+                              + this.subscription.getEventSinkURL() + " failed", failure);
+                }
+                schedule(this, getDelay(this.attempts));
+            }
+        }
+
+        private long getOpenTimeRemaining() {
+            EndpointCircuitBreaker circuitBreaker = EventBrokerHolder.getInstance().getEndpointCircuitBreaker();
+            if ((circuitBreaker == null) || (this.subscription.getEventSinkURL() == null)) {
+                return 0;
+            }
+            return circuitBreaker.getOpenTimeRemaining(this.subscription.getTenantId(),
+                                                       this.subscription.getEventSinkURL());
+        }
+    }
+}
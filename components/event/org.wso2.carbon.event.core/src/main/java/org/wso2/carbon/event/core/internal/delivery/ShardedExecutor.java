@@ -0,0 +1,463 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * executor which runs the tasks on a fixed set of shards, each having its own bounded queue and a
+ * single thread. {@link KeyedRunnable}s with the same key always go to the same shard, so they
+ * run in the order they were submitted, and the submitting threads only contend on the queue of
+ * one shard. Other tasks are spread over the shards in round robin order.
+ * <p/>
+ * The queue capacity is divided equally among the shards, so the executor holds about as many
+ * tasks as a thread pool executor with a queue of that capacity. When the queue of a shard is full
+ * the task is rejected, as the thread pool executor does with its default policy.
+ * <p/>
+ * A task which runs longer than the stalled task time, such as a send to a slow subscriber, is left
+ * to finish on its thread and the shard goes on with a new thread. The later tasks of the stalled
+ * key wait for it and then run on its thread, so they still run in order. At most maxStalledThreads
+ * such threads run at the same time, a shard stays blocked once they are all taken.
+ */
+@Deprecated
+public class ShardedExecutor extends AbstractExecutorService implements ShardedExecutorMBean {
+
+    private static final Log log = LogFactory.getLog(ShardedExecutor.class);
+
+    public static final int DEFAULT_SHARD_COUNT = Runtime.getRuntime().availableProcessors() * 2;
+    public static final long DEFAULT_STALLED_TASK_TIME = 10000;
+    public static final int DEFAULT_MAX_STALLED_THREADS = DEFAULT_SHARD_COUNT;
+
+    private final Shard[] shards;
+    private final long stalledTaskTime;
+    private final int maxStalledThreads;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * shard threads and stalled threads which have not stopped yet
+     */
+    private final AtomicInteger liveThreadCount = new AtomicInteger();
+    private final AtomicInteger stalledThreadCount = new AtomicInteger();
+    private final Object terminationLock = new Object();
+    private final Thread watchdog;
+
+    private volatile boolean shutdown;
+
+    /**
+     * @param shardCount        number of shards, each with its own thread
+     * @param maxQueuedRequests tasks queued in all the shards together
+     */
+    public ShardedExecutor(int shardCount, int maxQueuedRequests) {
+        this(shardCount, maxQueuedRequests, DEFAULT_STALLED_TASK_TIME, DEFAULT_MAX_STALLED_THREADS);
+    }
+
+    /**
+     * @param shardCount        number of shards, each with its own thread
+     * @param maxQueuedRequests tasks queued in all the shards together
+     * @param stalledTaskTime   milli seconds after which a shard leaves a running task to its thread,
+     *                          0 or less to always wait for it
+     * @param maxStalledThreads threads running stalled tasks at the same time
+     */
+    public ShardedExecutor(int shardCount, int maxQueuedRequests, long stalledTaskTime, int maxStalledThreads) {
+        this.shards = new Shard[Math.max(shardCount, 1)];
+        this.stalledTaskTime = stalledTaskTime;
+        this.maxStalledThreads = maxStalledThreads;
+        int maxQueuedRequestsPerShard = maxQueuedRequests / this.shards.length
+                                        + ((maxQueuedRequests % this.shards.length == 0) ? 0 : 1);
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard(i, maxQueuedRequestsPerShard);
+        }
+        for (Shard shard : this.shards) {
+            this.liveThreadCount.incrementAndGet();
+            shard.startThread();
+        }
+        if ((stalledTaskTime > 0) && (maxStalledThreads > 0)) {
+            this.watchdog = new Thread(new Watchdog(), "EventDeliveryWatchdog");
+            this.watchdog.setDaemon(true);
+            this.watchdog.start();
+        } else {
+            this.watchdog = null;
+        }
+    }
+
+    /**
+     * runs the task after the earlier tasks of the same key
+     *
+     * @param key  decides the shard, tasks with equal keys run in submission order
+     * @param task task to run
+     */
+    public void execute(Object key, Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        if (this.shutdown) {
+            this.rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("Delivery executor is shut down");
+        }
+        int shardIndex = getShardIndex(key);
+        if (!this.shards[shardIndex].queue.offer(new ShardTask(key, task))) {
+            this.rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("Delivery queue of shard " + shardIndex + " is full");
+        }
+    }
+
+    public void execute(Runnable task) {
+        if (task instanceof KeyedRunnable) {
+            execute(((KeyedRunnable) task).getKey(), task);
+        } else {
+            execute(null, task);
+        }
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        // keeps the key of the task when it is submitted instead of executed
+        if (runnable instanceof KeyedRunnable) {
+            return new KeyedFutureTask<T>(((KeyedRunnable) runnable).getKey(), runnable, value);
+        }
+        return super.newTaskFor(runnable, value);
+    }
+
+    private int getShardIndex(Object key) {
+        if (key == null) {
+            return (this.nextShard.getAndIncrement() & Integer.MAX_VALUE) % this.shards.length;
+        }
+        int hash = key.hashCode();
+        // spreads the higher bits, the keys are mostly strings differing at the end
+        hash ^= (hash >>> 16);
+        return (hash & Integer.MAX_VALUE) % this.shards.length;
+    }
+
+    public void shutdown() {
+        // the shards finish the queued tasks before they stop
+        this.shutdown = true;
+    }
+
+    public List<Runnable> shutdownNow() {
+        this.shutdown = true;
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (Shard shard : this.shards) {
+            shard.drainTo(tasks);
+        }
+        if (this.watchdog != null) {
+            this.watchdog.interrupt();
+        }
+        return tasks;
+    }
+
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    public boolean isTerminated() {
+        return this.liveThreadCount.get() == 0;
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this.terminationLock) {
+            while (this.liveThreadCount.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this.terminationLock, remaining);
+            }
+        }
+        return true;
+    }
+
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    public int getQueueDepth() {
+        int queueDepth = 0;
+        for (Shard shard : this.shards) {
+            queueDepth += shard.queue.size();
+        }
+        return queueDepth;
+    }
+
+    public int getShardQueueDepth(int shard) {
+        if ((shard < 0) || (shard >= this.shards.length)) {
+            throw new IllegalArgumentException("There is no shard " + shard);
+        }
+        return this.shards[shard].queue.size();
+    }
+
+    public int[] getShardQueueDepths() {
+        int[] queueDepths = new int[this.shards.length];
+        for (int i = 0; i < this.shards.length; i++) {
+            queueDepths[i] = this.shards[i].queue.size();
+        }
+        return queueDepths;
+    }
+
+    public int getMaxShardQueueDepth() {
+        int maxQueueDepth = 0;
+        for (Shard shard : this.shards) {
+            maxQueueDepth = Math.max(maxQueueDepth, shard.queue.size());
+        }
+        return maxQueueDepth;
+    }
+
+    public int getStalledThreadCount() {
+        return this.stalledThreadCount.get();
+    }
+
+    public long getCompletedCount() {
+        return this.completedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    public void resetStatistics() {
+        this.completedCount.set(0);
+        this.rejectedCount.set(0);
+    }
+
+    private void threadStopped() {
+        if (this.liveThreadCount.decrementAndGet() == 0) {
+            synchronized (this.terminationLock) {
+                this.terminationLock.notifyAll();
+            }
+        }
+    }
+
+    private final class Shard implements Runnable {
+
+        private final int index;
+        private final BlockingQueue<ShardTask> queue;
+
+        /**
+         * later tasks of the keys whose task stalled, they run on the thread of that task. Guarded
+         * by the shard, as are the fields below.
+         */
+        private final Map<Object, Deque<ShardTask>> stalledKeys = new HashMap<Object, Deque<ShardTask>>();
+        private final List<Thread> stalledThreads = new ArrayList<Thread>();
+        private Thread thread;
+        private ShardTask runningTask;
+        private long runningSince;
+
+        private Shard(int index, int capacity) {
+            this.index = index;
+            this.queue = new LinkedBlockingQueue<ShardTask>(Math.max(capacity, 1));
+        }
+
+        private void startThread() {
+            Thread thread = new Thread(this, "EventDelivery-" + this.index);
+            thread.setDaemon(true);
+            synchronized (this) {
+                this.thread = thread;
+            }
+            thread.start();
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    ShardTask task = this.queue.poll(1, TimeUnit.SECONDS);
+                    if (task == null) {
+                        if (ShardedExecutor.this.shutdown) {
+                            return;
+                        }
+                        continue;
+                    }
+                    if (!start(task)) {
+                        continue;
+                    }
+                    runTask(task);
+                    if (!finish()) {
+                        // the shard went on with another thread while the task was running
+                        runStalledTasks(task.key);
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // shut down now
+                Thread.currentThread().interrupt();
+            } finally {
+                synchronized (this) {
+                    if (this.stalledThreads.remove(Thread.currentThread())) {
+                        ShardedExecutor.this.stalledThreadCount.decrementAndGet();
+                    }
+                }
+                threadStopped();
+            }
+        }
+
+        /**
+         * @return false if the task waits for a stalled task of its key
+         */
+        private synchronized boolean start(ShardTask task) {
+            Deque<ShardTask> stalledTasks = (task.key == null) ? null : this.stalledKeys.get(task.key);
+            if (stalledTasks != null) {
+                stalledTasks.addLast(task);
+                return false;
+            }
+            this.runningTask = task;
+            this.runningSince = System.nanoTime();
+            return true;
+        }
+
+        /**
+         * @return false if the current thread is no longer the thread of the shard
+         */
+        private synchronized boolean finish() {
+            if (this.thread != Thread.currentThread()) {
+                return false;
+            }
+            this.runningTask = null;
+            return true;
+        }
+
+        private void runStalledTasks(Object key) {
+            while (true) {
+                ShardTask task;
+                synchronized (this) {
+                    Deque<ShardTask> stalledTasks = this.stalledKeys.get(key);
+                    task = (stalledTasks == null) ? null : stalledTasks.pollFirst();
+                    if (task == null) {
+                        // later tasks of the key run on the shard thread again
+                        this.stalledKeys.remove(key);
+                        return;
+                    }
+                }
+                runTask(task);
+            }
+        }
+
+        private void runTask(ShardTask task) {
+            try {
+                task.task.run();
+            } catch (RuntimeException e) {
+                // the shard thread must survive, later tasks of the key are waiting for it
+                log.error("Delivery task failed", e);
+            }
+            ShardedExecutor.this.completedCount.incrementAndGet();
+        }
+
+        /**
+         * leaves the running task to its thread and starts a new thread for the shard, if the
+         * task is running for longer than the stalled task time
+         */
+        private synchronized void checkStalled(long now) {
+            if ((this.runningTask == null)
+                || (now - this.runningSince < TimeUnit.MILLISECONDS.toNanos(stalledTaskTime))
+                || (ShardedExecutor.this.stalledThreadCount.get() >= maxStalledThreads)) {
+                return;
+            }
+            log.warn("Delivery task of " + this.runningTask.key + " is running for more than " + stalledTaskTime
+                     + " ms, the other tasks of shard " + this.index + " are moved to a new thread");
+            if (this.runningTask.key != null) {
+                this.stalledKeys.put(this.runningTask.key, new ArrayDeque<ShardTask>());
+            }
+            this.stalledThreads.add(this.thread);
+            ShardedExecutor.this.stalledThreadCount.incrementAndGet();
+            this.runningTask = null;
+            ShardedExecutor.this.liveThreadCount.incrementAndGet();
+            startThread();
+        }
+
+        private synchronized void drainTo(List<Runnable> tasks) {
+            List<ShardTask> shardTasks = new ArrayList<ShardTask>();
+            this.queue.drainTo(shardTasks);
+            for (Deque<ShardTask> stalledTasks : this.stalledKeys.values()) {
+                shardTasks.addAll(stalledTasks);
+                stalledTasks.clear();
+            }
+            for (ShardTask shardTask : shardTasks) {
+                tasks.add(shardTask.task);
+            }
+            this.thread.interrupt();
+            for (Thread stalledThread : this.stalledThreads) {
+                stalledThread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * checks the shards for stalled tasks, until all the threads stop
+     */
+    private final class Watchdog implements Runnable {
+
+        public void run() {
+            long interval = Math.max(stalledTaskTime / 4, 10);
+            try {
+                while (!isTerminated()) {
+                    Thread.sleep(interval);
+                    long now = System.nanoTime();
+                    for (Shard shard : shards) {
+                        shard.checkStalled(now);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * task with the key it was submitted with
+     */
+    private static final class ShardTask {
+
+        private final Object key;
+        private final Runnable task;
+
+        private ShardTask(Object key, Runnable task) {
+            this.key = key;
+            this.task = task;
+        }
+    }
+
+    private static final class KeyedFutureTask<T> extends FutureTask<T> implements KeyedRunnable {
+
+        private final Object key;
+
+        private KeyedFutureTask(Object key, Runnable runnable, T value) {
+            super(runnable, value);
+            this.key = key;
+        }
+
+        public Object getKey() {
+            return this.key;
+        }
+    }
+}
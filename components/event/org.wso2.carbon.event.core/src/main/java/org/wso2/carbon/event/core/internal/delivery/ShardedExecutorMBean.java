@@ -0,0 +1,70 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+/**
+ * MBean interface of the sharded delivery executor
+ */
+@Deprecated
+public interface ShardedExecutorMBean {
+
+    /**
+     * @return number of shards, each served by its own thread
+     */
+    int getShardCount();
+
+    /**
+     * @return number of tasks waiting in all the shards
+     */
+    int getQueueDepth();
+
+    /**
+     * @param shard shard index, starting from 0
+     * @return number of tasks waiting in the shard
+     */
+    int getShardQueueDepth(int shard);
+
+    /**
+     * @return number of tasks waiting in each shard
+     */
+    int[] getShardQueueDepths();
+
+    /**
+     * @return number of tasks waiting in the most loaded shard
+     */
+    int getMaxShardQueueDepth();
+
+    /**
+     * @return number of threads finishing a stalled task, which their shard no longer waits for
+     */
+    int getStalledThreadCount();
+
+    /**
+     * @return number of tasks run
+     */
+    long getCompletedCount();
+
+    /**
+     * @return number of tasks rejected since their shard was full
+     */
+    long getRejectedCount();
+
+    /**
+     * resets the completed and rejected counts
+     */
+    void resetStatistics();
+}
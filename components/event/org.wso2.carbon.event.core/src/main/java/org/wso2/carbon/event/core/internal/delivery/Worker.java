@@ -17,31 +17,80 @@
 package org.wso2.carbon.event.core.internal.delivery;
 
 import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.event.core.delivery.EndpointCircuitBreaker;
 import org.wso2.carbon.event.core.notify.NotificationManager;
 import org.wso2.carbon.event.core.subscription.Subscription;
+import org.wso2.carbon.event.core.exception.CircuitOpenException;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.exception.SendRejectedException;
+import org.wso2.carbon.event.core.internal.journal.EventJournal;
+import org.wso2.carbon.event.core.internal.metrics.TopicMetrics;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.wso2.carbon.event.core.Message;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * worker to send notifications. Delivary managers should start a new thread to send a notification.
+ * A worker sends a batch of messages to one subscription within a single tenant flow. Workers are
+ * keyed by the subscription id, so that a sharded executor sends the batches of a subscriber in order.
  */
 @Deprecated
-public class Worker implements Runnable{
+public class Worker implements KeyedRunnable {
 
     private NotificationManager notificationManager;
-    private Message message;
+    private List<Message> messages;
     private Subscription subscription;
+    private String topicName;
+    private boolean released;
+    private long createdTime = System.nanoTime();
 
     private static final Log log = LogFactory.getLog(Worker.class);
 
     public Worker(NotificationManager notificationManager,
                   Message message,
                   Subscription subscription) {
+        this(notificationManager, Collections.singletonList(message), subscription);
+    }
+
+    public Worker(NotificationManager notificationManager,
+                  List<Message> messages,
+                  Subscription subscription) {
+        this(notificationManager, messages, subscription, subscription.getTopicName());
+    }
+
+    /**
+     * @param topicName topic the messages are published to, the metrics are kept against it
+     */
+    public Worker(NotificationManager notificationManager,
+                  List<Message> messages,
+                  Subscription subscription,
+                  String topicName) {
         this.notificationManager = notificationManager;
-        this.message = message;
+        this.messages = messages;
         this.subscription = subscription;
+        this.topicName = topicName;
+    }
+
+    /**
+     * @param released true if the messages were held for the circuit of the endpoint and are now
+     *                 released, they are not held again behind the notifications held meanwhile
+     */
+    Worker(NotificationManager notificationManager,
+           List<Message> messages,
+           Subscription subscription,
+           String topicName,
+           boolean released) {
+        this(notificationManager, messages, subscription, topicName);
+        this.released = released;
+    }
+
+    public Object getKey() {
+        return this.subscription.getId();
     }
 
     public void run() {
@@ -50,11 +99,155 @@ public class Worker implements Runnable{
             PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(this.subscription.getTenantId());
             PrivilegedCarbonContext.getThreadLocalCarbonContext().setUsername(this.subscription.getOwner());
             PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantDomain(true);
-            this.notificationManager.sendNotification(this.message, this.subscription);
-        } catch (EventBrokerException e) {
-            log.error("Can not send the notification ", e);
+            sendMessages();
         } finally {
             PrivilegedCarbonContext.endTenantFlow();
         }
     }
+
+    private void sendMessages() {
+        RetryScheduler retryScheduler = EventBrokerHolder.getInstance().getRetryScheduler();
+        TopicMetrics topicMetrics = EventBrokerHolder.getInstance().getTopicMetrics();
+        EndpointCircuitBreaker circuitBreaker = EventBrokerHolder.getInstance().getEndpointCircuitBreaker();
+        CircuitHoldingQueue holdingQueue = EventBrokerHolder.getInstance().getCircuitHoldingQueue();
+        if (topicMetrics != null) {
+            topicMetrics.dequeued(this.subscription.getTenantId(), this.topicName,
+                                  System.nanoTime() - this.createdTime);
+        }
+        // notifications held for the endpoint are sent first, the later ones are held behind them
+        boolean circuitOpen = !this.released && (holdingQueue != null)
+                              && holdingQueue.isHolding(this.subscription);
+        List<Message> unheldMessages = new ArrayList<Message>();
+        for (Message message : this.messages) {
+            if (circuitOpen || isCircuitOpen(circuitBreaker)) {
+                circuitOpen = true;
+                if (!hold(message, holdingQueue)) {
+                    unheldMessages.add(message);
+                }
+                continue;
+            }
+            if ((retryScheduler != null) && retryScheduler.isRetrying(this.subscription)) {
+                // earlier notifications of the subscriber wait to be retried, this one is sent after
+                // them instead of overtaking them, and without holding this thread
+                retryScheduler.park(message, this.subscription, "earlier notifications are being retried");
+                continue;
+            }
+            Exception failure = send(message, topicMetrics);
+            if (failure == null) {
+                acknowledge(message);
+            } else if (failure instanceof CircuitOpenException) {
+                // the circuit opened or ran out of trials meanwhile, the message was not sent
+                circuitOpen = true;
+                if (!hold(message, holdingQueue)) {
+                    unheldMessages.add(message);
+                }
+            } else if (failure instanceof SendRejectedException) {
+                // the dispatcher was too busy to send it, which is not a failure of the sink
+                park(Collections.singletonList(message), failure.getMessage());
+            } else {
+                scheduleRetry(message, failure, retryScheduler);
+            }
+        }
+        if (!unheldMessages.isEmpty()) {
+            park(unheldMessages, "too many notifications are held while the circuit of the endpoint is open");
+        }
+    }
+
+    /**
+     * the sink is known to be down, the message is held until the circuit lets trials through
+     * instead of waiting for the sink to time out. Holding does not use up the retries of the
+     * subscriber, and the message is not acknowledged until it is sent.
+     *
+     * @return false if the message can not be held
+     */
+    private boolean hold(Message message, CircuitHoldingQueue holdingQueue) {
+        return (holdingQueue != null) && holdingQueue.hold(message, this.subscription, this.topicName);
+    }
+
+    /**
+     * sends the message and records its send time against the topic
+     *
+     * @return the failure, or null if the message was sent
+     */
+    private Exception send(Message message, TopicMetrics topicMetrics) {
+        Exception failure = null;
+        long sendStartTime = System.nanoTime();
+        try {
+            this.notificationManager.sendNotification(message, this.subscription);
+        } catch (EventBrokerException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        if ((topicMetrics != null) && !(failure instanceof CircuitOpenException)
+            && !(failure instanceof SendRejectedException)) {
+            if (failure == null) {
+                topicMetrics.delivered(this.subscription.getTenantId(), this.topicName,
+                                       System.nanoTime() - sendStartTime);
+            } else {
+                topicMetrics.failed(this.subscription.getTenantId(), this.topicName,
+                                    System.nanoTime() - sendStartTime);
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * the later messages of the batch are parked behind the retry. If there is no retry scheduler
+     * the message is only logged, it is not acknowledged, so it is replayed from the journal after
+     * a restart.
+     */
+    private void scheduleRetry(Message message, Exception failure, RetryScheduler retryScheduler) {
+        if (retryScheduler != null) {
+            // the retry scheduler acknowledges it once it is delivered or given up
+            retryScheduler.retry(message, this.subscription, failure);
+            return;
+        }
+        log.error("Can not send the notification ", failure);
+    }
+
+    private void acknowledge(Message message) {
+        EventJournal eventJournal = EventBrokerHolder.getInstance().getEventJournal();
+        if (eventJournal != null) {
+            eventJournal.acknowledge(this.subscription.getId(), message);
+        }
+    }
+
+    /**
+     * called when the delivery executor does not accept this worker
+     *
+     * @param cause why the worker was not accepted
+     */
+    public void rejected(Exception cause) {
+        park(this.messages, cause.getMessage());
+    }
+
+    /**
+     * the messages were neither sent nor held. They are parked in the retry scheduler with all
+     * their attempts if there is one, otherwise they are dropped.
+     *
+     * @param reason why the messages were not sent
+     */
+    private void park(List<Message> messages, String reason) {
+        RetryScheduler retryScheduler = EventBrokerHolder.getInstance().getRetryScheduler();
+        if (retryScheduler != null) {
+            for (Message message : messages) {
+                retryScheduler.park(message, this.subscription, reason);
+            }
+            return;
+        }
+        // the journal does not keep them, they would otherwise hold its segments until the
+        // next restart
+        for (Message message : messages) {
+            acknowledge(message);
+        }
+        log.error("Dropped " + messages.size() + " notifications to " + this.subscription.getEventSinkURL()
+                  + ", " + reason);
+    }
+
+    private boolean isCircuitOpen(EndpointCircuitBreaker circuitBreaker) {
+        return (circuitBreaker != null) && (this.subscription.getEventSinkURL() != null)
+               && (circuitBreaker.getOpenTimeRemaining(this.subscription.getTenantId(),
+                                                       this.subscription.getEventSinkURL()) > 0);
+    }
 }
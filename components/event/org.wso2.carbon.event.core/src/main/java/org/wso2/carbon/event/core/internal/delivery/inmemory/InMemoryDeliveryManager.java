@@ -21,18 +21,25 @@ import org.wso2.carbon.event.core.util.EventBrokerConstants;
 import org.wso2.carbon.event.core.delivery.DeliveryManager;
 import org.wso2.carbon.event.core.delivery.MatchingManager;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.delivery.EventFilterEngine;
 import org.wso2.carbon.event.core.internal.delivery.Worker;
+import org.wso2.carbon.event.core.internal.journal.EventJournal;
+import org.wso2.carbon.event.core.internal.metrics.TopicMetrics;
 import org.wso2.carbon.event.core.internal.util.JavaUtil;
 import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.wso2.carbon.event.core.notify.NotificationManager;
 import org.wso2.carbon.event.core.subscription.Subscription;
-import org.wso2.carbon.user.api.UserRealm;
 import org.wso2.carbon.user.api.UserStoreException;
 import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.CarbonConstants;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * in memory implementation of the delivary manager.
@@ -40,10 +47,18 @@ import java.util.concurrent.ExecutorService;
 @Deprecated
 public class InMemoryDeliveryManager implements DeliveryManager {
 
+    private static final Log log = LogFactory.getLog(InMemoryDeliveryManager.class);
+
+    /**
+     * milli seconds to wait for the queued notifications to be sent when the broker stops
+     */
+    public static final long SHUTDOWN_TIMEOUT = 10000;
+
     private ExecutorService executor;
     private NotificationManager notificationManager;
     private MatchingManager matchingManager;
     private String topicStoragePath;
+    private EventFilterEngine eventFilterEngine = new EventFilterEngine();
 
     public InMemoryDeliveryManager(ExecutorService executor, String topicStoragePath) {
         this.executor = executor;
@@ -53,19 +68,18 @@ public class InMemoryDeliveryManager implements DeliveryManager {
     public void subscribe(Subscription subscription) throws EventBrokerException {
        String resoucePath = JavaUtil.getResourcePath(subscription.getTopicName(), this.topicStoragePath);
         try {
-            UserRealm userRealm =
-                    EventBrokerHolder.getInstance().getRealmService().getTenantUserRealm
-                                               (CarbonContext.getThreadLocalCarbonContext().getTenantId());
             String userName = subscription.getOwner();
             // trim the domain part if it is there.
             if (userName.lastIndexOf("@") != -1){
                 userName = userName.substring(0, userName.lastIndexOf("@"));
             }
             if (userName.equals(CarbonConstants.REGISTRY_SYSTEM_USERNAME) ||
-                    userRealm.getAuthorizationManager().isUserAuthorized(
+                    EventBrokerHolder.getInstance().getAuthorizationCache().isUserAuthorized(
+                        CarbonContext.getThreadLocalCarbonContext().getTenantId(),
                         userName,
                         resoucePath,
                         EventBrokerConstants.EB_PERMISSION_SUBSCRIBE)){
+                       this.eventFilterEngine.compile(subscription);
                        this.matchingManager.addSubscription(subscription);
             } else {
                 throw new EventBrokerException("User " + CarbonContext.getThreadLocalCarbonContext().getUsername()
@@ -82,25 +96,46 @@ public class InMemoryDeliveryManager implements DeliveryManager {
     }
 
     public void publish(Message message, String topicName, int deliveryMode) throws EventBrokerException {
+        publish(Collections.singletonList(message), topicName, deliveryMode);
+    }
+
+    public void publish(List<Message> messages, String topicName, int deliveryMode) throws EventBrokerException {
 
         String resoucePath = JavaUtil.getResourcePath(topicName, this.topicStoragePath);
         try {
-            UserRealm userRealm =
-                    EventBrokerHolder.getInstance().getRealmService().getTenantUserRealm
-                            (CarbonContext.getThreadLocalCarbonContext().getTenantId());
             String userName = CarbonContext.getThreadLocalCarbonContext().getUsername();
             
             if (userName == null){
                 userName = CarbonConstants.REGISTRY_SYSTEM_USERNAME;
             }
             if (userName.equals(CarbonConstants.REGISTRY_SYSTEM_USERNAME) ||
-                    userRealm.getAuthorizationManager().isUserAuthorized(
+                    EventBrokerHolder.getInstance().getAuthorizationCache().isUserAuthorized(
+                        CarbonContext.getThreadLocalCarbonContext().getTenantId(),
                         userName,
                         resoucePath,
                         EventBrokerConstants.EB_PERMISSION_PUBLISH)) {
+                EventJournal eventJournal = EventBrokerHolder.getInstance().getEventJournal();
+                TopicMetrics topicMetrics = EventBrokerHolder.getInstance().getTopicMetrics();
+                long matchingStartTime = System.nanoTime();
                 List<Subscription> subscriptions = this.matchingManager.getMatchingSubscriptions(topicName);
+                if (topicMetrics != null) {
+                    topicMetrics.matched(CarbonContext.getThreadLocalCarbonContext().getTenantId(), topicName,
+                                         System.nanoTime() - matchingStartTime);
+                }
                 for (Subscription subscription : subscriptions) {
-                    this.executor.submit(new Worker(this.notificationManager, message, subscription));
+                    List<Message> matchingMessages = this.eventFilterEngine.getMatchingMessages(subscription, messages);
+                    if (eventJournal != null) {
+                        matchingMessages = eventJournal.track(subscription, matchingMessages);
+                    }
+                    if (!matchingMessages.isEmpty()) {
+                        Worker worker = new Worker(this.notificationManager, matchingMessages, subscription, topicName);
+                        try {
+                            this.executor.execute(worker);
+                        } catch (RejectedExecutionException e) {
+                            // the other subscribers still get the messages
+                            worker.rejected(e);
+                        }
+                    }
                 }
             } else {
                 throw new EventBrokerException("User " + CarbonContext.getThreadLocalCarbonContext().getUsername()
@@ -120,7 +155,22 @@ public class InMemoryDeliveryManager implements DeliveryManager {
     }
 
     public void cleanUp() {
-        // nothing to clean up in the inmemory implementation.
+        if (this.matchingManager instanceof InMemoryMatchingManager) {
+            ((InMemoryMatchingManager) this.matchingManager).cleanUp();
+        }
+        // the queued notifications are sent before the delivery threads stop, the ones which are
+        // still not sent are replayed from the journal in the next start
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                log.warn("Notifications are still being sent after " + SHUTDOWN_TIMEOUT
+                         + " ms, stopping the delivery threads");
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
     }
 
     public void renewSubscription(Subscription subscription) throws EventBrokerException {
@@ -20,9 +20,12 @@ import org.wso2.carbon.event.core.delivery.DeliveryManagerFactory;
 import org.wso2.carbon.event.core.delivery.DeliveryManager;
 import org.wso2.carbon.event.core.delivery.MatchingManagerFactory;
 import org.wso2.carbon.event.core.util.EventBrokerConstants;
+import org.wso2.carbon.event.core.internal.delivery.ShardedExecutor;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.wso2.carbon.event.core.internal.util.JavaUtil;
 import org.wso2.carbon.event.core.exception.EventBrokerConfigurationException;
 import org.apache.axiom.om.OMElement;
+import org.wso2.carbon.utils.MBeanRegistrar;
 
 import javax.xml.namespace.QName;
 import java.util.concurrent.*;
@@ -38,6 +41,10 @@ public class InMemoryDeliveryManagerFactory implements DeliveryManagerFactory {
     public static final String EB_DM_MAX_QUEUED_REQUESTS = "maxQueuedRequests";
     public static final String EB_DM_KEEP_ALIVE_TIME = "keepAliveTime";
     public static final String EB_DM_TOPIC_STORAGE_PATH = "topicStoragePath";
+    public static final String EB_DM_EXECUTOR = "executor";
+    public static final String EB_DM_SHARD_COUNT = "shardCount";
+    public static final String EB_DM_STALLED_TASK_TIME = "stalledTaskTime";
+    public static final String EB_DM_MAX_STALLED_THREADS = "maxStalledThreads";
 
     public DeliveryManager getDeliveryManger(OMElement config) throws EventBrokerConfigurationException {
 
@@ -49,10 +56,31 @@ public class InMemoryDeliveryManagerFactory implements DeliveryManagerFactory {
         String topicStoragePath = JavaUtil.getValue(config, EB_DM_TOPIC_STORAGE_PATH);
 
 
-        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(maxQueuedRequests);
+        ExecutorService executor;
+        String executorType = JavaUtil.getValue(config, EB_DM_EXECUTOR, EventBrokerConstants.EB_DM_EXECUTOR_POOLED);
+        if (EventBrokerConstants.EB_DM_EXECUTOR_SHARDED.equals(executorType)) {
+            // notifications of a subscriber are sent in order, by the thread of its shard
+            int shardCount = Integer.parseInt(JavaUtil.getValue(config, EB_DM_SHARD_COUNT,
+                    String.valueOf(ShardedExecutor.DEFAULT_SHARD_COUNT)));
+            long stalledTaskTime = Long.parseLong(JavaUtil.getValue(config, EB_DM_STALLED_TASK_TIME,
+                    String.valueOf(ShardedExecutor.DEFAULT_STALLED_TASK_TIME)));
+            int maxStalledThreads = Integer.parseInt(JavaUtil.getValue(config, EB_DM_MAX_STALLED_THREADS,
+                    String.valueOf(ShardedExecutor.DEFAULT_MAX_STALLED_THREADS)));
+            ShardedExecutor shardedExecutor =
+                    new ShardedExecutor(shardCount, maxQueuedRequests, stalledTaskTime, maxStalledThreads);
+            MBeanRegistrar.registerMBean(shardedExecutor);
+            executor = shardedExecutor;
+        } else if (EventBrokerConstants.EB_DM_EXECUTOR_POOLED.equals(executorType)) {
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(maxQueuedRequests);
 
-        ExecutorService executor = new ThreadPoolExecutor(minSpareThreads, maxThreads,
-                keepAliveTime, TimeUnit.NANOSECONDS, queue);
+            executor = new ThreadPoolExecutor(minSpareThreads, maxThreads,
+                    keepAliveTime, TimeUnit.NANOSECONDS, queue);
+        } else {
+            throw new EventBrokerConfigurationException("Unknown delivery executor " + executorType);
+        }
+        // notifications held for an open circuit are sent by the same executor, after the earlier
+        // notifications of their subscribers
+        EventBrokerHolder.getInstance().registerDeliveryExecutor(executor);
 
         InMemoryDeliveryManager delivaryManager = new InMemoryDeliveryManager(executor, topicStoragePath);
 
@@ -16,7 +16,9 @@
 
 package org.wso2.carbon.event.core.internal.delivery.inmemory;
 
+import org.apache.axiom.om.OMElement;
 import org.wso2.carbon.event.core.delivery.MatchingManager;
+import org.wso2.carbon.event.core.internal.util.JavaUtil;
 import org.wso2.carbon.event.core.subscription.Subscription;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
 import org.wso2.carbon.context.CarbonContext;
@@ -29,55 +31,95 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * in memory matching manager which keeps the topic and subscriptions in an hash map
+ * in memory matching manager which keeps the topic and subscriptions in a per tenant
+ * subscription storage
  */
 @Deprecated
 public class InMemoryMatchingManager implements MatchingManager {
 
     private static final Log log = LogFactory.getLog(InMemoryMatchingManager.class);
-    private Map<Integer, InMemorySubscriptionStorage> tenantIDInMemorySubscriptionStorageMap;
+    private Map<Integer, SubscriptionStorage> tenantIDInMemorySubscriptionStorageMap;
+
+    /**
+     * configuration element of the subscription storage. if this is null the hash map based
+     * storage is used.
+     */
+    private OMElement subscriptionStorageConfig;
+
+    /**
+     * removes the subscriptions from the storages when they expire
+     */
+    private SubscriptionExpiryWheel subscriptionExpiryWheel;
 
     public InMemoryMatchingManager() {
+        this(null);
+    }
+
+    public InMemoryMatchingManager(OMElement subscriptionStorageConfig) {
+        this(subscriptionStorageConfig, new SubscriptionExpiryWheel());
+    }
+
+    public InMemoryMatchingManager(OMElement subscriptionStorageConfig,
+                                   SubscriptionExpiryWheel subscriptionExpiryWheel) {
         this.tenantIDInMemorySubscriptionStorageMap =
-                            new ConcurrentHashMap<Integer, InMemorySubscriptionStorage>();
+                            new ConcurrentHashMap<Integer, SubscriptionStorage>();
+        this.subscriptionStorageConfig = subscriptionStorageConfig;
+        this.subscriptionExpiryWheel = subscriptionExpiryWheel;
+        this.subscriptionExpiryWheel.start();
     }
 
     public void addSubscription(Subscription subscription) {
-        InMemorySubscriptionStorage inMemorySubscriptionStorage =
+        SubscriptionStorage subscriptionStorage =
                 this.tenantIDInMemorySubscriptionStorageMap.get(CarbonContext.getThreadLocalCarbonContext().getTenantId());
-        inMemorySubscriptionStorage.addSubscription(subscription);
-
+        subscriptionStorage.addSubscription(subscription);
+        this.subscriptionExpiryWheel.schedule(subscriptionStorage, subscription);
     }
 
     public List<Subscription> getMatchingSubscriptions(String topicName) {
-        InMemorySubscriptionStorage inMemorySubscriptionStorage =
+        SubscriptionStorage subscriptionStorage =
                 this.tenantIDInMemorySubscriptionStorageMap.get(CarbonContext.getThreadLocalCarbonContext().getTenantId());
-        if(inMemorySubscriptionStorage != null) {
-            return inMemorySubscriptionStorage.getMatchingSubscriptions(topicName);
+        if(subscriptionStorage != null) {
+            return subscriptionStorage.getMatchingSubscriptions(topicName);
         } else {
             return new ArrayList<Subscription>();
         }
     }
 
     public void unSubscribe(String subscriptionID) throws EventBrokerException {
-        InMemorySubscriptionStorage inMemorySubscriptionStorage =
+        SubscriptionStorage subscriptionStorage =
                 this.tenantIDInMemorySubscriptionStorageMap.get(CarbonContext.getThreadLocalCarbonContext().getTenantId());
-        inMemorySubscriptionStorage.unSubscribe(subscriptionID);
+        this.subscriptionExpiryWheel.cancel(subscriptionID);
+        subscriptionStorage.unSubscribe(subscriptionID);
     }
 
     public void renewSubscription(Subscription subscription) throws EventBrokerException {
-        InMemorySubscriptionStorage inMemorySubscriptionStorage =
+        SubscriptionStorage subscriptionStorage =
                 this.tenantIDInMemorySubscriptionStorageMap.get(CarbonContext.getThreadLocalCarbonContext().getTenantId());
-        inMemorySubscriptionStorage.renewSubscription(subscription);
+        subscriptionStorage.renewSubscription(subscription);
+        this.subscriptionExpiryWheel.schedule(subscriptionStorage, subscription);
+    }
+
+    /**
+     * stops removing the expired subscriptions
+     */
+    public void cleanUp() {
+        this.subscriptionExpiryWheel.stop();
     }
 
     public void initializeTenant() throws EventBrokerException {
          if (tenantIDInMemorySubscriptionStorageMap.get(CarbonContext.getThreadLocalCarbonContext().getTenantId()) == null){
              this.tenantIDInMemorySubscriptionStorageMap.put(
-                      CarbonContext.getThreadLocalCarbonContext().getTenantId(), new InMemorySubscriptionStorage());
+                      CarbonContext.getThreadLocalCarbonContext().getTenantId(), createSubscriptionStorage());
          } else {
              log.warn("There is an InMemorySubscription for tenant with id "
                                + CarbonContext.getThreadLocalCarbonContext().getTenantId() + " exists ");
          }
     }
+
+    private SubscriptionStorage createSubscriptionStorage() throws EventBrokerException {
+        if (this.subscriptionStorageConfig == null) {
+            return new InMemorySubscriptionStorage();
+        }
+        return (SubscriptionStorage) JavaUtil.getObject(this.subscriptionStorageConfig);
+    }
 }
@@ -20,13 +20,30 @@ import org.wso2.carbon.event.core.delivery.MatchingManagerFactory;
 import org.wso2.carbon.event.core.delivery.MatchingManager;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
 import org.wso2.carbon.event.core.exception.EventBrokerConfigurationException;
+import org.wso2.carbon.event.core.internal.util.JavaUtil;
+import org.wso2.carbon.event.core.util.EventBrokerConstants;
 import org.apache.axiom.om.OMElement;
 
+import javax.xml.namespace.QName;
+
 @Deprecated
 public class InMemoryMatchingManagerFactory implements MatchingManagerFactory {
 
+    public static final String EB_EXPIRY_TICK_DURATION = "expiryTickDuration";
+
     public MatchingManager getMatchingManager(OMElement config) throws EventBrokerConfigurationException {
-        InMemoryMatchingManager inMemoryMatchingManager = new InMemoryMatchingManager();
+        // subscription storage is optional. hash map based storage is used if it is not given
+        OMElement subscriptionStorageElement = null;
+        if (config != null) {
+            subscriptionStorageElement =
+                    config.getFirstChildWithName(new QName(EventBrokerConstants.EB_CONF_NAMESPACE,
+                            EventBrokerConstants.EB_CONF_ELE_SUBSCRIPTION_STORAGE));
+        }
+        long expiryTickDuration = Long.parseLong(JavaUtil.getValue(config, EB_EXPIRY_TICK_DURATION,
+                String.valueOf(SubscriptionExpiryWheel.DEFAULT_TICK_DURATION)));
+        InMemoryMatchingManager inMemoryMatchingManager =
+                new InMemoryMatchingManager(subscriptionStorageElement, new SubscriptionExpiryWheel(
+                        expiryTickDuration, SubscriptionExpiryWheel.DEFAULT_WHEEL_SIZE));
         try {
             //call initialize tenant for super tenant
             inMemoryMatchingManager.initializeTenant();
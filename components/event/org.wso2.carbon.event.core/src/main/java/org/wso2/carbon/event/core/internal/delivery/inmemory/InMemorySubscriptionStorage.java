@@ -29,7 +29,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * maps to keep the subscrition object deatils with the topic details
  */
 @Deprecated
-public class InMemorySubscriptionStorage {
+public class InMemorySubscriptionStorage implements SubscriptionStorage {
     /**
      * map to keep the subscription details with the topics. This is important in finding subscriptions
      * for a pirticular topic when publishing a message to a topic.
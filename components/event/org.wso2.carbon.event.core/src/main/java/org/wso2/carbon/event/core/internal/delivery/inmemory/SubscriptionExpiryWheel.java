@@ -0,0 +1,314 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery.inmemory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hierarchical timing wheel which removes the subscriptions from their subscription storage once
+ * they expire, so that expired subscriptions do not stay in the matching structures.
+ * <p/>
+ * Level 0 has one bucket per tick. Each higher level has buckets as wide as the whole span of the
+ * level below it, and when the time reaches one of those buckets its subscriptions are moved down
+ * to the lower levels. Scheduling and cancelling are constant time and each subscription is moved
+ * at most once per level, hence the cost per expiry does not depend on the number of scheduled
+ * subscriptions. Subscriptions are removed within one tick after their expiry time.
+ */
+@Deprecated
+public class SubscriptionExpiryWheel {
+
+    private static final Log log = LogFactory.getLog(SubscriptionExpiryWheel.class);
+
+    public static final long DEFAULT_TICK_DURATION = 1000;
+    public static final int DEFAULT_WHEEL_SIZE = 64;
+
+    private final long tickDuration;
+    private final int wheelSize;
+
+    /**
+     * start of the current tick. all the subscriptions expiring before this have been removed.
+     */
+    private long currentTime;
+
+    private final List<Bucket[]> levels;
+
+    private final Map<String, Entry> subscriptionIDEntryMap;
+
+    private ScheduledExecutorService tickExecutor;
+
+    public SubscriptionExpiryWheel() {
+        this(DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    public SubscriptionExpiryWheel(long tickDuration, int wheelSize) {
+        this.tickDuration = tickDuration;
+        this.wheelSize = wheelSize;
+        this.currentTime = System.currentTimeMillis() / tickDuration * tickDuration;
+        this.levels = new ArrayList<Bucket[]>();
+        this.subscriptionIDEntryMap = new HashMap<String, Entry>();
+    }
+
+    /**
+     * starts a background thread which advances the wheel once every tick
+     */
+    public synchronized void start() {
+        if (this.tickExecutor != null) {
+            return;
+        }
+        this.tickExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SubscriptionExpiryWheel");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.tickExecutor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    advance(System.currentTimeMillis());
+                } catch (Throwable e) {
+                    log.error("Can not remove the expired subscriptions ", e);
+                }
+            }
+        }, this.tickDuration, this.tickDuration, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (this.tickExecutor != null) {
+            this.tickExecutor.shutdownNow();
+            this.tickExecutor = null;
+        }
+    }
+
+    /**
+     * schedules the removal of the subscription from the storage at its expiry time. A previous
+     * schedule of the same subscription is cancelled, and subscriptions without an expiry time
+     * are never removed.
+     *
+     * @param subscriptionStorage storage to remove the subscription from
+     * @param subscription        the subscription
+     */
+    public synchronized void schedule(SubscriptionStorage subscriptionStorage,
+                                      Subscription subscription) {
+        cancel(subscription.getId());
+        if (subscription.getExpires() == null) {
+            return;
+        }
+        Entry entry = new Entry(subscriptionStorage, subscription.getId(),
+                                subscription.getExpires().getTimeInMillis());
+        this.subscriptionIDEntryMap.put(entry.subscriptionID, entry);
+        add(entry);
+    }
+
+    /**
+     * cancels the scheduled removal of the subscription, if any
+     *
+     * @param subscriptionID subscription id
+     */
+    public synchronized void cancel(String subscriptionID) {
+        Entry entry = this.subscriptionIDEntryMap.remove(subscriptionID);
+        if (entry != null) {
+            entry.unlink();
+        }
+    }
+
+    /**
+     * @return number of subscriptions waiting for expiry
+     */
+    public synchronized int size() {
+        return this.subscriptionIDEntryMap.size();
+    }
+
+    /**
+     * moves the wheel up to the given time and removes the subscriptions which have expired by
+     * then from their storages.
+     *
+     * @param time current time in milli seconds
+     */
+    public void advance(long time) {
+        List<Entry> expiredEntries = new ArrayList<Entry>();
+        synchronized (this) {
+            while (time >= this.currentTime + this.tickDuration) {
+                // the current level 0 bucket has completely passed
+                Bucket bucket = getBucket(0, this.currentTime);
+                if (bucket != null) {
+                    bucket.drainTo(expiredEntries);
+                }
+                this.currentTime += this.tickDuration;
+
+                // move the higher level buckets starting at the new time to the lower levels
+                long levelTickDuration = this.tickDuration;
+                for (int level = 1; level < this.levels.size(); level++) {
+                    levelTickDuration *= this.wheelSize;
+                    if (this.currentTime % levelTickDuration != 0) {
+                        break;
+                    }
+                    List<Entry> entries = new ArrayList<Entry>();
+                    getBucket(level, this.currentTime).drainTo(entries);
+                    for (Entry entry : entries) {
+                        add(entry);
+                    }
+                }
+            }
+            for (Entry entry : expiredEntries) {
+                this.subscriptionIDEntryMap.remove(entry.subscriptionID);
+            }
+        }
+
+        for (Entry entry : expiredEntries) {
+            synchronized (this) {
+                if (this.subscriptionIDEntryMap.containsKey(entry.subscriptionID)) {
+                    // renewed after it was taken out of the wheel
+                    continue;
+                }
+            }
+            try {
+                entry.subscriptionStorage.unSubscribe(entry.subscriptionID);
+                if (log.isDebugEnabled()) {
+                    log.debug("Removed the expired subscription " + entry.subscriptionID);
+                }
+            } catch (EventBrokerException e) {
+                // the subscription has already been removed
+                if (log.isDebugEnabled()) {
+                    log.debug("Expired subscription " + entry.subscriptionID + " does not exist");
+                }
+            }
+        }
+    }
+
+    /**
+     * puts the entry to the lowest level whose span covers its expiry time. Level 0 keeps the
+     * entries expiring within wheelSize ticks from the current time, and level n keeps the ones
+     * expiring within wheelSize buckets of level n from the start of its current bucket.
+     */
+    private void add(Entry entry) {
+        long expiryTime = Math.max(entry.expiryTime, this.currentTime);
+        long levelTickDuration = this.tickDuration;
+        int level = 0;
+        while (true) {
+            long levelStartTime = this.currentTime / levelTickDuration * levelTickDuration;
+            if ((expiryTime < levelStartTime + levelTickDuration * this.wheelSize)
+                || (levelTickDuration > Long.MAX_VALUE / this.wheelSize / this.wheelSize)) {
+                break;
+            }
+            levelTickDuration *= this.wheelSize;
+            level++;
+        }
+        while (this.levels.size() <= level) {
+            this.levels.add(new Bucket[this.wheelSize]);
+        }
+
+        Bucket[] buckets = this.levels.get(level);
+        int index = (int) ((expiryTime / levelTickDuration) % this.wheelSize);
+        if (buckets[index] == null) {
+            buckets[index] = new Bucket();
+        }
+        buckets[index].add(entry);
+    }
+
+    private Bucket getBucket(int level, long time) {
+        if (level >= this.levels.size()) {
+            return null;
+        }
+        long levelTickDuration = this.tickDuration;
+        for (int i = 0; i < level; i++) {
+            levelTickDuration *= this.wheelSize;
+        }
+        Bucket[] buckets = this.levels.get(level);
+        int index = (int) ((time / levelTickDuration) % this.wheelSize);
+        if (buckets[index] == null) {
+            buckets[index] = new Bucket();
+        }
+        return buckets[index];
+    }
+
+    /**
+     * doubly linked list of entries, so that an entry can be removed without searching
+     */
+    private static final class Bucket {
+
+        private final Entry head;
+
+        private Bucket() {
+            this.head = new Entry(null, null, 0);
+            this.head.next = this.head;
+            this.head.previous = this.head;
+        }
+
+        private void add(Entry entry) {
+            entry.bucket = this;
+            entry.previous = this.head.previous;
+            entry.next = this.head;
+            this.head.previous.next = entry;
+            this.head.previous = entry;
+        }
+
+        private void drainTo(List<Entry> entries) {
+            Entry entry = this.head.next;
+            while (entry != this.head) {
+                Entry next = entry.next;
+                entry.bucket = null;
+                entry.next = null;
+                entry.previous = null;
+                entries.add(entry);
+                entry = next;
+            }
+            this.head.next = this.head;
+            this.head.previous = this.head;
+        }
+    }
+
+    private static final class Entry {
+
+        private final SubscriptionStorage subscriptionStorage;
+        private final String subscriptionID;
+        private final long expiryTime;
+
+        private Bucket bucket;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(SubscriptionStorage subscriptionStorage, String subscriptionID,
+                      long expiryTime) {
+            this.subscriptionStorage = subscriptionStorage;
+            this.subscriptionID = subscriptionID;
+            this.expiryTime = expiryTime;
+        }
+
+        private void unlink() {
+            if (this.bucket != null) {
+                this.previous.next = this.next;
+                this.next.previous = this.previous;
+                this.bucket = null;
+                this.previous = null;
+                this.next = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery.inmemory;
+
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.List;
+
+/**
+ * per tenant storage of the subscriptions used by the in memory matching manager. Implementations
+ * keep the subscriptions against their topic names and find the subscriptions which match a
+ * published topic, honouring the # (zero or more levels) and * (one level) wild cards at the end
+ * of the subscribed topic name.
+ */
+@Deprecated
+public interface SubscriptionStorage {
+
+    /**
+     * adds a subscription to the storage
+     *
+     * @param subscription the subscription
+     */
+    public void addSubscription(Subscription subscription);
+
+    /**
+     * gets the subscriptions matching the given topic
+     *
+     * @param topicName the published topic name
+     * @return matching subscriptions
+     */
+    public List<Subscription> getMatchingSubscriptions(String topicName);
+
+    /**
+     * removes the subscription with the given id
+     *
+     * @param subscriptionID the subscription id
+     * @throws EventBrokerException if there is no such subscription
+     */
+    public void unSubscribe(String subscriptionID) throws EventBrokerException;
+
+    /**
+     * updates the expiry time and the properties of an existing subscription
+     *
+     * @param subscription the subscription with new details
+     * @throws EventBrokerException if there is no such subscription
+     */
+    public void renewSubscription(Subscription subscription) throws EventBrokerException;
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery.inmemory;
+
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * subscription storage which keeps the subscriptions in a trie of topic levels. Each node of the
+ * trie represents one level of a topic name and keeps the subscriptions made exactly to that
+ * topic and the subscriptions made with a * or # wild card just after that level.
+ * <p/>
+ * Finding the matching subscriptions walks the trie once along the levels of the published topic,
+ * hence the cost is proportional to the topic depth plus the number of matches, without building
+ * the wild card topic names for every publish. Matching semantics are the same as in
+ * {@link InMemorySubscriptionStorage}.
+ * <p/>
+ * Reads are lock free. Adding and removing subscriptions are serialized so that empty nodes can
+ * be pruned without loosing a concurrent addition.
+ */
+@Deprecated
+public class TrieSubscriptionStorage implements SubscriptionStorage {
+
+    private static final String HASH_WILDCARD_SUFFIX = "/#";
+    private static final String STAR_WILDCARD_SUFFIX = "/*";
+
+    /**
+     * root of the trie. represents the topic "/"
+     */
+    private final TrieNode root;
+
+    /**
+     * keeps the node and the wild card type of each subscription. This is used when removing and
+     * renewing the subscriptions by id.
+     */
+    private final Map<String, SubscriptionEntry> subscriptionIDEntryMap;
+
+    public TrieSubscriptionStorage() {
+        this.root = new TrieNode(null, null);
+        this.subscriptionIDEntryMap = new ConcurrentHashMap<String, SubscriptionEntry>();
+    }
+
+    public synchronized void addSubscription(Subscription subscription) {
+        String topicName = getTopicName(subscription.getTopicName());
+        WildCard wildCard = WildCard.NONE;
+        if (topicName.endsWith(HASH_WILDCARD_SUFFIX)) {
+            wildCard = WildCard.HASH;
+            topicName = topicName.substring(0, topicName.length() - HASH_WILDCARD_SUFFIX.length());
+        } else if (topicName.endsWith(STAR_WILDCARD_SUFFIX)) {
+            wildCard = WildCard.STAR;
+            topicName = topicName.substring(0, topicName.length() - STAR_WILDCARD_SUFFIX.length());
+        }
+
+        TrieNode node = this.root;
+        if (topicName.length() > 1) {
+            // topic names always start with /, so the levels start from the second character
+            for (String segment : topicName.substring(1).split("/", -1)) {
+                node = node.getOrCreateChild(segment);
+            }
+        }
+
+        // a subscription is kept only once even if it is re added with a different topic
+        SubscriptionEntry existingEntry = this.subscriptionIDEntryMap.get(subscription.getId());
+        if (existingEntry != null) {
+            removeEntry(subscription.getId(), existingEntry);
+        }
+        node.getSubscriptions(wildCard).put(subscription.getId(), subscription);
+        this.subscriptionIDEntryMap.put(subscription.getId(), new SubscriptionEntry(node, wildCard));
+    }
+
+    public List<Subscription> getMatchingSubscriptions(String topicName) {
+        topicName = getTopicName(topicName);
+        List<Subscription> subscriptions = new ArrayList<Subscription>();
+
+        // every topic is a child of / hence the /# subscriptions always match
+        subscriptions.addAll(this.root.hashSubscriptions.values());
+        if (topicName.length() == 1) {
+            subscriptions.addAll(this.root.exactSubscriptions.values());
+            return subscriptions;
+        }
+
+        TrieNode node = this.root;
+        int start = 1;
+        while (true) {
+            int end = topicName.indexOf('/', start);
+            String segment = (end == -1) ? topicName.substring(start) : topicName.substring(start, end);
+            TrieNode child = node.children.get(segment);
+            if (end == -1) {
+                // last level. parent/* subscriptions match the topic as well as the
+                // subscriptions to the topic itself
+                subscriptions.addAll(node.starSubscriptions.values());
+                if (child != null) {
+                    subscriptions.addAll(child.hashSubscriptions.values());
+                    subscriptions.addAll(child.starSubscriptions.values());
+                    subscriptions.addAll(child.exactSubscriptions.values());
+                }
+                break;
+            }
+            if (child == null) {
+                // no subscriptions further down this path
+                break;
+            }
+            subscriptions.addAll(child.hashSubscriptions.values());
+            node = child;
+            start = end + 1;
+        }
+        return subscriptions;
+    }
+
+    public synchronized void unSubscribe(String subscriptionID) throws EventBrokerException {
+        SubscriptionEntry subscriptionEntry = this.subscriptionIDEntryMap.get(subscriptionID);
+        if (subscriptionEntry == null) {
+            throw new EventBrokerException("Subscription with ID " + subscriptionID + " does not exits");
+        }
+        removeEntry(subscriptionID, subscriptionEntry);
+    }
+
+    public void renewSubscription(Subscription subscription) throws EventBrokerException {
+        SubscriptionEntry subscriptionEntry = this.subscriptionIDEntryMap.get(subscription.getId());
+        Subscription existingSubscription = null;
+        if (subscriptionEntry != null) {
+            existingSubscription =
+                    subscriptionEntry.node.getSubscriptions(subscriptionEntry.wildCard).get(subscription.getId());
+        }
+        if (existingSubscription == null) {
+            throw new EventBrokerException("There is no subscription with subscription id " + subscription.getId());
+        }
+
+        existingSubscription.setExpires(subscription.getExpires());
+        existingSubscription.setProperties(subscription.getProperties());
+    }
+
+    /**
+     * removes the subscription from its node and prunes the nodes which no longer hold any
+     * subscriptions or children. Must be called while holding the lock of this storage.
+     *
+     * @param subscriptionID    subscription id
+     * @param subscriptionEntry the entry of the subscription
+     */
+    private void removeEntry(String subscriptionID, SubscriptionEntry subscriptionEntry) {
+        this.subscriptionIDEntryMap.remove(subscriptionID);
+        subscriptionEntry.node.getSubscriptions(subscriptionEntry.wildCard).remove(subscriptionID);
+
+        TrieNode node = subscriptionEntry.node;
+        while (node != this.root && node.isEmpty()) {
+            node.parent.children.remove(node.segment, node);
+            node = node.parent;
+        }
+    }
+
+    private String getTopicName(String topicName) {
+        if (!topicName.startsWith("/")) {
+            topicName = "/" + topicName;
+        }
+
+        if (topicName.endsWith("/") && (topicName.length() != 1)) {
+            topicName = topicName.substring(0, topicName.lastIndexOf("/"));
+        }
+        return topicName;
+    }
+
+    /**
+     * position of a subscription in the trie
+     */
+    private enum WildCard {
+        NONE, STAR, HASH
+    }
+
+    private static final class SubscriptionEntry {
+
+        private final TrieNode node;
+        private final WildCard wildCard;
+
+        private SubscriptionEntry(TrieNode node, WildCard wildCard) {
+            this.node = node;
+            this.wildCard = wildCard;
+        }
+    }
+
+    /**
+     * one level of the topic hierarchy
+     */
+    private static final class TrieNode {
+
+        private final TrieNode parent;
+        private final String segment;
+        private final Map<String, TrieNode> children;
+
+        /**
+         * subscriptions to this topic
+         */
+        private final Map<String, Subscription> exactSubscriptions;
+
+        /**
+         * subscriptions to this topic/*
+         */
+        private final Map<String, Subscription> starSubscriptions;
+
+        /**
+         * subscriptions to this topic/#
+         */
+        private final Map<String, Subscription> hashSubscriptions;
+
+        private TrieNode(TrieNode parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+            this.children = new ConcurrentHashMap<String, TrieNode>();
+            this.exactSubscriptions = new ConcurrentHashMap<String, Subscription>();
+            this.starSubscriptions = new ConcurrentHashMap<String, Subscription>();
+            this.hashSubscriptions = new ConcurrentHashMap<String, Subscription>();
+        }
+
+        private TrieNode getOrCreateChild(String childSegment) {
+            TrieNode child = this.children.get(childSegment);
+            if (child == null) {
+                child = new TrieNode(this, childSegment);
+                this.children.put(childSegment, child);
+            }
+            return child;
+        }
+
+        private Map<String, Subscription> getSubscriptions(WildCard wildCard) {
+            switch (wildCard) {
+                case STAR:
+                    return this.starSubscriptions;
+                case HASH:
+                    return this.hashSubscriptions;
+                default:
+                    return this.exactSubscriptions;
+            }
+        }
+
+        private boolean isEmpty() {
+            return this.children.isEmpty() && this.exactSubscriptions.isEmpty()
+                   && this.starSubscriptions.isEmpty() && this.hashSubscriptions.isEmpty();
+        }
+    }
+}
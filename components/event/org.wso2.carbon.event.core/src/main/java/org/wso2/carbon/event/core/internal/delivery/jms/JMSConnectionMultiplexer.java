@@ -0,0 +1,337 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery.jms;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+import javax.jms.Session;
+import javax.jms.TopicConnection;
+import javax.jms.TopicSession;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * shares the topic connections among the jms subscriptions. Each subscription has its own session
+ * and subscriber, but all the subscriptions of a user use one connection. Connections are keyed
+ * by the tenant qualified user name, which also determines the credentials used to connect.
+ * <p/>
+ * Connections are reference counted and closed when the last subscription using them is
+ * closed. A connection is created by the first subscription of the user, outside of the
+ * multiplexer lock, and the other subscriptions of the user wait for it. A connection reported
+ * as failed by its {@link ExceptionListener} is replaced in the background and the sessions and
+ * subscribers of its subscriptions are created again with the new one.
+ */
+@Deprecated
+public class JMSConnectionMultiplexer {
+
+    private static final Log log = LogFactory.getLog(JMSConnectionMultiplexer.class);
+
+    public static final long DEFAULT_RECONNECT_INTERVAL = 5000;
+
+    private JMSDeliveryManager deliveryManager;
+
+    private Map<String, SharedConnection> userNameConnectionMap;
+
+    private long reconnectInterval;
+
+    private ScheduledExecutorService reconnectExecutor;
+
+    public JMSConnectionMultiplexer(JMSDeliveryManager deliveryManager) {
+        this(deliveryManager, DEFAULT_RECONNECT_INTERVAL);
+    }
+
+    /**
+     * @param deliveryManager   delivery manager which creates the connections
+     * @param reconnectInterval milli seconds to wait before connecting again if a failed
+     *                          connection can not be replaced
+     */
+    public JMSConnectionMultiplexer(JMSDeliveryManager deliveryManager, long reconnectInterval) {
+        this.deliveryManager = deliveryManager;
+        this.reconnectInterval = reconnectInterval;
+        this.userNameConnectionMap = new HashMap<String, SharedConnection>();
+        this.reconnectExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "JMSConnectionMultiplexerReconnector");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * gets the connection of the user, creating it if this is the first subscription of the
+     * user. Every call must be matched with a {@link SharedConnection#release()}.
+     *
+     * @param userName owner of the subscription
+     * @return the shared connection
+     * @throws EventBrokerException if can not connect to the message broker
+     */
+    public SharedConnection acquire(String userName) throws EventBrokerException {
+        SharedConnection sharedConnection;
+        boolean created = false;
+        synchronized (this) {
+            sharedConnection = this.userNameConnectionMap.get(userName);
+            if (sharedConnection == null) {
+                sharedConnection = new SharedConnection(userName);
+                this.userNameConnectionMap.put(userName, sharedConnection);
+                created = true;
+            }
+            sharedConnection.referenceCount++;
+        }
+
+        if (created) {
+            sharedConnection.connectTask.run();
+        }
+        try {
+            sharedConnection.awaitConnection();
+        } catch (EventBrokerException e) {
+            // the next subscription of the user tries again with a new connection
+            synchronized (this) {
+                sharedConnection.referenceCount--;
+                if (this.userNameConnectionMap.get(userName) == sharedConnection) {
+                    this.userNameConnectionMap.remove(userName);
+                }
+            }
+            throw e;
+        }
+        return sharedConnection;
+    }
+
+    /**
+     * @return number of open connections
+     */
+    public synchronized int getConnectionCount() {
+        return this.userNameConnectionMap.size();
+    }
+
+    /**
+     * stops replacing the failed connections. Connections are closed by releasing them.
+     */
+    public void close() {
+        this.reconnectExecutor.shutdownNow();
+    }
+
+    private void release(SharedConnection sharedConnection) throws EventBrokerException {
+        synchronized (this) {
+            sharedConnection.referenceCount--;
+            if (sharedConnection.referenceCount > 0) {
+                return;
+            }
+            if (this.userNameConnectionMap.get(sharedConnection.userName) == sharedConnection) {
+                this.userNameConnectionMap.remove(sharedConnection.userName);
+            }
+        }
+
+        try {
+            sharedConnection.close();
+        } catch (JMSException e) {
+            throw new EventBrokerException("Can not close connections ", e);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Closed the subscription connection of user " + sharedConnection.userName);
+        }
+    }
+
+    private void scheduleReconnect(final SharedConnection sharedConnection, long delay) {
+        try {
+            this.reconnectExecutor.schedule(new Runnable() {
+                public void run() {
+                    if (!sharedConnection.reconnect()) {
+                        scheduleReconnect(sharedConnection, reconnectInterval);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Multiplexer is closed, the connection of user " + sharedConnection.userName
+                      + " is not replaced");
+        }
+    }
+
+    /**
+     * a topic connection used by several subscriptions
+     */
+    public final class SharedConnection implements ExceptionListener {
+
+        private final String userName;
+        private final FutureTask<TopicConnection> connectTask;
+        private final List<JMSSubscriptionDetails> subscriptions;
+        private int referenceCount;
+
+        private TopicConnection topicConnection;
+        private boolean reconnecting;
+        private boolean closed;
+
+        private SharedConnection(final String userName) {
+            this.userName = userName;
+            this.subscriptions = new ArrayList<JMSSubscriptionDetails>();
+            this.connectTask = new FutureTask<TopicConnection>(new Callable<TopicConnection>() {
+                public TopicConnection call() throws EventBrokerException {
+                    return connect();
+                }
+            });
+        }
+
+        public synchronized TopicSession createTopicSession() throws JMSException {
+            return this.topicConnection.createTopicSession(false, Session.AUTO_ACKNOWLEDGE);
+        }
+
+        /**
+         * creates a durable subscriber with a session of its own. The subscriber is created
+         * again whenever the connection is replaced.
+         *
+         * @param topicName       jms topic name
+         * @param subscriptionId  name of the durable subscriber
+         * @param messageListener listener of the subscriber
+         * @return the subscription, which must be closed to release this connection
+         * @throws JMSException if can not create the session or the subscriber
+         */
+        public synchronized JMSSubscriptionDetails subscribe(String topicName, String subscriptionId,
+                                                             JMSMessageListener messageListener)
+                throws JMSException {
+            JMSSubscriptionDetails subscriptionDetails =
+                    new JMSSubscriptionDetails(topicName, subscriptionId, messageListener, this);
+            subscriptionDetails.open(deliveryManager);
+            this.subscriptions.add(subscriptionDetails);
+            return subscriptionDetails;
+        }
+
+        /**
+         * replaces the failed connection in the background
+         */
+        public void onException(JMSException e) {
+            synchronized (this) {
+                if (this.closed || this.reconnecting) {
+                    return;
+                }
+                this.reconnecting = true;
+            }
+            log.warn("Subscription connection to the message broker for user " + this.userName
+                     + " failed, connecting again", e);
+            scheduleReconnect(this, 0);
+        }
+
+        /**
+         * gives up this connection. The connection is closed if no other subscription uses it.
+         *
+         * @throws EventBrokerException if can not close the connection
+         */
+        public void release() throws EventBrokerException {
+            JMSConnectionMultiplexer.this.release(this);
+        }
+
+        synchronized TopicConnection getTopicConnection() {
+            return this.topicConnection;
+        }
+
+        synchronized void unsubscribe(JMSSubscriptionDetails subscriptionDetails) throws JMSException {
+            this.subscriptions.remove(subscriptionDetails);
+            subscriptionDetails.closeSubscriber();
+        }
+
+        private TopicConnection connect() throws EventBrokerException {
+            TopicConnection newConnection = deliveryManager.getTopicConnection(this.userName);
+            try {
+                newConnection.setExceptionListener(this);
+            } catch (JMSException e) {
+                log.warn("Can not register the exception listener for the subscription connection of user "
+                         + this.userName + ", failed connections are not replaced", e);
+            }
+            synchronized (this) {
+                this.topicConnection = newConnection;
+            }
+            return newConnection;
+        }
+
+        private void awaitConnection() throws EventBrokerException {
+            try {
+                this.connectTask.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EventBrokerException("Interrupted while connecting to the message broker", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof EventBrokerException) {
+                    throw (EventBrokerException) e.getCause();
+                }
+                throw new EventBrokerException("Can not create topic connection", e.getCause());
+            }
+        }
+
+        /**
+         * @return false if the connection could not be replaced and must be tried again later
+         */
+        private synchronized boolean reconnect() {
+            if (this.closed) {
+                return true;
+            }
+            // closed first, the broker may still hold the client id of the failed connection
+            closeQuietly(this.topicConnection);
+            try {
+                connect();
+            } catch (EventBrokerException e) {
+                log.warn("Can not connect to the message broker for user " + this.userName
+                         + ", trying again in " + reconnectInterval + " ms", e);
+                return false;
+            }
+            for (JMSSubscriptionDetails subscriptionDetails : this.subscriptions) {
+                try {
+                    subscriptionDetails.open(deliveryManager);
+                } catch (JMSException e) {
+                    log.error("Can not subscribe again to topic " + subscriptionDetails.getTopicName()
+                              + " for subscription " + subscriptionDetails.getSubscriptionId(), e);
+                }
+            }
+            this.reconnecting = false;
+            log.info("Connected again to the message broker for user " + this.userName + " with "
+                     + this.subscriptions.size() + " subscriptions");
+            return true;
+        }
+
+        private void close() throws JMSException {
+            TopicConnection connection;
+            synchronized (this) {
+                this.closed = true;
+                connection = this.topicConnection;
+            }
+            if (connection != null) {
+                connection.stop();
+                connection.close();
+            }
+        }
+
+        private void closeQuietly(TopicConnection connection) {
+            try {
+                connection.close();
+            } catch (JMSException e) {
+                log.debug("Can not close the failed connection of user " + this.userName, e);
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.event.core.Message;
 import org.wso2.carbon.event.core.delivery.DeliveryManager;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.exception.PartialPublishException;
 import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.wso2.carbon.event.core.notify.NotificationManager;
 import org.wso2.carbon.event.core.subscription.Subscription;
@@ -31,6 +32,9 @@ import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 import javax.jms.*;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
@@ -43,13 +47,31 @@ public abstract class JMSDeliveryManager implements DeliveryManager {
 
      private static final Log log = LogFactory.getLog(JMSDeliveryManager.class);
 
+    public static final long DEFAULT_PUBLISHER_IDLE_TIMEOUT = 60000;
+    public static final int DEFAULT_MAX_IDLE_PUBLISHERS_PER_TOPIC = 10;
+
     private NotificationManager notificationManager;
 
     private Map<String, JMSSubscriptionDetails> subscriptionIDSessionDetailsMap;
 
+    /**
+     * subscriptions of the same user share one connection
+     */
+    private JMSConnectionMultiplexer connectionMultiplexer;
+
+    private long publisherIdleTimeout = DEFAULT_PUBLISHER_IDLE_TIMEOUT;
+
+    private int maxIdlePublishersPerTopic = DEFAULT_MAX_IDLE_PUBLISHERS_PER_TOPIC;
+
+    /**
+     * connections and publishers reused across publish calls. created on first publish.
+     */
+    private volatile JMSPublisherCache publisherCache;
+
     protected JMSDeliveryManager() {
         this.subscriptionIDSessionDetailsMap
                 = new ConcurrentHashMap<String, JMSSubscriptionDetails>();
+        this.connectionMultiplexer = new JMSConnectionMultiplexer(this);
     }
 
     protected abstract Properties getInitialContextProperties(String userName, String password);
@@ -104,36 +126,15 @@ public abstract class JMSDeliveryManager implements DeliveryManager {
         }
         JMSMessageListener jmsMessageListener =
                 new JMSMessageListener(this.notificationManager, subscription);
+        JMSConnectionMultiplexer.SharedConnection sharedConnection =
+                this.connectionMultiplexer.acquire(subscription.getOwner());
         try {
-            TopicConnection topicConnection = getTopicConnection(subscription.getOwner());
-            TopicSession topicSession =
-                    topicConnection.createTopicSession(false, Session.AUTO_ACKNOWLEDGE);
-
-            String topicName = "";
-            if (subscription.getTenantDomain() != null && (!subscription.getTenantDomain().equals(org.wso2.carbon.base.
-                    MultitenantConstants.SUPER_TENANT_DOMAIN_NAME))) {
-
-                if (!subscription.getTopicName().startsWith("/")) {
-                    topicName = getTopicName(subscription.getTenantDomain() + "/" + subscription.getTopicName());
-                } else {
-                    topicName = getTopicName(subscription.getTenantDomain() + subscription.getTopicName());
-                }
-            } else {
-                topicName = getTopicName(subscription.getTopicName());
-            }
-            Topic topic = topicSession.createTopic(topicName);
-            //Some times we are not getting the proper topic with the required syntax, if it is not
-            //appropriate we need to check and add the BURL syntax to fix the issue https://wso2.org/jira/browse/MB-185
-            if(!topic.toString().startsWith("topic://amq.topic")){
-                topic = topicSession.createTopic("BURL:"+topicName);
-            }
-            TopicSubscriber topicSubscriber =
-                             topicSession.createDurableSubscriber(topic, subscription.getId());
-            topicSubscriber.setMessageListener(jmsMessageListener);
-
+            String topicName =
+                    getTenantTopicName(subscription.getTenantDomain(), subscription.getTopicName());
             this.subscriptionIDSessionDetailsMap.put(subscription.getId(),
-                    new JMSSubscriptionDetails(topicSubscriber, topicSession, topicConnection));
+                    sharedConnection.subscribe(topicName, subscription.getId(), jmsMessageListener));
         } catch (JMSException e) {
+            sharedConnection.release();
             throw new EventBrokerException("Can not subscribe to topic " + subscription.getTopicName() + " " + e.getMessage(), e);
         }
     }
@@ -143,43 +144,68 @@ public abstract class JMSDeliveryManager implements DeliveryManager {
     }
 
     public void publish(Message message, String topicName, int deliveryMode) throws EventBrokerException {
+        publish(Collections.singletonList(message), topicName, deliveryMode);
+    }
+
+    public void publish(List<Message> messages, String topicName, int deliveryMode) throws EventBrokerException {
 
         if (isDeactivated()){
             return;
         }
 
-        try {
-            String userName = getLoggedInUserName();
-            if ((userName == null) || (userName.equals(""))) {
-                // use the system user name
-                userName = CarbonConstants.REGISTRY_SYSTEM_USERNAME;
-            }
-
-            TopicConnection topicConnection = getTopicConnection(userName);
-            TopicSession topicSession =
-                    topicConnection.createTopicSession(false, Session.AUTO_ACKNOWLEDGE);
+        String userName = getLoggedInUserName();
+        if ((userName == null) || (userName.equals(""))) {
+            // use the system user name
+            userName = CarbonConstants.REGISTRY_SYSTEM_USERNAME;
+        }
+        topicName = getTenantTopicName(EventBrokerHolder.getInstance().getTenantDomain(), topicName);
 
-            String tenantDomain= EventBrokerHolder.getInstance().getTenantDomain();
-            if (tenantDomain != null && (!tenantDomain.equals(org.wso2.carbon.base.MultitenantConstants.SUPER_TENANT_DOMAIN_NAME))) {
-                if (!topicName.startsWith("/")) {
-                    topicName = getTopicName(tenantDomain + "/" + topicName);
-                } else {
-                    topicName = getTopicName(tenantDomain + topicName);
+        // the jms broker does the matching, so the batch is sent message by message over the
+        // cached publishers
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            try {
+                try {
+                    publish(message, userName, topicName, deliveryMode);
+                } catch (JMSException e) {
+                    // the cached connection may have been dropped by the broker without notifying
+                    // the exception listener. the message has not been sent yet and the connection
+                    // is marked as broken, so try once more with a new connection
+                    log.debug("Publishing to topic " + topicName + " failed, retrying with a new connection", e);
+                    try {
+                        publish(message, userName, topicName, deliveryMode);
+                    } catch (JMSException e1) {
+                        throw new EventBrokerException("Can not publish to topic " + topicName + " " + e1.getMessage(), e1);
+                    }
                 }
-            } else {
-                topicName = getTopicName(topicName);
+            } catch (EventBrokerException e) {
+                if (messages.size() == 1) {
+                    throw e;
+                }
+                throw new PartialPublishException("Published " + i + " of " + messages.size()
+                        + " messages to topic " + topicName + ", " + e.getMessage(), e, i,
+                        new ArrayList<Message>(messages.subList(i, messages.size())));
             }
+        }
+    }
 
-            Topic topic = topicSession.createTopic(topicName);
-            //Some times we are not getting the proper topic with the required syntax, if it is not
-            //appropriate we need to check and add the BURL syntax to fix the issue https://wso2.org/jira/browse/MB-185
-            if (!topic.toString().startsWith("topic://amq.topic")) {
-                topic = topicSession.createTopic("BURL:" + topicName);
-            }
-            TopicPublisher topicPublisher = topicSession.createPublisher(topic);
-            topicPublisher.setDeliveryMode(deliveryMode);
-            TextMessage textMessage =
-                    topicSession.createTextMessage(message.getMessage().toString());
+    /**
+     * publishes a message with a cached publisher.
+     *
+     * @throws JMSException         if the message could not be prepared, then it is not sent and
+     *                              can be published again
+     * @throws EventBrokerException if the send itself failed. the broker may have received the
+     *                              message, so it must not be published again.
+     */
+    private void publish(Message message, String userName, String topicName, int deliveryMode)
+            throws EventBrokerException, JMSException {
+
+        JMSPublisherCache.CachedPublisher cachedPublisher =
+                getPublisherCache().borrowPublisher(userName, topicName);
+        boolean failed = true;
+        try {
+            TextMessage textMessage = cachedPublisher.getTopicSession().createTextMessage(
+                    message.getSerializedMessage().getText());
 
             Map<String, String> properties = message.getProperties();
             for (String key : properties.keySet()){
@@ -192,16 +218,61 @@ public abstract class JMSDeliveryManager implements DeliveryManager {
                                             CarbonContext.getThreadLocalCarbonContext().getTenantDomain());
             }
 
-            topicPublisher.publish(textMessage);
-            topicPublisher.close();
-            topicSession.close();
-            topicConnection.stop();
-            topicConnection.close();
-        } catch (JMSException e) {
-            throw new EventBrokerException("Can not publish to topic " + topicName + " " + e.getMessage(), e);
+            // publishers are shared across the calls, so the delivery mode is given per message
+            try {
+                cachedPublisher.getTopicPublisher().publish(textMessage, deliveryMode,
+                        javax.jms.Message.DEFAULT_PRIORITY, javax.jms.Message.DEFAULT_TIME_TO_LIVE);
+            } catch (JMSException e) {
+                throw new EventBrokerException("Can not publish to topic " + topicName + " " + e.getMessage(), e);
+            }
+            failed = false;
+        } finally {
+            getPublisherCache().returnPublisher(cachedPublisher, failed);
         }
     }
 
+    private JMSPublisherCache getPublisherCache() {
+        if (this.publisherCache == null) {
+            synchronized (this) {
+                if (this.publisherCache == null) {
+                    this.publisherCache = new JMSPublisherCache(this,
+                            this.publisherIdleTimeout, this.maxIdlePublishersPerTopic);
+                }
+            }
+        }
+        return this.publisherCache;
+    }
+
+    /**
+     * prefixes the topic name with the tenant domain for the tenants and converts it to the jms
+     * topic name.
+     *
+     * @param tenantDomain tenant domain of the topic
+     * @param topicName    event broker topic name
+     * @return jms topic name
+     */
+    protected String getTenantTopicName(String tenantDomain, String topicName) {
+        if (tenantDomain != null && (!tenantDomain.equals(org.wso2.carbon.base.MultitenantConstants.SUPER_TENANT_DOMAIN_NAME))) {
+            if (!topicName.startsWith("/")) {
+                return getTopicName(tenantDomain + "/" + topicName);
+            } else {
+                return getTopicName(tenantDomain + topicName);
+            }
+        } else {
+            return getTopicName(topicName);
+        }
+    }
+
+    protected Topic createTopic(TopicSession topicSession, String topicName) throws JMSException {
+        Topic topic = topicSession.createTopic(topicName);
+        //Some times we are not getting the proper topic with the required syntax, if it is not
+        //appropriate we need to check and add the BURL syntax to fix the issue https://wso2.org/jira/browse/MB-185
+        if (!topic.toString().startsWith("topic://amq.topic")) {
+            topic = topicSession.createTopic("BURL:" + topicName);
+        }
+        return topic;
+    }
+
     public void unSubscribe(String id) throws EventBrokerException {
 
         JMSSubscriptionDetails jmsSubscriptionDetails =
@@ -235,6 +306,11 @@ public abstract class JMSDeliveryManager implements DeliveryManager {
                 this.subscriptionIDSessionDetailsMap.values()) {
             jmsSubscriptionDetails.close();
         }
+
+        this.connectionMultiplexer.close();
+        if (this.publisherCache != null) {
+            this.publisherCache.close();
+        }
     }
 
     private  String getLoggedInUserName() {
@@ -256,6 +332,22 @@ public abstract class JMSDeliveryManager implements DeliveryManager {
         isDeactivated = deactivated;
     }
 
+    public long getPublisherIdleTimeout() {
+        return publisherIdleTimeout;
+    }
+
+    public void setPublisherIdleTimeout(long publisherIdleTimeout) {
+        this.publisherIdleTimeout = publisherIdleTimeout;
+    }
+
+    public int getMaxIdlePublishersPerTopic() {
+        return maxIdlePublishersPerTopic;
+    }
+
+    public void setMaxIdlePublishersPerTopic(int maxIdlePublishersPerTopic) {
+        this.maxIdlePublishersPerTopic = maxIdlePublishersPerTopic;
+    }
+
     public void initializeTenant() throws EventBrokerException {
         // there is no tenant specific initialization for jms deliveary manager
     }
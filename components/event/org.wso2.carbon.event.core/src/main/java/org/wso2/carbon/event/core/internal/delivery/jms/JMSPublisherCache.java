@@ -0,0 +1,430 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery.jms;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+import javax.jms.Session;
+import javax.jms.Topic;
+import javax.jms.TopicConnection;
+import javax.jms.TopicPublisher;
+import javax.jms.TopicSession;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * keeps the topic connections and publishers used by the jms delivery manager to publish
+ * messages. There is one connection per user (user names are tenant qualified, hence connections
+ * are per tenant) and a pool of idle publishers per topic within each connection.
+ * <p/>
+ * A jms session must only be used by one thread at a time, so a publisher is borrowed for one
+ * publish and returned afterwards. Publishers and connections which are not used within the idle
+ * timeout are closed by a background task. A connection reported as failed by its
+ * {@link ExceptionListener}, or whose publisher failed, is marked as broken so that a new one is
+ * created on the next publish. A broken connection is closed once the publishers borrowed from it
+ * by other threads are returned.
+ */
+@Deprecated
+public class JMSPublisherCache {
+
+    private static final Log log = LogFactory.getLog(JMSPublisherCache.class);
+
+    private static final long MIN_EVICTION_INTERVAL = 1000;
+
+    private JMSDeliveryManager deliveryManager;
+
+    private long idleTimeout;
+
+    private int maxIdlePublishersPerTopic;
+
+    private ConcurrentMap<String, CachedConnection> userNameConnectionMap;
+
+    private ScheduledExecutorService evictionExecutor;
+
+    public JMSPublisherCache(JMSDeliveryManager deliveryManager,
+                             long idleTimeout,
+                             int maxIdlePublishersPerTopic) {
+        this.deliveryManager = deliveryManager;
+        this.idleTimeout = idleTimeout;
+        this.maxIdlePublishersPerTopic = maxIdlePublishersPerTopic;
+        this.userNameConnectionMap = new ConcurrentHashMap<String, CachedConnection>();
+
+        this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "JMSPublisherCacheEvictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long evictionInterval = Math.max(idleTimeout / 2, MIN_EVICTION_INTERVAL);
+        this.evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    evictIdle();
+                } catch (Throwable e) {
+                    log.error("Can not evict the idle jms publishers ", e);
+                }
+            }
+        }, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * borrows a publisher to the given topic. The publisher must be given back with
+     * {@link #returnPublisher(CachedPublisher, boolean)} once the message is published.
+     *
+     * @param userName  user to connect to the message broker
+     * @param topicName jms topic name
+     * @return a publisher which is used only by the caller until it is returned
+     * @throws EventBrokerException if can not connect to the message broker
+     * @throws JMSException         if a publisher can not be created with the cached connection.
+     *                              the connection is marked as broken, so the caller can try again.
+     */
+    public CachedPublisher borrowPublisher(String userName, String topicName)
+            throws EventBrokerException, JMSException {
+        while (true) {
+            CachedConnection cachedConnection = getConnection(userName);
+            // the connection may have been closed after it was taken from the map. in that
+            // case it has been removed from the map as well, so try again with a new one
+            if (!cachedConnection.acquire()) {
+                continue;
+            }
+            try {
+                return cachedConnection.getPublisher(topicName);
+            } catch (JMSException e) {
+                invalidate(cachedConnection);
+                release(cachedConnection);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * gives back a borrowed publisher.
+     *
+     * @param cachedPublisher borrowed publisher
+     * @param failed          true if publishing with this publisher failed. Then the connection
+     *                        is marked as broken since it can not be trusted any more, and closed
+     *                        once no other thread uses it.
+     */
+    public void returnPublisher(CachedPublisher cachedPublisher, boolean failed) {
+        CachedConnection cachedConnection = cachedPublisher.cachedConnection;
+        try {
+            if (failed) {
+                cachedPublisher.close();
+                invalidate(cachedConnection);
+            } else if (!cachedConnection.offer(cachedPublisher)) {
+                cachedPublisher.close();
+            }
+        } finally {
+            release(cachedConnection);
+        }
+    }
+
+    /**
+     * closes all the publishers and connections. The cache can not be used after this.
+     */
+    public void close() {
+        this.evictionExecutor.shutdownNow();
+        for (CachedConnection cachedConnection : this.userNameConnectionMap.values()) {
+            invalidate(cachedConnection);
+        }
+    }
+
+    private CachedConnection getConnection(String userName) throws EventBrokerException {
+        CachedConnection cachedConnection = this.userNameConnectionMap.get(userName);
+        if ((cachedConnection != null) && cachedConnection.isValid()) {
+            return cachedConnection;
+        }
+
+        // only one thread creates the connection for a user
+        synchronized (this) {
+            cachedConnection = this.userNameConnectionMap.get(userName);
+            if ((cachedConnection == null) || !cachedConnection.isValid()) {
+                TopicConnection topicConnection = this.deliveryManager.getTopicConnection(userName);
+                cachedConnection = new CachedConnection(userName, topicConnection);
+                try {
+                    topicConnection.setExceptionListener(cachedConnection);
+                } catch (JMSException e) {
+                    log.warn("Can not register the exception listener for the connection of user "
+                             + userName + ", failed connections will be detected on publish", e);
+                }
+                this.userNameConnectionMap.put(userName, cachedConnection);
+            }
+            return cachedConnection;
+        }
+    }
+
+    /**
+     * marks the connection as broken. It is closed at once if no publisher is borrowed from it,
+     * otherwise by the thread which returns the last one.
+     */
+    private void invalidate(CachedConnection cachedConnection) {
+        if (cachedConnection.invalidate()) {
+            this.userNameConnectionMap.remove(cachedConnection.userName, cachedConnection);
+            if (cachedConnection.closeIfUnused()) {
+                cachedConnection.close();
+            }
+        }
+    }
+
+    private void release(CachedConnection cachedConnection) {
+        if (cachedConnection.release()) {
+            cachedConnection.close();
+        }
+    }
+
+    /**
+     * @return number of connections to the message broker which are not broken
+     */
+    int getConnectionCount() {
+        return this.userNameConnectionMap.size();
+    }
+
+    private void evictIdle() {
+        evictIdle(System.currentTimeMillis() - this.idleTimeout);
+    }
+
+    /**
+     * closes the publishers and connections which are not used since the given time
+     */
+    void evictIdle(long idleSince) {
+        for (CachedConnection cachedConnection : this.userNameConnectionMap.values()) {
+            cachedConnection.evictIdlePublishers(idleSince);
+            if (cachedConnection.invalidateIfIdle(idleSince)) {
+                this.userNameConnectionMap.remove(cachedConnection.userName, cachedConnection);
+                if (cachedConnection.closeIfUnused()) {
+                    cachedConnection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * topic connection of a user together with its idle publishers
+     */
+    private final class CachedConnection implements ExceptionListener {
+
+        private final String userName;
+        private final TopicConnection topicConnection;
+        private final Map<String, LinkedBlockingDeque<CachedPublisher>> topicNamePublishersMap;
+
+        private boolean valid = true;
+        private boolean closed;
+        private int borrowedPublishers;
+        private long lastUsedTime;
+
+        private CachedConnection(String userName, TopicConnection topicConnection) {
+            this.userName = userName;
+            this.topicConnection = topicConnection;
+            this.topicNamePublishersMap =
+                    new ConcurrentHashMap<String, LinkedBlockingDeque<CachedPublisher>>();
+            this.lastUsedTime = System.currentTimeMillis();
+        }
+
+        public void onException(JMSException e) {
+            log.warn("Connection to the message broker for user " + this.userName
+                     + " failed, a new connection will be created on next publish", e);
+            JMSPublisherCache.this.invalidate(this);
+        }
+
+        private synchronized boolean isValid() {
+            return this.valid;
+        }
+
+        private synchronized boolean acquire() {
+            if (!this.valid) {
+                return false;
+            }
+            this.borrowedPublishers++;
+            return true;
+        }
+
+        /**
+         * @return true if the connection is broken and this was its last borrowed publisher, then
+         *         the caller must close it
+         */
+        private synchronized boolean release() {
+            this.borrowedPublishers--;
+            this.lastUsedTime = System.currentTimeMillis();
+            return closeIfUnused();
+        }
+
+        /**
+         * @return true if the broken connection is not used by any thread and is not closed yet,
+         *         then the caller must close it
+         */
+        private synchronized boolean closeIfUnused() {
+            if (this.valid || this.closed || (this.borrowedPublishers > 0)) {
+                return false;
+            }
+            this.closed = true;
+            return true;
+        }
+
+        /**
+         * @return true if this call changed the connection to invalid.
+         */
+        private synchronized boolean invalidate() {
+            if (!this.valid) {
+                return false;
+            }
+            this.valid = false;
+            return true;
+        }
+
+        private synchronized boolean invalidateIfIdle(long idleSince) {
+            if (this.valid && (this.borrowedPublishers == 0) && (this.lastUsedTime < idleSince)
+                    && this.topicNamePublishersMap.isEmpty()) {
+                this.valid = false;
+                return true;
+            }
+            return false;
+        }
+
+        private CachedPublisher getPublisher(String topicName) throws JMSException {
+            LinkedBlockingDeque<CachedPublisher> idlePublishers =
+                    this.topicNamePublishersMap.get(topicName);
+            if (idlePublishers != null) {
+                CachedPublisher cachedPublisher = idlePublishers.pollFirst();
+                if (cachedPublisher != null) {
+                    return cachedPublisher;
+                }
+            }
+
+            TopicSession topicSession =
+                    this.topicConnection.createTopicSession(false, Session.AUTO_ACKNOWLEDGE);
+            try {
+                Topic topic = deliveryManager.createTopic(topicSession, topicName);
+                TopicPublisher topicPublisher = topicSession.createPublisher(topic);
+                return new CachedPublisher(this, topicName, topicSession, topicPublisher);
+            } catch (JMSException e) {
+                try {
+                    topicSession.close();
+                } catch (JMSException ignore) {
+                    // the original exception is thrown
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * @return false if the publisher is not kept and must be closed by the caller
+         */
+        private boolean offer(CachedPublisher cachedPublisher) {
+            if (!isValid()) {
+                return false;
+            }
+            cachedPublisher.lastUsedTime = System.currentTimeMillis();
+            // the eviction removes the empty pools under the same lock, so the publisher is never
+            // added to a pool which is no longer in the map
+            synchronized (this.topicNamePublishersMap) {
+                LinkedBlockingDeque<CachedPublisher> idlePublishers =
+                        this.topicNamePublishersMap.get(cachedPublisher.topicName);
+                if (idlePublishers == null) {
+                    idlePublishers = new LinkedBlockingDeque<CachedPublisher>(maxIdlePublishersPerTopic);
+                    this.topicNamePublishersMap.put(cachedPublisher.topicName, idlePublishers);
+                }
+                // most recently used publishers are taken first so that the others become idle
+                return idlePublishers.offerFirst(cachedPublisher);
+            }
+        }
+
+        private void evictIdlePublishers(long idleSince) {
+            synchronized (this.topicNamePublishersMap) {
+                for (Map.Entry<String, LinkedBlockingDeque<CachedPublisher>> entry :
+                        this.topicNamePublishersMap.entrySet()) {
+                    LinkedBlockingDeque<CachedPublisher> idlePublishers = entry.getValue();
+                    for (CachedPublisher cachedPublisher : idlePublishers) {
+                        if ((cachedPublisher.lastUsedTime < idleSince)
+                                && idlePublishers.remove(cachedPublisher)) {
+                            cachedPublisher.close();
+                        }
+                    }
+                    if (idlePublishers.isEmpty()) {
+                        this.topicNamePublishersMap.remove(entry.getKey());
+                    }
+                }
+            }
+        }
+
+        private void close() {
+            for (LinkedBlockingDeque<CachedPublisher> idlePublishers :
+                    this.topicNamePublishersMap.values()) {
+                CachedPublisher cachedPublisher;
+                while ((cachedPublisher = idlePublishers.pollFirst()) != null) {
+                    cachedPublisher.close();
+                }
+            }
+            try {
+                this.topicConnection.stop();
+                this.topicConnection.close();
+            } catch (JMSException e) {
+                log.warn("Can not close the connection to the message broker for user "
+                         + this.userName, e);
+            }
+        }
+    }
+
+    /**
+     * a session and a publisher to one topic
+     */
+    public final class CachedPublisher {
+
+        private final CachedConnection cachedConnection;
+        private final String topicName;
+        private final TopicSession topicSession;
+        private final TopicPublisher topicPublisher;
+        private volatile long lastUsedTime;
+
+        private CachedPublisher(CachedConnection cachedConnection,
+                                String topicName,
+                                TopicSession topicSession,
+                                TopicPublisher topicPublisher) {
+            this.cachedConnection = cachedConnection;
+            this.topicName = topicName;
+            this.topicSession = topicSession;
+            this.topicPublisher = topicPublisher;
+        }
+
+        public TopicSession getTopicSession() {
+            return topicSession;
+        }
+
+        public TopicPublisher getTopicPublisher() {
+            return topicPublisher;
+        }
+
+        private void close() {
+            try {
+                this.topicPublisher.close();
+                this.topicSession.close();
+            } catch (JMSException e) {
+                log.debug("Can not close the publisher to topic " + this.topicName, e);
+            }
+        }
+    }
+}
@@ -19,46 +19,86 @@ package org.wso2.carbon.event.core.internal.delivery.jms;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
 import org.wso2.carbon.event.core.subscription.Subscription;
 
-import javax.jms.TopicSubscriber;
-import javax.jms.TopicSession;
-import javax.jms.TopicConnection;
 import javax.jms.JMSException;
+import javax.jms.Topic;
+import javax.jms.TopicSession;
+import javax.jms.TopicSubscriber;
 
 /**
  * this class is used to keep the details of the jms subscription
- * to close the connections at the end
+ * to close the connections at the end. The session and the subscriber are created again by the
+ * shared connection when it connects again to the message broker.
  */
 @Deprecated
 public class JMSSubscriptionDetails {
 
+    private String topicName;
+    private String subscriptionId;
+    private JMSMessageListener messageListener;
+    private JMSConnectionMultiplexer.SharedConnection sharedConnection;
+
     private TopicSubscriber topicSubscriber;
     private TopicSession topicSession;
-    private TopicConnection topicConnection;
 
-    public JMSSubscriptionDetails(TopicSubscriber topicSubscriber,
-                                  TopicSession topicSession,
-                                  TopicConnection topicConnection) {
-        this.topicSubscriber = topicSubscriber;
-        this.topicSession = topicSession;
-        this.topicConnection = topicConnection;
+    JMSSubscriptionDetails(String topicName,
+                           String subscriptionId,
+                           JMSMessageListener messageListener,
+                           JMSConnectionMultiplexer.SharedConnection sharedConnection) {
+        this.topicName = topicName;
+        this.subscriptionId = subscriptionId;
+        this.messageListener = messageListener;
+        this.sharedConnection = sharedConnection;
+    }
+
+    public String getTopicName() {
+        return topicName;
+    }
 
+    public String getSubscriptionId() {
+        return subscriptionId;
     }
 
     public void close() throws EventBrokerException {
         try {
-            this.topicSubscriber.close();
-            this.topicSession.close();
-            this.topicConnection.stop();
-            this.topicConnection.close();
+            this.sharedConnection.unsubscribe(this);
         } catch (JMSException e) {
             throw new EventBrokerException("Can not close connections ", e);
+        } finally {
+            // the connection is closed only if no other subscription uses it
+            this.sharedConnection.release();
         }
 
     }
 
     public void renewSubscription(Subscription subscription) throws JMSException {
-        JMSMessageListener jmsMessageListener =
-                (JMSMessageListener) this.topicSubscriber.getMessageListener();
-        jmsMessageListener.renewSubscription(subscription);
+        this.messageListener.renewSubscription(subscription);
+    }
+
+    /**
+     * creates the session and the durable subscriber with the current connection. Called by the
+     * shared connection while holding its lock.
+     */
+    void open(JMSDeliveryManager deliveryManager) throws JMSException {
+        TopicSession newSession = this.sharedConnection.createTopicSession();
+        try {
+            Topic topic = deliveryManager.createTopic(newSession, this.topicName);
+            TopicSubscriber newSubscriber = newSession.createDurableSubscriber(topic, this.subscriptionId);
+            newSubscriber.setMessageListener(this.messageListener);
+            this.topicSession = newSession;
+            this.topicSubscriber = newSubscriber;
+        } catch (JMSException e) {
+            newSession.close();
+            throw e;
+        }
+    }
+
+    /**
+     * called by the shared connection while holding its lock
+     */
+    void closeSubscriber() throws JMSException {
+        if (this.topicSubscriber != null) {
+            this.topicSubscriber.close();
+            this.topicSession.close();
+        }
     }
 }
@@ -51,6 +51,8 @@ public class QpidJMSDeliveryManagerFactory implements DeliveryManagerFactory {
     public static final String EB_CLIENT_ID = "clientID";
     public static final String EB_VIRTUAL_HOST_NAME = "virtualHostName";
     public static final String EB_TYPE = "type";
+    public static final String EB_PUBLISHER_IDLE_TIMEOUT = "publisherIdleTimeout";
+    public static final String EB_MAX_IDLE_PUBLISHERS_PER_TOPIC = "maxIdlePublishersPerTopic";
     public static final String EB_REMOTE_MESSAGE_BROKER_PASSWORD_ALIAS = "eventBrokerConfig.eventBroker.deliveryManager.remoteMessageBroker.password";
 
     public DeliveryManager getDeliveryManger(OMElement config)
@@ -59,6 +61,13 @@ public class QpidJMSDeliveryManagerFactory implements DeliveryManagerFactory {
         String type = config.getAttributeValue(new QName(null, EB_TYPE));
         QpidJMSDeliveryManager qpidJMSDelivaryManager = new QpidJMSDeliveryManager(type);
 
+        // publisher cache settings are optional
+        qpidJMSDelivaryManager.setPublisherIdleTimeout(Long.parseLong(JavaUtil.getValue(config,
+                EB_PUBLISHER_IDLE_TIMEOUT, String.valueOf(JMSDeliveryManager.DEFAULT_PUBLISHER_IDLE_TIMEOUT))));
+        qpidJMSDelivaryManager.setMaxIdlePublishersPerTopic(Integer.parseInt(JavaUtil.getValue(config,
+                EB_MAX_IDLE_PUBLISHERS_PER_TOPIC,
+                String.valueOf(JMSDeliveryManager.DEFAULT_MAX_IDLE_PUBLISHERS_PER_TOPIC))));
+
         if (QpidJMSDeliveryManager.MB_TYPE_REMOTE.equals(type)) {
 
             OMElement remoteQpidAdminService =
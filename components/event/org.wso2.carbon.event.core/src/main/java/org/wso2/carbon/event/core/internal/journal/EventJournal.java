@@ -0,0 +1,674 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.journal;
+
+import org.apache.axiom.om.impl.builder.StAXOMBuilder;
+import org.apache.axiom.om.util.StAXUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.SerializedMessage;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * append only journal of the accepted publishes, kept in memory mapped segment files. A publish
+ * is acknowledged only after its records are written to the disk. The appends which arrive while
+ * the disk is being synced are written with the next sync, so the sync cost is shared by a group
+ * of publishes.
+ * <p/>
+ * The journal tracks the records each subscriber has not received yet and periodically writes
+ * a checkpoint with the offset of the first such record of each subscriber. On startup the
+ * records after the checkpoint are replayed, so an event may be delivered more than once but is
+ * not lost. Segments with only delivered records are deleted.
+ * <p/>
+ * Records of a subscriber are tracked until they are delivered, the subscriber is removed or its
+ * subscription expires. A record which could not be delivered keeps its segment until then.
+ */
+@Deprecated
+public class EventJournal {
+
+    private static final Log log = LogFactory.getLog(EventJournal.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL = 2;
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int CHECKPOINT_VERSION = 1;
+
+    /**
+     * handles the records read back from the journal on startup
+     */
+    public interface RecordHandler {
+
+        void handle(JournalRecord record);
+    }
+
+    private final File directory;
+    private final int segmentSize;
+    private final long flushInterval;
+    private final long checkpointInterval;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition unflushed = this.lock.newCondition();
+    private final Condition flushed = this.lock.newCondition();
+
+    private final List<JournalSegment> segments = new ArrayList<JournalSegment>();
+    private final List<JournalSegment> unforcedSegments = new ArrayList<JournalSegment>();
+    /**
+     * files of the closed segments which could not be deleted yet since they were still mapped
+     */
+    private final List<File> undeletedFiles = new ArrayList<File>();
+    private JournalSegment currentSegment;
+    private long appendOffset;
+    private volatile long flushedOffset;
+    private boolean closed;
+    private Thread flusher;
+
+    /**
+     * records appended but not yet matched with the subscriptions
+     */
+    private final ConcurrentSkipListSet<Long> undispatchedOffsets = new ConcurrentSkipListSet<Long>();
+
+    /**
+     * records dispatched to each subscriber but not yet delivered
+     */
+    private final ConcurrentMap<String, PendingOffsets> pendingOffsets =
+            new ConcurrentHashMap<String, PendingOffsets>();
+
+    /**
+     * state read from the last checkpoint. a subscriber has received the records before its
+     * offset, subscribers without an offset have received all the records before the end offset
+     */
+    private Map<String, Long> checkpointOffsets = new HashMap<String, Long>();
+    private long checkpointEndOffset;
+
+    /**
+     * checkpoints are only written after the records of the last run are replayed
+     */
+    private volatile boolean replayed;
+
+    public EventJournal(File directory, int segmentSize, long flushInterval, long checkpointInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushInterval = flushInterval;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * opens the segments of the journal and starts the thread which syncs them to the disk
+     *
+     * @throws EventBrokerException if the journal files can not be read
+     */
+    public void open() throws EventBrokerException {
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new EventBrokerException("Can not create the event journal directory " + this.directory);
+        }
+        try {
+            readCheckpoint();
+            File[] files = this.directory.listFiles(new FilenameFilter() {
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(JournalSegment.FILE_SUFFIX);
+                }
+            });
+            // file names are zero padded offsets, so they sort in the offset order
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName();
+                long baseOffset = Long.parseLong(name.substring(0, name.length() - JournalSegment.FILE_SUFFIX.length()));
+                this.segments.add(new JournalSegment(this.directory, baseOffset, this.segmentSize));
+            }
+            if (this.segments.isEmpty() ||
+                (this.segments.get(this.segments.size() - 1).getEndOffset() < this.checkpointEndOffset)) {
+                if (!this.segments.isEmpty()) {
+                    log.warn("Event journal " + this.directory + " ends before its checkpoint, "
+                             + "some events may not be replayed");
+                }
+                this.segments.add(new JournalSegment(this.directory, this.checkpointEndOffset, this.segmentSize));
+            }
+        } catch (IOException e) {
+            throw new EventBrokerException("Can not open the event journal " + this.directory, e);
+        }
+        this.currentSegment = this.segments.get(this.segments.size() - 1);
+        this.appendOffset = this.currentSegment.getEndOffset();
+        this.flushedOffset = this.appendOffset;
+
+        this.flusher = new Thread(new Flusher(), "EventJournalFlusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * writes the messages to the journal and waits until they are synced to the disk
+     *
+     * @param tenantId     tenant of the publisher
+     * @param topicName    topic name
+     * @param deliveryMode delivery mode
+     * @param messages     messages to publish
+     * @return journaled messages to be published instead of the given ones
+     * @throws EventBrokerException if the messages can not be written
+     */
+    public List<Message> append(int tenantId, String topicName, int deliveryMode, List<Message> messages)
+            throws EventBrokerException {
+        List<byte[]> payloads = new ArrayList<byte[]>(messages.size());
+        for (Message message : messages) {
+            payloads.add(encode(tenantId, topicName, deliveryMode, message));
+        }
+
+        List<Message> journaledMessages = new ArrayList<Message>(messages.size());
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                throw new EventBrokerException("Event journal is closed");
+            }
+            for (int i = 0; i < payloads.size(); i++) {
+                byte[] payload = payloads.get(i);
+                if (!this.currentSegment.hasRoom(payload.length)) {
+                    rollSegment(payload.length);
+                }
+                long offset = this.currentSegment.append(payload);
+                this.undispatchedOffsets.add(offset);
+                journaledMessages.add(new JournaledMessage(messages.get(i), offset));
+            }
+            this.appendOffset = this.currentSegment.getEndOffset();
+            long endOffset = this.appendOffset;
+            this.unflushed.signal();
+            while (this.flushedOffset < endOffset) {
+                this.flushed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EventBrokerException("Interrupted while writing to the event journal", e);
+        } finally {
+            this.lock.unlock();
+        }
+        return journaledMessages;
+    }
+
+    private void rollSegment(int payloadLength) throws EventBrokerException {
+        if (JournalSegment.RECORD_HEADER_SIZE + payloadLength > this.segmentSize) {
+            throw new EventBrokerException("Message of " + payloadLength
+                                           + " bytes is larger than the event journal segment size");
+        }
+        try {
+            JournalSegment segment =
+                    new JournalSegment(this.directory, this.currentSegment.getEndOffset(), this.segmentSize);
+            this.unforcedSegments.add(this.currentSegment);
+            this.segments.add(segment);
+            this.currentSegment = segment;
+        } catch (IOException e) {
+            throw new EventBrokerException("Can not create a new event journal segment", e);
+        }
+    }
+
+    /**
+     * called after the journaled messages are matched with the subscriptions
+     */
+    public void dispatched(List<Message> messages) {
+        for (Message message : messages) {
+            if (message instanceof JournaledMessage) {
+                this.undispatchedOffsets.remove(((JournaledMessage) message).getOffset());
+            }
+        }
+    }
+
+    /**
+     * starts tracking the delivery of the messages to a subscriber. The records are no longer
+     * tracked once the subscription expires.
+     *
+     * @param subscription subscriber
+     * @param messages     messages matching the subscription
+     * @return messages to be sent. messages replayed from the journal which the subscriber
+     *         received before the restart are left out
+     */
+    public List<Message> track(Subscription subscription, List<Message> messages) {
+        String subscriptionId = subscription.getId();
+        List<Message> messagesToSend = new ArrayList<Message>(messages.size());
+        for (Message message : messages) {
+            if (message instanceof JournaledMessage) {
+                long offset = ((JournaledMessage) message).getOffset();
+                Long checkpointOffset = this.checkpointOffsets.get(subscriptionId);
+                if (offset < ((checkpointOffset != null) ? checkpointOffset : this.checkpointEndOffset)) {
+                    continue;
+                }
+                PendingOffsets offsets = this.pendingOffsets.get(subscriptionId);
+                if (offsets == null) {
+                    offsets = new PendingOffsets();
+                    PendingOffsets existingOffsets = this.pendingOffsets.putIfAbsent(subscriptionId, offsets);
+                    if (existingOffsets != null) {
+                        offsets = existingOffsets;
+                    }
+                }
+                // a renewed subscription is seen with its new expiry time
+                offsets.expiryTime = (subscription.getExpires() != null) ?
+                                     subscription.getExpires().getTimeInMillis() : Long.MAX_VALUE;
+                offsets.offsets.add(offset);
+            }
+            messagesToSend.add(message);
+        }
+        return messagesToSend;
+    }
+
+    /**
+     * called after a message is sent to a subscriber
+     */
+    public void acknowledge(String subscriptionId, Message message) {
+        if (message instanceof JournaledMessage) {
+            PendingOffsets offsets = this.pendingOffsets.get(subscriptionId);
+            if (offsets != null) {
+                offsets.offsets.remove(((JournaledMessage) message).getOffset());
+            }
+        }
+    }
+
+    /**
+     * stops tracking the deliveries to a subscriber which is removed
+     */
+    public void removeSubscriber(String subscriptionId) {
+        this.pendingOffsets.remove(subscriptionId);
+    }
+
+    /**
+     * reads back the records which were not delivered to all their subscribers before the last
+     * shutdown. it is called once, after the subscriptions are loaded. the handler must publish
+     * the record and call {@link #dispatched(java.util.List)}.
+     *
+     * @param recordHandler publishes the records
+     * @throws EventBrokerException if the journal can not be read
+     */
+    public void replay(RecordHandler recordHandler) throws EventBrokerException {
+        try {
+            long startOffset = this.checkpointEndOffset;
+            for (long offset : this.checkpointOffsets.values()) {
+                startOffset = Math.min(startOffset, offset);
+            }
+            List<JournalSegment> segments;
+            long endOffset;
+            this.lock.lock();
+            try {
+                segments = new ArrayList<JournalSegment>(this.segments);
+                endOffset = this.appendOffset;
+            } finally {
+                this.lock.unlock();
+            }
+
+            int count = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                JournalSegment segment = segments.get(i);
+                boolean lastSegment = (i == segments.size() - 1);
+                if (!lastSegment && (segments.get(i + 1).getBaseOffset() <= startOffset)) {
+                    continue;
+                }
+                int position = (int) Math.max(0, startOffset - segment.getBaseOffset());
+                int length;
+                while ((segment.getBaseOffset() + position < endOffset)
+                       && ((length = segment.getRecordLength(position)) > 0)) {
+                    byte[] payload = segment.readPayload(position, length);
+                    if (payload == null) {
+                        break;
+                    }
+                    long offset = segment.getBaseOffset() + position;
+                    this.undispatchedOffsets.add(offset);
+                    recordHandler.handle(decode(offset, payload));
+                    count++;
+                    position += JournalSegment.RECORD_HEADER_SIZE + length;
+                }
+            }
+            if (count > 0) {
+                log.info("Replayed " + count + " events from the event journal");
+            }
+        } finally {
+            this.replayed = true;
+        }
+    }
+
+    /**
+     * syncs the remaining records, writes a final checkpoint and closes the segments
+     */
+    public void close() {
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.unflushed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        try {
+            this.flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (this.replayed) {
+            checkpoint();
+        }
+        for (JournalSegment segment : this.segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.error("Can not close the event journal segment", e);
+            }
+        }
+    }
+
+    private void flush() {
+        List<JournalSegment> segmentsToForce;
+        long endOffset;
+        this.lock.lock();
+        try {
+            endOffset = this.appendOffset;
+            segmentsToForce = new ArrayList<JournalSegment>(this.unforcedSegments);
+            segmentsToForce.add(this.currentSegment);
+            this.unforcedSegments.clear();
+        } finally {
+            this.lock.unlock();
+        }
+        for (JournalSegment segment : segmentsToForce) {
+            segment.force();
+        }
+        this.lock.lock();
+        try {
+            this.flushedOffset = Math.max(this.flushedOffset, endOffset);
+            this.flushed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * writes the offsets of the subscribers and deletes the segments which are not needed
+     * any more
+     */
+    private void checkpoint() {
+        // the flushed offset is read first, records before it are either undispatched or
+        // tracked by now
+        long endOffset = this.flushedOffset;
+        Long undispatchedOffset = this.undispatchedOffsets.ceiling(Long.MIN_VALUE);
+        if ((undispatchedOffset != null) && (undispatchedOffset < endOffset)) {
+            endOffset = undispatchedOffset;
+        }
+        long startOffset = endOffset;
+        long time = System.currentTimeMillis();
+        Map<String, Long> offsets = new HashMap<String, Long>();
+        for (Iterator<Map.Entry<String, PendingOffsets>> iterator = this.pendingOffsets.entrySet().iterator();
+             iterator.hasNext(); ) {
+            Map.Entry<String, PendingOffsets> entry = iterator.next();
+            if (entry.getValue().expiryTime < time) {
+                // records of an expired subscription are never delivered
+                iterator.remove();
+                continue;
+            }
+            Long pendingOffset = entry.getValue().offsets.ceiling(Long.MIN_VALUE);
+            if ((pendingOffset != null) && (pendingOffset < endOffset)) {
+                offsets.put(entry.getKey(), pendingOffset);
+                startOffset = Math.min(startOffset, pendingOffset);
+            }
+        }
+
+        try {
+            writeCheckpoint(endOffset, offsets);
+        } catch (IOException e) {
+            log.error("Can not write the event journal checkpoint", e);
+            return;
+        }
+
+        List<JournalSegment> segmentsToDelete = new ArrayList<JournalSegment>();
+        this.lock.lock();
+        try {
+            while ((this.segments.size() > 1) && (this.segments.get(1).getBaseOffset() <= startOffset)) {
+                JournalSegment segment = this.segments.remove(0);
+                // a deleted segment must not be forced afterwards
+                this.unforcedSegments.remove(segment);
+                segmentsToDelete.add(segment);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        deleteSegments(segmentsToDelete);
+    }
+
+    /**
+     * deletes the segments. A file which can not be deleted while it is mapped is tried again
+     * with the next checkpoint, after its mapping may have been garbage collected.
+     */
+    private void deleteSegments(List<JournalSegment> segmentsToDelete) {
+        List<File> filesToDelete;
+        this.lock.lock();
+        try {
+            filesToDelete = new ArrayList<File>(this.undeletedFiles);
+            this.undeletedFiles.clear();
+        } finally {
+            this.lock.unlock();
+        }
+        List<File> undeleted = new ArrayList<File>();
+        for (File file : filesToDelete) {
+            if (!file.delete() && file.exists()) {
+                undeleted.add(file);
+            }
+        }
+        for (JournalSegment segment : segmentsToDelete) {
+            try {
+                if (!segment.delete()) {
+                    undeleted.add(segment.getFile());
+                }
+            } catch (IOException e) {
+                log.error("Can not delete the event journal segment", e);
+            }
+        }
+        if (!undeleted.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug(undeleted.size() + " event journal segments are deleted once they are unmapped");
+            }
+            this.lock.lock();
+            try {
+                this.undeletedFiles.addAll(undeleted);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private void readCheckpoint() throws IOException {
+        File file = new File(this.directory, CHECKPOINT_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            int version = in.readInt();
+            if (version != CHECKPOINT_VERSION) {
+                throw new IOException("Unknown event journal checkpoint version " + version);
+            }
+            this.checkpointEndOffset = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                this.checkpointOffsets.put(in.readUTF(), in.readLong());
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void writeCheckpoint(long endOffset, Map<String, Long> offsets) throws IOException {
+        File tempFile = new File(this.directory, CHECKPOINT_FILE + ".tmp");
+        FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+        try {
+            DataOutputStream out = new DataOutputStream(fileOutputStream);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeLong(endOffset);
+            out.writeInt(offsets.size());
+            for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.flush();
+            fileOutputStream.getFD().sync();
+        } finally {
+            fileOutputStream.close();
+        }
+        // the old checkpoint is replaced at once, so a crash leaves one of the two
+        Files.move(tempFile.toPath(), new File(this.directory, CHECKPOINT_FILE).toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] encode(int tenantId, String topicName, int deliveryMode, Message message)
+            throws EventBrokerException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(byteArrayOutputStream);
+        try {
+            out.writeInt(tenantId);
+            out.writeInt(deliveryMode);
+            out.writeUTF(topicName);
+            Map<String, String> properties = message.getProperties();
+            out.writeInt(properties.size());
+            for (Map.Entry<String, String> entry : properties.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+            if (message.getMessage() == null) {
+                out.writeInt(-1);
+            } else {
+                SerializedMessage serializedMessage = message.getSerializedMessage();
+                out.writeInt(serializedMessage.getLength());
+                out.writeUTF(serializedMessage.getCharsetEncoding());
+                serializedMessage.writeTo(out);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new EventBrokerException("Can not write the message to the event journal", e);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private static JournalRecord decode(long offset, byte[] payload) throws EventBrokerException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        try {
+            int tenantId = in.readInt();
+            int deliveryMode = in.readInt();
+            String topicName = in.readUTF();
+            Message message = new Message();
+            int propertyCount = in.readInt();
+            for (int i = 0; i < propertyCount; i++) {
+                message.addProperty(readString(in), readString(in));
+            }
+            int length = in.readInt();
+            if (length >= 0) {
+                String charsetEncoding = in.readUTF();
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                StAXOMBuilder stAXOMBuilder = new StAXOMBuilder(
+                        StAXUtils.createXMLStreamReader(new ByteArrayInputStream(bytes), charsetEncoding));
+                message.setMessage(stAXOMBuilder.getDocumentElement());
+            }
+            return new JournalRecord(tenantId, topicName, deliveryMode, new JournaledMessage(message, offset));
+        } catch (IOException e) {
+            throw new EventBrokerException("Can not read the event journal record at " + offset, e);
+        } catch (XMLStreamException e) {
+            throw new EventBrokerException("Can not build the journaled message at " + offset, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static final class PendingOffsets {
+
+        private final ConcurrentSkipListSet<Long> offsets = new ConcurrentSkipListSet<Long>();
+
+        /**
+         * time in milli seconds the subscription expires
+         */
+        private volatile long expiryTime = Long.MAX_VALUE;
+    }
+
+    private final class Flusher implements Runnable {
+
+        public void run() {
+            long lastCheckpointTime = System.currentTimeMillis();
+            try {
+                while (true) {
+                    lock.lock();
+                    try {
+                        while (!closed && (appendOffset == flushedOffset)) {
+                            long delay = lastCheckpointTime + checkpointInterval - System.currentTimeMillis();
+                            if (delay <= 0) {
+                                break;
+                            }
+                            unflushed.await(delay, TimeUnit.MILLISECONDS);
+                        }
+                        if (closed) {
+                            return;
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (flushInterval > 0) {
+                        // lets the appends of the next few milli seconds join this sync
+                        Thread.sleep(flushInterval);
+                    }
+                    flush();
+                    if (System.currentTimeMillis() - lastCheckpointTime >= checkpointInterval) {
+                        if (replayed) {
+                            checkpoint();
+                        }
+                        lastCheckpointTime = System.currentTimeMillis();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.journal;
+
+/**
+ * a publish read back from the event journal
+ */
+@Deprecated
+public class JournalRecord {
+
+    private final int tenantId;
+    private final String topicName;
+    private final int deliveryMode;
+    private final JournaledMessage message;
+
+    JournalRecord(int tenantId, String topicName, int deliveryMode, JournaledMessage message) {
+        this.tenantId = tenantId;
+        this.topicName = topicName;
+        this.deliveryMode = deliveryMode;
+        this.message = message;
+    }
+
+    public int getTenantId() {
+        return tenantId;
+    }
+
+    public String getTopicName() {
+        return topicName;
+    }
+
+    public int getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public JournaledMessage getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * one memory mapped file of the event journal. The file is preallocated to the segment size and
+ * records are appended as [length][crc][payload]. A zero length marks the end of the records,
+ * since the unused part of the file is zero filled.
+ * <p/>
+ * The mapping is released when the segment is garbage collected, not when it is closed, so that a
+ * thread still reading a closed segment does not touch unmapped memory.
+ */
+@Deprecated
+class JournalSegment {
+
+    static final String FILE_SUFFIX = ".journal";
+
+    /**
+     * bytes cleared at once after the last record
+     */
+    private static final int CLEAR_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * size of the length and crc fields
+     */
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private final File file;
+    private final long baseOffset;
+    private final RandomAccessFile randomAccessFile;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * position after the last record, only changed by the appending thread
+     */
+    private int position;
+
+    JournalSegment(File directory, long baseOffset, int segmentSize) throws IOException {
+        this.file = new File(directory, getFileName(baseOffset));
+        this.baseOffset = baseOffset;
+        boolean created = !this.file.exists();
+        this.randomAccessFile = new RandomAccessFile(this.file, "rw");
+        if (this.randomAccessFile.length() < segmentSize) {
+            this.randomAccessFile.setLength(segmentSize);
+        }
+        this.buffer = this.randomAccessFile.getChannel().map(
+                FileChannel.MapMode.READ_WRITE, 0, this.randomAccessFile.length());
+        // a new file is zero filled
+        this.position = created ? 0 : recover();
+    }
+
+    static String getFileName(long baseOffset) {
+        return String.format("%020d", baseOffset) + FILE_SUFFIX;
+    }
+
+    /**
+     * finds the end of the valid records. A record which is only partly written before a crash
+     * fails the crc check and it and anything after it is cleared.
+     */
+    private int recover() {
+        int position = 0;
+        while (true) {
+            int length = getRecordLength(position);
+            if ((length <= 0) || (readPayload(position, length) == null)) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        // checked a long at a time and only the chunks which are not clear are written
+        byte[] zeros = null;
+        int capacity = this.buffer.capacity();
+        for (int chunkStart = position; chunkStart < capacity; chunkStart += CLEAR_CHUNK_SIZE) {
+            int chunkEnd = (int) Math.min((long) chunkStart + CLEAR_CHUNK_SIZE, capacity);
+            if (isClear(chunkStart, chunkEnd)) {
+                continue;
+            }
+            if (zeros == null) {
+                zeros = new byte[CLEAR_CHUNK_SIZE];
+            }
+            ByteBuffer view = this.buffer.duplicate();
+            view.position(chunkStart);
+            view.put(zeros, 0, chunkEnd - chunkStart);
+        }
+        return position;
+    }
+
+    private boolean isClear(int start, int end) {
+        int i = start;
+        for (; i + 8 <= end; i += 8) {
+            if (this.buffer.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (this.buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long getBaseOffset() {
+        return this.baseOffset;
+    }
+
+    /**
+     * @return journal offset after the last record of this segment
+     */
+    long getEndOffset() {
+        return this.baseOffset + this.position;
+    }
+
+    boolean hasRoom(int payloadLength) {
+        return this.buffer.capacity() - this.position >= RECORD_HEADER_SIZE + payloadLength;
+    }
+
+    /**
+     * appends a record. callers must check the room first.
+     *
+     * @return journal offset of the record
+     */
+    long append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int recordPosition = this.position;
+        // the length is written last so that a reader never sees a record without its payload
+        this.buffer.putInt(recordPosition + 4, (int) crc.getValue());
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(recordPosition + RECORD_HEADER_SIZE);
+        view.put(payload);
+        this.buffer.putInt(recordPosition, payload.length);
+        this.position += RECORD_HEADER_SIZE + payload.length;
+        return this.baseOffset + recordPosition;
+    }
+
+    /**
+     * @param position position of a record in this segment
+     * @return length of the record payload, 0 if there is no record at the position
+     */
+    int getRecordLength(int position) {
+        if (this.buffer.capacity() - position < RECORD_HEADER_SIZE) {
+            return 0;
+        }
+        int length = this.buffer.getInt(position);
+        if ((length < 0) || (length > this.buffer.capacity() - position - RECORD_HEADER_SIZE)) {
+            return 0;
+        }
+        return length;
+    }
+
+    /**
+     * @return payload of the record or null if it does not match its crc
+     */
+    byte[] readPayload(int position, int length) {
+        byte[] payload = new byte[length];
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(position + RECORD_HEADER_SIZE);
+        view.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != this.buffer.getInt(position + 4)) {
+            return null;
+        }
+        return payload;
+    }
+
+    /**
+     * writes the appended records to the disk
+     */
+    void force() {
+        this.buffer.force();
+    }
+
+    /**
+     * closes the file. The mapping stays valid until the segment is garbage collected.
+     */
+    void close() throws IOException {
+        this.randomAccessFile.close();
+    }
+
+    /**
+     * closes and deletes the file. Some platforms do not delete a file while it is mapped, then
+     * this returns false and the deletion can be tried again once the mapping is released.
+     *
+     * @return true if the file is deleted
+     */
+    boolean delete() throws IOException {
+        close();
+        return this.file.delete() || !this.file.exists();
+    }
+
+    File getFile() {
+        return this.file;
+    }
+}
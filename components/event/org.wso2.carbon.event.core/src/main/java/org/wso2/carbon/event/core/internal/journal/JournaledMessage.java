@@ -0,0 +1,80 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.journal;
+
+import org.apache.axiom.om.OMElement;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.SerializedMessage;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+
+import java.util.Map;
+
+/**
+ * a message written to the event journal. It wraps the published message, so that the same
+ * message can be published more than once, and keeps its offset in the journal.
+ */
+@Deprecated
+public class JournaledMessage extends Message {
+
+    private final Message message;
+    private final long offset;
+
+    JournaledMessage(Message message, long offset) {
+        this.message = message;
+        this.offset = offset;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void addProperty(String key, String value) {
+        this.message.addProperty(key, value);
+    }
+
+    @Override
+    public Map<String, String> getProperties() {
+        return this.message.getProperties();
+    }
+
+    @Override
+    public void setProperties(Map<String, String> properties) {
+        this.message.setProperties(properties);
+    }
+
+    @Override
+    public OMElement getMessage() {
+        return this.message.getMessage();
+    }
+
+    @Override
+    public void setMessage(OMElement message) {
+        this.message.setMessage(message);
+    }
+
+    @Override
+    public SerializedMessage getSerializedMessage() throws EventBrokerException {
+        return this.message.getSerializedMessage();
+    }
+
+    @Override
+    public String getProperty(String propertyName) {
+        return this.message.getProperty(propertyName);
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.metrics;
+
+import org.wso2.carbon.event.core.topic.TopicStatistics;
+import org.wso2.carbon.event.core.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * publish and delivery counts and latency histograms of the topics. At most maxTopics tenant
+ * topics have statistics of their own. When a new topic is seen at that limit, the least recently
+ * used topic is evicted and its statistics are added to the overflow entry of its tenant, so the
+ * memory used does not grow with the number of topics while the busy topics stay tracked.
+ * <p/>
+ * An update racing with the eviction of its topic may be lost.
+ */
+@Deprecated
+public class TopicMetrics implements TopicMetricsMBean {
+
+    public static final int DEFAULT_MAX_TOPICS = 1000;
+
+    /**
+     * name of the entry counting the evicted topics of a tenant
+     */
+    public static final String OVERFLOW_TOPIC_NAME = "(other topics)";
+
+    private final int maxTopics;
+
+    /**
+     * topics are added and evicted while holding the map lock, updates only read it
+     */
+    private final ConcurrentMap<TopicKey, Statistics> topicStatisticsMap =
+            new ConcurrentHashMap<TopicKey, Statistics>();
+    private final ConcurrentMap<Integer, Statistics> tenantIDOverflowStatisticsMap =
+            new ConcurrentHashMap<Integer, Statistics>();
+
+    public TopicMetrics(int maxTopics) {
+        this.maxTopics = maxTopics;
+    }
+
+    /**
+     * @param count number of messages published
+     */
+    public void published(int tenantId, String topicName, int count) {
+        getStatistics(tenantId, topicName).publishCount.addAndGet(count);
+    }
+
+    /**
+     * @param nanos time taken to find the subscribers of the published messages
+     */
+    public void matched(int tenantId, String topicName, long nanos) {
+        getStatistics(tenantId, topicName).matchingTime.record(nanos);
+    }
+
+    /**
+     * @param nanos time the notifications waited for a delivery thread
+     */
+    public void dequeued(int tenantId, String topicName, long nanos) {
+        getStatistics(tenantId, topicName).queueWaitTime.record(nanos);
+    }
+
+    /**
+     * @param nanos time taken to send the notification
+     */
+    public void delivered(int tenantId, String topicName, long nanos) {
+        Statistics statistics = getStatistics(tenantId, topicName);
+        statistics.deliveryCount.incrementAndGet();
+        statistics.sendTime.record(nanos);
+    }
+
+    /**
+     * @param nanos time taken until the notification failed
+     */
+    public void failed(int tenantId, String topicName, long nanos) {
+        Statistics statistics = getStatistics(tenantId, topicName);
+        statistics.failureCount.incrementAndGet();
+        statistics.sendTime.record(nanos);
+    }
+
+    /**
+     * @param tenantId tenant id
+     * @return statistics of the tracked topics of the tenant, followed by the overflow entry
+     *         if some of its topics were evicted
+     */
+    public List<TopicStatistics> getTopicStatistics(int tenantId) {
+        List<TopicStatistics> topicStatisticsList = new ArrayList<TopicStatistics>();
+        for (Map.Entry<TopicKey, Statistics> entry : this.topicStatisticsMap.entrySet()) {
+            if (entry.getKey().tenantId == tenantId) {
+                topicStatisticsList.add(entry.getValue().getTopicStatistics(entry.getKey().topicName));
+            }
+        }
+        Statistics overflowStatistics = this.tenantIDOverflowStatisticsMap.get(tenantId);
+        if (overflowStatistics != null) {
+            topicStatisticsList.add(overflowStatistics.getTopicStatistics(OVERFLOW_TOPIC_NAME));
+        }
+        return topicStatisticsList;
+    }
+
+    private Statistics getStatistics(int tenantId, String topicName) {
+        TopicKey topicKey = new TopicKey(tenantId, topicName);
+        Statistics statistics = this.topicStatisticsMap.get(topicKey);
+        if (statistics == null) {
+            statistics = track(topicKey);
+        }
+        statistics.lastUsedTime = nanoTime();
+        return statistics;
+    }
+
+    /**
+     * the time the least recently used topic is found by, overridden by the tests
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private Statistics track(TopicKey topicKey) {
+        if (this.maxTopics <= 0) {
+            return getOverflowStatistics(topicKey.tenantId);
+        }
+        synchronized (this.topicStatisticsMap) {
+            Statistics statistics = this.topicStatisticsMap.get(topicKey);
+            if (statistics != null) {
+                return statistics;
+            }
+            if (this.topicStatisticsMap.size() >= this.maxTopics) {
+                evictLeastRecentlyUsed();
+            }
+            statistics = new Statistics();
+            this.topicStatisticsMap.put(topicKey, statistics);
+            return statistics;
+        }
+    }
+
+    /**
+     * called with the map lock held. the scan only runs when a new topic is seen at the limit
+     */
+    private void evictLeastRecentlyUsed() {
+        Map.Entry<TopicKey, Statistics> leastRecentlyUsed = null;
+        for (Map.Entry<TopicKey, Statistics> entry : this.topicStatisticsMap.entrySet()) {
+            if ((leastRecentlyUsed == null) ||
+                (entry.getValue().lastUsedTime - leastRecentlyUsed.getValue().lastUsedTime < 0)) {
+                leastRecentlyUsed = entry;
+            }
+        }
+        if (leastRecentlyUsed != null) {
+            this.topicStatisticsMap.remove(leastRecentlyUsed.getKey());
+            getOverflowStatistics(leastRecentlyUsed.getKey().tenantId).add(leastRecentlyUsed.getValue());
+        }
+    }
+
+    private Statistics getOverflowStatistics(int tenantId) {
+        Statistics statistics = this.tenantIDOverflowStatisticsMap.get(tenantId);
+        if (statistics == null) {
+            Statistics newStatistics = new Statistics();
+            statistics = this.tenantIDOverflowStatisticsMap.putIfAbsent(tenantId, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        return statistics;
+    }
+
+    private Statistics getExistingStatistics(int tenantId, String topicName) {
+        Statistics statistics = this.topicStatisticsMap.get(new TopicKey(tenantId, topicName));
+        if (statistics == null) {
+            throw new IllegalArgumentException("Topic " + topicName + " of tenant " + tenantId + " is not tracked");
+        }
+        return statistics;
+    }
+
+    public String[] getTopics() {
+        List<String> topics = new ArrayList<String>();
+        for (TopicKey topicKey : this.topicStatisticsMap.keySet()) {
+            topics.add(topicKey.tenantId + ":" + topicKey.topicName);
+        }
+        return topics.toArray(new String[topics.size()]);
+    }
+
+    public int getTrackedTopicCount() {
+        return this.topicStatisticsMap.size();
+    }
+
+    public int getMaxTopics() {
+        return this.maxTopics;
+    }
+
+    public long getOverflowPublishCount() {
+        long publishCount = 0;
+        for (Statistics statistics : this.tenantIDOverflowStatisticsMap.values()) {
+            publishCount += statistics.publishCount.get();
+        }
+        return publishCount;
+    }
+
+    public long getPublishCount(int tenantId, String topicName) {
+        return getExistingStatistics(tenantId, topicName).publishCount.get();
+    }
+
+    public long getDeliveryCount(int tenantId, String topicName) {
+        return getExistingStatistics(tenantId, topicName).deliveryCount.get();
+    }
+
+    public long getFailureCount(int tenantId, String topicName) {
+        return getExistingStatistics(tenantId, topicName).failureCount.get();
+    }
+
+    public double getMatchingTime(int tenantId, String topicName, double percentile) {
+        return getExistingStatistics(tenantId, topicName).matchingTime.getPercentile(percentile);
+    }
+
+    public double getQueueWaitTime(int tenantId, String topicName, double percentile) {
+        return getExistingStatistics(tenantId, topicName).queueWaitTime.getPercentile(percentile);
+    }
+
+    public double getSendTime(int tenantId, String topicName, double percentile) {
+        return getExistingStatistics(tenantId, topicName).sendTime.getPercentile(percentile);
+    }
+
+    public void resetStatistics() {
+        synchronized (this.topicStatisticsMap) {
+            this.topicStatisticsMap.clear();
+            this.tenantIDOverflowStatisticsMap.clear();
+        }
+    }
+
+    private static final class TopicKey {
+
+        private final int tenantId;
+        private final String topicName;
+
+        private TopicKey(int tenantId, String topicName) {
+            this.tenantId = tenantId;
+            this.topicName = topicName;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof TopicKey)) {
+                return false;
+            }
+            TopicKey topicKey = (TopicKey) object;
+            return (this.tenantId == topicKey.tenantId) && this.topicName.equals(topicKey.topicName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.tenantId + this.topicName.hashCode();
+        }
+    }
+
+    private static final class Statistics {
+
+        private final AtomicLong publishCount = new AtomicLong();
+        private final AtomicLong deliveryCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final LatencyHistogram matchingTime = new LatencyHistogram();
+        private final LatencyHistogram queueWaitTime = new LatencyHistogram();
+        private final LatencyHistogram sendTime = new LatencyHistogram();
+        private volatile long lastUsedTime;
+
+        private TopicStatistics getTopicStatistics(String topicName) {
+            TopicStatistics topicStatistics = new TopicStatistics();
+            topicStatistics.setTopicName(topicName);
+            topicStatistics.setPublishCount(this.publishCount.get());
+            topicStatistics.setDeliveryCount(this.deliveryCount.get());
+            topicStatistics.setFailureCount(this.failureCount.get());
+            topicStatistics.setMatchingTimeMedian(this.matchingTime.getPercentile(50));
+            topicStatistics.setMatchingTime99thPercentile(this.matchingTime.getPercentile(99));
+            topicStatistics.setMaxMatchingTime(this.matchingTime.getMax());
+            topicStatistics.setQueueWaitTimeMedian(this.queueWaitTime.getPercentile(50));
+            topicStatistics.setQueueWaitTime99thPercentile(this.queueWaitTime.getPercentile(99));
+            topicStatistics.setMaxQueueWaitTime(this.queueWaitTime.getMax());
+            topicStatistics.setSendTimeMedian(this.sendTime.getPercentile(50));
+            topicStatistics.setSendTime99thPercentile(this.sendTime.getPercentile(99));
+            topicStatistics.setMaxSendTime(this.sendTime.getMax());
+            return topicStatistics;
+        }
+
+        private void add(Statistics statistics) {
+            this.publishCount.addAndGet(statistics.publishCount.get());
+            this.deliveryCount.addAndGet(statistics.deliveryCount.get());
+            this.failureCount.addAndGet(statistics.failureCount.get());
+            this.matchingTime.add(statistics.matchingTime);
+            this.queueWaitTime.add(statistics.queueWaitTime);
+            this.sendTime.add(statistics.sendTime);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.metrics;
+
+/**
+ * MBean interface of the per topic metrics of the event broker. topics are identified by the
+ * tenant id and the topic name, times are in milli seconds.
+ */
+@Deprecated
+public interface TopicMetricsMBean {
+
+    /**
+     * @return tracked topics as tenantId:topicName
+     */
+    String[] getTopics();
+
+    /**
+     * @return number of topics tracked separately
+     */
+    int getTrackedTopicCount();
+
+    /**
+     * @return maximum number of topics tracked separately, the least recently used ones are
+     *         counted together per tenant
+     */
+    int getMaxTopics();
+
+    /**
+     * @return number of messages published to the topics which were evicted, of all tenants
+     */
+    long getOverflowPublishCount();
+
+    long getPublishCount(int tenantId, String topicName);
+
+    long getDeliveryCount(int tenantId, String topicName);
+
+    long getFailureCount(int tenantId, String topicName);
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return time taken to find the subscribers of a message published to the topic
+     */
+    double getMatchingTime(int tenantId, String topicName, double percentile);
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return time the notifications of the topic waited for a delivery thread
+     */
+    double getQueueWaitTime(int tenantId, String topicName, double percentile);
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return time taken to send a notification of the topic to its subscriber
+     */
+    double getSendTime(int tenantId, String topicName, double percentile);
+
+    /**
+     * forgets all the topics and their statistics, including the overflow
+     */
+    void resetStatistics();
+}
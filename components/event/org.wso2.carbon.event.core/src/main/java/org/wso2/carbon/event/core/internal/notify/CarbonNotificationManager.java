@@ -19,11 +19,11 @@ package org.wso2.carbon.event.core.internal.notify;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
 import org.wso2.carbon.event.core.notify.NotificationManager;
 import org.wso2.carbon.event.core.subscription.EventDispatcher;
+import org.wso2.carbon.event.core.subscription.ReliableEventDispatcher;
 import org.wso2.carbon.event.core.subscription.Subscription;
 import org.wso2.carbon.event.core.Message;
 
 import java.util.Map;
-import java.util.Calendar;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -42,17 +42,17 @@ public class CarbonNotificationManager implements NotificationManager{
     public void sendNotification(Message message, Subscription subscription)
             throws EventBrokerException {
 
-        if (subscription.getExpires() != null){
-            Calendar calendar = Calendar.getInstance();
-            if (calendar.after(subscription.getExpires())){
-                // this sequence has already expied.
-                return;
-            }
+        // the in memory matching manager removes the subscriptions once they expire, but a
+        // subscription may still be matched within the tick of its expiry
+        if ((subscription.getExpires() != null) &&
+            (System.currentTimeMillis() > subscription.getExpires().getTimeInMillis())) {
+            // this sequence has already expied.
+            return;
         }
 
          //send the message using the appropriate method of the subscription attributes
         if (subscription.getEventDispatcher() != null){
-            subscription.getEventDispatcher().notify(message, subscription);
+            dispatch(subscription.getEventDispatcher(), message, subscription);
         } else if (subscription.getEventDispatcherName() != null){
             EventDispatcher eventDispatcher =
                     this.eventDispatchMap.get(subscription.getEventDispatcherName());
@@ -60,13 +60,23 @@ public class CarbonNotificationManager implements NotificationManager{
                 throw new EventBrokerException("Event dispatcher with name "
                         + subscription.getEventDispatcherName() + " is not exists");
             }
-            eventDispatcher.notify(message, subscription);
+            dispatch(eventDispatcher, message, subscription);
         } else {
             throw new EventBrokerException("Can not send the notification ");
         }
 
     }
 
+    private void dispatch(EventDispatcher eventDispatcher, Message message, Subscription subscription)
+            throws EventBrokerException {
+        if (eventDispatcher instanceof ReliableEventDispatcher) {
+            // failures are reported so that they can be retried
+            ((ReliableEventDispatcher) eventDispatcher).send(message, subscription);
+        } else {
+            eventDispatcher.notify(message, subscription);
+        }
+    }
+
     public void registerEventDispatcher(String name, EventDispatcher eventDispatcher){
         this.eventDispatchMap.put(name, eventDispatcher);
     }
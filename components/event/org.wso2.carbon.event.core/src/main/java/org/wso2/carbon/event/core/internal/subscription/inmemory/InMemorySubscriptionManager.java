@@ -48,10 +48,28 @@ public class InMemorySubscriptionManager implements SubscriptionManager{
         return subscriptions;
     }
 
+    public void loadSubscriptions(SubscriptionHandler handler) throws EventBrokerException {
+        for (Subscription subscription : getAllSubscriptions()) {
+            handler.handle(subscription);
+        }
+    }
+
     public Subscription getSubscription(String id) {
         return this.subscriptionsMap.get(id);
     }
 
+    public Subscription getSubscription(String topicName, String eventSinkURL, String owner) {
+        for (Subscription subscription : this.subscriptionsMap.values()) {
+            if ((subscription.getEventSinkURL() != null)
+                    && subscription.getEventSinkURL().equalsIgnoreCase(eventSinkURL)
+                    && subscription.getTopicName().equals(topicName)
+                    && ((owner == null) ? subscription.getOwner() == null : owner.equals(subscription.getOwner()))) {
+                return subscription;
+            }
+        }
+        return null;
+    }
+
     public void unSubscribe(String subscriptionID) throws EventBrokerException {
         this.subscriptionsMap.remove(subscriptionID);
     }
@@ -19,6 +19,7 @@ package org.wso2.carbon.event.core.internal.subscription.registry;
 import org.apache.axis2.databinding.utils.ConverterUtil;
 import org.wso2.carbon.event.core.exception.EventBrokerConfigurationException;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.topic.registry.TopicIndex;
 import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.wso2.carbon.event.core.internal.util.JavaUtil;
 import org.wso2.carbon.event.core.subscription.Subscription;
@@ -128,32 +129,10 @@ public class RegistrySubscriptionManager implements SubscriptionManager {
                     getResourcePath(subscription.getId(), subscription.getTopicName());
 
             Resource resource = userRegistry.newResource();
-            resource.setProperty(EventBrokerConstants.EB_RES_SUBSCRIPTION_URL, subscription
-                    .getEventSinkURL());
-            resource.setProperty(EventBrokerConstants.EB_RES_EVENT_DISPATCHER_NAME, subscription
-                    .getEventDispatcherName());
-
-            if (subscription.getExpires() != null) {
-                resource.setProperty(EventBrokerConstants.EB_RES_EXPIRS, ConverterUtil
-                        .convertToString(subscription
-                                                 .getExpires()));
-            }
-            resource.setProperty(EventBrokerConstants.EB_RES_OWNER, subscription.getOwner());
-            resource.setProperty(EventBrokerConstants.EB_RES_TOPIC_NAME, subscription
-                    .getTopicName());
-            resource.setProperty(EventBrokerConstants.EB_RES_CREATED_TIME,
-                                 System.currentTimeMillis() + "");
-            resource.setProperty(EventBrokerConstants.EB_RES_MODE, JavaUtil
-                    .getSubscriptionMode(subscription
-                                                 .getTopicName()));
-
-            //set the other properties of the subscription.
-            Map<String, String> properties = subscription.getProperties();
-            for (String key : properties.keySet()) {
-                resource.setProperty(key, properties.get(key));
-            }
+            JavaUtil.setSubscriptionProperties(resource, subscription);
 
             userRegistry.put(resourcePath, resource);
+            indexTopicSubscription(resourcePath, resource, subscription.getId());
 
             // add the subscription index
             String fullPath = this.indexStoragePath;
@@ -213,6 +192,25 @@ public class RegistrySubscriptionManager implements SubscriptionManager {
         return resourcePath;
     }
 
+    /**
+     * updates the topic index with a subscription resource which has been saved to the registry.
+     *
+     * @param resourcePath         the subscription resource path
+     * @param subscriptionResource the subscription resource
+     * @param subscriptionID       the subscription ID
+     */
+    private void indexTopicSubscription(String resourcePath, Resource subscriptionResource,
+                                        String subscriptionID) {
+        String topicResourcePath = resourcePath.substring(0, resourcePath.lastIndexOf(
+                RegistryConstants.PATH_SEPARATOR + EventBrokerConstants.EB_CONF_WS_SUBSCRIPTION_COLLECTION_NAME +
+                RegistryConstants.PATH_SEPARATOR));
+        Subscription subscription = JavaUtil.getSubscription(subscriptionResource);
+        subscription.setId(subscriptionID);
+        EventBrokerHolder.getInstance().getTopicIndex().putWSSubscription(
+                EventBrokerHolder.getInstance().getTenantId(),
+                topicResourcePath.substring(this.topicStoragePath.length()), subscription);
+    }
+
     /**
      * Calculates the JMS subscription stored path for a WSSubscription using subscription id and
      * the topic name.
@@ -257,8 +255,20 @@ public class RegistrySubscriptionManager implements SubscriptionManager {
      */
     @Override
     public List<Subscription> getAllSubscriptions() throws EventBrokerException {
-        List<Subscription> subscriptions = new ArrayList<Subscription>();
+        final List<Subscription> subscriptions = new ArrayList<Subscription>();
+        loadSubscriptions(new SubscriptionHandler() {
+            public void handle(Subscription subscription) {
+                subscriptions.add(subscription);
+            }
+        });
+        return subscriptions;
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void loadSubscriptions(SubscriptionHandler handler) throws EventBrokerException {
         try {
             UserRegistry userRegistry =
                     this.registryService.getGovernanceSystemRegistry(EventBrokerHolder.getInstance()
@@ -283,15 +293,36 @@ public class RegistrySubscriptionManager implements SubscriptionManager {
                         subscription.setId(subscriptionID);
                         subscription.setTopicName(topicName);
                         subscription.setTenantId(EventBrokerHolder.getInstance().getTenantId());
-                        subscriptions.add(subscription);
+                        handler.handle(subscription);
                     }
                 }
             }
-
         } catch (RegistryException e) {
             throw new EventBrokerException("Cannot access the registry ", e);
         }
-        return subscriptions;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Subscription getSubscription(String topicName, String eventSinkURL, String owner)
+            throws EventBrokerException {
+        TopicIndex topicIndex = EventBrokerHolder.getInstance().getTopicIndex();
+        if (!topicIndex.hasLoader()) {
+            // the topics are not kept in the registry, so they are not indexed either
+            for (Subscription subscription : getAllSubscriptions()) {
+                if (topicName.equals(subscription.getTopicName())
+                    && eventSinkURL.equalsIgnoreCase(subscription.getEventSinkURL())
+                    && ((owner == null) ? subscription.getOwner() == null : owner.equals(subscription.getOwner()))) {
+                    return subscription;
+                }
+            }
+            return null;
+        }
+        int tenantId = EventBrokerHolder.getInstance().getTenantId();
+        topicIndex.ensureLoaded(tenantId);
+        return topicIndex.getSubscription(tenantId, topicName, eventSinkURL, owner);
     }
 
     /**
@@ -354,6 +385,7 @@ public class RegistrySubscriptionManager implements SubscriptionManager {
                     subscriptionResource.setProperty(key, properties.get(key));
                 }
                 userRegistry.put(subscriptionPath, subscriptionResource);
+                indexTopicSubscription(subscriptionPath, subscriptionResource, subscription.getId());
             } else {
                 throw new EventBrokerException("Cannot find the resource to the subscription with" +
                                                " id " + subscription.getId());
@@ -395,6 +427,8 @@ public class RegistrySubscriptionManager implements SubscriptionManager {
 
                 userRegistry.put(fullPath, topicIndexResource);
             }
+            EventBrokerHolder.getInstance().getTopicIndex().removeSubscription(
+                    EventBrokerHolder.getInstance().getTenantId(), subscriptionID);
 
         } catch (RegistryException e) {
             throw new EventBrokerException("Cannot access the registry ", e);
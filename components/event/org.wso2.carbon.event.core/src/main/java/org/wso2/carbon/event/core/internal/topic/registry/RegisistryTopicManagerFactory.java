@@ -17,19 +17,64 @@
 package org.wso2.carbon.event.core.internal.topic.registry;
 
 import org.apache.axiom.om.OMElement;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.event.core.exception.EventBrokerConfigurationException;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.wso2.carbon.event.core.internal.util.JavaUtil;
 import org.wso2.carbon.event.core.topic.TopicManager;
 import org.wso2.carbon.event.core.topic.TopicManagerFactory;
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.jdbc.handlers.HandlerLifecycleManager;
+import org.wso2.carbon.registry.core.jdbc.handlers.filters.Filter;
+import org.wso2.carbon.registry.core.jdbc.handlers.filters.URLMatcher;
+import org.wso2.carbon.registry.core.service.RegistryService;
 
 @Deprecated
 public class RegisistryTopicManagerFactory implements TopicManagerFactory{
 
+    private static final Log log = LogFactory.getLog(RegisistryTopicManagerFactory.class);
+
     public static final String EB_ELE_TOPIC_STORAGE_PATH = "topicStoragePath";
+    public static final String EB_ELE_TOPIC_INDEX_REBUILD_INTERVAL = "topicIndexRebuildInterval";
 
     public TopicManager getTopicManager(OMElement config) throws EventBrokerConfigurationException {
 
         String topicStoragePath = JavaUtil.getValue(config, EB_ELE_TOPIC_STORAGE_PATH);
-        return new RegistryTopicManager(topicStoragePath);
+        long rebuildInterval = Long.parseLong(JavaUtil.getValue(config, EB_ELE_TOPIC_INDEX_REBUILD_INTERVAL,
+                String.valueOf(TopicIndex.DEFAULT_REBUILD_INTERVAL)));
+        RegistryTopicManager topicManager = new RegistryTopicManager(topicStoragePath);
+        EventBrokerHolder.getInstance().getTopicIndex().setRebuildInterval(rebuildInterval);
+        EventBrokerHolder.getInstance().getTopicIndex().setLoader(topicManager);
+        registerTopicIndexHandler(topicStoragePath);
+        return topicManager;
+    }
+
+    /**
+     * registers a registry handler to keep the topic index in sync with the topic collections
+     * written to the registry. Without it the topic index only sees the topics and subscriptions
+     * changed through the event broker. The handler is run in the commit phase, i.e. only after
+     * the registry operation has succeeded, so that a failed write does not change the index.
+     *
+     * @param topicStoragePath the topic registry path
+     */
+    private void registerTopicIndexHandler(String topicStoragePath) {
+        RegistryService registryService = EventBrokerHolder.getInstance().getRegistryService();
+        if (registryService == null) {
+            log.warn("Registry service is not available, topic index is not updated on registry changes");
+            return;
+        }
+        String pattern = ".*/" + topicStoragePath.replaceAll("^/+|/+$", "") + "/.*";
+        URLMatcher urlMatcher = new URLMatcher();
+        urlMatcher.setPutPattern(pattern);
+        urlMatcher.setDeletePattern(pattern);
+        try {
+            registryService.getGovernanceSystemRegistry().getRegistryContext().getHandlerManager().addHandler(
+                    new String[]{Filter.PUT, Filter.DELETE}, urlMatcher,
+                    new TopicIndexRegistryHandler(topicStoragePath), HandlerLifecycleManager.COMMIT_HANDLER_PHASE);
+        } catch (RegistryException e) {
+            log.warn("Can not register the topic index registry handler, topic index is not updated on " +
+                     "registry changes", e);
+        }
     }
 }
@@ -16,7 +16,6 @@
 
 package org.wso2.carbon.event.core.internal.topic.registry;
 
-import org.apache.axis2.databinding.utils.ConverterUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.CarbonConstants;
@@ -42,17 +41,20 @@ import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.regex.Pattern;
 
 /**
- * This class is utilized to perform actions related to topics.
+ * This class is utilized to perform actions related to topics. The topics and their
+ * subscriptions are read through the {@link TopicIndex}, which this class loads from the registry.
  */
 @Deprecated
-public class RegistryTopicManager implements TopicManager {
+public class RegistryTopicManager implements TopicManager, TopicIndex.Loader {
     private static Log log = LogFactory.getLog(RegistryTopicManager.class);
     private static final String AT_REPLACE_CHAR = "_";
     private static final String TOPIC_ROLE_PREFIX = "T_";
@@ -74,58 +76,84 @@ public class RegistryTopicManager implements TopicManager {
      */
     @Override
     public TopicNode getTopicTree() throws EventBrokerException {
-        try {
-            UserRegistry userRegistry =
-                    this.registryService.getGovernanceSystemRegistry(EventBrokerHolder.getInstance().getTenantId());
-            if (!userRegistry.resourceExists(topicStoragePath)) {
-                userRegistry.put(topicStoragePath, userRegistry.newCollection());
-            }
-            Resource root = userRegistry.get(this.topicStoragePath);
-            TopicNode rootTopic = new TopicNode("/", "/");
-            buildTopicTree(rootTopic, (Collection) root, userRegistry);
-            return rootTopic;
-        } catch (RegistryException e) {
-            throw new EventBrokerException(e.getMessage(), e);
+        int tenantId = EventBrokerHolder.getInstance().getTenantId();
+        return getTopicIndex(tenantId).getTopicTree(tenantId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TopicNode[] getTopicChildren(String topicName, int startIndex, int count)
+            throws EventBrokerException {
+        if (startIndex < 0 || count < 0) {
+            throw new EventBrokerException("Invalid page of sub topics, start index " + startIndex +
+                                           ", count " + count);
         }
+        int tenantId = EventBrokerHolder.getInstance().getTenantId();
+        return getTopicIndex(tenantId).getChildren(tenantId, getIndexTopicName(topicName), startIndex, count);
     }
 
     /**
-     * Building the topic tree
+     * gets the topic index, reading the tenant from the registry if it is not loaded yet
      *
-     * @param topicNode    node of the topic
-     * @param resource     the resource that holds child topics
-     * @param userRegistry user registry
-     * @throws EventBrokerException
+     * @param tenantId tenant id
+     * @return the topic index
+     * @throws EventBrokerException if can not read the registry
      */
-    private void buildTopicTree(TopicNode topicNode, Collection resource, UserRegistry userRegistry)
-            throws EventBrokerException {
+    private TopicIndex getTopicIndex(int tenantId) throws EventBrokerException {
+        TopicIndex topicIndex = EventBrokerHolder.getInstance().getTopicIndex();
+        topicIndex.ensureLoaded(tenantId);
+        return topicIndex;
+    }
+
+    /**
+     * walks the topic collections of the tenant breadth first and loads the topics with their ws
+     * and jms subscriptions to the topic index.
+     *
+     * @param topicIndex the topic index
+     * @param tenantId   tenant id
+     * @throws EventBrokerException if can not read the registry
+     */
+    @Override
+    public void loadTenant(TopicIndex topicIndex, int tenantId) throws EventBrokerException {
+        long modificationCount = topicIndex.getModificationCount(tenantId);
+        List<String> topicNames = new ArrayList<String>();
+        Map<String, List<Subscription>> topicWSSubscriptionsMap = new HashMap<String, List<Subscription>>();
+        Map<String, List<Subscription>> topicJMSSubscriptionsMap = new HashMap<String, List<Subscription>>();
         try {
-            String[] children = resource.getChildren();
-            if (children != null) {
-                List<TopicNode> nodes = new ArrayList<TopicNode>();
-                for (String childTopic : children) {
-                    Resource childResource = userRegistry.get(childTopic);
-                    if (childResource instanceof Collection) {
-                        if (childTopic.endsWith("/")) {
-                            childTopic = childTopic.substring(0, childTopic.length() - 2);
-                        }
-                        String nodeName = childTopic.substring(childTopic.lastIndexOf("/") + 1);
-                        if (!nodeName.equals(EventBrokerConstants.EB_CONF_WS_SUBSCRIPTION_COLLECTION_NAME) &&
-                            !nodeName.equals(EventBrokerConstants.EB_CONF_JMS_SUBSCRIPTION_COLLECTION_NAME)) {
-                            childTopic =
-                                    childTopic.substring(childTopic.indexOf(this.topicStoragePath)
-                                                         + this.topicStoragePath.length() + 1);
-                            TopicNode childNode = new TopicNode(nodeName, childTopic);
-                            nodes.add(childNode);
-                            buildTopicTree(childNode, (Collection) childResource, userRegistry);
-                        }
+            UserRegistry userRegistry = this.registryService.getGovernanceSystemRegistry(tenantId);
+            if (!userRegistry.resourceExists(this.topicStoragePath)) {
+                userRegistry.put(this.topicStoragePath, userRegistry.newCollection());
+            }
+            Queue<String> pathsQueue = new LinkedList<String>();
+            pathsQueue.add(this.topicStoragePath);
+            while (!pathsQueue.isEmpty()) {
+                String resourcePath = pathsQueue.remove();
+                Resource resource = userRegistry.get(resourcePath);
+                if (!(resource instanceof Collection)) {
+                    continue;
+                }
+                String topicName = removeResourcePath(resourcePath);
+                if (topicName.length() > 0) {
+                    topicNames.add(topicName);
+                }
+                for (String childPath : ((Collection) resource).getChildren()) {
+                    String childName = getResourceName(childPath);
+                    if (EventBrokerConstants.EB_CONF_WS_SUBSCRIPTION_COLLECTION_NAME.equals(childName)) {
+                        topicWSSubscriptionsMap.put(topicName, readWSSubscriptions(resourcePath, childPath, userRegistry));
+                    } else if (EventBrokerConstants.EB_CONF_JMS_SUBSCRIPTION_COLLECTION_NAME.equals(childName)) {
+                        topicJMSSubscriptionsMap.put(topicName, readJMSSubscriptions(childPath, userRegistry));
+                    } else {
+                        // i.e. this folder is a topic folder
+                        pathsQueue.add(childPath);
                     }
                 }
-                topicNode.setChildren(nodes.toArray(new TopicNode[nodes.size()]));
             }
         } catch (RegistryException e) {
-            throw new EventBrokerException(e.getMessage(), e);
+            throw new EventBrokerException("Cannot access the registry", e);
         }
+        topicIndex.load(tenantId, modificationCount, topicNames, topicWSSubscriptionsMap, topicJMSSubscriptionsMap);
     }
 
     /**
@@ -152,6 +180,8 @@ public class RegistryTopicManager implements TopicManager {
             if (!userRegistry.resourceExists(resourcePath)) {
                 Collection collection = userRegistry.newCollection();
                 userRegistry.put(resourcePath, collection);
+                EventBrokerHolder.getInstance().getTopicIndex().addTopic(
+                        EventBrokerHolder.getInstance().getTenantId(), removeResourcePath(resourcePath));
                 if (loggedInUser != null) {
                     // Grant this user (owner) rights to update permission on newly created topic
                     UserRealm userRealm = EventBrokerHolder.getInstance().getRealmService().getTenantUserRealm(
@@ -162,6 +192,8 @@ public class RegistryTopicManager implements TopicManager {
                              .authorizeUser(loggedInUser, resourcePath, EventBrokerConstants.EB_PERMISSION_PUBLISH);
                     userRealm.getAuthorizationManager()
                              .authorizeUser(loggedInUser, resourcePath, EventBrokerConstants.EB_PERMISSION_SUBSCRIBE);
+                    EventBrokerHolder.getInstance().getAuthorizationCache().invalidateResource(
+                            CarbonContext.getThreadLocalCarbonContext().getTenantId(), resourcePath);
                 }
             }
         } catch (RegistryException e) {
@@ -173,6 +205,17 @@ public class RegistryTopicManager implements TopicManager {
         }
     }
 
+    /**
+     * Gets the name of a topic in the topic index, which is its resource path relative to the
+     * topic storage path
+     *
+     * @param topicName topic name
+     * @return the topic name in the index
+     */
+    private String getIndexTopicName(String topicName) {
+        return removeResourcePath(JavaUtil.getResourcePath(topicName, this.topicStoragePath));
+    }
+
     /**
      * Gets a topic name without the resource path
      *
@@ -278,6 +321,10 @@ public class RegistryTopicManager implements TopicManager {
             authorizePermissionsToLoggedInUser(loggedInUser, topicName, topicResourcePath, userRealm);
         } catch (UserStoreException e) {
             throw new EventBrokerException("Cannot access the user store manager", e);
+        } finally {
+            // cached decisions of this topic and its sub topics are no longer valid
+            EventBrokerHolder.getInstance().getAuthorizationCache().invalidateResource(
+                    CarbonContext.getThreadLocalCarbonContext().getTenantId(), topicResourcePath);
         }
     }
 
@@ -305,18 +352,10 @@ public class RegistryTopicManager implements TopicManager {
     @Override
     public Subscription[] getSubscriptions(String topicName,
                                            boolean withChildren) throws EventBrokerException {
-
-        List<Subscription> subscriptions = new ArrayList<Subscription>();
-        Queue<String> pathsQueue = new LinkedList<String>();
-        String resourcePath = JavaUtil.getResourcePath(topicName, this.topicStoragePath);
-
-        pathsQueue.add(resourcePath);
-        while (!pathsQueue.isEmpty()) {
-            addSubscriptions(pathsQueue.remove(), subscriptions, pathsQueue, withChildren);
-        }
-
+        int tenantId = EventBrokerHolder.getInstance().getTenantId();
+        List<Subscription> subscriptions =
+                getTopicIndex(tenantId).getWSSubscriptions(tenantId, getIndexTopicName(topicName), withChildren);
         return subscriptions.toArray(new Subscription[subscriptions.size()]);
-
     }
 
     /**
@@ -324,113 +363,72 @@ public class RegistryTopicManager implements TopicManager {
      */
     @Override
     public Subscription[] getJMSSubscriptions(String topicName) throws EventBrokerException {
-        try {
-            Subscription[] subscriptionsArray = new Subscription[0];
-
-            UserRegistry userRegistry =
-                    this.registryService.getGovernanceSystemRegistry(EventBrokerHolder.getInstance().getTenantId());
-            String resourcePath = JavaUtil.getResourcePath(topicName, this.topicStoragePath);
-            if (!resourcePath.endsWith("/")) {
-                resourcePath = resourcePath + "/";
-            }
-            resourcePath = resourcePath + EventBrokerConstants.EB_CONF_JMS_SUBSCRIPTION_COLLECTION_NAME;
-
-            // Get subscriptions
-            if (userRegistry.resourceExists(resourcePath)) {
-                Collection subscriptionCollection = (Collection) userRegistry.get(resourcePath);
-                subscriptionsArray =
-                        new Subscription[subscriptionCollection.getChildCount()];
-
-                int index = 0;
-                for (String subs : subscriptionCollection.getChildren()) {
-                    Collection subscription = (Collection) userRegistry.get(subs);
-
-                    Subscription subscriptionDetails = new Subscription();
-                    subscriptionDetails.setId(subscription.getProperty("Name"));
-                    subscriptionDetails.setOwner(subscription.getProperty("Owner"));
-                    subscriptionDetails.setCreatedTime(ConverterUtil.convertToDate(subscription.getProperty("createdTime")));
-
-                    subscriptionsArray[index++] = subscriptionDetails;
-                }
-            }
-
-            return subscriptionsArray;
-        } catch (RegistryException e) {
-            throw new EventBrokerException("Cannot read the registry resources ", e);
-        }
+        int tenantId = EventBrokerHolder.getInstance().getTenantId();
+        List<Subscription> subscriptions =
+                getTopicIndex(tenantId).getJMSSubscriptions(tenantId, getIndexTopicName(topicName));
+        return subscriptions.toArray(new Subscription[subscriptions.size()]);
     }
 
     /**
-     * Adds a subscriptions to a list using the resource path provided
+     * reads the ws subscriptions of a topic
      *
-     * @param resourcePath  the topic nam
-     * @param subscriptions a list of subscriptions for the topic
-     * @param pathsQueue    the topic folder
-     * @param withChildren  to add subscriptions to children. i.e subtopics
-     * @throws EventBrokerException
+     * @param resourcePath      the topic resource path
+     * @param subscriptionsPath the ws subscriptions collection of the topic
+     * @param userRegistry      user registry
+     * @return the subscriptions
+     * @throws RegistryException
      */
-    private void addSubscriptions(String resourcePath,
-                                  List<Subscription> subscriptions,
-                                  Queue<String> pathsQueue,
-                                  boolean withChildren) throws EventBrokerException {
-
-        try {
-            UserRegistry userRegistry =
-                    this.registryService.getGovernanceSystemRegistry(EventBrokerHolder.getInstance().getTenantId());
-            String subscriptionsPath = getSubscriptionsPath(resourcePath);
-
-            //first if there are subscriptions for this topic add them. else go to the other folders.
-            if (userRegistry.resourceExists(subscriptionsPath)) {
-                Collection collection = (Collection) userRegistry.get(subscriptionsPath);
-                for (String subscriptionPath : collection.getChildren()) {
-                    Resource subscriptionResource = userRegistry.get(subscriptionPath);
-                    Subscription subscription = JavaUtil.getSubscription(subscriptionResource);
+    private List<Subscription> readWSSubscriptions(String resourcePath,
+                                                   String subscriptionsPath,
+                                                   UserRegistry userRegistry) throws RegistryException {
+        List<Subscription> subscriptions = new ArrayList<Subscription>();
+        Resource collection = userRegistry.get(subscriptionsPath);
+        if (collection instanceof Collection) {
+            for (String subscriptionPath : ((Collection) collection).getChildren()) {
+                Resource subscriptionResource = userRegistry.get(subscriptionPath);
+                Subscription subscription = JavaUtil.getSubscription(subscriptionResource);
+                if (subscription.getTopicName() == null) {
+                    // the topic name it was subscribed to, which may have wild cards
                     subscription.setTopicName(removeResourcePath(resourcePath));
-
-                    if (subscriptionPath.endsWith("/")) {
-                        subscriptionPath = subscriptionsPath.substring(0, subscriptionPath.lastIndexOf("/"));
-                    }
-                    subscription.setId(subscriptionPath.substring(subscriptionPath.lastIndexOf("/") + 1));
-                    subscriptions.add(subscription);
                 }
+                subscription.setId(getResourceName(subscriptionPath));
+                subscriptions.add(subscription);
             }
+        }
+        return subscriptions;
+    }
 
-            // add child subscriptions only for resource collections
-            if (withChildren) {
-                Resource resource = userRegistry.get(resourcePath);
-                if (resource instanceof Collection) {
-                    Collection childResources = (Collection) resource;
-                    for (String childResourcePath : childResources.getChildren()) {
-                        if ((!EventBrokerConstants.EB_CONF_WS_SUBSCRIPTION_COLLECTION_NAME
-                                .contains(childResourcePath)) &&
-                            (!EventBrokerConstants.EB_CONF_JMS_SUBSCRIPTION_COLLECTION_NAME
-                                    .contains(childResourcePath))) {
-                            // i.e. this folder is a topic folder
-                            pathsQueue.add(childResourcePath);
-                        }
-                    }
-                }
+    /**
+     * reads the jms subscriptions of a topic
+     *
+     * @param subscriptionsPath the jms subscriptions collection of the topic
+     * @param userRegistry      user registry
+     * @return the subscriptions
+     * @throws RegistryException
+     */
+    private List<Subscription> readJMSSubscriptions(String subscriptionsPath,
+                                                    UserRegistry userRegistry) throws RegistryException {
+        List<Subscription> subscriptions = new ArrayList<Subscription>();
+        Resource collection = userRegistry.get(subscriptionsPath);
+        if (collection instanceof Collection) {
+            for (String subs : ((Collection) collection).getChildren()) {
+                subscriptions.add(JavaUtil.getJMSSubscription(userRegistry.get(subs)));
             }
-
-        } catch (RegistryException e) {
-            throw new EventBrokerException("Cannot access the registry", e);
         }
+        return subscriptions;
     }
 
     /**
-     * Gets the subscription path for a topic
+     * Gets the last element of a resource path
      *
-     * @param topicName topic name
-     * @return the subscription path as string
+     * @param resourcePath resource path
+     * @return the resource name
      */
-    private String getSubscriptionsPath(String topicName) {
-
-        if (!topicName.endsWith("/")) {
-            topicName = topicName + "/";
+    private String getResourceName(String resourcePath) {
+        if (resourcePath.endsWith("/")) {
+            resourcePath = resourcePath.substring(0, resourcePath.length() - 1);
         }
-
-        topicName = topicName + EventBrokerConstants.EB_CONF_WS_SUBSCRIPTION_COLLECTION_NAME;
-        return topicName;
+        return resourcePath.substring(resourcePath.lastIndexOf("/") + 1);
     }
 
     /**
@@ -491,9 +489,13 @@ public class RegistryTopicManager implements TopicManager {
             String resourcePath = JavaUtil.getResourcePath(topicName, this.topicStoragePath);
 
             removeRoleCreateForLoggedInUser(topicName);
+            EventBrokerHolder.getInstance().getAuthorizationCache().invalidateResource(
+                    EventBrokerHolder.getInstance().getTenantId(), resourcePath);
 
             if (userRegistry.resourceExists(resourcePath)) {
                 userRegistry.delete(resourcePath);
+                EventBrokerHolder.getInstance().getTopicIndex().removeTopic(
+                        EventBrokerHolder.getInstance().getTenantId(), removeResourcePath(resourcePath));
                 return true;
             } else {
                 return false;
@@ -0,0 +1,702 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.topic.registry;
+
+import org.apache.axis2.clustering.ClusteringAgent;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.subscription.Subscription;
+import org.wso2.carbon.event.core.topic.TopicNode;
+import org.wso2.carbon.utils.ConfigurationContextService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * in memory index of the topics stored as registry collections and of the ws and jms
+ * subscriptions stored under them. The topics and subscriptions of a tenant are read from the
+ * registry once by the {@link Loader} and then kept up to date with the changes done through the
+ * event broker and the registry of this node (see {@link TopicIndexRegistryHandler}). Each change
+ * is sent to the other nodes of the cluster with a {@link TopicIndexClusterMessage}, so the index
+ * is not rebuilt to see the changes of the other nodes.
+ * <p/>
+ * A change which could not be sent leaves the other nodes out of sync. The tenant is then read
+ * again on this node, and every tenant is read again after the rebuild interval, so that such a
+ * change is seen by all the nodes within that interval.
+ * <p/>
+ * Topic names are the registry paths relative to the topic storage path and are compared ignoring
+ * the leading and trailing /. The child topics are kept sorted by name so that they can be listed
+ * page by page. Subscriptions can also be found by their topic, event sink url and owner, where
+ * the event sink urls are compared ignoring the case.
+ */
+@Deprecated
+public class TopicIndex {
+
+    private static final Log log = LogFactory.getLog(TopicIndex.class);
+
+    private static final String ROOT_TOPIC = "/";
+
+    public static final long DEFAULT_REBUILD_INTERVAL = 600000;
+
+    /**
+     * reads the topics and subscriptions of a tenant from the registry
+     */
+    public interface Loader {
+
+        /**
+         * reads the registry and passes the topics and subscriptions to
+         * {@link TopicIndex#load(int, long, List, Map, Map)}
+         *
+         * @param topicIndex topic index
+         * @param tenantId   tenant id
+         * @throws EventBrokerException if can not read the registry
+         */
+        void loadTenant(TopicIndex topicIndex, int tenantId) throws EventBrokerException;
+    }
+
+    private ConcurrentMap<Integer, TenantIndex> tenantIDIndexMap;
+
+    private volatile Loader loader;
+
+    /**
+     * time in milli seconds after which a tenant is read again from the registry, 0 never reads
+     * it again
+     */
+    private volatile long rebuildInterval;
+
+    public TopicIndex() {
+        this(DEFAULT_REBUILD_INTERVAL);
+    }
+
+    public TopicIndex(long rebuildInterval) {
+        this.tenantIDIndexMap = new ConcurrentHashMap<Integer, TenantIndex>();
+        this.rebuildInterval = rebuildInterval;
+    }
+
+    public void setRebuildInterval(long rebuildInterval) {
+        this.rebuildInterval = rebuildInterval;
+    }
+
+    public void setLoader(Loader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * @return true if the index can read the tenants from the registry
+     */
+    public boolean hasLoader() {
+        return this.loader != null;
+    }
+
+    /**
+     * @param tenantId tenant id
+     * @return true if the topics and subscriptions of the tenant are loaded and need not be read
+     *         again yet
+     */
+    public boolean isLoaded(int tenantId) {
+        TenantIndex tenantIndex = this.tenantIDIndexMap.get(tenantId);
+        return (tenantIndex != null) && isCurrent(tenantIndex);
+    }
+
+    /**
+     * reads the tenant from the registry if it is not loaded yet, if it was modified while it
+     * was read last time or if it was read before the rebuild interval
+     *
+     * @param tenantId tenant id
+     * @throws EventBrokerException if there is no loader or can not read the registry
+     */
+    public void ensureLoaded(int tenantId) throws EventBrokerException {
+        if (isLoaded(tenantId)) {
+            return;
+        }
+        Loader currentLoader = this.loader;
+        if (currentLoader == null) {
+            throw new EventBrokerException("Topic index can not be loaded, there is no registry topic manager");
+        }
+        TenantIndex tenantIndex = getTenantIndex(tenantId);
+        synchronized (tenantIndex.loadLock) {
+            if (!isCurrent(tenantIndex)) {
+                currentLoader.loadTenant(this, tenantId);
+            }
+        }
+    }
+
+    /**
+     * gets the modification count of the tenant index. This must be taken before reading the
+     * registry to rebuild the index and passed to {@link #load(int, long, List, Map, Map)}
+     *
+     * @param tenantId tenant id
+     * @return the modification count
+     */
+    public long getModificationCount(int tenantId) {
+        return getTenantIndex(tenantId).modificationCount.get();
+    }
+
+    /**
+     * replaces the tenant index with the topics and subscriptions read from the registry. If the
+     * index has been modified while reading the registry the new index is used but it is not
+     * marked as loaded, so that it is read again on the next use without loosing the modification.
+     * The index is used by the readers until it is replaced, also while it is read again.
+     *
+     * @param tenantId                 tenant id
+     * @param modificationCount        modification count taken before reading the registry
+     * @param topicNames               names of all the topics of the tenant
+     * @param topicWSSubscriptionsMap  ws subscriptions against the name of their topic
+     * @param topicJMSSubscriptionsMap jms subscriptions against the name of their topic
+     */
+    public void load(int tenantId, long modificationCount, List<String> topicNames,
+                     Map<String, List<Subscription>> topicWSSubscriptionsMap,
+                     Map<String, List<Subscription>> topicJMSSubscriptionsMap) {
+        TenantIndex tenantIndex = getTenantIndex(tenantId);
+        IndexData indexData = new IndexData();
+        for (String topicName : topicNames) {
+            indexData.addTopic(normalizeTopicName(topicName));
+        }
+        for (Map.Entry<String, List<Subscription>> entry : topicWSSubscriptionsMap.entrySet()) {
+            for (Subscription subscription : entry.getValue()) {
+                indexData.putSubscription(normalizeTopicName(entry.getKey()), subscription, false);
+            }
+        }
+        for (Map.Entry<String, List<Subscription>> entry : topicJMSSubscriptionsMap.entrySet()) {
+            for (Subscription subscription : entry.getValue()) {
+                indexData.putSubscription(normalizeTopicName(entry.getKey()), subscription, true);
+            }
+        }
+
+        synchronized (tenantIndex) {
+            tenantIndex.data = indexData;
+            tenantIndex.loaded = (tenantIndex.modificationCount.get() == modificationCount);
+            tenantIndex.loadTime = currentTimeMillis();
+        }
+    }
+
+    /**
+     * adds a topic along with any of its parent topics which are not in the index, on all the
+     * nodes
+     *
+     * @param tenantId  tenant id
+     * @param topicName topic name
+     */
+    public void addTopic(int tenantId, String topicName) {
+        if (applyAddTopic(tenantId, topicName)) {
+            sendClusterMessage(tenantId, TopicIndexClusterMessage.addTopic(tenantId, topicName));
+        }
+    }
+
+    /**
+     * removes the topic, all its sub topics and their subscriptions on all the nodes
+     *
+     * @param tenantId  tenant id
+     * @param topicName topic name
+     */
+    public void removeTopic(int tenantId, String topicName) {
+        if (applyRemoveTopic(tenantId, topicName)) {
+            sendClusterMessage(tenantId, TopicIndexClusterMessage.removeTopic(tenantId, topicName));
+        }
+    }
+
+    /**
+     * adds or replaces a ws subscription of a topic on all the nodes. The topic is added to the
+     * index if it is not there.
+     *
+     * @param tenantId     tenant id
+     * @param topicName    name of the topic the subscription is stored under
+     * @param subscription the subscription, with the topic name it was subscribed to
+     */
+    public void putWSSubscription(int tenantId, String topicName, Subscription subscription) {
+        applyPutSubscription(tenantId, topicName, subscription, false);
+        sendClusterMessage(tenantId, TopicIndexClusterMessage.putSubscription(tenantId, topicName, subscription, false));
+    }
+
+    /**
+     * adds or replaces a jms subscription of a topic on all the nodes
+     *
+     * @param tenantId     tenant id
+     * @param topicName    name of the topic the subscription is stored under
+     * @param subscription the subscription
+     */
+    public void putJMSSubscription(int tenantId, String topicName, Subscription subscription) {
+        applyPutSubscription(tenantId, topicName, subscription, true);
+        sendClusterMessage(tenantId, TopicIndexClusterMessage.putSubscription(tenantId, topicName, subscription, true));
+    }
+
+    /**
+     * removes the ws and jms subscriptions with the given id on all the nodes
+     *
+     * @param tenantId       tenant id
+     * @param subscriptionID subscription id
+     */
+    public void removeSubscription(int tenantId, String subscriptionID) {
+        if (applyRemoveSubscription(tenantId, subscriptionID)) {
+            sendClusterMessage(tenantId, TopicIndexClusterMessage.removeSubscription(tenantId, subscriptionID));
+        }
+    }
+
+    /**
+     * @param tenantId tenant id
+     * @return the whole topic tree of the tenant
+     */
+    public TopicNode getTopicTree(int tenantId) {
+        TopicNode rootTopic = new TopicNode(ROOT_TOPIC, ROOT_TOPIC);
+        buildTopicTree(rootTopic, "", getIndexData(tenantId).root);
+        return rootTopic;
+    }
+
+    /**
+     * lists a page of the direct sub topics of a topic. The returned nodes do not have their
+     * children set but carry the number of children, so that they can be expanded on demand.
+     *
+     * @param tenantId   tenant id
+     * @param topicName  topic name, / for the root of the tree
+     * @param startIndex index of the first sub topic to return
+     * @param count      maximum number of sub topics to return
+     * @return the sub topics sorted by name, an empty array if the topic does not exist
+     */
+    public TopicNode[] getChildren(int tenantId, String topicName, int startIndex, int count) {
+        List<TopicNode> topicNodes = new ArrayList<TopicNode>();
+        String name = normalizeTopicName(topicName);
+        TreeNode treeNode = getNode(getIndexData(tenantId).root, name);
+        if (treeNode != null) {
+            int index = 0;
+            for (Map.Entry<String, TreeNode> entry : treeNode.children.entrySet()) {
+                if (topicNodes.size() >= count) {
+                    break;
+                }
+                if (index++ >= startIndex) {
+                    topicNodes.add(newTopicNode(name, entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+        return topicNodes.toArray(new TopicNode[topicNodes.size()]);
+    }
+
+    /**
+     * @param tenantId     tenant id
+     * @param topicName    topic name
+     * @param withChildren whether to include the subscriptions of the sub topics
+     * @return the ws subscriptions of the topic
+     */
+    public List<Subscription> getWSSubscriptions(int tenantId, String topicName, boolean withChildren) {
+        List<Subscription> subscriptions = new ArrayList<Subscription>();
+        TreeNode treeNode = getNode(getIndexData(tenantId).root, normalizeTopicName(topicName));
+        if (treeNode != null) {
+            addWSSubscriptions(treeNode, withChildren, subscriptions);
+        }
+        return subscriptions;
+    }
+
+    /**
+     * @param tenantId  tenant id
+     * @param topicName topic name
+     * @return the jms subscriptions of the topic
+     */
+    public List<Subscription> getJMSSubscriptions(int tenantId, String topicName) {
+        List<Subscription> subscriptions = new ArrayList<Subscription>();
+        TreeNode treeNode = getNode(getIndexData(tenantId).root, normalizeTopicName(topicName));
+        if (treeNode != null) {
+            subscriptions.addAll(treeNode.jmsSubscriptions.values());
+        }
+        return subscriptions;
+    }
+
+    /**
+     * @param tenantId     tenant id
+     * @param topicName    topic name the subscription was subscribed to
+     * @param eventSinkURL event sink url
+     * @param owner        owner of the subscription
+     * @return the ws subscription of the owner to the topic with the event sink url or null if
+     *         there is no such subscription
+     */
+    public Subscription getSubscription(int tenantId, String topicName, String eventSinkURL, String owner) {
+        return getIndexData(tenantId).keySubscriptionMap.get(
+                new SubscriptionKey(topicName, eventSinkURL, owner));
+    }
+
+    /**
+     * removes the index of the tenant on this node. It is read again on the next use.
+     *
+     * @param tenantId tenant id
+     */
+    public void clear(int tenantId) {
+        this.tenantIDIndexMap.remove(tenantId);
+    }
+
+    /**
+     * @return current time in milli seconds, used to find the tenants to read again
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @return true if the index was changed, or may have been changed since the tenant is not
+     *         loaded
+     */
+    boolean applyAddTopic(int tenantId, String topicName) {
+        TenantIndex tenantIndex = getTenantIndex(tenantId);
+        synchronized (tenantIndex) {
+            // adding an existing topic, e.g. for each subscription put under it, is not a change
+            return tenantIndex.modified(tenantIndex.data.addTopic(normalizeTopicName(topicName)));
+        }
+    }
+
+    boolean applyRemoveTopic(int tenantId, String topicName) {
+        TenantIndex tenantIndex = getTenantIndex(tenantId);
+        synchronized (tenantIndex) {
+            return tenantIndex.modified(tenantIndex.data.removeTopic(normalizeTopicName(topicName)));
+        }
+    }
+
+    void applyPutSubscription(int tenantId, String topicName, Subscription subscription, boolean jms) {
+        TenantIndex tenantIndex = getTenantIndex(tenantId);
+        synchronized (tenantIndex) {
+            tenantIndex.data.putSubscription(normalizeTopicName(topicName), subscription, jms);
+            tenantIndex.modified(true);
+        }
+    }
+
+    boolean applyRemoveSubscription(int tenantId, String subscriptionID) {
+        TenantIndex tenantIndex = getTenantIndex(tenantId);
+        synchronized (tenantIndex) {
+            return tenantIndex.modified(tenantIndex.data.removeSubscription(subscriptionID));
+        }
+    }
+
+    /**
+     * @return true if this node has an index of the tenant, changes of the other nodes are only
+     *         applied to them
+     */
+    boolean hasTenant(int tenantId) {
+        return this.tenantIDIndexMap.containsKey(tenantId);
+    }
+
+    private boolean isCurrent(TenantIndex tenantIndex) {
+        long currentRebuildInterval = this.rebuildInterval;
+        return tenantIndex.loaded && ((currentRebuildInterval <= 0)
+                                      || (currentTimeMillis() - tenantIndex.loadTime < currentRebuildInterval));
+    }
+
+    private void sendClusterMessage(int tenantId, TopicIndexClusterMessage clusterMessage) {
+        ConfigurationContextService configurationContextService =
+                EventBrokerHolder.getInstance().getConfigurationContextService();
+        if (configurationContextService == null) {
+            return;
+        }
+        ClusteringAgent agent =
+                configurationContextService.getServerConfigContext().getAxisConfiguration().getClusteringAgent();
+        if (agent == null) {
+            // not clustered, there are no other nodes to inform
+            return;
+        }
+        try {
+            agent.sendMessage(clusterMessage, false);
+        } catch (ClusteringFault e) {
+            // other nodes see the change once their index of the tenant is read again after the
+            // rebuild interval. This node may have missed their changes for the same reason, so
+            // its index of the tenant is read again on the next use.
+            log.error("Topic index cluster message sending failed, the topic index of tenant " + tenantId
+                      + " is read again from the registry", e);
+            clear(tenantId);
+        }
+    }
+
+    private void addWSSubscriptions(TreeNode treeNode, boolean withChildren, List<Subscription> subscriptions) {
+        subscriptions.addAll(treeNode.wsSubscriptions.values());
+        if (withChildren) {
+            for (TreeNode childNode : treeNode.children.values()) {
+                addWSSubscriptions(childNode, true, subscriptions);
+            }
+        }
+    }
+
+    private void buildTopicTree(TopicNode topicNode, String topicName, TreeNode treeNode) {
+        List<TopicNode> childTopicNodes = new ArrayList<TopicNode>();
+        for (Map.Entry<String, TreeNode> entry : treeNode.children.entrySet()) {
+            TopicNode childTopicNode = newTopicNode(topicName, entry.getKey(), entry.getValue());
+            buildTopicTree(childTopicNode, childTopicNode.getTopicName(), entry.getValue());
+            childTopicNodes.add(childTopicNode);
+        }
+        topicNode.setChildCount(treeNode.childCount);
+        topicNode.setChildren(childTopicNodes.toArray(new TopicNode[childTopicNodes.size()]));
+    }
+
+    private TopicNode newTopicNode(String parentTopicName, String nodeName, TreeNode treeNode) {
+        String topicName = (parentTopicName.length() == 0) ? nodeName : parentTopicName + "/" + nodeName;
+        TopicNode topicNode = new TopicNode(nodeName, topicName);
+        topicNode.setChildCount(treeNode.childCount);
+        return topicNode;
+    }
+
+    private static TreeNode getNode(TreeNode root, String topicName) {
+        if (topicName.length() == 0) {
+            return root;
+        }
+        TreeNode treeNode = root;
+        for (String nodeName : topicName.split("/")) {
+            if (nodeName.length() == 0) {
+                continue;
+            }
+            treeNode = treeNode.children.get(nodeName);
+            if (treeNode == null) {
+                return null;
+            }
+        }
+        return treeNode;
+    }
+
+    private IndexData getIndexData(int tenantId) {
+        TenantIndex tenantIndex = this.tenantIDIndexMap.get(tenantId);
+        return (tenantIndex == null) ? new IndexData() : tenantIndex.data;
+    }
+
+    private TenantIndex getTenantIndex(int tenantId) {
+        TenantIndex tenantIndex = this.tenantIDIndexMap.get(tenantId);
+        if (tenantIndex == null) {
+            tenantIndex = new TenantIndex();
+            TenantIndex existingTenantIndex = this.tenantIDIndexMap.putIfAbsent(tenantId, tenantIndex);
+            if (existingTenantIndex != null) {
+                tenantIndex = existingTenantIndex;
+            }
+        }
+        return tenantIndex;
+    }
+
+    private static String normalizeTopicName(String topicName) {
+        if (topicName == null) {
+            return "";
+        }
+        int start = 0;
+        int end = topicName.length();
+        while (start < end && topicName.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && topicName.charAt(end - 1) == '/') {
+            end--;
+        }
+        return topicName.substring(start, end);
+    }
+
+    private static final class TenantIndex {
+
+        private final Object loadLock = new Object();
+        private final AtomicLong modificationCount = new AtomicLong();
+        private volatile IndexData data = new IndexData();
+        private volatile boolean loaded;
+        private volatile long loadTime;
+
+        /**
+         * counts a change. A change is also counted if the tenant is not loaded, since a load
+         * running meanwhile may have read the registry before the change.
+         *
+         * @param changed whether the index was changed
+         * @return true if the change must be sent to the other nodes
+         */
+        private boolean modified(boolean changed) {
+            if (changed || !this.loaded) {
+                this.modificationCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * the topics and subscriptions of a tenant, replaced as a whole when the tenant is loaded.
+     * It is only modified while holding the lock of the tenant index and read without it.
+     */
+    private static final class IndexData {
+
+        private final TreeNode root = new TreeNode();
+        private final Map<String, IndexedSubscription> idSubscriptionMap =
+                new ConcurrentHashMap<String, IndexedSubscription>();
+        private final ConcurrentMap<SubscriptionKey, Subscription> keySubscriptionMap =
+                new ConcurrentHashMap<SubscriptionKey, Subscription>();
+
+        /**
+         * @return true if any node was added
+         */
+        private boolean addTopic(String topicName) {
+            return getOrAddNode(topicName) != null;
+        }
+
+        /**
+         * @return the node of the topic if it was added, otherwise null
+         */
+        private TreeNode getOrAddNode(String topicName) {
+            TreeNode treeNode = this.root;
+            TreeNode addedNode = null;
+            for (String nodeName : topicName.split("/")) {
+                if (nodeName.length() == 0) {
+                    continue;
+                }
+                TreeNode childNode = treeNode.children.get(nodeName);
+                if (childNode == null) {
+                    childNode = new TreeNode();
+                    treeNode.children.put(nodeName, childNode);
+                    treeNode.childCount++;
+                    addedNode = childNode;
+                }
+                treeNode = childNode;
+            }
+            return (addedNode == null) ? null : treeNode;
+        }
+
+        private boolean removeTopic(String topicName) {
+            TreeNode treeNode;
+            if (topicName.length() == 0) {
+                treeNode = this.root;
+            } else {
+                int index = topicName.lastIndexOf('/');
+                TreeNode parent = (index < 0) ? this.root : getNode(this.root, topicName.substring(0, index));
+                treeNode = (parent == null) ? null : parent.children.remove(topicName.substring(index + 1));
+                if (treeNode == null) {
+                    return false;
+                }
+                parent.childCount--;
+            }
+            removeSubscriptions(treeNode);
+            if (treeNode == this.root) {
+                boolean changed = !this.root.children.isEmpty();
+                this.root.children.clear();
+                this.root.childCount = 0;
+                return changed;
+            }
+            return true;
+        }
+
+        private void removeSubscriptions(TreeNode treeNode) {
+            for (String subscriptionID : treeNode.wsSubscriptions.keySet()) {
+                removeSubscription(subscriptionID);
+            }
+            for (String subscriptionID : treeNode.jmsSubscriptions.keySet()) {
+                removeSubscription(subscriptionID);
+            }
+            for (TreeNode childNode : treeNode.children.values()) {
+                removeSubscriptions(childNode);
+            }
+        }
+
+        private void putSubscription(String topicName, Subscription subscription, boolean jms) {
+            if (subscription.getId() == null) {
+                return;
+            }
+            removeSubscription(subscription.getId());
+            TreeNode treeNode = getNode(this.root, topicName);
+            if (treeNode == null) {
+                // a subscription put under a topic creates the topic collection as well
+                treeNode = getOrAddNode(topicName);
+            }
+            IndexedSubscription indexedSubscription = new IndexedSubscription(treeNode, subscription, jms);
+            this.idSubscriptionMap.put(subscription.getId(), indexedSubscription);
+            if (jms) {
+                treeNode.jmsSubscriptions.put(subscription.getId(), subscription);
+            } else {
+                treeNode.wsSubscriptions.put(subscription.getId(), subscription);
+                // the latest subscription is kept if there are several with the same key
+                this.keySubscriptionMap.put(indexedSubscription.getKey(), subscription);
+            }
+        }
+
+        private boolean removeSubscription(String subscriptionID) {
+            IndexedSubscription indexedSubscription = this.idSubscriptionMap.remove(subscriptionID);
+            if (indexedSubscription == null) {
+                return false;
+            }
+            if (indexedSubscription.jms) {
+                indexedSubscription.treeNode.jmsSubscriptions.remove(subscriptionID);
+            } else {
+                indexedSubscription.treeNode.wsSubscriptions.remove(subscriptionID);
+                // only remove the key if it still refers to this subscription
+                this.keySubscriptionMap.remove(indexedSubscription.getKey(), indexedSubscription.subscription);
+            }
+            return true;
+        }
+    }
+
+    private static final class TreeNode {
+
+        private final ConcurrentNavigableMap<String, TreeNode> children =
+                new ConcurrentSkipListMap<String, TreeNode>();
+        private final Map<String, Subscription> wsSubscriptions =
+                new ConcurrentHashMap<String, Subscription>();
+        private final Map<String, Subscription> jmsSubscriptions =
+                new ConcurrentHashMap<String, Subscription>();
+        private volatile int childCount;
+    }
+
+    private static final class IndexedSubscription {
+
+        private final TreeNode treeNode;
+        private final Subscription subscription;
+        private final boolean jms;
+
+        private IndexedSubscription(TreeNode treeNode, Subscription subscription, boolean jms) {
+            this.treeNode = treeNode;
+            this.subscription = subscription;
+            this.jms = jms;
+        }
+
+        private SubscriptionKey getKey() {
+            return new SubscriptionKey(this.subscription.getTopicName(), this.subscription.getEventSinkURL(),
+                                       this.subscription.getOwner());
+        }
+    }
+
+    private static final class SubscriptionKey {
+
+        private final String topicName;
+        private final String eventSinkURL;
+        private final String owner;
+
+        private SubscriptionKey(String topicName, String eventSinkURL, String owner) {
+            this.topicName = normalizeTopicName(topicName);
+            this.eventSinkURL = (eventSinkURL == null) ? "" : eventSinkURL.toLowerCase();
+            this.owner = (owner == null) ? "" : owner;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SubscriptionKey)) {
+                return false;
+            }
+            SubscriptionKey that = (SubscriptionKey) o;
+            return this.topicName.equals(that.topicName) && this.eventSinkURL.equals(that.eventSinkURL)
+                   && this.owner.equals(that.owner);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.topicName.hashCode();
+            result = 31 * result + this.eventSinkURL.hashCode();
+            result = 31 * result + this.owner.hashCode();
+            return result;
+        }
+    }
+}
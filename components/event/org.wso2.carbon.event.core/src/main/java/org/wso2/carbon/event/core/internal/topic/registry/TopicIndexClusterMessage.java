@@ -0,0 +1,114 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.topic.registry;
+
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.ClusteringMessage;
+import org.apache.axis2.context.ConfigurationContext;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.io.Serializable;
+
+/**
+ * cluster message which applies a change of the topics or subscriptions of a tenant to the
+ * {@link TopicIndex} of the other nodes. Nodes which have not read the tenant yet ignore it.
+ */
+@Deprecated
+public class TopicIndexClusterMessage extends ClusteringMessage implements Serializable {
+
+    private static final long serialVersionUID = 4093387312542016263L;
+
+    private static final int ADD_TOPIC = 0;
+    private static final int REMOVE_TOPIC = 1;
+    private static final int PUT_WS_SUBSCRIPTION = 2;
+    private static final int PUT_JMS_SUBSCRIPTION = 3;
+    private static final int REMOVE_SUBSCRIPTION = 4;
+
+    private int operation;
+    private int tenantId;
+    private String topicName;
+    private Subscription subscription;
+    private String subscriptionID;
+
+    private TopicIndexClusterMessage(int operation, int tenantId) {
+        this.operation = operation;
+        this.tenantId = tenantId;
+    }
+
+    static TopicIndexClusterMessage addTopic(int tenantId, String topicName) {
+        TopicIndexClusterMessage clusterMessage = new TopicIndexClusterMessage(ADD_TOPIC, tenantId);
+        clusterMessage.topicName = topicName;
+        return clusterMessage;
+    }
+
+    static TopicIndexClusterMessage removeTopic(int tenantId, String topicName) {
+        TopicIndexClusterMessage clusterMessage = new TopicIndexClusterMessage(REMOVE_TOPIC, tenantId);
+        clusterMessage.topicName = topicName;
+        return clusterMessage;
+    }
+
+    static TopicIndexClusterMessage putSubscription(int tenantId, String topicName,
+                                                    Subscription subscription, boolean jms) {
+        TopicIndexClusterMessage clusterMessage =
+                new TopicIndexClusterMessage(jms ? PUT_JMS_SUBSCRIPTION : PUT_WS_SUBSCRIPTION, tenantId);
+        clusterMessage.topicName = topicName;
+        clusterMessage.subscription = subscription;
+        return clusterMessage;
+    }
+
+    static TopicIndexClusterMessage removeSubscription(int tenantId, String subscriptionID) {
+        TopicIndexClusterMessage clusterMessage = new TopicIndexClusterMessage(REMOVE_SUBSCRIPTION, tenantId);
+        clusterMessage.subscriptionID = subscriptionID;
+        return clusterMessage;
+    }
+
+    @Override
+    public ClusteringCommand getResponse() {
+        return null;
+    }
+
+    @Override
+    public void execute(ConfigurationContext configurationContext) throws ClusteringFault {
+        TopicIndex topicIndex = EventBrokerHolder.getInstance().getTopicIndex();
+        if (!topicIndex.hasTenant(this.tenantId)) {
+            // the tenant is read from the registry when it is first used
+            return;
+        }
+        switch (this.operation) {
+            case ADD_TOPIC:
+                topicIndex.applyAddTopic(this.tenantId, this.topicName);
+                break;
+            case REMOVE_TOPIC:
+                topicIndex.applyRemoveTopic(this.tenantId, this.topicName);
+                break;
+            case PUT_WS_SUBSCRIPTION:
+                topicIndex.applyPutSubscription(this.tenantId, this.topicName, this.subscription, false);
+                break;
+            case PUT_JMS_SUBSCRIPTION:
+                topicIndex.applyPutSubscription(this.tenantId, this.topicName, this.subscription, true);
+                break;
+            case REMOVE_SUBSCRIPTION:
+                topicIndex.applyRemoveSubscription(this.tenantId, this.subscriptionID);
+                break;
+            default:
+                throw new ClusteringFault("Unknown topic index operation " + this.operation);
+        }
+    }
+}
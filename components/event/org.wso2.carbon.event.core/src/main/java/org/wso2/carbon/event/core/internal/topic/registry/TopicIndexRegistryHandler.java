@@ -0,0 +1,118 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.core.internal.topic.registry;
+
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.internal.util.JavaUtil;
+import org.wso2.carbon.event.core.util.EventBrokerConstants;
+import org.wso2.carbon.registry.core.Collection;
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.jdbc.handlers.Handler;
+import org.wso2.carbon.registry.core.jdbc.handlers.RequestContext;
+import org.wso2.carbon.registry.core.session.CurrentSession;
+
+/**
+ * registry handler which applies the changes of the topic collections to the {@link TopicIndex},
+ * so that the topics created by other components writing to the topic storage path (e.g. putting
+ * a subscription under a new topic) and the jms subscriptions written by the message broker are
+ * seen without reading the registry again. The handler is registered for the commit phase, so it
+ * is only invoked once the registry operation has been committed.
+ */
+@Deprecated
+public class TopicIndexRegistryHandler extends Handler {
+
+    private String topicStoragePath;
+
+    /**
+     * @param topicStoragePath the topic registry path, relative to the governance registry
+     */
+    public TopicIndexRegistryHandler(String topicStoragePath) {
+        this.topicStoragePath = "/" + topicStoragePath.replaceAll("^/+|/+$", "") + "/";
+    }
+
+    @Override
+    public void put(RequestContext requestContext) throws RegistryException {
+        String topicName = getTopicName(requestContext.getResourcePath().getPath());
+        if (topicName == null) {
+            return;
+        }
+        TopicIndex topicIndex = EventBrokerHolder.getInstance().getTopicIndex();
+        int subscriptionsIndex = getSubscriptionsIndex(topicName);
+        if (subscriptionsIndex >= 0) {
+            // the index is the one of the / before the collection name
+            if (("/" + topicName).startsWith(
+                    "/" + EventBrokerConstants.EB_CONF_JMS_SUBSCRIPTION_COLLECTION_NAME + "/", subscriptionsIndex)
+                && !(requestContext.getResource() instanceof Collection)) {
+                topicIndex.putJMSSubscription(CurrentSession.getTenantId(), topicName.substring(0, subscriptionsIndex),
+                                              JavaUtil.getJMSSubscription(requestContext.getResource()));
+                return;
+            }
+            // a subscription put under a topic creates the topic collection as well
+            topicName = topicName.substring(0, subscriptionsIndex);
+        } else if (!(requestContext.getResource() instanceof Collection)) {
+            return;
+        }
+        if (topicName.length() > 0) {
+            topicIndex.addTopic(CurrentSession.getTenantId(), topicName);
+        }
+    }
+
+    @Override
+    public void delete(RequestContext requestContext) throws RegistryException {
+        String topicName = getTopicName(requestContext.getResourcePath().getPath());
+        if (topicName == null) {
+            return;
+        }
+        TopicIndex topicIndex = EventBrokerHolder.getInstance().getTopicIndex();
+        int subscriptionsIndex = getSubscriptionsIndex(topicName);
+        if (subscriptionsIndex < 0) {
+            topicIndex.removeTopic(CurrentSession.getTenantId(), topicName);
+        } else if (topicName.lastIndexOf('/') > subscriptionsIndex) {
+            // a ws or jms subscription, named by its id
+            topicIndex.removeSubscription(CurrentSession.getTenantId(),
+                                          topicName.substring(topicName.lastIndexOf('/') + 1));
+        }
+    }
+    /**
+     * @param path absolute registry path
+     * @return the topic name relative to the topic storage path or null if the path is not under it
+     */
+    private String getTopicName(String path) {
+        if (path == null) {
+            return null;
+        }
+        int index = path.indexOf(this.topicStoragePath);
+        return (index < 0) ? null : path.substring(index + this.topicStoragePath.length());
+    }
+
+    /**
+     * @param topicName topic name
+     * @return index of the first ws or jms subscriptions collection in the name, -1 if there is none
+     */
+    private int getSubscriptionsIndex(String topicName) {
+        String path = "/" + topicName + "/";
+        int index = -1;
+        for (String collectionName : new String[]{
+                EventBrokerConstants.EB_CONF_WS_SUBSCRIPTION_COLLECTION_NAME,
+                EventBrokerConstants.EB_CONF_JMS_SUBSCRIPTION_COLLECTION_NAME}) {
+            int collectionIndex = path.indexOf("/" + collectionName + "/");
+            if ((collectionIndex >= 0) && ((index < 0) || (collectionIndex < index))) {
+                index = collectionIndex;
+            }
+        }
+        return index;
+    }
+}
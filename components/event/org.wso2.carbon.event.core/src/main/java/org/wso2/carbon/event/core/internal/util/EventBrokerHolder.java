@@ -17,11 +17,22 @@
 package org.wso2.carbon.event.core.internal.util;
 
 import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.event.core.delivery.EndpointCircuitBreaker;
+import org.wso2.carbon.event.core.internal.authorization.AuthorizationCache;
+import org.wso2.carbon.event.core.internal.delivery.CircuitHoldingQueue;
+import org.wso2.carbon.event.core.internal.delivery.RetryScheduler;
+import org.wso2.carbon.event.core.internal.journal.EventJournal;
+import org.wso2.carbon.event.core.internal.metrics.TopicMetrics;
+import org.wso2.carbon.event.core.internal.topic.registry.TopicIndex;
+import org.wso2.carbon.event.core.sharedmemory.MatchingNearCache;
+import org.wso2.carbon.event.core.sharedmemory.partition.SubscriptionPartitioner;
 import org.wso2.carbon.registry.core.service.RegistryService;
 import org.wso2.carbon.user.api.UserRealmService;
 import org.wso2.carbon.utils.ConfigurationContextService;
 import org.wso2.carbon.event.core.qpid.QpidServerDetails;
 
+import java.util.concurrent.Executor;
+
 @Deprecated
 public class EventBrokerHolder {
 
@@ -31,6 +42,16 @@ public class EventBrokerHolder {
     private QpidServerDetails qpidServerDetails;
     private UserRealmService realmService;
     private ConfigurationContextService configurationContextService;
+    private AuthorizationCache authorizationCache = new AuthorizationCache();
+    private TopicIndex topicIndex = new TopicIndex();
+    private EventJournal eventJournal;
+    private RetryScheduler retryScheduler;
+    private TopicMetrics topicMetrics;
+    private MatchingNearCache matchingNearCache;
+    private SubscriptionPartitioner subscriptionPartitioner;
+    private EndpointCircuitBreaker endpointCircuitBreaker;
+    private CircuitHoldingQueue circuitHoldingQueue;
+    private Executor deliveryExecutor;
 
     private EventBrokerHolder() {
     }
@@ -71,6 +92,111 @@ public class EventBrokerHolder {
         this.configurationContextService = configurationContextService;
     }
 
+    public AuthorizationCache getAuthorizationCache() {
+        return authorizationCache;
+    }
+
+    public void registerAuthorizationCache(AuthorizationCache authorizationCache) {
+        this.authorizationCache = authorizationCache;
+    }
+
+    public TopicIndex getTopicIndex() {
+        return topicIndex;
+    }
+
+    public void registerTopicIndex(TopicIndex topicIndex) {
+        this.topicIndex = topicIndex;
+    }
+
+    /**
+     * @return event journal or null if the publishes are not journaled
+     */
+    public EventJournal getEventJournal() {
+        return eventJournal;
+    }
+
+    public void registerEventJournal(EventJournal eventJournal) {
+        this.eventJournal = eventJournal;
+    }
+
+    /**
+     * @return retry scheduler or null if the failed notifications are not retried
+     */
+    public RetryScheduler getRetryScheduler() {
+        return retryScheduler;
+    }
+
+    public void registerRetryScheduler(RetryScheduler retryScheduler) {
+        this.retryScheduler = retryScheduler;
+    }
+
+    /**
+     * @return per topic metrics or null if they are not collected
+     */
+    public TopicMetrics getTopicMetrics() {
+        return topicMetrics;
+    }
+
+    public void registerTopicMetrics(TopicMetrics topicMetrics) {
+        this.topicMetrics = topicMetrics;
+    }
+
+    /**
+     * @return near cache of the shared memory matching results or null if they are not cached
+     */
+    public MatchingNearCache getMatchingNearCache() {
+        return matchingNearCache;
+    }
+
+    public void registerMatchingNearCache(MatchingNearCache matchingNearCache) {
+        this.matchingNearCache = matchingNearCache;
+    }
+
+    /**
+     * @return partitioner of the shared memory subscriptions or null if they are not partitioned
+     */
+    public SubscriptionPartitioner getSubscriptionPartitioner() {
+        return subscriptionPartitioner;
+    }
+
+    public void registerSubscriptionPartitioner(SubscriptionPartitioner subscriptionPartitioner) {
+        this.subscriptionPartitioner = subscriptionPartitioner;
+    }
+
+    /**
+     * @return circuit breaker of the subscriber endpoints or null if circuits are not used
+     */
+    public EndpointCircuitBreaker getEndpointCircuitBreaker() {
+        return endpointCircuitBreaker;
+    }
+
+    public void registerEndpointCircuitBreaker(EndpointCircuitBreaker endpointCircuitBreaker) {
+        this.endpointCircuitBreaker = endpointCircuitBreaker;
+    }
+
+    /**
+     * @return queue of the notifications to the endpoints whose circuit is open, or null if
+     *         circuits are not used
+     */
+    public CircuitHoldingQueue getCircuitHoldingQueue() {
+        return circuitHoldingQueue;
+    }
+
+    public void registerCircuitHoldingQueue(CircuitHoldingQueue circuitHoldingQueue) {
+        this.circuitHoldingQueue = circuitHoldingQueue;
+    }
+
+    /**
+     * @return executor the delivery manager runs its workers on, or null if it does not use one
+     */
+    public Executor getDeliveryExecutor() {
+        return deliveryExecutor;
+    }
+
+    public void registerDeliveryExecutor(Executor deliveryExecutor) {
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
     public int getTenantId() {
         return CarbonContext.getThreadLocalCarbonContext().getTenantId();
 
@@ -21,6 +21,7 @@ import org.apache.axis2.databinding.utils.ConverterUtil;
 import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.event.core.exception.EventBrokerConfigurationException;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.subscription.EventFilter;
 import org.wso2.carbon.event.core.subscription.Subscription;
 import org.wso2.carbon.event.core.util.EventBrokerConstants;
 import org.wso2.carbon.registry.core.Resource;
@@ -29,6 +30,7 @@ import org.wso2.carbon.user.api.UserStoreException;
 import javax.xml.namespace.QName;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -68,6 +70,78 @@ public class JavaUtil {
         return childElement.getText();
     }
 
+    /**
+     * returns the text of the given child element or the default value if the element is not
+     * present. used for the optional configurations.
+     *
+     * @param omElement    parent element
+     * @param localPart    local name of the child element
+     * @param defaultValue value to return if the element is not given
+     * @return the trimmed text value or the default value
+     */
+    public static String getValue(OMElement omElement, String localPart, String defaultValue) {
+        if (omElement == null) {
+            return defaultValue;
+        }
+        OMElement childElement =
+                omElement.getFirstChildWithName(
+                        new QName(omElement.getNamespace().getNamespaceURI(), localPart));
+        if ((childElement == null) || (childElement.getText().trim().length() == 0)) {
+            return defaultValue;
+        }
+        return childElement.getText().trim();
+    }
+
+    /**
+     * creates the subscription object from a jms subscription resource written by the message
+     * broker
+     *
+     * @param subscriptionResource jms subscription resource
+     * @return the subscription with its id, owner and created time
+     */
+    public static Subscription getJMSSubscription(Resource subscriptionResource) {
+        Subscription subscription = new Subscription();
+        subscription.setId(subscriptionResource.getProperty("Name"));
+        subscription.setOwner(subscriptionResource.getProperty("Owner"));
+        subscription.setCreatedTime(ConverterUtil.convertToDate(subscriptionResource.getProperty("createdTime")));
+        return subscription;
+    }
+
+    /**
+     * stores the subscription in the properties of its resource, the reverse of
+     * {@link #getSubscription(Resource)}
+     *
+     * @param resource     subscription resource
+     * @param subscription subscription to store
+     */
+    public static void setSubscriptionProperties(Resource resource, Subscription subscription) {
+        resource.setProperty(EventBrokerConstants.EB_RES_SUBSCRIPTION_URL, subscription.getEventSinkURL());
+        resource.setProperty(EventBrokerConstants.EB_RES_EVENT_DISPATCHER_NAME,
+                             subscription.getEventDispatcherName());
+        if (subscription.getExpires() != null) {
+            resource.setProperty(EventBrokerConstants.EB_RES_EXPIRS,
+                                 ConverterUtil.convertToString(subscription.getExpires()));
+        }
+        resource.setProperty(EventBrokerConstants.EB_RES_OWNER, subscription.getOwner());
+        resource.setProperty(EventBrokerConstants.EB_RES_TOPIC_NAME, subscription.getTopicName());
+        resource.setProperty(EventBrokerConstants.EB_RES_CREATED_TIME,
+                             System.currentTimeMillis() + "");
+        resource.setProperty(EventBrokerConstants.EB_RES_MODE,
+                             getSubscriptionMode(subscription.getTopicName()));
+        if (subscription.getEventFilter() != null) {
+            resource.setProperty(EventBrokerConstants.EB_RES_FILTER_DIALECT,
+                                 subscription.getEventFilter().getDialect());
+            resource.setProperty(EventBrokerConstants.EB_RES_FILTER_VALUE,
+                                 subscription.getEventFilter().getValue());
+        }
+
+        //set the other properties of the subscription.
+        Map<String, String> properties = subscription.getProperties();
+        for (String key : properties.keySet()) {
+            resource.setProperty(key, properties.get(key));
+        }
+    }
+
     /**
      * creates the subscription object from the subscription resource
      *
@@ -100,10 +174,19 @@ public class JavaUtil {
                     subscription.setCreatedTime(new Date(Long.parseLong(subscriptionResource.getProperty(EventBrokerConstants.EB_RES_CREATED_TIME))));
                 } else if (EventBrokerConstants.EB_RES_MODE.equals(propertyName)) {
                     subscription.setMode(subscriptionResource.getProperty(EventBrokerConstants.EB_RES_MODE));
+                } else if (EventBrokerConstants.EB_RES_FILTER_DIALECT.equals(propertyName)
+                           || EventBrokerConstants.EB_RES_FILTER_VALUE.equals(propertyName)) {
+                    // read together below
+                    continue;
                 } else {
                     subscription.addProperty(propertyName, subscriptionResource.getProperty(propertyName));
                 }
             }
+            String filterDialect = subscriptionResource.getProperty(EventBrokerConstants.EB_RES_FILTER_DIALECT);
+            if (filterDialect != null) {
+                subscription.setEventFilter(new EventFilter(filterDialect,
+                        subscriptionResource.getProperty(EventBrokerConstants.EB_RES_FILTER_VALUE)));
+            }
         }
         return subscription;
     }
@@ -0,0 +1,264 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.event.core.sharedmemory;
+
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * per node cache of the subscriptions matching a topic, so that publishing to a topic does not
+ * read the cluster wide subscription caches every time.
+ * <p/>
+ * Each tenant has a version which is incremented whenever a subscription of the tenant is added,
+ * removed or renewed on any node of the cluster (see
+ * {@link org.wso2.carbon.event.core.sharedmemory.util.SharedMemoryCacheUtil#invalidateMatchingCache(int, String)}).
+ * The change drops the results older than the new version of the published topics matched by the
+ * changed subscription topic, the results of the other topics stay cached. A matching result is
+ * only cached if the tenant version is unchanged since it was computed, hence a result computed
+ * concurrently with a subscription change is never used. Results are also dropped after the
+ * timeout in case an invalidation message is lost.
+ * <p/>
+ * The versions sent with the invalidation messages are merged into the tenant version, so that a
+ * change is ordered after the results cached before its message arrived.
+ * <p/>
+ * When a tenant has maxTopics results, caching another one evicts the least recently used result
+ * of the tenant, so the busy topics stay cached.
+ */
+@Deprecated
+public class MatchingNearCache {
+
+    public static final long DEFAULT_TIMEOUT = 60000;
+    public static final int DEFAULT_MAX_TOPICS = 10000;
+
+    private long timeout;
+    private int maxTopics;
+
+    private ConcurrentMap<Integer, TenantEntries> tenantIDEntriesMap;
+
+    public MatchingNearCache() {
+        this(DEFAULT_TIMEOUT, DEFAULT_MAX_TOPICS);
+    }
+
+    /**
+     * @param timeout   time in milli seconds a matching result is used, 0 or less never drops it
+     * @param maxTopics maximum number of topics cached per tenant
+     */
+    public MatchingNearCache(long timeout, int maxTopics) {
+        this.timeout = timeout;
+        this.maxTopics = maxTopics;
+        this.tenantIDEntriesMap = new ConcurrentHashMap<Integer, TenantEntries>();
+    }
+
+    /**
+     * gets the version of the tenant. This must be taken before computing the matching
+     * subscriptions and passed to {@link #put(int, String, long, java.util.List)}
+     *
+     * @param tenantId tenant id
+     * @return the version
+     */
+    public long getVersion(int tenantId) {
+        return getTenantEntries(tenantId).version.get();
+    }
+
+    /**
+     * @param tenantId  tenant id
+     * @param topicName topic name
+     * @return the cached matching subscriptions or null if they are not cached or stale
+     */
+    public List<Subscription> get(int tenantId, String topicName) {
+        TenantEntries tenantEntries = this.tenantIDEntriesMap.get(tenantId);
+        if (tenantEntries == null) {
+            return null;
+        }
+        Entry entry = tenantEntries.topicEntryMap.get(topicName);
+        if (entry == null) {
+            return null;
+        }
+        if ((this.timeout > 0) && (System.currentTimeMillis() - entry.createdTime >= this.timeout)) {
+            tenantEntries.topicEntryMap.remove(topicName, entry);
+            return null;
+        }
+        entry.lastUsedTime = nanoTime();
+        return entry.subscriptions;
+    }
+
+    /**
+     * caches the matching subscriptions of a topic, unless the tenant version has changed since
+     * they were computed
+     *
+     * @param tenantId      tenant id
+     * @param topicName     topic name
+     * @param version       tenant version taken before computing the subscriptions
+     * @param subscriptions the matching subscriptions
+     * @return the cached, unmodifiable list of subscriptions
+     */
+    public List<Subscription> put(int tenantId, String topicName, long version,
+                                  List<Subscription> subscriptions) {
+        List<Subscription> cachedSubscriptions =
+                Collections.unmodifiableList(new ArrayList<Subscription>(subscriptions));
+        TenantEntries tenantEntries = getTenantEntries(tenantId);
+        // puts and invalidations are serialized per tenant so that the limit holds and a result
+        // is not cached after a change dropped it, gets do not lock
+        synchronized (tenantEntries) {
+            if (tenantEntries.version.get() == version) {
+                if ((tenantEntries.topicEntryMap.size() >= this.maxTopics)
+                    && !tenantEntries.topicEntryMap.containsKey(topicName)) {
+                    evictLeastRecentlyUsed(tenantEntries);
+                }
+                tenantEntries.topicEntryMap.put(topicName, new Entry(version, topicName, cachedSubscriptions, nanoTime()));
+            }
+        }
+        return cachedSubscriptions;
+    }
+
+    /**
+     * drops all the matching results of the tenant
+     *
+     * @param tenantId tenant id
+     */
+    public void invalidate(int tenantId) {
+        TenantEntries tenantEntries = getTenantEntries(tenantId);
+        synchronized (tenantEntries) {
+            tenantEntries.version.incrementAndGet();
+            tenantEntries.topicEntryMap.clear();
+        }
+    }
+
+    /**
+     * drops the matching results of the published topics matched by the changed subscription
+     * topic, after a change on this node
+     *
+     * @param tenantId  tenant id
+     * @param topicName topic name the changed subscription is stored against, may be a wildcard topic
+     * @return the new tenant version, to be sent to the other nodes
+     */
+    public long invalidate(int tenantId, String topicName) {
+        return invalidate(tenantId, topicName, 0);
+    }
+
+    /**
+     * drops the matching results older than the given version of the published topics matched by
+     * the changed subscription topic, after a change on another node
+     *
+     * @param tenantId  tenant id
+     * @param topicName topic name the changed subscription is stored against, may be a wildcard topic
+     * @param version   tenant version of the node which changed the subscription
+     * @return the new tenant version
+     */
+    public long invalidate(int tenantId, String topicName, long version) {
+        String changedTopicName = SharedMemorySubscriptionStorage.getTopicName(topicName);
+        TenantEntries tenantEntries = getTenantEntries(tenantId);
+        synchronized (tenantEntries) {
+            long newVersion = Math.max(tenantEntries.version.get() + 1, version);
+            tenantEntries.version.set(newVersion);
+            Iterator<Entry> entries = tenantEntries.topicEntryMap.values().iterator();
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                if ((entry.version < newVersion) && entry.matchingTopicNames.contains(changedTopicName)) {
+                    entries.remove();
+                }
+            }
+            return newVersion;
+        }
+    }
+
+    /**
+     * @param tenantId tenant id
+     * @return number of topics cached for the tenant
+     */
+    public int size(int tenantId) {
+        TenantEntries tenantEntries = this.tenantIDEntriesMap.get(tenantId);
+        return (tenantEntries == null) ? 0 : tenantEntries.topicEntryMap.size();
+    }
+
+    /**
+     * called with the tenant entries locked. The scan only runs when a new topic is cached at the
+     * limit
+     */
+    private void evictLeastRecentlyUsed(TenantEntries tenantEntries) {
+        Map.Entry<String, Entry> leastRecentlyUsed = null;
+        for (Map.Entry<String, Entry> topicEntry : tenantEntries.topicEntryMap.entrySet()) {
+            if ((leastRecentlyUsed == null) ||
+                (topicEntry.getValue().lastUsedTime - leastRecentlyUsed.getValue().lastUsedTime < 0)) {
+                leastRecentlyUsed = topicEntry;
+            }
+        }
+        if (leastRecentlyUsed != null) {
+            tenantEntries.topicEntryMap.remove(leastRecentlyUsed.getKey(), leastRecentlyUsed.getValue());
+        }
+    }
+
+    /**
+     * the time the least recently used result is found by, overridden by the tests
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private TenantEntries getTenantEntries(int tenantId) {
+        TenantEntries tenantEntries = this.tenantIDEntriesMap.get(tenantId);
+        if (tenantEntries == null) {
+            tenantEntries = new TenantEntries();
+            TenantEntries existingTenantEntries = this.tenantIDEntriesMap.putIfAbsent(tenantId, tenantEntries);
+            if (existingTenantEntries != null) {
+                tenantEntries = existingTenantEntries;
+            }
+        }
+        return tenantEntries;
+    }
+
+    private static final class TenantEntries {
+
+        private final AtomicLong version = new AtomicLong();
+        private final ConcurrentMap<String, Entry> topicEntryMap = new ConcurrentHashMap<String, Entry>();
+    }
+
+    private static final class Entry {
+
+        private final long version;
+        private final long createdTime;
+        private final List<Subscription> subscriptions;
+        private volatile long lastUsedTime;
+
+        /**
+         * topic names the subscriptions matching the topic are stored against
+         */
+        private final Set<String> matchingTopicNames;
+
+        private Entry(long version, String topicName, List<Subscription> subscriptions, long lastUsedTime) {
+            this.version = version;
+            this.matchingTopicNames =
+                    new HashSet<String>(SharedMemorySubscriptionStorage.getTopicMatchingNames(topicName));
+            this.createdTime = System.currentTimeMillis();
+            this.subscriptions = subscriptions;
+            this.lastUsedTime = lastUsedTime;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.wso2.carbon.event.core.sharedmemory;
 
+import com.hazelcast.core.ExecutionCallback;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.event.core.EventBroker;
@@ -29,20 +30,34 @@ import org.wso2.carbon.event.core.util.EventBrokerConstants;
 import org.wso2.carbon.event.core.delivery.DeliveryManager;
 import org.wso2.carbon.event.core.delivery.MatchingManager;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.delivery.EventFilterEngine;
 import org.wso2.carbon.event.core.internal.delivery.Worker;
+import org.wso2.carbon.event.core.internal.delivery.inmemory.InMemoryDeliveryManager;
+import org.wso2.carbon.event.core.internal.journal.EventJournal;
+import org.wso2.carbon.event.core.internal.metrics.TopicMetrics;
 import org.wso2.carbon.event.core.internal.util.JavaUtil;
 import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.wso2.carbon.event.core.notify.NotificationManager;
+import org.wso2.carbon.event.core.sharedmemory.partition.PublishCall;
+import org.wso2.carbon.event.core.sharedmemory.partition.SubscriptionPartitioner;
 import org.wso2.carbon.event.core.subscription.Subscription;
-import org.wso2.carbon.user.api.UserRealm;
 import org.wso2.carbon.user.api.UserStoreException;
 import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.CarbonConstants;
 
 import javax.cache.Cache;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * shared memory implementation of the delivery manager.
@@ -54,7 +69,11 @@ public class SharedMemoryDeliveryManager implements DeliveryManager {
     private ExecutorService executor;
     private NotificationManager notificationManager;
     private String topicStoragePath;
+    private EventFilterEngine eventFilterEngine = new EventFilterEngine();
     private EventBroker eventBroker;
+    private volatile SharedMemoryMatchingManager matchingManager;
+    private final Set<Integer> initializedTenantIDs =
+            Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
 
     public SharedMemoryDeliveryManager(ExecutorService executor, String topicStoragePath) {
         this.executor = executor;
@@ -65,9 +84,6 @@ public class SharedMemoryDeliveryManager implements DeliveryManager {
 
        String resourcePath = JavaUtil.getResourcePath(subscription.getTopicName(), this.topicStoragePath);
         try {
-            UserRealm userRealm =
-                    EventBrokerHolder.getInstance().getRealmService().getTenantUserRealm
-                                               (CarbonContext.getThreadLocalCarbonContext().getTenantId());
             String userName = subscription.getOwner();
 
             // trim the domain part if it is there.
@@ -75,10 +91,12 @@ public class SharedMemoryDeliveryManager implements DeliveryManager {
                 userName = userName.substring(0, userName.lastIndexOf("@"));
             }
             if (userName.equals(CarbonConstants.REGISTRY_SYSTEM_USERNAME) ||
-                    userRealm.getAuthorizationManager().isUserAuthorized(
+                    EventBrokerHolder.getInstance().getAuthorizationCache().isUserAuthorized(
+                        CarbonContext.getThreadLocalCarbonContext().getTenantId(),
                         userName,
                         resourcePath,
                         EventBrokerConstants.EB_PERMISSION_SUBSCRIBE)){
+                this.eventFilterEngine.compile(subscription);
                 getMatchingManager().addSubscription(subscription);
             } else {
                 throw new EventBrokerException("User " + CarbonContext.getThreadLocalCarbonContext().getUsername()
@@ -95,33 +113,37 @@ public class SharedMemoryDeliveryManager implements DeliveryManager {
     }
 
     public void publish(Message message, String topicName, int deliveryMode) throws EventBrokerException {
+        publish(Collections.singletonList(message), topicName, deliveryMode);
+    }
+
+    public void publish(List<Message> messages, String topicName, int deliveryMode) throws EventBrokerException {
 
         String resourcePath = JavaUtil.getResourcePath(topicName, this.topicStoragePath);
         try {
-            UserRealm userRealm =
-                    EventBrokerHolder.getInstance().getRealmService().getTenantUserRealm
-                            (CarbonContext.getThreadLocalCarbonContext().getTenantId());
             String userName = CarbonContext.getThreadLocalCarbonContext().getUsername();
             
             if (userName == null){
                 userName = CarbonConstants.REGISTRY_SYSTEM_USERNAME;
             }
             if (userName.equals(CarbonConstants.REGISTRY_SYSTEM_USERNAME) ||
-                    userRealm.getAuthorizationManager().isUserAuthorized(
+                    EventBrokerHolder.getInstance().getAuthorizationCache().isUserAuthorized(
+                        CarbonContext.getThreadLocalCarbonContext().getTenantId(),
                         userName,
                         resourcePath,
                         EventBrokerConstants.EB_PERMISSION_PUBLISH)) {
-                List<Subscription> subscriptions = getMatchingManager().getMatchingSubscriptions(topicName);
-
-                for (Subscription subscription : subscriptions) {
-                    String verified = org.wso2.carbon.event.core.sharedmemory.SharedMemorySubscriptionStorage
-                    						.getSubscriptionIDTopicNameCache().get(subscription.getId()+"-notVerfied");
-                    
-                    if(verified != null && "false".equalsIgnoreCase(verified)){
-                            subscription.addProperty("notVerfied", "false");
+                SubscriptionPartitioner subscriptionPartitioner =
+                        EventBrokerHolder.getInstance().getSubscriptionPartitioner();
+                if (subscriptionPartitioner != null) {
+                    publishPartitioned(subscriptionPartitioner, messages, topicName);
+                } else {
+                    TopicMetrics topicMetrics = EventBrokerHolder.getInstance().getTopicMetrics();
+                    long matchingStartTime = System.nanoTime();
+                    List<Subscription> subscriptions = getMatchingSubscriptions(topicName);
+                    if (topicMetrics != null) {
+                        topicMetrics.matched(CarbonContext.getThreadLocalCarbonContext().getTenantId(), topicName,
+                                             System.nanoTime() - matchingStartTime);
                     }
-
-                    this.executor.submit(new Worker(this.notificationManager, message, subscription));
+                    deliver(subscriptions, messages, topicName);
                 }
             } else {
                 throw new EventBrokerException("User " + CarbonContext.getThreadLocalCarbonContext().getUsername()
@@ -132,6 +154,93 @@ public class SharedMemoryDeliveryManager implements DeliveryManager {
         }
     }
 
+    /**
+     * delivers the messages to the subscriptions of the given topics owned by this member. This
+     * must be called in the flow of the tenant.
+     *
+     * @param messages        messages to publish
+     * @param topicName       the published topic
+     * @param ownedTopicNames topic names owned by this member, which match the published topic
+     * @throws EventBrokerException if the messages can not be delivered
+     */
+    public void publishOwned(List<Message> messages, String topicName, List<String> ownedTopicNames)
+            throws EventBrokerException {
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        TopicMetrics topicMetrics = EventBrokerHolder.getInstance().getTopicMetrics();
+        long matchingStartTime = System.nanoTime();
+        List<Subscription> subscriptions =
+                EventBrokerHolder.getInstance().getSubscriptionPartitioner().getOwnedSubscriptions(tenantId, ownedTopicNames);
+        if (topicMetrics != null) {
+            topicMetrics.matched(tenantId, topicName, System.nanoTime() - matchingStartTime);
+        }
+        deliver(subscriptions, messages, topicName);
+    }
+
+    /**
+     * delivers the messages to the subscriptions of the topics owned by this member and forwards
+     * them to the owners of the other topics matching the published topic, without waiting for
+     * the owners. The topics of an owner which does not confirm the forwarded messages are
+     * journaled within the forward timeout are matched and delivered here, so their messages may
+     * be delivered twice if the owner was only slow.
+     */
+    private void publishPartitioned(SubscriptionPartitioner subscriptionPartitioner,
+                                    List<Message> messages, String topicName) throws EventBrokerException {
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        String tenantDomain = CarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        List<String> topicNames = SharedMemorySubscriptionStorage.getTopicMatchingNames(topicName);
+        Map<String, List<String>> memberIDTopicNamesMap = subscriptionPartitioner.getOwners(tenantId, topicNames);
+        for (Map.Entry<String, List<String>> entry : memberIDTopicNamesMap.entrySet()) {
+            if (subscriptionPartitioner.isLocal(entry.getKey())) {
+                continue;
+            }
+            PublishCall publishCall = new PublishCall(tenantId, tenantDomain, topicName, entry.getValue(), messages);
+            if (!subscriptionPartitioner.submit(entry.getKey(), publishCall, new ForwardedPublishCallback(
+                    entry.getKey(), tenantId, tenantDomain, topicName, entry.getValue(), messages))) {
+                // the owner has left the cluster, match here until the ring is rebuilt
+                deliverUnowned(entry.getValue(), messages, topicName);
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : memberIDTopicNamesMap.entrySet()) {
+            if (subscriptionPartitioner.isLocal(entry.getKey())) {
+                publishOwned(messages, topicName, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * delivers the messages to the subscriptions of topics owned by another member, reading them
+     * from the shared memory caches
+     */
+    private void deliverUnowned(List<String> topicNames, List<Message> messages, String topicName)
+            throws EventBrokerException {
+        List<Subscription> subscriptions = new ArrayList<Subscription>();
+        for (String ownedTopicName : topicNames) {
+            subscriptions.addAll(SharedMemorySubscriptionStorage.getTopicSubscriptions(ownedTopicName));
+        }
+        deliver(subscriptions, messages, topicName);
+    }
+
+    private void deliver(List<Subscription> subscriptions, List<Message> messages, String topicName)
+            throws EventBrokerException {
+        EventJournal eventJournal = EventBrokerHolder.getInstance().getEventJournal();
+        for (Subscription subscription : subscriptions) {
+            List<Message> matchingMessages = this.eventFilterEngine.getMatchingMessages(subscription, messages);
+            if (eventJournal != null) {
+                matchingMessages = eventJournal.track(subscription, matchingMessages);
+            }
+            if (matchingMessages.isEmpty()) {
+                continue;
+            }
+            Worker worker = new Worker(this.notificationManager, matchingMessages, subscription, topicName);
+            try {
+                this.executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                // the other subscribers still get the messages
+                worker.rejected(e);
+            }
+        }
+    }
+
     public void setMatchingManager(MatchingManager matchingManager) {
     }
 
@@ -140,7 +249,24 @@ public class SharedMemoryDeliveryManager implements DeliveryManager {
     }
 
     public void cleanUp() {
-        // nothing to clean up in the shared memory implementation.
+        // the forwarded publishes which are not confirmed are delivered before the delivery threads stop
+        SubscriptionPartitioner subscriptionPartitioner = EventBrokerHolder.getInstance().getSubscriptionPartitioner();
+        if ((subscriptionPartitioner != null) && (subscriptionPartitioner.getDeliveryManager() == this)) {
+            subscriptionPartitioner.stop();
+        }
+        // the queued notifications are sent before the delivery threads stop, the ones which are
+        // still not sent are replayed from the journal in the next start
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(InMemoryDeliveryManager.SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                log.warn("Notifications are still being sent after " + InMemoryDeliveryManager.SHUTDOWN_TIMEOUT
+                         + " ms, stopping the delivery threads");
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
     }
 
     public void renewSubscription(Subscription subscription) throws EventBrokerException {
@@ -155,19 +281,70 @@ public class SharedMemoryDeliveryManager implements DeliveryManager {
         return SharedMemoryCacheUtil.getInMemoryMatchingCache();
     }
 
-    public synchronized MatchingManager getMatchingManager() throws EventBrokerConfigurationException {
-        SharedMemoryMatchingManager inMemoryMatchingManager = getInMemoryMatchingCache().get(1);
+    /**
+     * gets the subscriptions matching the topic from the near cache, or from the shared memory
+     * caches if they are not cached on this node. The verification state of the subscriptions is
+     * read along with them, so cached subscriptions need no further cache reads.
+     *
+     * @param topicName topic name
+     * @return the matching subscriptions
+     * @throws EventBrokerException if can not initialize the matching manager or match the topic
+     */
+    private List<Subscription> getMatchingSubscriptions(String topicName) throws EventBrokerException {
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        MatchingNearCache matchingNearCache = EventBrokerHolder.getInstance().getMatchingNearCache();
+        if (matchingNearCache == null) {
+            return markVerified(getMatchingManager().getMatchingSubscriptions(topicName));
+        }
 
-        if(inMemoryMatchingManager == null) {
-            inMemoryMatchingManager = new SharedMemoryMatchingManager();
-            getInMemoryMatchingCache().put(1, inMemoryMatchingManager);
+        List<Subscription> subscriptions = matchingNearCache.get(tenantId, topicName);
+        if (subscriptions == null) {
+            long version = matchingNearCache.getVersion(tenantId);
+            subscriptions = markVerified(getMatchingManager().getMatchingSubscriptions(topicName));
+            subscriptions = matchingNearCache.put(tenantId, topicName, version, subscriptions);
         }
+        return subscriptions;
+    }
 
-        try {
-            //call initialize tenant for super tenant
-            inMemoryMatchingManager.initializeTenant();
-        } catch (EventBrokerException e) {
-            throw new EventBrokerConfigurationException("Can not initialize the in memory mathing manager",e);
+    private List<Subscription> markVerified(List<Subscription> subscriptions) {
+        for (Subscription subscription : subscriptions) {
+            String verified = SharedMemorySubscriptionStorage.getSubscriptionIDTopicNameCache()
+                    .get(subscription.getId() + "-notVerfied");
+            if (verified != null && "false".equalsIgnoreCase(verified)) {
+                subscription.addProperty("notVerfied", "false");
+            }
+        }
+        return subscriptions;
+    }
+
+    /**
+     * the matching manager only refers to the shared memory caches, hence the instance is read
+     * from the cluster once and kept on this node. Tenants are initialized once per node.
+     */
+    public MatchingManager getMatchingManager() throws EventBrokerConfigurationException {
+        SharedMemoryMatchingManager inMemoryMatchingManager = this.matchingManager;
+        if (inMemoryMatchingManager == null) {
+            synchronized (this) {
+                inMemoryMatchingManager = this.matchingManager;
+                if (inMemoryMatchingManager == null) {
+                    inMemoryMatchingManager = getInMemoryMatchingCache().get(1);
+                    if (inMemoryMatchingManager == null) {
+                        inMemoryMatchingManager = new SharedMemoryMatchingManager();
+                        getInMemoryMatchingCache().put(1, inMemoryMatchingManager);
+                    }
+                    this.matchingManager = inMemoryMatchingManager;
+                }
+            }
+        }
+
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        if (!this.initializedTenantIDs.contains(tenantId)) {
+            try {
+                inMemoryMatchingManager.initializeTenant();
+            } catch (EventBrokerException e) {
+                throw new EventBrokerConfigurationException("Can not initialize the in memory mathing manager",e);
+            }
+            this.initializedTenantIDs.add(tenantId);
         }
 
         return inMemoryMatchingManager;
@@ -176,4 +353,55 @@ public class SharedMemoryDeliveryManager implements DeliveryManager {
     public void setEventBroker(EventBroker eventbroker) {
         this.eventBroker = eventbroker;
     }
+
+    /**
+     * delivers a forwarded publish from this member if the owner can not deliver it or does not
+     * confirm it in time
+     */
+    private class ForwardedPublishCallback implements ExecutionCallback<Void> {
+
+        private String memberId;
+        private int tenantId;
+        private String tenantDomain;
+        private String topicName;
+        private List<String> ownedTopicNames;
+        private List<Message> messages;
+
+        private ForwardedPublishCallback(String memberId, int tenantId, String tenantDomain, String topicName,
+                                         List<String> ownedTopicNames, List<Message> messages) {
+            this.memberId = memberId;
+            this.tenantId = tenantId;
+            this.tenantDomain = tenantDomain;
+            this.topicName = topicName;
+            this.ownedTopicNames = ownedTopicNames;
+            this.messages = messages;
+        }
+
+        @Override
+        public void onResponse(Void response) {
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            if (t instanceof TimeoutException) {
+                log.warn("Event broker member " + this.memberId + " did not confirm the publish to "
+                         + this.topicName + ", delivering it from this member");
+            } else {
+                log.warn("Event broker member " + this.memberId + " can not deliver the publish to "
+                         + this.topicName + ", delivering it from this member", t);
+            }
+            try {
+                PrivilegedCarbonContext.startTenantFlow();
+                PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(this.tenantId);
+                PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(this.tenantDomain);
+                deliverUnowned(this.ownedTopicNames, this.messages, this.topicName);
+            } catch (EventBrokerException e) {
+                log.error("Can not deliver the publish to " + this.topicName + " from this member", e);
+            } catch (RuntimeException e) {
+                log.error("Can not deliver the publish to " + this.topicName + " from this member", e);
+            } finally {
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+        }
+    }
 }
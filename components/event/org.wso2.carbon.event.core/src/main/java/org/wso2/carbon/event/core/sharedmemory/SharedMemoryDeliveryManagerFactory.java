@@ -24,11 +24,23 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+
+import com.hazelcast.core.HazelcastInstance;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
 import org.wso2.carbon.event.core.delivery.DeliveryManagerFactory;
 import org.wso2.carbon.event.core.delivery.DeliveryManager;
+import org.wso2.carbon.event.core.internal.delivery.ShardedExecutor;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
 import org.wso2.carbon.event.core.internal.util.JavaUtil;
 import org.wso2.carbon.event.core.exception.EventBrokerConfigurationException;
+import org.wso2.carbon.event.core.sharedmemory.partition.ConsistentHashRing;
+import org.wso2.carbon.event.core.sharedmemory.partition.SubscriptionPartitioner;
+import org.wso2.carbon.event.core.util.EventBrokerConstants;
 import org.apache.axiom.om.OMElement;
+import org.wso2.carbon.utils.MBeanRegistrar;
 
 /**
  * factory class for shared memory Delivery manager
@@ -41,6 +53,16 @@ public class SharedMemoryDeliveryManagerFactory implements DeliveryManagerFactor
     public static final String EB_DM_MAX_QUEUED_REQUESTS = "maxQueuedRequests";
     public static final String EB_DM_KEEP_ALIVE_TIME = "keepAliveTime";
     public static final String EB_DM_TOPIC_STORAGE_PATH = "topicStoragePath";
+    public static final String EB_DM_EXECUTOR = "executor";
+    public static final String EB_DM_SHARD_COUNT = "shardCount";
+    public static final String EB_DM_STALLED_TASK_TIME = "stalledTaskTime";
+    public static final String EB_DM_MAX_STALLED_THREADS = "maxStalledThreads";
+    public static final String EB_DM_MATCHING_CACHE_TIMEOUT = "matchingCacheTimeout";
+    public static final String EB_DM_MATCHING_CACHE_MAX_TOPICS = "matchingCacheMaxTopics";
+    public static final String EB_DM_PARTITIONED = "partitioned";
+    public static final String EB_DM_VIRTUAL_NODES = "virtualNodes";
+    public static final String EB_DM_OWNED_TOPIC_TIMEOUT = "ownedTopicTimeout";
+    public static final String EB_DM_FORWARD_TIMEOUT = "forwardTimeout";
 
     public DeliveryManager getDeliveryManger(OMElement config) throws EventBrokerConfigurationException {
 
@@ -50,12 +72,82 @@ public class SharedMemoryDeliveryManagerFactory implements DeliveryManagerFactor
         int keepAliveTime = Integer.parseInt(JavaUtil.getValue(config, EB_DM_KEEP_ALIVE_TIME));
 
         String topicStoragePath = JavaUtil.getValue(config, EB_DM_TOPIC_STORAGE_PATH);
-        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(maxQueuedRequests);
-        ExecutorService executor = new ThreadPoolExecutor(minSpareThreads, maxThreads, keepAliveTime, TimeUnit.NANOSECONDS, queue);
+        ExecutorService executor;
+        String executorType = JavaUtil.getValue(config, EB_DM_EXECUTOR, EventBrokerConstants.EB_DM_EXECUTOR_POOLED);
+        if (EventBrokerConstants.EB_DM_EXECUTOR_SHARDED.equals(executorType)) {
+            int shardCount = Integer.parseInt(JavaUtil.getValue(config, EB_DM_SHARD_COUNT,
+                    String.valueOf(ShardedExecutor.DEFAULT_SHARD_COUNT)));
+            long stalledTaskTime = Long.parseLong(JavaUtil.getValue(config, EB_DM_STALLED_TASK_TIME,
+                    String.valueOf(ShardedExecutor.DEFAULT_STALLED_TASK_TIME)));
+            int maxStalledThreads = Integer.parseInt(JavaUtil.getValue(config, EB_DM_MAX_STALLED_THREADS,
+                    String.valueOf(ShardedExecutor.DEFAULT_MAX_STALLED_THREADS)));
+            ShardedExecutor shardedExecutor =
+                    new ShardedExecutor(shardCount, maxQueuedRequests, stalledTaskTime, maxStalledThreads);
+            MBeanRegistrar.registerMBean(shardedExecutor);
+            executor = shardedExecutor;
+        } else if (EventBrokerConstants.EB_DM_EXECUTOR_POOLED.equals(executorType)) {
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(maxQueuedRequests);
+            executor = new ThreadPoolExecutor(minSpareThreads, maxThreads, keepAliveTime, TimeUnit.NANOSECONDS, queue);
+        } else {
+            throw new EventBrokerConfigurationException("Unknown delivery executor " + executorType);
+        }
+        // notifications held for an open circuit are sent by the same executor, after the earlier
+        // notifications of their subscribers
+        EventBrokerHolder.getInstance().registerDeliveryExecutor(executor);
+
+        SubscriptionPartitioner subscriptionPartitioner = null;
+        if (Boolean.parseBoolean(JavaUtil.getValue(config, EB_DM_PARTITIONED, "false"))) {
+            HazelcastInstance hazelcastInstance = getHazelcastInstance();
+            if (hazelcastInstance == null) {
+                throw new EventBrokerConfigurationException("Can not partition the subscriptions, " +
+                                                            "Hazelcast is not initialized");
+            }
+            int virtualNodes = Integer.parseInt(JavaUtil.getValue(config, EB_DM_VIRTUAL_NODES,
+                    String.valueOf(ConsistentHashRing.DEFAULT_VIRTUAL_NODES)));
+            long ownedTopicTimeout = Long.parseLong(JavaUtil.getValue(config, EB_DM_OWNED_TOPIC_TIMEOUT,
+                    String.valueOf(SubscriptionPartitioner.DEFAULT_OWNED_TOPIC_TIMEOUT)));
+            long forwardTimeout = Long.parseLong(JavaUtil.getValue(config, EB_DM_FORWARD_TIMEOUT,
+                    String.valueOf(SubscriptionPartitioner.DEFAULT_FORWARD_TIMEOUT)));
+            subscriptionPartitioner = new SubscriptionPartitioner(hazelcastInstance, virtualNodes, ownedTopicTimeout,
+                                                                  forwardTimeout);
+        }
+
+        // matching results are cached on each node. 0 disables the cache and a negative timeout keeps
+        // the results until the subscriptions change. The owners of partitioned subscriptions keep
+        // them instead.
+        long matchingCacheTimeout = Long.parseLong(JavaUtil.getValue(config, EB_DM_MATCHING_CACHE_TIMEOUT,
+                String.valueOf(MatchingNearCache.DEFAULT_TIMEOUT)));
+        if ((matchingCacheTimeout != 0) && (subscriptionPartitioner == null)) {
+            int matchingCacheMaxTopics = Integer.parseInt(JavaUtil.getValue(config, EB_DM_MATCHING_CACHE_MAX_TOPICS,
+                    String.valueOf(MatchingNearCache.DEFAULT_MAX_TOPICS)));
+            EventBrokerHolder.getInstance().registerMatchingNearCache(
+                    new MatchingNearCache(matchingCacheTimeout, matchingCacheMaxTopics));
+        } else {
+            EventBrokerHolder.getInstance().registerMatchingNearCache(null);
+        }
         SharedMemoryDeliveryManager deliveryManager = new SharedMemoryDeliveryManager(executor, topicStoragePath);
+        if (subscriptionPartitioner != null) {
+            subscriptionPartitioner.setDeliveryManager(deliveryManager);
+            EventBrokerHolder.getInstance().registerSubscriptionPartitioner(subscriptionPartitioner);
+            subscriptionPartitioner.start();
+        } else {
+            EventBrokerHolder.getInstance().registerSubscriptionPartitioner(null);
+        }
 
         return deliveryManager;
     }
 
-
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static HazelcastInstance getHazelcastInstance() {
+        Bundle bundle = FrameworkUtil.getBundle(SharedMemoryDeliveryManagerFactory.class);
+        if (bundle == null) {
+            return null;
+        }
+        BundleContext ctx = bundle.getBundleContext();
+        ServiceReference ref = ctx.getServiceReference(HazelcastInstance.class);
+        if (ref == null) {
+            return null;
+        }
+        return (HazelcastInstance) ctx.getService(ref);
+    }
 }
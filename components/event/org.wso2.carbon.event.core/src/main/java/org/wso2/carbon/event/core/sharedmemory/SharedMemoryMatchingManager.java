@@ -21,6 +21,7 @@ package org.wso2.carbon.event.core.sharedmemory;
 
 import org.wso2.carbon.event.core.delivery.MatchingManager;
 import org.wso2.carbon.event.core.sharedmemory.util.SharedMemoryCacheConstants;
+import org.wso2.carbon.event.core.sharedmemory.util.SharedMemoryCacheUtil;
 import org.wso2.carbon.event.core.subscription.Subscription;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
 import org.wso2.carbon.context.CarbonContext;
@@ -75,10 +76,11 @@ public class SharedMemoryMatchingManager implements MatchingManager, Serializabl
     }
 
     public void addSubscription(Subscription subscription) {
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
         SharedMemorySubscriptionStorage inMemorySubscriptionStorage =
-                getTenantIDInMemorySubscriptionStorageCache()
-                        .get(CarbonContext.getThreadLocalCarbonContext().getTenantId());
+                getTenantIDInMemorySubscriptionStorageCache().get(tenantId);
         inMemorySubscriptionStorage.addSubscription(subscription);
+        SharedMemoryCacheUtil.invalidateMatchingCache(tenantId, subscription.getTopicName());
     }
 
     public List<Subscription> getMatchingSubscriptions(String topicName) {
@@ -93,17 +95,21 @@ public class SharedMemoryMatchingManager implements MatchingManager, Serializabl
     }
 
     public void unSubscribe(String subscriptionID) throws EventBrokerException {
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
         SharedMemorySubscriptionStorage inMemorySubscriptionStorage =
-                getTenantIDInMemorySubscriptionStorageCache()
-                        .get(CarbonContext.getThreadLocalCarbonContext().getTenantId());
+                getTenantIDInMemorySubscriptionStorageCache().get(tenantId);
+        // the topic name is removed along with the subscription
+        String topicName = SharedMemorySubscriptionStorage.getSubscriptionIDTopicNameCache().get(subscriptionID);
         inMemorySubscriptionStorage.unSubscribe(subscriptionID);
+        SharedMemoryCacheUtil.invalidateMatchingCache(tenantId, topicName);
     }
 
     public void renewSubscription(Subscription subscription) throws EventBrokerException {
+        int tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
         SharedMemorySubscriptionStorage inMemorySubscriptionStorage =
-                getTenantIDInMemorySubscriptionStorageCache()
-                        .get(CarbonContext.getThreadLocalCarbonContext().getTenantId());
+                getTenantIDInMemorySubscriptionStorageCache().get(tenantId);
         inMemorySubscriptionStorage.renewSubscription(subscription);
+        SharedMemoryCacheUtil.invalidateMatchingCache(tenantId, subscription.getTopicName());
     }
 
     public void initializeTenant() throws EventBrokerException {
@@ -22,6 +22,9 @@ package org.wso2.carbon.event.core.sharedmemory;
 import org.apache.axis2.clustering.ClusteringFault;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.sharedmemory.partition.SubscriptionPartitioner;
 import org.wso2.carbon.event.core.sharedmemory.util.SharedMemoryCacheConstants;
 import org.wso2.carbon.event.core.sharedmemory.util.SharedMemoryCacheUtil;
 import org.wso2.carbon.event.core.subscription.Subscription;
@@ -109,7 +112,13 @@ public class SharedMemorySubscriptionStorage implements Serializable {
         subscriptionsContainer.getSubscriptionsCache().put(subscription.getId(), subscription);
         getTopicSubscriptionCache().put(topicName, subscriptionsContainer);
         getSubscriptionIDTopicNameCache().put(subscription.getId(), topicName);
-        
+
+        if (EventBrokerHolder.getInstance().getSubscriptionPartitioner() != null) {
+            // only the owner of the topic keeps its subscriptions, the other nodes need not be informed
+            topicChanged(topicName);
+            return;
+        }
+
         //send cluster message to inform other nodes about subscription added to the system, so that everyone can add new one.
         try {
 			SharedMemoryCacheUtil.sendAddSubscriptionClusterMessage(topicName, subscription.getId(), 
@@ -142,6 +151,33 @@ public class SharedMemorySubscriptionStorage implements Serializable {
         return subscriptions;
     }
 
+    /**
+     * reads the subscriptions stored against the given topic name, without matching the wildcard
+     * topics. The verification state of the subscriptions is read along with them.
+     *
+     * @param topicName topic name, may be a wildcard topic
+     * @return the subscriptions
+     */
+    public static List<Subscription> getTopicSubscriptions(String topicName) {
+        List<Subscription> subscriptions = new ArrayList<Subscription>();
+        SubscriptionContainer subscriptionContainer = getTopicSubscriptionCache().get(getTopicName(topicName));
+        if (subscriptionContainer != null) {
+            Iterator<String> keysOfSubscription = subscriptionContainer.getSubscriptionsCache().keys();
+            while (keysOfSubscription.hasNext()) {
+                Subscription subscription = subscriptionContainer.getSubscriptionsCache().get(keysOfSubscription.next());
+                if (subscription == null) {
+                    continue;
+                }
+                String verified = getSubscriptionIDTopicNameCache().get(subscription.getId() + "-notVerfied");
+                if (verified != null && "false".equalsIgnoreCase(verified)) {
+                    subscription.addProperty("notVerfied", "false");
+                }
+                subscriptions.add(subscription);
+            }
+        }
+        return subscriptions;
+    }
+
     public void unSubscribe(String subscriptionID) throws EventBrokerException {
         String topicName = getTopicName(getSubscriptionIDTopicNameCache().get(subscriptionID));
 
@@ -157,6 +193,7 @@ public class SharedMemorySubscriptionStorage implements Serializable {
 
         subscriptionContainer.getSubscriptionsCache().remove(subscriptionID);
         getSubscriptionIDTopicNameCache().remove(subscriptionID);
+        topicChanged(topicName);
     }
 
     public void renewSubscription(Subscription subscription) throws EventBrokerException {
@@ -186,9 +223,25 @@ public class SharedMemorySubscriptionStorage implements Serializable {
                 getSubscriptionIDTopicNameCache().put(subscription.getId()+"-notVerfied", "false");
             }
         }
+        topicChanged(topicName);
+    }
+
+    private void topicChanged(String topicName) {
+        SubscriptionPartitioner subscriptionPartitioner = EventBrokerHolder.getInstance().getSubscriptionPartitioner();
+        if (subscriptionPartitioner != null) {
+            subscriptionPartitioner.topicChanged(CarbonContext.getThreadLocalCarbonContext().getTenantId(), topicName);
+        }
     }
 
-    private List<String> getTopicMatchingNames(String topicName) {
+    /**
+     * gets the topic names the subscriptions matching a topic are stored against, i.e. the topic
+     * itself and the wildcard topics of its parents
+     *
+     * @param topicName topic name
+     * @return the topic names
+     */
+    public static List<String> getTopicMatchingNames(String topicName) {
+        topicName = getTopicName(topicName);
         List<String> matchingTopicNames = new ArrayList<String>();
 
         if (topicName.equals("/")) {
@@ -213,7 +266,7 @@ public class SharedMemorySubscriptionStorage implements Serializable {
         return matchingTopicNames;
     }
 
-    private String getTopicName(String topicName){
+    static String getTopicName(String topicName){
         if (!topicName.startsWith("/")){
             topicName = "/" + topicName;
         }
@@ -0,0 +1,133 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.event.core.sharedmemory.partition;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * consistent hash ring of the cluster members. Each member is placed on the ring at a number of
+ * virtual nodes and a key is owned by the member of the first virtual node at or after the hash
+ * of the key. Adding or removing a member only moves the keys of the virtual nodes of that
+ * member, the owners of the other keys do not change.
+ * <p/>
+ * The ring is rebuilt on membership changes and read without locking.
+ */
+@Deprecated
+public class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 64;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private int virtualNodes;
+
+    private volatile NavigableMap<Long, String> ring;
+    private volatile Set<String> memberIds;
+
+    public ConsistentHashRing() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Number of virtual nodes must be positive : " + virtualNodes);
+        }
+        this.virtualNodes = virtualNodes;
+        this.ring = new TreeMap<Long, String>();
+        this.memberIds = Collections.emptySet();
+    }
+
+    /**
+     * replaces the members of the ring
+     *
+     * @param memberIds ids of the members
+     */
+    public synchronized void setMembers(Collection<String> memberIds) {
+        NavigableMap<Long, String> ring = new TreeMap<Long, String>();
+        for (String memberId : memberIds) {
+            for (int i = 0; i < this.virtualNodes; i++) {
+                long hash = hash(memberId + "#" + i);
+                String existingMemberId = ring.get(hash);
+                // resolves the rare collisions the same way on all the members
+                if ((existingMemberId == null) || (existingMemberId.compareTo(memberId) > 0)) {
+                    ring.put(hash, memberId);
+                }
+            }
+        }
+        this.ring = ring;
+        this.memberIds = Collections.unmodifiableSet(new HashSet<String>(memberIds));
+    }
+
+    public synchronized void addMember(String memberId) {
+        Set<String> memberIds = new HashSet<String>(this.memberIds);
+        if (memberIds.add(memberId)) {
+            setMembers(memberIds);
+        }
+    }
+
+    public synchronized void removeMember(String memberId) {
+        Set<String> memberIds = new HashSet<String>(this.memberIds);
+        if (memberIds.remove(memberId)) {
+            setMembers(memberIds);
+        }
+    }
+
+    /**
+     * @param key key
+     * @return id of the member owning the key or null if the ring does not have members
+     */
+    public String getOwner(String key) {
+        NavigableMap<Long, String> ring = this.ring;
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return (entry != null) ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public Set<String> getMembers() {
+        return this.memberIds;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the key followed by the murmur3 finalizer to spread the bits. The
+     * 32 bit String.hashCode places keys with a common prefix too close on the ring.
+     */
+    static long hash(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
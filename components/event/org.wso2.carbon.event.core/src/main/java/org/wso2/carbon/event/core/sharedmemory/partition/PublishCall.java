@@ -0,0 +1,129 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.event.core.sharedmemory.partition;
+
+import org.apache.axiom.om.impl.builder.StAXOMBuilder;
+import org.apache.axiom.om.util.StAXUtils;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.SerializedMessage;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.sharedmemory.SharedMemoryDeliveryManager;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * forwards a publish to the member owning some of the topics matching the published topic. The
+ * messages are sent in their serialized form and built again on the owner, which matches them
+ * against the subscriptions of its topics and delivers them. The call returns once the owner has
+ * journaled the messages and handed them to its delivery executor, and fails if it can not, so
+ * that the publishing member can deliver them instead.
+ */
+@Deprecated
+public class PublishCall implements Callable<Void>, Serializable {
+
+    private static final long serialVersionUID = 6187375214893347709L;
+
+    private int tenantId;
+    private String tenantDomain;
+    private String topicName;
+    private ArrayList<String> ownedTopicNames;
+    private ArrayList<HashMap<String, String>> messageProperties;
+    private ArrayList<byte[]> messagePayloads;
+    private ArrayList<String> messageEncodings;
+
+    /**
+     * @param tenantId        tenant id
+     * @param tenantDomain    tenant domain
+     * @param topicName       the published topic
+     * @param ownedTopicNames topic names owned by the member, which match the published topic
+     * @param messages        messages to publish
+     * @throws EventBrokerException if a message can not be serialized
+     */
+    public PublishCall(int tenantId, String tenantDomain, String topicName,
+                       List<String> ownedTopicNames, List<Message> messages) throws EventBrokerException {
+        this.tenantId = tenantId;
+        this.tenantDomain = tenantDomain;
+        this.topicName = topicName;
+        this.ownedTopicNames = new ArrayList<String>(ownedTopicNames);
+        this.messageProperties = new ArrayList<HashMap<String, String>>(messages.size());
+        this.messagePayloads = new ArrayList<byte[]>(messages.size());
+        this.messageEncodings = new ArrayList<String>(messages.size());
+        for (Message message : messages) {
+            this.messageProperties.add(new HashMap<String, String>(message.getProperties()));
+            if (message.getMessage() != null) {
+                SerializedMessage serializedMessage = message.getSerializedMessage();
+                this.messagePayloads.add(serializedMessage.getBytes());
+                this.messageEncodings.add(serializedMessage.getCharsetEncoding());
+            } else {
+                this.messagePayloads.add(null);
+                this.messageEncodings.add(null);
+            }
+        }
+    }
+
+    /**
+     * @throws EventBrokerException if the messages can not be delivered by this member
+     */
+    @Override
+    public Void call() throws EventBrokerException {
+        SubscriptionPartitioner subscriptionPartitioner = EventBrokerHolder.getInstance().getSubscriptionPartitioner();
+        SharedMemoryDeliveryManager deliveryManager =
+                (subscriptionPartitioner != null) ? subscriptionPartitioner.getDeliveryManager() : null;
+        if (deliveryManager == null) {
+            throw new EventBrokerException("Shared memory delivery manager is not started, can not deliver the " +
+                                           "publish to " + this.topicName);
+        }
+        try {
+            PrivilegedCarbonContext.startTenantFlow();
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(this.tenantId);
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(this.tenantDomain);
+            deliveryManager.publishOwned(getMessages(), this.topicName, this.ownedTopicNames);
+            return null;
+        } catch (XMLStreamException e) {
+            throw new EventBrokerException("Can not build the messages forwarded to " + this.topicName, e);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    private List<Message> getMessages() throws XMLStreamException {
+        List<Message> messages = new ArrayList<Message>(this.messagePayloads.size());
+        for (int i = 0; i < this.messagePayloads.size(); i++) {
+            Message message = new Message();
+            message.setProperties(this.messageProperties.get(i));
+            byte[] payload = this.messagePayloads.get(i);
+            if (payload != null) {
+                StAXOMBuilder stAXOMBuilder = new StAXOMBuilder(StAXUtils.createXMLStreamReader(
+                        new ByteArrayInputStream(payload), this.messageEncodings.get(i)));
+                message.setMessage(stAXOMBuilder.getDocumentElement());
+            }
+            messages.add(message);
+        }
+        return messages;
+    }
+}
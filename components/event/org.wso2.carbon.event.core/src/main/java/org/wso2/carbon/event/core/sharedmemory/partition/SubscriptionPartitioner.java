@@ -0,0 +1,493 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.event.core.sharedmemory.partition;
+
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.MemberAttributeEvent;
+import com.hazelcast.core.MembershipEvent;
+import com.hazelcast.core.MembershipListener;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.core.sharedmemory.SharedMemoryDeliveryManager;
+import org.wso2.carbon.event.core.sharedmemory.SharedMemorySubscriptionStorage;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * partitions the shared memory subscriptions across the event broker members of the cluster.
+ * Each topic a subscription is stored against is owned by one member, chosen by consistent
+ * hashing of the tenant and the topic name. Only the owner keeps the subscriptions of the topic
+ * in memory, matches the published messages against them and delivers the messages. Publishes are
+ * forwarded to the owners of the topics matching the published topic without waiting for them. The
+ * publishing member delivers the messages itself if an owner does not confirm it has journaled them
+ * within the forward timeout, so a message may be delivered twice but is not lost with a failing
+ * owner.
+ * <p/>
+ * The subscriptions stay in the shared memory caches. The owner reads the subscriptions of a topic
+ * from there when it is first published to and keeps them until it is told the subscriptions of
+ * the topic changed, the topic moves to another member or the owned topic times out. A change
+ * returns once the owner confirmed it dropped the topic.
+ * <p/>
+ * The members running the event broker are marked with a member attribute, as the cluster may have
+ * other members as well. The attribute leaves the cluster with its member, so a member which
+ * crashed or was split away is never left behind as an owner. On membership changes the ring is rebuilt and the topics which moved to
+ * another member are dropped. The new owner reads them on the next publish.
+ */
+@Deprecated
+public class SubscriptionPartitioner implements MembershipListener {
+
+    public static final String EVENT_PARTITION_EXECUTOR = "__EVENT_PARTITION_EXECUTOR__";
+    public static final long DEFAULT_OWNED_TOPIC_TIMEOUT = 300000;
+    public static final long DEFAULT_FORWARD_TIMEOUT = 10000;
+
+    private static final String EVENT_BROKER_MEMBER_ATTRIBUTE = "__EVENT_BROKER_MEMBER__";
+
+    private static final Log log = LogFactory.getLog(SubscriptionPartitioner.class);
+
+    private HazelcastInstance hazelcast;
+    private ConsistentHashRing consistentHashRing;
+    private volatile Map<String, Member> memberIDMemberMap = Collections.emptyMap();
+    private String localMemberId;
+
+    /**
+     * time in milli seconds an owned topic is kept before it is read again, 0 or less keeps it
+     * until it changes
+     */
+    private long ownedTopicTimeout;
+
+    /**
+     * time in milli seconds to wait for the owners to confirm a forwarded publish
+     */
+    private long forwardTimeout;
+
+    private ConcurrentMap<Integer, TenantTopics> tenantIDTopicsMap;
+
+    private volatile SharedMemoryDeliveryManager deliveryManager;
+
+    /**
+     * times out the forwarded calls and runs their callbacks, so that neither the publishing
+     * threads nor the Hazelcast threads wait for them
+     */
+    private ScheduledExecutorService forwardExecutor;
+
+    private String membershipListenerId;
+
+    public SubscriptionPartitioner(HazelcastInstance hazelcast, int virtualNodes, long ownedTopicTimeout,
+                                   long forwardTimeout) {
+        this.hazelcast = hazelcast;
+        this.consistentHashRing = new ConsistentHashRing(virtualNodes);
+        this.ownedTopicTimeout = ownedTopicTimeout;
+        this.forwardTimeout = forwardTimeout;
+        this.tenantIDTopicsMap = new ConcurrentHashMap<Integer, TenantTopics>();
+        this.forwardExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "EventForwardThread");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * adds this member to the event broker members and starts listening to the membership changes
+     */
+    public void start() {
+        Member localMember = this.hazelcast.getCluster().getLocalMember();
+        this.localMemberId = localMember.getUuid();
+        this.membershipListenerId = this.hazelcast.getCluster().addMembershipListener(this);
+        localMember.setBooleanAttribute(EVENT_BROKER_MEMBER_ATTRIBUTE, true);
+        refreshMembers();
+    }
+
+    /**
+     * stops listening to the membership changes and waits for the forwarded calls to complete or
+     * time out, so that the publishes which are not confirmed are delivered from this member
+     */
+    public void stop() {
+        if (this.membershipListenerId != null) {
+            this.hazelcast.getCluster().removeMembershipListener(this.membershipListenerId);
+        }
+        this.forwardExecutor.shutdown();
+        try {
+            if (!this.forwardExecutor.awaitTermination(2 * this.forwardTimeout, TimeUnit.MILLISECONDS)) {
+                log.warn("Forwarded calls are still running after " + 2 * this.forwardTimeout + " ms");
+                this.forwardExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            this.forwardExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void setDeliveryManager(SharedMemoryDeliveryManager deliveryManager) {
+        this.deliveryManager = deliveryManager;
+    }
+
+    /**
+     * @return the delivery manager of this member, which delivers the forwarded publishes
+     */
+    public SharedMemoryDeliveryManager getDeliveryManager() {
+        return deliveryManager;
+    }
+
+    public long getForwardTimeout() {
+        return forwardTimeout;
+    }
+
+    public String getLocalMemberId() {
+        return localMemberId;
+    }
+
+    public boolean isLocal(String memberId) {
+        return this.localMemberId.equals(memberId);
+    }
+
+    /**
+     * @param tenantId  tenant id
+     * @param topicName topic name the subscriptions are stored against
+     * @return id of the owner member, this member if there are no members yet
+     */
+    public String getOwner(int tenantId, String topicName) {
+        String owner = this.consistentHashRing.getOwner(tenantId + ":" + topicName);
+        return (owner != null) ? owner : this.localMemberId;
+    }
+
+    /**
+     * groups the topic names by their owners
+     *
+     * @param tenantId   tenant id
+     * @param topicNames topic names the subscriptions are stored against
+     * @return topic names against the id of the owner member
+     */
+    public Map<String, List<String>> getOwners(int tenantId, List<String> topicNames) {
+        Map<String, List<String>> memberIDTopicNamesMap = new HashMap<String, List<String>>();
+        for (String topicName : topicNames) {
+            String owner = getOwner(tenantId, topicName);
+            List<String> ownedTopicNames = memberIDTopicNamesMap.get(owner);
+            if (ownedTopicNames == null) {
+                ownedTopicNames = new ArrayList<String>();
+                memberIDTopicNamesMap.put(owner, ownedTopicNames);
+            }
+            ownedTopicNames.add(topicName);
+        }
+        return memberIDTopicNamesMap;
+    }
+
+    /**
+     * gets the subscriptions of topics owned by this member, reading the topics not kept yet from
+     * the shared memory caches. This must be called in the flow of the tenant.
+     *
+     * @param tenantId   tenant id
+     * @param topicNames topic names the subscriptions are stored against
+     * @return the subscriptions
+     */
+    public List<Subscription> getOwnedSubscriptions(int tenantId, List<String> topicNames) {
+        TenantTopics tenantTopics = getTenantTopics(tenantId);
+        List<Subscription> subscriptions = new ArrayList<Subscription>();
+        for (String topicName : topicNames) {
+            OwnedTopic ownedTopic = tenantTopics.ownedTopics.get(topicName);
+            if ((ownedTopic == null) || ((this.ownedTopicTimeout > 0)
+                    && (System.currentTimeMillis() - ownedTopic.loadedTime >= this.ownedTopicTimeout))) {
+                long changeCount = tenantTopics.changeCount.get();
+                ownedTopic = new OwnedTopic(SharedMemorySubscriptionStorage.getTopicSubscriptions(topicName));
+                // a topic which changed or moved away while reading is read again on the next publish
+                synchronized (tenantTopics) {
+                    if ((tenantTopics.changeCount.get() == changeCount) && isLocal(getOwner(tenantId, topicName))) {
+                        tenantTopics.ownedTopics.put(topicName, ownedTopic);
+                    }
+                }
+            }
+            subscriptions.addAll(ownedTopic.subscriptions);
+        }
+        return subscriptions;
+    }
+
+    /**
+     * informs the owner of the topic that its subscriptions have changed and waits for it to
+     * confirm, so that the publishes after the change are matched against the new subscriptions.
+     * This replaces broadcasting the change to all the members.
+     *
+     * @param tenantId  tenant id
+     * @param topicName topic name the subscriptions are stored against
+     */
+    public void topicChanged(int tenantId, String topicName) {
+        String owner = getOwner(tenantId, topicName);
+        Future<Void> changed = isLocal(owner) ? null : submit(owner, new TopicChangedCall(tenantId, topicName));
+        if (changed == null) {
+            // the owner has left the cluster, this member may own the topic once the ring is rebuilt
+            dropOwnedTopic(tenantId, topicName);
+            return;
+        }
+        try {
+            changed.get(this.forwardTimeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            log.warn("Event broker member " + owner + " can not drop the subscriptions of " + topicName
+                     + ", they are read again once the owned topic times out", e.getCause());
+        } catch (TimeoutException e) {
+            log.warn("Event broker member " + owner + " did not confirm dropping the subscriptions of "
+                     + topicName + " within " + this.forwardTimeout + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * drops the subscriptions of the topic kept by this member, they are read again on the next
+     * publish
+     *
+     * @param tenantId  tenant id
+     * @param topicName topic name the subscriptions are stored against
+     */
+    public void dropOwnedTopic(int tenantId, String topicName) {
+        TenantTopics tenantTopics = getTenantTopics(tenantId);
+        synchronized (tenantTopics) {
+            tenantTopics.changeCount.incrementAndGet();
+            tenantTopics.ownedTopics.remove(topicName);
+        }
+    }
+
+    /**
+     * runs the call on the given member without waiting for it. The callback is told once the
+     * member ran the call, it fails with a TimeoutException if the member does not run the call
+     * within the forward timeout. The callback runs on the forward thread of this member.
+     *
+     * @param memberId id of the member
+     * @param call     call to run
+     * @param callback callback told of the result of the call
+     * @return false if the member has left the cluster or the call can not be sent
+     */
+    public <T> boolean submit(String memberId, Callable<T> call, ExecutionCallback<T> callback) {
+        Member member = this.memberIDMemberMap.get(memberId);
+        if (member == null) {
+            return false;
+        }
+        ForwardCallback<T> forwardCallback = new ForwardCallback<T>(callback);
+        try {
+            forwardCallback.timeout =
+                    this.forwardExecutor.schedule(forwardCallback, this.forwardTimeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("Event broker member is stopping, can not forward to event broker member " + member);
+            return false;
+        }
+        try {
+            this.hazelcast.getExecutorService(EVENT_PARTITION_EXECUTOR).submitToMember(call, member, forwardCallback);
+            return true;
+        } catch (RuntimeException e) {
+            forwardCallback.timeout.cancel(false);
+            log.warn("Can not forward to event broker member " + member, e);
+            return false;
+        }
+    }
+
+    /**
+     * runs the call on the given member
+     *
+     * @param memberId id of the member
+     * @param call     call to run
+     * @return future completed once the member ran the call, or null if the member has left the
+     *         cluster or the call can not be sent
+     */
+    public <T> Future<T> submit(String memberId, Callable<T> call) {
+        Member member = this.memberIDMemberMap.get(memberId);
+        if (member == null) {
+            return null;
+        }
+        try {
+            return this.hazelcast.getExecutorService(EVENT_PARTITION_EXECUTOR).submitToMember(call, member);
+        } catch (RuntimeException e) {
+            log.warn("Can not forward to event broker member " + member, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param tenantId tenant id
+     * @return number of topics of the tenant kept by this member
+     */
+    public int getOwnedTopicCount(int tenantId) {
+        TenantTopics tenantTopics = this.tenantIDTopicsMap.get(tenantId);
+        return (tenantTopics == null) ? 0 : tenantTopics.ownedTopics.size();
+    }
+
+    /**
+     * rebuilds the ring from the event broker members which are still in the cluster and drops
+     * the topics this member does not own anymore. A topic may have moved away and back while it
+     * was read, so the reads started before the ring changed are not kept.
+     */
+    private synchronized void refreshMembers() {
+        if (!this.hazelcast.getLifecycleService().isRunning()) {
+            return;
+        }
+        Map<String, Member> memberIDMemberMap = new HashMap<String, Member>();
+        for (Member member : this.hazelcast.getCluster().getMembers()) {
+            if (Boolean.TRUE.equals(member.getBooleanAttribute(EVENT_BROKER_MEMBER_ATTRIBUTE))) {
+                memberIDMemberMap.put(member.getUuid(), member);
+            }
+        }
+        Set<String> memberIds = memberIDMemberMap.keySet();
+        this.consistentHashRing.setMembers(memberIds);
+        this.memberIDMemberMap = memberIDMemberMap;
+
+        for (Map.Entry<Integer, TenantTopics> entry : this.tenantIDTopicsMap.entrySet()) {
+            TenantTopics tenantTopics = entry.getValue();
+            synchronized (tenantTopics) {
+                tenantTopics.changeCount.incrementAndGet();
+                Iterator<String> topicNames = tenantTopics.ownedTopics.keySet().iterator();
+                while (topicNames.hasNext()) {
+                    if (!isLocal(getOwner(entry.getKey(), topicNames.next()))) {
+                        topicNames.remove();
+                    }
+                }
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Shared memory subscriptions are partitioned across event broker members " + memberIds);
+        }
+    }
+
+    private TenantTopics getTenantTopics(int tenantId) {
+        TenantTopics tenantTopics = this.tenantIDTopicsMap.get(tenantId);
+        if (tenantTopics == null) {
+            tenantTopics = new TenantTopics();
+            TenantTopics existingTenantTopics = this.tenantIDTopicsMap.putIfAbsent(tenantId, tenantTopics);
+            if (existingTenantTopics != null) {
+                tenantTopics = existingTenantTopics;
+            }
+        }
+        return tenantTopics;
+    }
+
+    @Override
+    public void memberAdded(MembershipEvent membershipEvent) {
+        // the new member is added to the ring once it has marked itself as an event broker member
+        refreshMembers();
+    }
+
+    @Override
+    public void memberRemoved(MembershipEvent membershipEvent) {
+        refreshMembers();
+    }
+
+    @Override
+    public void memberAttributeChanged(MemberAttributeEvent memberAttributeEvent) {
+        if (EVENT_BROKER_MEMBER_ATTRIBUTE.equals(memberAttributeEvent.getKey())) {
+            refreshMembers();
+        }
+    }
+
+    /**
+     * passes the result of a forwarded call to the callback on the forward thread, or a timeout
+     * if the result does not arrive within the forward timeout. The callback is told only once.
+     */
+    private final class ForwardCallback<T> implements ExecutionCallback<T>, Runnable {
+
+        private final ExecutionCallback<T> callback;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timeout;
+
+        private ForwardCallback(ExecutionCallback<T> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onResponse(final T response) {
+            complete(new Runnable() {
+                public void run() {
+                    callback.onResponse(response);
+                }
+            });
+        }
+
+        @Override
+        public void onFailure(final Throwable t) {
+            complete(new Runnable() {
+                public void run() {
+                    callback.onFailure(t);
+                }
+            });
+        }
+
+        /**
+         * the forward timeout has expired
+         */
+        @Override
+        public void run() {
+            if (this.completed.compareAndSet(false, true)) {
+                this.callback.onFailure(new TimeoutException("No response within " + forwardTimeout + " ms"));
+            }
+        }
+
+        private void complete(Runnable result) {
+            if (!this.completed.compareAndSet(false, true)) {
+                return;
+            }
+            ScheduledFuture<?> timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            try {
+                forwardExecutor.execute(result);
+            } catch (RejectedExecutionException e) {
+                // the member is stopping, the callback is still told
+                result.run();
+            }
+        }
+    }
+
+    private static final class TenantTopics {
+
+        private final AtomicLong changeCount = new AtomicLong();
+        private final ConcurrentMap<String, OwnedTopic> ownedTopics = new ConcurrentHashMap<String, OwnedTopic>();
+    }
+
+    private static final class OwnedTopic {
+
+        private final List<Subscription> subscriptions;
+        private final long loadedTime;
+
+        private OwnedTopic(List<Subscription> subscriptions) {
+            this.subscriptions = subscriptions;
+            this.loadedTime = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.event.core.sharedmemory.partition;
+
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+
+/**
+ * sent to the owner of a topic when the subscriptions stored against the topic change, so that
+ * it reads them again on the next publish. The call returns once the owner dropped the topic.
+ */
+@Deprecated
+public class TopicChangedCall implements Callable<Void>, Serializable {
+
+    private static final long serialVersionUID = -1902383215467140317L;
+
+    private int tenantId;
+    private String topicName;
+
+    public TopicChangedCall(int tenantId, String topicName) {
+        this.tenantId = tenantId;
+        this.topicName = topicName;
+    }
+
+    @Override
+    public Void call() {
+        SubscriptionPartitioner subscriptionPartitioner = EventBrokerHolder.getInstance().getSubscriptionPartitioner();
+        if (subscriptionPartitioner != null) {
+            subscriptionPartitioner.dropOwnedTopic(this.tenantId, this.topicName);
+        }
+        return null;
+    }
+}
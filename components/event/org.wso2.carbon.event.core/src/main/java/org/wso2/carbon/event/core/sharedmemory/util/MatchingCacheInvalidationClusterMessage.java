@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.core.sharedmemory.util;
+
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.ClusteringMessage;
+import org.apache.axis2.context.ConfigurationContext;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.sharedmemory.MatchingNearCache;
+
+import java.io.Serializable;
+
+/**
+ * cluster message sent when the subscriptions of a topic change, so that the other nodes drop
+ * the matching results of the topics it matches, which are older than the version of the
+ * sending node, from their {@link MatchingNearCache}
+ */
+@Deprecated
+public class MatchingCacheInvalidationClusterMessage extends ClusteringMessage implements Serializable {
+
+    private static final long serialVersionUID = 3364907625182513721L;
+
+    private int tenantID;
+    private String topicName;
+    private long version;
+
+    MatchingCacheInvalidationClusterMessage(int tenantID, String topicName, long version) {
+        this.tenantID = tenantID;
+        this.topicName = topicName;
+        this.version = version;
+    }
+
+    @Override
+    public ClusteringCommand getResponse() {
+        return null;
+    }
+
+    @Override
+    public void execute(ConfigurationContext configurationContext) throws ClusteringFault {
+        MatchingNearCache matchingNearCache = EventBrokerHolder.getInstance().getMatchingNearCache();
+        if (matchingNearCache != null) {
+            matchingNearCache.invalidate(this.tenantID, this.topicName, this.version);
+        }
+    }
+}
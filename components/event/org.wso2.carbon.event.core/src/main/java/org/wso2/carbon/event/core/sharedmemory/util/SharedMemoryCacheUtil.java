@@ -22,7 +22,11 @@ package org.wso2.carbon.event.core.sharedmemory.util;
 import org.apache.axis2.clustering.ClusteringAgent;
 import org.apache.axis2.clustering.ClusteringFault;
 import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.sharedmemory.MatchingNearCache;
 import org.wso2.carbon.event.core.sharedmemory.SharedMemoryMatchingManager;
 import org.wso2.carbon.utils.ConfigurationContextService;
 
@@ -34,6 +38,7 @@ import java.util.concurrent.TimeUnit;
 
 @Deprecated
 public class SharedMemoryCacheUtil {
+    private static final Log log = LogFactory.getLog(SharedMemoryCacheUtil.class);
     private static boolean cacheInit = false;
 
     private SharedMemoryCacheUtil(){}
@@ -74,5 +79,37 @@ public class SharedMemoryCacheUtil {
 
 		agent.sendMessage(new SubscriptionClusterMessage(topicName,subsciptionID,tenantID, tenantName), false);
 	}    
+
+    /**
+     * Drops the matching results cached on this node of the topics matched by the changed
+     * subscription topic and informs the other nodes to do the same. This must be called after
+     * the subscriptions of the tenant are changed.
+     * @param tenantID
+     * @param topicName topic name the changed subscription is stored against
+     */
+    public static void invalidateMatchingCache(int tenantID, String topicName) {
+        MatchingNearCache matchingNearCache = EventBrokerHolder.getInstance().getMatchingNearCache();
+        if (matchingNearCache == null) {
+            return;
+        }
+        long version = matchingNearCache.invalidate(tenantID, topicName);
+
+        ConfigurationContextService configContextService = (ConfigurationContextService) PrivilegedCarbonContext
+                .getThreadLocalCarbonContext().getOSGiService(ConfigurationContextService.class);
+        if (configContextService == null) {
+            return;
+        }
+        ClusteringAgent agent = configContextService.getServerConfigContext().getAxisConfiguration().getClusteringAgent();
+        if (agent == null) {
+            // not clustered, there are no other nodes to inform
+            return;
+        }
+        try {
+            agent.sendMessage(new MatchingCacheInvalidationClusterMessage(tenantID, topicName, version), false);
+        } catch (ClusteringFault e) {
+            // other nodes drop their results only when they time out
+            log.error("Matching cache invalidation cluster message sending failed", e);
+        }
+    }
 	
 }
@@ -16,8 +16,14 @@
 
 package org.wso2.carbon.event.core.subscription;
 
+import org.wso2.carbon.event.core.util.EventBrokerConstants;
+
+import java.io.Serializable;
+
 @Deprecated
-public class EventFilter {
+public class EventFilter implements Serializable {
+
+    private static final long serialVersionUID = -6305719214766817526L;
 
     private String dialect;
     private String value;
@@ -42,4 +48,15 @@ public class EventFilter {
     public void setValue(String value) {
         this.value = value;
     }
+
+    /**
+     * the W3C XPath 1.0 dialect uri and the short "XPath" dialect select the messages by content.
+     * The value of the other dialects is the topic name.
+     *
+     * @return true if the value is an XPath expression to select the messages by content
+     */
+    public boolean isXPathDialect() {
+        return (this.value != null) && (EventBrokerConstants.EB_FILTER_DIALECT_XPATH_URI.equals(this.dialect)
+                                        || EventBrokerConstants.EB_FILTER_DIALECT_XPATH.equals(this.dialect));
+    }
 }
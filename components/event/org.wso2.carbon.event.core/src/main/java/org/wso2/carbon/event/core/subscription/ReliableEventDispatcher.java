@@ -0,0 +1,37 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.subscription;
+
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+
+/**
+ * event dispatcher which reports the failed deliveries, so that the event broker can retry them.
+ * the event broker uses send instead of notify for these dispatchers.
+ */
+@Deprecated
+public interface ReliableEventDispatcher extends EventDispatcher {
+
+    /**
+     * sends the message to the subscriber
+     *
+     * @param message      message to send
+     * @param subscription subscription details
+     * @throws EventBrokerException if the message could not be delivered
+     */
+    public void send(Message message, Subscription subscription) throws EventBrokerException;
+}
@@ -46,6 +46,15 @@ public interface SubscriptionManager {
      */
     public List<Subscription> getAllSubscriptions() throws EventBrokerException;
 
+    /**
+     * Reads all the subscriptions like getAllSubscriptions, but hands each subscription to the
+     * handler as soon as it is read instead of collecting them first.
+     *
+     * @param handler called for each subscription, in the thread reading them
+     * @throws EventBrokerException
+     */
+    public void loadSubscriptions(SubscriptionHandler handler) throws EventBrokerException;
+
     /**
      * Gets the subscription
      * @param id the subscription id
@@ -54,6 +63,19 @@ public interface SubscriptionManager {
      */
     public Subscription getSubscription(String id) throws EventBrokerException;
 
+    /**
+     * Gets the subscription of the owner to the topic with the given event sink url. This is used
+     * to find the existing subscription when the same subscriber subscribes again.
+     *
+     * @param topicName    the topic name
+     * @param eventSinkURL the event sink url, compared ignoring the case
+     * @param owner        the owner of the subscription
+     * @return the subscription or null if there is no such subscription
+     * @throws EventBrokerException
+     */
+    public Subscription getSubscription(String topicName, String eventSinkURL, String owner)
+            throws EventBrokerException;
+
     /**
      * Un-Subscribing to a destination. Destination can be queue or topic.
      *
@@ -77,4 +99,11 @@ public interface SubscriptionManager {
      */
     public String getTopicStoragePath() throws EventBrokerException;
 
+    /**
+     * receives the subscriptions as they are read from the storage
+     */
+    public interface SubscriptionHandler {
+
+        public void handle(Subscription subscription) throws EventBrokerException;
+    }
 }
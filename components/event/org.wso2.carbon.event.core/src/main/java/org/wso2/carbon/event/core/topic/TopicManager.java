@@ -33,6 +33,18 @@ public interface TopicManager {
      */
     public TopicNode getTopicTree() throws EventBrokerException;
 
+    /**
+     * Gets a page of the direct sub topics of a topic, so that a large topic tree can be expanded
+     * level by level. The returned nodes do not include their children but the child count.
+     *
+     * @param topicName  topic name, / for the root topic
+     * @param startIndex index of the first sub topic to return
+     * @param count      maximum number of sub topics to return
+     * @return the sub topics sorted by name
+     * @throws EventBrokerException
+     */
+    public TopicNode[] getTopicChildren(String topicName, int startIndex, int count) throws EventBrokerException;
+
     /**
      * Adds a new topic
      *
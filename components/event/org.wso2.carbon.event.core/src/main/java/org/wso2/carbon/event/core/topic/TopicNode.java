@@ -22,6 +22,7 @@ public class TopicNode {
     private String nodeName;
     private String topicName;
     private TopicNode[] children;
+    private int childCount;
 
     public TopicNode(String nodeName, String topicName) {
         this.nodeName = nodeName;
@@ -51,4 +52,15 @@ public class TopicNode {
     public void setChildren(TopicNode[] children) {
         this.children = children;
     }
+
+    /**
+     * @return number of sub topics, set even when the children are not loaded
+     */
+    public int getChildCount() {
+        return childCount;
+    }
+
+    public void setChildCount(int childCount) {
+        this.childCount = childCount;
+    }
 }
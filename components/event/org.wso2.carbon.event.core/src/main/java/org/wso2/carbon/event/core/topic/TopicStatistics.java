@@ -0,0 +1,143 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.topic;
+
+/**
+ * snapshot of the publish and delivery statistics of a topic. times are in milli seconds and are
+ * approximate, they are the upper bounds of the histogram buckets the samples fall into.
+ */
+@Deprecated
+public class TopicStatistics {
+
+    private String topicName;
+    private long publishCount;
+    private long deliveryCount;
+    private long failureCount;
+    private double matchingTimeMedian;
+    private double matchingTime99thPercentile;
+    private double maxMatchingTime;
+    private double queueWaitTimeMedian;
+    private double queueWaitTime99thPercentile;
+    private double maxQueueWaitTime;
+    private double sendTimeMedian;
+    private double sendTime99thPercentile;
+    private double maxSendTime;
+
+    public String getTopicName() {
+        return topicName;
+    }
+
+    public void setTopicName(String topicName) {
+        this.topicName = topicName;
+    }
+
+    public long getPublishCount() {
+        return publishCount;
+    }
+
+    public void setPublishCount(long publishCount) {
+        this.publishCount = publishCount;
+    }
+
+    public long getDeliveryCount() {
+        return deliveryCount;
+    }
+
+    public void setDeliveryCount(long deliveryCount) {
+        this.deliveryCount = deliveryCount;
+    }
+
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    public void setFailureCount(long failureCount) {
+        this.failureCount = failureCount;
+    }
+
+    public double getMatchingTimeMedian() {
+        return matchingTimeMedian;
+    }
+
+    public void setMatchingTimeMedian(double matchingTimeMedian) {
+        this.matchingTimeMedian = matchingTimeMedian;
+    }
+
+    public double getMatchingTime99thPercentile() {
+        return matchingTime99thPercentile;
+    }
+
+    public void setMatchingTime99thPercentile(double matchingTime99thPercentile) {
+        this.matchingTime99thPercentile = matchingTime99thPercentile;
+    }
+
+    public double getMaxMatchingTime() {
+        return maxMatchingTime;
+    }
+
+    public void setMaxMatchingTime(double maxMatchingTime) {
+        this.maxMatchingTime = maxMatchingTime;
+    }
+
+    public double getQueueWaitTimeMedian() {
+        return queueWaitTimeMedian;
+    }
+
+    public void setQueueWaitTimeMedian(double queueWaitTimeMedian) {
+        this.queueWaitTimeMedian = queueWaitTimeMedian;
+    }
+
+    public double getQueueWaitTime99thPercentile() {
+        return queueWaitTime99thPercentile;
+    }
+
+    public void setQueueWaitTime99thPercentile(double queueWaitTime99thPercentile) {
+        this.queueWaitTime99thPercentile = queueWaitTime99thPercentile;
+    }
+
+    public double getMaxQueueWaitTime() {
+        return maxQueueWaitTime;
+    }
+
+    public void setMaxQueueWaitTime(double maxQueueWaitTime) {
+        this.maxQueueWaitTime = maxQueueWaitTime;
+    }
+
+    public double getSendTimeMedian() {
+        return sendTimeMedian;
+    }
+
+    public void setSendTimeMedian(double sendTimeMedian) {
+        this.sendTimeMedian = sendTimeMedian;
+    }
+
+    public double getSendTime99thPercentile() {
+        return sendTime99thPercentile;
+    }
+
+    public void setSendTime99thPercentile(double sendTime99thPercentile) {
+        this.sendTime99thPercentile = sendTime99thPercentile;
+    }
+
+    public double getMaxSendTime() {
+        return maxSendTime;
+    }
+
+    public void setMaxSendTime(double maxSendTime) {
+        this.maxSendTime = maxSendTime;
+    }
+}
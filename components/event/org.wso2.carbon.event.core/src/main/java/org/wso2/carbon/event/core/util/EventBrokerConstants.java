@@ -28,9 +28,21 @@ public interface EventBrokerConstants {
     String EB_CONF_ELE_TOPIC_MANAGER = "topicManager";
     String EB_CONF_ELE_DELIVERY_MANAGER = "deliveryManager";
     String EB_CONF_ELE_MATCHING_MANAGER = "matchingManager";
+    String EB_CONF_ELE_SUBSCRIPTION_STORAGE = "subscriptionStorage";
     String EB_CONF_ELE_EVENT_PUBLISHER = "eventPublisher";
+    String EB_CONF_ELE_AUTHORIZATION_CACHE = "authorizationCache";
+    String EB_CONF_ELE_EVENT_JOURNAL = "eventJournal";
+    String EB_CONF_ELE_DELIVERY_RETRY = "deliveryRetry";
+    String EB_CONF_ELE_SUBSCRIPTION_LOADER = "subscriptionLoader";
+    String EB_CONF_ELE_TOPIC_METRICS = "topicMetrics";
+    String EB_CONF_ELE_EVENT_DISPATCHER = "eventDispatcher";
+    String EB_CONF_ELE_CIRCUIT_BREAKER = "circuitBreaker";
 
     String EB_CONF_ATTR_CLASS = "class";
+    String EB_CONF_ATTR_NAME = "name";
+
+    String EB_DM_EXECUTOR_POOLED = "pooled";
+    String EB_DM_EXECUTOR_SHARDED = "sharded";
 
     String EB_CONF_WS_SUBSCRIPTION_COLLECTION_NAME = "ws.subscriptions";
     String EB_CONF_JMS_SUBSCRIPTION_COLLECTION_NAME = "jms.subscriptions";
@@ -42,6 +54,8 @@ public interface EventBrokerConstants {
     String EB_RES_OWNER = "owner";
     String EB_RES_TOPIC_NAME = "topicName";
     String EB_RES_MODE = "mode";
+    String EB_RES_FILTER_DIALECT = "filterDialect";
+    String EB_RES_FILTER_VALUE = "filterValue";
 
     String EB_PERMISSION_SUBSCRIBE = "subscribe";
     String EB_PERMISSION_PUBLISH = "publish";
@@ -50,6 +64,10 @@ public interface EventBrokerConstants {
     String WS_EVENT_DISPATCHER_NAME = "wsEventDispatcher";
     String EVENT_SINK_DISPATCHER_NAME = "EventSinkDispatcher";
 
+    // both XPath dialects are content filters, the topic of such subscriptions is given by the url
+    String EB_FILTER_DIALECT_XPATH = "XPath";
+    String EB_FILTER_DIALECT_XPATH_URI = "http://www.w3.org/TR/1999/REC-xpath-19991116";
+
     int EB_NON_PERSISTENT = 1;
     int EB_PERSISTENT = 2;
 
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * lock free histogram of durations with a fixed number of buckets, so that its size does not
+ * depend on the number of samples. bucket n counts the durations between 2^(n-1) and 2^n micro
+ * seconds, which keeps the relative error of the percentiles below a factor of two from a micro
+ * second up to about half an hour.
+ */
+@Deprecated
+public class LatencyHistogram {
+
+    private static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos duration in nano seconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(nanos, 0) / 1000;
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+        this.buckets.incrementAndGet(bucket);
+        this.count.incrementAndGet();
+        long currentMax = this.max.get();
+        while ((nanos > currentMax) && !this.max.compareAndSet(currentMax, nanos)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    /**
+     * adds the durations recorded by another histogram to this one
+     */
+    public void add(LatencyHistogram histogram) {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            this.buckets.addAndGet(bucket, histogram.buckets.get(bucket));
+        }
+        this.count.addAndGet(histogram.count.get());
+        long otherMax = histogram.max.get();
+        long currentMax = this.max.get();
+        while ((otherMax > currentMax) && !this.max.compareAndSet(currentMax, otherMax)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * @return longest duration in milli seconds
+     */
+    public double getMax() {
+        return this.max.get() / 1000000d;
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return upper bound in milli seconds of the bucket containing the percentile, 0 if there
+     *         are no samples
+     */
+    public double getPercentile(double percentile) {
+        long total = this.count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(total * percentile / 100), 1);
+        long cumulativeCount = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            cumulativeCount += this.buckets.get(bucket);
+            if (cumulativeCount >= rank) {
+                // the bound can not be larger than the longest duration seen
+                return Math.min((1L << bucket) / 1000d, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            this.buckets.set(bucket, 0);
+        }
+        this.count.set(0);
+        this.max.set(0);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core;
+
+import junit.framework.TestCase;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+
+@Deprecated
+public class MessageTest extends TestCase {
+
+    public void testSerializedOnce() throws Exception {
+        Message message = new Message();
+        message.setMessage(AXIOMUtil.stringToOM("<event><id>1</id></event>"));
+        SerializedMessage serializedMessage = message.getSerializedMessage();
+        assertSame(serializedMessage, message.getSerializedMessage());
+        assertEquals("<event><id>1</id></event>", serializedMessage.getText());
+        // the tree is kept for the filters and dispatchers
+        assertEquals("event", message.getMessage().getLocalName());
+    }
+
+    public void testSetMessageResetsSerializedForm() throws Exception {
+        Message message = new Message();
+        message.setMessage(AXIOMUtil.stringToOM("<event><id>1</id></event>"));
+        SerializedMessage serializedMessage = message.getSerializedMessage();
+        message.setMessage(AXIOMUtil.stringToOM("<event><id>2</id></event>"));
+        assertNotSame(serializedMessage, message.getSerializedMessage());
+        assertEquals("<event><id>2</id></event>", message.getSerializedMessage().getText());
+    }
+
+    public void testChangeInPlace() throws Exception {
+        Message message = new Message();
+        OMElement payload = AXIOMUtil.stringToOM("<event><id>1</id></event>");
+        message.setMessage(payload);
+        message.getSerializedMessage();
+
+        payload.getFirstElement().setText("2");
+        // changes in place are not seen until the serialized form is reset
+        assertEquals("<event><id>1</id></event>", message.getSerializedMessage().getText());
+        message.resetSerializedMessage();
+        assertEquals("<event><id>2</id></event>", message.getSerializedMessage().getText());
+    }
+
+    public void testMissingPayload() {
+        try {
+            new Message().getSerializedMessage();
+            fail("message without a payload must not be serialized");
+        } catch (EventBrokerException e) {
+            // expected
+        }
+    }
+}
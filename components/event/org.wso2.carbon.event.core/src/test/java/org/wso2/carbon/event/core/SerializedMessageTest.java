@@ -0,0 +1,54 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+@Deprecated
+public class SerializedMessageTest extends TestCase {
+
+    private static final String PAYLOAD = "<event>\u00e9t\u00e9</event>";
+
+    public void testDecodedWithItsEncoding() throws Exception {
+        SerializedMessage serializedMessage = new SerializedMessage(PAYLOAD.getBytes("UTF-16"), "UTF-16");
+        assertEquals("UTF-16", serializedMessage.getCharsetEncoding());
+        assertEquals(PAYLOAD, serializedMessage.getText());
+        // decoded once
+        assertSame(serializedMessage.getText(), serializedMessage.getText());
+    }
+
+    public void testBytesAreShared() throws Exception {
+        byte[] bytes = PAYLOAD.getBytes("UTF-8");
+        SerializedMessage serializedMessage = new SerializedMessage(bytes, "UTF-8");
+        assertSame(bytes, serializedMessage.getBytes());
+        assertEquals(bytes.length, serializedMessage.getLength());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        serializedMessage.writeTo(outputStream);
+        assertEquals(PAYLOAD, outputStream.toString("UTF-8"));
+
+        // every reader gets a stream of its own
+        InputStream first = serializedMessage.getInputStream();
+        InputStream second = serializedMessage.getInputStream();
+        assertEquals(first.read(), second.read());
+        assertEquals(bytes.length - 1, first.available());
+    }
+}
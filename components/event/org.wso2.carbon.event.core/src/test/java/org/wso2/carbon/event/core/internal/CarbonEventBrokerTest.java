@@ -0,0 +1,151 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.CarbonConstants;
+import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.event.core.exception.EventBrokerConfigurationException;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.delivery.inmemory.InMemoryDeliveryManager;
+import org.wso2.carbon.event.core.internal.delivery.inmemory.InMemoryMatchingManager;
+import org.wso2.carbon.event.core.internal.subscription.inmemory.InMemorySubscriptionManager;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Deprecated
+public class CarbonEventBrokerTest extends TestCase {
+
+    private static final long TIMEOUT = 10;
+
+    private CarbonEventBroker carbonEventBroker;
+    private InMemorySubscriptionManager subscriptionManager;
+    private InMemoryDeliveryManager deliveryManager;
+    private SubscriptionLoader subscriptionLoader;
+    private int tenantId;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.tenantId = CarbonContext.getThreadLocalCarbonContext().getTenantId();
+        this.subscriptionManager = new InMemorySubscriptionManager();
+        this.subscriptionLoader = new SubscriptionLoader(1, TimeUnit.SECONDS.toMillis(TIMEOUT));
+        this.deliveryManager = new InMemoryDeliveryManager(Executors.newSingleThreadExecutor(), "/event/topics");
+        this.deliveryManager.setMatchingManager(new InMemoryMatchingManager());
+        this.deliveryManager.initializeTenant();
+
+        this.carbonEventBroker = new CarbonEventBroker();
+        this.carbonEventBroker.setSubscriptionManager(this.subscriptionManager);
+        this.carbonEventBroker.setDeliveryManager(this.deliveryManager);
+        this.carbonEventBroker.setSubscriptionLoader(this.subscriptionLoader);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.subscriptionLoader.shutdown();
+    }
+
+    public void testUnsubscribeWaitsForTheLoad() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        this.subscriptionLoader.load(this.tenantId, new SubscriptionLoader.LoadTask() {
+            public void load() throws EventBrokerException {
+                try {
+                    release.await(TIMEOUT, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                loadSubscription("sub1");
+            }
+        });
+
+        final CountDownLatch unsubscribed = new CountDownLatch(1);
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    carbonEventBroker.unsubscribe("sub1");
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+                unsubscribed.countDown();
+            }
+        });
+        thread.start();
+        assertFalse(unsubscribed.await(200, TimeUnit.MILLISECONDS));
+
+        // the subscription is removed after it was loaded, not before
+        release.countDown();
+        assertTrue(unsubscribed.await(TIMEOUT, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertNull(this.subscriptionManager.getSubscription("sub1"));
+    }
+
+    public void testFailedLoadIsReported() throws Exception {
+        final CountDownLatch loaded = new CountDownLatch(1);
+        this.subscriptionLoader.load(this.tenantId, new SubscriptionLoader.LoadTask() {
+            public void load() throws EventBrokerException {
+                loaded.countDown();
+                throw new EventBrokerException("Cannot access the registry");
+            }
+        });
+        assertTrue(loaded.await(TIMEOUT, TimeUnit.SECONDS));
+
+        try {
+            this.carbonEventBroker.subscribe(createSubscription(null));
+            fail("Subscribed before the subscriptions of the tenant are loaded");
+        } catch (EventBrokerConfigurationException e) {
+            assertEquals("Cannot access the registry", e.getCause().getMessage());
+        }
+        try {
+            this.carbonEventBroker.unsubscribe("sub1");
+            fail("Unsubscribed before the subscriptions of the tenant are loaded");
+        } catch (EventBrokerConfigurationException e) {
+            // expected
+        }
+        assertEquals(0, this.subscriptionManager.getAllSubscriptions().size());
+
+        // the tenant opens once it is loaded again
+        this.subscriptionLoader.load(this.tenantId, new SubscriptionLoader.LoadTask() {
+            public void load() throws EventBrokerException {
+                loadSubscription("sub1");
+            }
+        });
+        this.subscriptionLoader.awaitLoaded(this.tenantId);
+        this.carbonEventBroker.unsubscribe("sub1");
+        assertNull(this.subscriptionManager.getSubscription("sub1"));
+    }
+
+    private void loadSubscription(String id) throws EventBrokerException {
+        Subscription subscription = createSubscription(id);
+        this.subscriptionManager.addSubscription(subscription);
+        this.deliveryManager.subscribe(subscription);
+    }
+
+    private Subscription createSubscription(String id) {
+        Subscription subscription = new Subscription();
+        subscription.setId(id);
+        subscription.setTopicName("/a");
+        // the system user is not authorized through the user store
+        subscription.setOwner(CarbonConstants.REGISTRY_SYSTEM_USERNAME);
+        subscription.setEventSinkURL("http://localhost:9763/services/EventSink");
+        return subscription;
+    }
+}
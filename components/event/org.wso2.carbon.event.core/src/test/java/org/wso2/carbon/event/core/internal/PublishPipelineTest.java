@@ -0,0 +1,243 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@Deprecated
+public class PublishPipelineTest extends TestCase {
+
+    private static final long TIMEOUT = 10;
+
+    public void testWeightedRoundRobin() throws Exception {
+        PublishPipeline publishPipeline =
+                new PublishPipeline(1, 1, 1000, 100, 10, PublishPipeline.BackpressurePolicy.REJECT, 1);
+        publishPipeline.setTenantWeight(2, 2);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(6);
+
+        // keeps the only worker busy until all the messages are queued
+        publishPipeline.submit(0, new BlockingTask(started, release));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            publishPipeline.submit(1, new RecordingTask(1, order, done));
+        }
+        for (int i = 0; i < 3; i++) {
+            publishPipeline.submit(2, new RecordingTask(2, order, done));
+        }
+        assertEquals(6, publishPipeline.getQueueDepth());
+        release.countDown();
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2, 2, 1, 2, 1), order);
+        // emptied tenant queues are removed
+        assertEquals(0, publishPipeline.getActiveTenantCount());
+        assertTrue(publishPipeline.shutdown(TIMEOUT * 1000));
+    }
+
+    public void testBackpressurePolicies() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        PublishPipeline rejectPipeline =
+                new PublishPipeline(1, 1, 1000, 100, 1, PublishPipeline.BackpressurePolicy.REJECT, 1);
+        PublishPipeline dropPipeline =
+                new PublishPipeline(1, 1, 1000, 100, 1, PublishPipeline.BackpressurePolicy.DROP_OLDEST, 1);
+        rejectPipeline.submit(0, new BlockingTask(started, release));
+        dropPipeline.submit(0, new BlockingTask(started, release));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        rejectPipeline.submit(1, new BlockingTask(null, release));
+        try {
+            rejectPipeline.submit(1, new BlockingTask(null, release));
+            fail("message must be rejected when the tenant queue is full");
+        } catch (EventBrokerException e) {
+            assertEquals(1, rejectPipeline.getRejectedCount());
+        }
+        // other tenants are not affected
+        rejectPipeline.submit(2, new BlockingTask(null, release));
+
+        dropPipeline.submit(1, new BlockingTask(null, release));
+        dropPipeline.submit(1, new BlockingTask(null, release));
+        assertEquals(1, dropPipeline.getDroppedCount());
+        assertEquals(1, dropPipeline.getTenantQueueDepth(1));
+
+        release.countDown();
+        assertTrue(rejectPipeline.shutdown(TIMEOUT * 1000));
+        assertTrue(dropPipeline.shutdown(TIMEOUT * 1000));
+    }
+
+    public void testSharedBound() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        PublishPipeline rejectPipeline =
+                new PublishPipeline(1, 1, 1000, 2, 2, PublishPipeline.BackpressurePolicy.REJECT, 1);
+        PublishPipeline dropPipeline =
+                new PublishPipeline(1, 1, 1000, 3, 2, PublishPipeline.BackpressurePolicy.DROP_OLDEST, 1);
+        rejectPipeline.submit(0, new BlockingTask(started, release));
+        dropPipeline.submit(0, new BlockingTask(started, release));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        rejectPipeline.submit(1, new BlockingTask(null, release));
+        rejectPipeline.submit(1, new BlockingTask(null, release));
+        try {
+            rejectPipeline.submit(2, new BlockingTask(null, release));
+            fail("message must be rejected when all the queues together are full");
+        } catch (EventBrokerException e) {
+            assertEquals(1, rejectPipeline.getRejectedCount());
+        }
+        assertEquals(1, rejectPipeline.getActiveTenantCount());
+
+        // a tenant without queued messages makes room in the longest queue
+        dropPipeline.submit(1, new BlockingTask(null, release));
+        dropPipeline.submit(1, new BlockingTask(null, release));
+        dropPipeline.submit(2, new BlockingTask(null, release));
+        dropPipeline.submit(3, new BlockingTask(null, release));
+        assertEquals(1, dropPipeline.getDroppedCount());
+        assertEquals(1, dropPipeline.getTenantQueueDepth(1));
+        assertEquals(3, dropPipeline.getQueueDepth());
+
+        release.countDown();
+        assertTrue(rejectPipeline.shutdown(TIMEOUT * 1000));
+        assertTrue(dropPipeline.shutdown(TIMEOUT * 1000));
+    }
+
+    public void testBlockPolicy() throws Exception {
+        final PublishPipeline publishPipeline =
+                new PublishPipeline(1, 1, 1000, 100, 1, PublishPipeline.BackpressurePolicy.BLOCK, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        publishPipeline.submit(0, new BlockingTask(started, release));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        publishPipeline.submit(1, new RecordingTask(1, new ArrayList<Integer>(), done));
+
+        final CountDownLatch submitted = new CountDownLatch(1);
+        Thread publisher = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    publishPipeline.submit(1, new RecordingTask(1, new ArrayList<Integer>(), done));
+                    submitted.countDown();
+                } catch (EventBrokerException e) {
+                    fail(e.getMessage());
+                }
+            }
+        });
+        publisher.start();
+        // the publisher waits while the queue of the tenant is full
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, publishPipeline.getTenantQueueDepth(1));
+
+        release.countDown();
+        assertTrue(submitted.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(0, publishPipeline.getDroppedCount());
+        assertEquals(0, publishPipeline.getRejectedCount());
+        assertTrue(publishPipeline.shutdown(TIMEOUT * 1000));
+    }
+
+    public void testShutdownPublishesQueuedMessages() throws Exception {
+        PublishPipeline publishPipeline =
+                new PublishPipeline(1, 1, 1000, 100, 10, PublishPipeline.BackpressurePolicy.REJECT, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        publishPipeline.submit(0, new BlockingTask(started, release));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            publishPipeline.submit(1, new RecordingTask(1, order, done));
+        }
+
+        release.countDown();
+        assertTrue(publishPipeline.shutdown(TIMEOUT * 1000));
+        assertEquals(0, done.getCount());
+        assertEquals(0, publishPipeline.getWorkerCount());
+        try {
+            publishPipeline.submit(1, new RecordingTask(1, order, done));
+            fail("message must be rejected after the shut down");
+        } catch (EventBrokerException e) {
+            // expected
+        }
+    }
+
+    public void testShutdownTimeout() throws Exception {
+        PublishPipeline publishPipeline =
+                new PublishPipeline(1, 1, 1000, 100, 10, PublishPipeline.BackpressurePolicy.REJECT, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        publishPipeline.submit(0, new BlockingTask(started, release));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        publishPipeline.submit(1, new RecordingTask(1, new ArrayList<Integer>(), done));
+
+        assertFalse(publishPipeline.shutdown(100));
+        assertEquals(0, publishPipeline.getQueueDepth());
+        release.countDown();
+        // the queued message is not published once the timeout elapsed
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    private static class BlockingTask implements Runnable {
+
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        private BlockingTask(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        public void run() {
+            if (this.started != null) {
+                this.started.countDown();
+            }
+            try {
+                this.release.await(TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class RecordingTask implements Runnable {
+
+        private final int tenantId;
+        private final List<Integer> order;
+        private final CountDownLatch done;
+
+        private RecordingTask(int tenantId, List<Integer> order, CountDownLatch done) {
+            this.tenantId = tenantId;
+            this.order = order;
+            this.done = done;
+        }
+
+        public void run() {
+            this.order.add(this.tenantId);
+            this.done.countDown();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.authorization;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.user.api.AuthorizationManager;
+import org.wso2.carbon.user.api.UserRealm;
+import org.wso2.carbon.user.api.UserRealmService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Deprecated
+public class AuthorizationCacheTest extends TestCase {
+
+    private static final String USER = "user";
+    private static final String TOPICS = "/event/topics";
+    private static final String TOPIC = TOPICS + "/a";
+    private static final String SUB_TOPIC = TOPICS + "/a/b";
+    private static final String OTHER_TOPIC = TOPICS + "/ab";
+    private static final String ACTION = "publish";
+
+    private final Set<String> authorizedResources = new HashSet<String>();
+    private final AtomicInteger userStoreChecks = new AtomicInteger();
+    private AuthorizationCache authorizationCache;
+    private Runnable onCheck;
+
+    @Override
+    protected void setUp() throws Exception {
+        final AuthorizationManager authorizationManager = (AuthorizationManager) newProxy(
+                AuthorizationManager.class, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (!"isUserAuthorized".equals(method.getName())) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        userStoreChecks.incrementAndGet();
+                        boolean authorized = authorizedResources.contains((String) args[1]);
+                        if (onCheck != null) {
+                            onCheck.run();
+                        }
+                        return authorized;
+                    }
+                });
+        final UserRealm userRealm = (UserRealm) newProxy(UserRealm.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return authorizationManager;
+            }
+        });
+        EventBrokerHolder.getInstance().registerRealmService((UserRealmService) newProxy(
+                UserRealmService.class, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return userRealm;
+                    }
+                }));
+
+        this.authorizationCache = new AuthorizationCache(60000, 10);
+        EventBrokerHolder.getInstance().registerAuthorizationCache(this.authorizationCache);
+        this.authorizedResources.add(TOPIC);
+        this.authorizedResources.add(SUB_TOPIC);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        EventBrokerHolder.getInstance().registerRealmService(null);
+        EventBrokerHolder.getInstance().registerAuthorizationCache(new AuthorizationCache());
+    }
+
+    public void testDecisionsCached() throws Exception {
+        assertTrue(this.authorizationCache.isUserAuthorized(1, USER, TOPIC, ACTION));
+        assertTrue(this.authorizationCache.isUserAuthorized(1, USER, TOPIC, ACTION));
+        assertFalse(this.authorizationCache.isUserAuthorized(1, USER, OTHER_TOPIC, ACTION));
+        assertFalse(this.authorizationCache.isUserAuthorized(1, USER, OTHER_TOPIC, ACTION));
+        assertEquals(2, this.userStoreChecks.get());
+
+        // decisions are per tenant
+        assertTrue(this.authorizationCache.isUserAuthorized(2, USER, TOPIC, ACTION));
+        assertEquals(3, this.userStoreChecks.get());
+    }
+
+    public void testDecisionsExpire() throws Exception {
+        AuthorizationCache expiringCache = new AuthorizationCache(1, 10);
+        expiringCache.isUserAuthorized(1, USER, TOPIC, ACTION);
+        Thread.sleep(5);
+        expiringCache.isUserAuthorized(1, USER, TOPIC, ACTION);
+        assertEquals(2, this.userStoreChecks.get());
+
+        AuthorizationCache disabledCache = new AuthorizationCache(0, 10);
+        disabledCache.isUserAuthorized(1, USER, TOPIC, ACTION);
+        disabledCache.isUserAuthorized(1, USER, TOPIC, ACTION);
+        assertEquals(4, this.userStoreChecks.get());
+        assertEquals(0, disabledCache.size());
+    }
+
+    public void testInvalidateResource() throws Exception {
+        this.authorizationCache.isUserAuthorized(1, USER, TOPIC, ACTION);
+        this.authorizationCache.isUserAuthorized(1, USER, SUB_TOPIC, ACTION);
+        this.authorizationCache.isUserAuthorized(1, USER, OTHER_TOPIC, ACTION);
+        this.authorizationCache.isUserAuthorized(2, USER, TOPIC, ACTION);
+
+        // the topic and its sub topics of the tenant are dropped, but not the topics sharing the prefix
+        this.authorizationCache.invalidateResource(1, TOPIC);
+        assertEquals(2, this.authorizationCache.size());
+
+        this.authorizationCache.invalidateTenant(2);
+        assertEquals(1, this.authorizationCache.size());
+        this.authorizationCache.invalidateAll();
+        assertEquals(0, this.authorizationCache.size());
+    }
+
+    public void testDecisionReadDuringInvalidationNotCached() throws Exception {
+        this.onCheck = new Runnable() {
+            public void run() {
+                authorizationCache.invalidateResource(1, TOPIC);
+            }
+        };
+        this.authorizationCache.isUserAuthorized(1, USER, TOPIC, ACTION);
+        assertEquals(0, this.authorizationCache.size());
+    }
+
+    public void testBounded() throws Exception {
+        for (int i = 0; i < 25; i++) {
+            this.authorizationCache.isUserAuthorized(1, USER, TOPICS + "/" + i, ACTION);
+            assertTrue(this.authorizationCache.size() <= 10);
+        }
+    }
+
+    public void testClusterMessage() throws Exception {
+        this.authorizationCache.isUserAuthorized(1, USER, TOPIC, ACTION);
+        this.authorizationCache.isUserAuthorized(1, USER, OTHER_TOPIC, ACTION);
+        this.authorizationCache.isUserAuthorized(2, USER, TOPIC, ACTION);
+        this.authorizationCache.isUserAuthorized(3, USER, TOPIC, ACTION);
+
+        new AuthorizationCacheInvalidationClusterMessage(1, TOPIC).execute(null);
+        assertEquals(3, this.authorizationCache.size());
+        new AuthorizationCacheInvalidationClusterMessage(2, null).execute(null);
+        assertEquals(2, this.authorizationCache.size());
+        new AuthorizationCacheInvalidationClusterMessage().execute(null);
+        assertEquals(0, this.authorizationCache.size());
+    }
+
+    public void testPermissionChangeInvalidates() throws Exception {
+        org.wso2.carbon.user.core.AuthorizationManager tenantAuthorizationManager =
+                (org.wso2.carbon.user.core.AuthorizationManager) newProxy(
+                        org.wso2.carbon.user.core.AuthorizationManager.class, new InvocationHandler() {
+                            public Object invoke(Object proxy, Method method, Object[] args) {
+                                return 1;
+                            }
+                        });
+        EventBrokerAuthorizationManagerListener listener = new EventBrokerAuthorizationManagerListener();
+        this.authorizationCache.isUserAuthorized(1, USER, OTHER_TOPIC, ACTION);
+        this.authorizationCache.isUserAuthorized(1, USER, TOPIC, ACTION);
+
+        assertTrue(listener.authorizeRole("role", OTHER_TOPIC, ACTION, tenantAuthorizationManager));
+        this.authorizedResources.add(OTHER_TOPIC);
+        assertTrue(this.authorizationCache.isUserAuthorized(1, USER, OTHER_TOPIC, ACTION));
+        assertEquals(3, this.userStoreChecks.get());
+
+        assertTrue(listener.clearRoleAuthorization("role", tenantAuthorizationManager));
+        assertEquals(0, this.authorizationCache.size());
+    }
+
+    public void testDecisionReadBeforeChangeInvalidated() throws Exception {
+        AuthorizationCache changingCache = new AuthorizationCache(60000, 10, 10);
+        EventBrokerHolder.getInstance().registerAuthorizationCache(changingCache);
+        org.wso2.carbon.user.core.AuthorizationManager tenantAuthorizationManager =
+                (org.wso2.carbon.user.core.AuthorizationManager) newProxy(
+                        org.wso2.carbon.user.core.AuthorizationManager.class, new InvocationHandler() {
+                            public Object invoke(Object proxy, Method method, Object[] args) {
+                                return 1;
+                            }
+                        });
+        EventBrokerAuthorizationManagerListener listener = new EventBrokerAuthorizationManagerListener();
+
+        assertTrue(listener.authorizeRole("role", OTHER_TOPIC, ACTION, tenantAuthorizationManager));
+        // read after the listener but before the permission is written
+        assertFalse(changingCache.isUserAuthorized(1, USER, OTHER_TOPIC, ACTION));
+        this.authorizedResources.add(OTHER_TOPIC);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((changingCache.size() > 0) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertTrue(changingCache.isUserAuthorized(1, USER, OTHER_TOPIC, ACTION));
+    }
+
+    private static Object newProxy(Class<?> type, InvocationHandler invocationHandler) {
+        return Proxy.newProxyInstance(AuthorizationCacheTest.class.getClassLoader(), new Class[]{type},
+                                      invocationHandler);
+    }
+}
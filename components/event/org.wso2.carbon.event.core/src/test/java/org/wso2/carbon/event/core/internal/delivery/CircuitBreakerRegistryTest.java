@@ -0,0 +1,156 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.delivery.EndpointHealth;
+
+import java.util.List;
+
+@Deprecated
+public class CircuitBreakerRegistryTest extends TestCase {
+
+    private static final String ENDPOINT = "http://localhost:9763/services/EventSink";
+    private static final long FAST = 1000000;
+    private static final long SLOW = 200 * 1000000L;
+
+    private CircuitBreakerRegistry createRegistry() {
+        // window of 10, trips at 50% failures or 80% calls slower than 100 ms, open for 1000 ms
+        return new CircuitBreakerRegistry(10, 4, 50, 100, 80, 1000, 2);
+    }
+
+    public void testTripOnFailureRate() {
+        CircuitBreakerRegistry registry = createRegistry();
+        assertTrue(registry.allowRequest(1, ENDPOINT, 0));
+        registry.record(1, ENDPOINT, true, FAST, 0);
+        registry.record(1, ENDPOINT, true, FAST, 0);
+        registry.record(1, ENDPOINT, false, FAST, 0);
+        // below the minimum calls
+        assertTrue(registry.allowRequest(1, ENDPOINT, 0));
+        registry.record(1, ENDPOINT, false, FAST, 0);
+        assertFalse(registry.allowRequest(1, ENDPOINT, 10));
+        assertEquals(990, registry.getOpenTimeRemaining(1, ENDPOINT, 10));
+        assertEquals(EndpointHealth.STATE_OPEN, registry.getState(1, ENDPOINT));
+        assertEquals(1, registry.getTrippedEndpoints().length);
+
+        // endpoints of the other tenants are not affected
+        assertTrue(registry.allowRequest(2, ENDPOINT, 10));
+        assertEquals(0, registry.getOpenTimeRemaining(2, ENDPOINT, 10));
+    }
+
+    public void testSlidingWindow() {
+        CircuitBreakerRegistry registry = createRegistry();
+        for (int i = 0; i < 4; i++) {
+            registry.record(1, ENDPOINT, true, FAST, 0);
+            for (int j = 0; j < 3; j++) {
+                registry.record(1, ENDPOINT, false, FAST, 0);
+            }
+        }
+        // the window keeps the last 10 calls, 2 of which failed
+        assertEquals(20d, registry.getFailureRate(1, ENDPOINT), 0.001);
+        assertEquals(EndpointHealth.STATE_CLOSED, registry.getState(1, ENDPOINT));
+    }
+
+    public void testTripOnSlowCalls() {
+        CircuitBreakerRegistry registry = createRegistry();
+        for (int i = 0; i < 3; i++) {
+            registry.record(1, ENDPOINT, false, SLOW, 0);
+        }
+        registry.record(1, ENDPOINT, false, FAST, 0);
+        assertEquals(EndpointHealth.STATE_CLOSED, registry.getState(1, ENDPOINT));
+        registry.record(1, ENDPOINT, false, SLOW, 0);
+        assertEquals(EndpointHealth.STATE_OPEN, registry.getState(1, ENDPOINT));
+    }
+
+    public void testHalfOpen() {
+        CircuitBreakerRegistry registry = createRegistry();
+        for (int i = 0; i < 4; i++) {
+            registry.record(1, ENDPOINT, true, FAST, 0);
+        }
+        assertFalse(registry.allowRequest(1, ENDPOINT, 999));
+
+        // two trials are let through once the circuit was open for long enough
+        assertTrue(registry.allowRequest(1, ENDPOINT, 1000));
+        assertTrue(registry.allowRequest(1, ENDPOINT, 1000));
+        assertFalse(registry.allowRequest(1, ENDPOINT, 1000));
+        assertEquals(EndpointHealth.STATE_HALF_OPEN, registry.getState(1, ENDPOINT));
+        assertEquals(0, registry.getOpenTimeRemaining(1, ENDPOINT, 1000));
+
+        // a failed trial opens it again
+        registry.record(1, ENDPOINT, true, FAST, 1001);
+        assertEquals(EndpointHealth.STATE_OPEN, registry.getState(1, ENDPOINT));
+        assertFalse(registry.allowRequest(1, ENDPOINT, 1500));
+
+        // successful trials close it
+        assertTrue(registry.allowRequest(1, ENDPOINT, 2001));
+        assertTrue(registry.allowRequest(1, ENDPOINT, 2001));
+        registry.record(1, ENDPOINT, false, FAST, 2002);
+        registry.record(1, ENDPOINT, false, FAST, 2002);
+        assertEquals(EndpointHealth.STATE_CLOSED, registry.getState(1, ENDPOINT));
+        assertTrue(registry.allowRequest(1, ENDPOINT, 2003));
+        assertEquals(0d, registry.getFailureRate(1, ENDPOINT), 0.001);
+
+        List<EndpointHealth> endpointHealth = registry.getEndpointHealth(1);
+        assertEquals(1, endpointHealth.size());
+        assertEquals(2, endpointHealth.get(0).getTripCount());
+    }
+
+    public void testLostTrials() {
+        CircuitBreakerRegistry registry = createRegistry();
+        for (int i = 0; i < 4; i++) {
+            registry.record(1, ENDPOINT, true, FAST, 0);
+        }
+        assertTrue(registry.allowRequest(1, ENDPOINT, 1000));
+        assertTrue(registry.allowRequest(1, ENDPOINT, 1000));
+        assertFalse(registry.allowRequest(1, ENDPOINT, 1500));
+        // the outcomes never came back, new trials are let through
+        assertTrue(registry.allowRequest(1, ENDPOINT, 2000));
+    }
+
+    public void testIdleClosedCircuitsEvicted() {
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry(10, 4, 50, 100, 80, 1000, 2, 5000);
+        String otherEndpoint = ENDPOINT + "2";
+        registry.record(1, ENDPOINT, false, FAST, 0);
+        for (int i = 0; i < 4; i++) {
+            registry.record(1, otherEndpoint, true, FAST, 0);
+        }
+        registry.record(2, ENDPOINT, false, FAST, 4000);
+        assertEquals(3, registry.getEndpointCount());
+
+        // the open circuit and the recently used one are kept
+        registry.evictIdle(5000);
+        assertEquals(2, registry.getEndpointCount());
+        assertEquals(EndpointHealth.STATE_OPEN, registry.getState(1, otherEndpoint));
+        assertEquals(EndpointHealth.STATE_CLOSED, registry.getState(2, ENDPOINT));
+        assertEquals(1, registry.getEndpointHealth(1).size());
+
+        // an evicted endpoint is tracked again once it is used
+        registry.record(1, ENDPOINT, false, FAST, 6000);
+        assertEquals(3, registry.getEndpointCount());
+    }
+
+    public void testReset() {
+        CircuitBreakerRegistry registry = createRegistry();
+        assertFalse(registry.reset(1, ENDPOINT));
+        for (int i = 0; i < 4; i++) {
+            registry.record(1, ENDPOINT, true, FAST, 0);
+        }
+        assertTrue(registry.reset(1, ENDPOINT));
+        assertEquals(EndpointHealth.STATE_CLOSED, registry.getState(1, ENDPOINT));
+        assertEquals(0, registry.getTrippedEndpoints().length);
+    }
+}
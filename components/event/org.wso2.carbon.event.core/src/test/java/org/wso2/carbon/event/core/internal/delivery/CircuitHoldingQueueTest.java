@@ -0,0 +1,289 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.exception.CircuitOpenException;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.journal.EventJournal;
+import org.wso2.carbon.event.core.internal.journal.JournalRecord;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.notify.NotificationManager;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Deprecated
+public class CircuitHoldingQueueTest extends TestCase {
+
+    private static final String SINK_URL = "http://localhost:9763/services/EventSink";
+    private static final long FAST = 1000000;
+
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private RetryScheduler retryScheduler;
+    private CircuitHoldingQueue circuitHoldingQueue;
+    private CircuitNotificationManager notificationManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        // trips after 4 failures, open for 200 ms, closes after 2 successful trials
+        this.circuitBreakerRegistry = new CircuitBreakerRegistry(10, 4, 50, 100, 80, 200, 2);
+        this.notificationManager = new CircuitNotificationManager(this.circuitBreakerRegistry);
+        // a single retry would use up the budget of the subscriber
+        this.retryScheduler = new RetryScheduler(1, 4, 3, 1, 1, 10);
+        this.retryScheduler.setNotificationManager(this.notificationManager);
+        EventBrokerHolder.getInstance().registerEndpointCircuitBreaker(this.circuitBreakerRegistry);
+        EventBrokerHolder.getInstance().registerRetryScheduler(this.retryScheduler);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        EventBrokerHolder.getInstance().registerEndpointCircuitBreaker(null);
+        EventBrokerHolder.getInstance().registerRetryScheduler(null);
+        EventBrokerHolder.getInstance().registerCircuitHoldingQueue(null);
+        this.retryScheduler.shutdown();
+        if (this.circuitHoldingQueue != null) {
+            this.circuitHoldingQueue.shutdown();
+        }
+    }
+
+    public void testSentInOrderOnceClosed() throws Exception {
+        createCircuitHoldingQueue(10);
+        Subscription subscription = createSubscription("sub1");
+        tripCircuit();
+        new Worker(this.notificationManager, createMessages(3), subscription).run();
+
+        // nothing is sent or retried while the circuit is open
+        assertEquals(3, this.circuitHoldingQueue.getHeldCount(1, SINK_URL));
+        assertEquals(0, this.notificationManager.calls);
+        // the endpoints of the other tenants are not held
+        assertEquals(0, this.circuitHoldingQueue.getHeldCount(2, SINK_URL));
+
+        waitForDelivered(3);
+        assertEquals(3, this.notificationManager.calls);
+        assertEquals(0, this.circuitHoldingQueue.getHeldCount(1, SINK_URL));
+        assertEquals(0, this.retryScheduler.getDeadLetterStore().getDeadLetters(1).size());
+    }
+
+    public void testRestOfBatchHeldWhenCircuitOpens() throws Exception {
+        createCircuitHoldingQueue(10);
+        Subscription subscription = createSubscription("sub1");
+        // the circuit opens after the worker checked it, the first message is not sent
+        this.notificationManager.tripBeforeNextSend = true;
+        new Worker(this.notificationManager, createMessages(3), subscription).run();
+
+        assertEquals(3, this.circuitHoldingQueue.getHeldCount(1, SINK_URL));
+        assertEquals(0, this.retryScheduler.getDeadLetterStore().getDeadLetters(1).size());
+        waitForDelivered(3);
+        assertEquals(0, this.retryScheduler.getDeadLetterStore().getDeadLetters(1).size());
+    }
+
+    public void testLaterNotificationsHeldBehind() throws Exception {
+        createCircuitHoldingQueue(10);
+        Subscription subscription = createSubscription("sub1");
+        List<Message> messages = createMessages(3);
+        tripCircuit();
+        new Worker(this.notificationManager, messages.subList(0, 2), subscription).run();
+
+        // the circuit is closed before the held ones are sent, the later one waits for them
+        this.circuitBreakerRegistry.reset(1, SINK_URL);
+        new Worker(this.notificationManager, messages.subList(2, 3), subscription).run();
+        assertEquals(3, this.circuitHoldingQueue.getHeldCount(1, SINK_URL));
+        assertEquals(0, this.notificationManager.calls);
+        waitForDelivered(3);
+    }
+
+    public void testReleasedThroughDeliveryExecutor() throws Exception {
+        ShardedExecutor deliveryExecutor = new ShardedExecutor(1, 10);
+        EventBrokerHolder.getInstance().registerDeliveryExecutor(deliveryExecutor);
+        try {
+            createCircuitHoldingQueue(10);
+            tripCircuit();
+            new Worker(this.notificationManager, createMessages(3), createSubscription("sub1")).run();
+
+            waitForDelivered(3);
+            for (String threadName : this.notificationManager.threadNames) {
+                assertTrue(threadName, threadName.startsWith("EventDelivery-"));
+            }
+        } finally {
+            EventBrokerHolder.getInstance().registerDeliveryExecutor(null);
+            deliveryExecutor.shutdownNow();
+        }
+    }
+
+    public void testFullEndpointIsRetried() throws Exception {
+        // the subscriber can have the ones over the limit retried
+        this.retryScheduler.shutdown();
+        this.retryScheduler = new RetryScheduler(1, 4, 3, 10, 1, 10);
+        this.retryScheduler.setNotificationManager(this.notificationManager);
+        EventBrokerHolder.getInstance().registerRetryScheduler(this.retryScheduler);
+        createCircuitHoldingQueue(1);
+        Subscription subscription = createSubscription("sub1");
+        tripCircuit();
+        new Worker(this.notificationManager, createMessages(3), subscription).run();
+
+        // the ones over the limit are retried once the circuit lets them through
+        assertEquals(1, this.circuitHoldingQueue.getHeldCount(1, SINK_URL));
+        assertTrue(this.retryScheduler.isRetrying(subscription));
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((this.notificationManager.delivered.size() < 3) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, this.notificationManager.delivered.size());
+        assertEquals(0, this.retryScheduler.getDeadLetterStore().getDeadLetters(1).size());
+    }
+
+    public void testFullEndpointIsDroppedWithoutRetries() throws Exception {
+        EventBrokerHolder.getInstance().registerRetryScheduler(null);
+        createCircuitHoldingQueue(1);
+        tripCircuit();
+        new Worker(this.notificationManager, createMessages(3), createSubscription("sub1")).run();
+
+        assertEquals(1, this.circuitHoldingQueue.getHeldCount(1, SINK_URL));
+        waitForDelivered(1);
+    }
+
+    public void testHeldStayJournaled() throws Exception {
+        File directory = File.createTempFile("event-journal", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Can not create " + directory);
+        }
+        EventJournal eventJournal = new EventJournal(directory, EventJournal.DEFAULT_SEGMENT_SIZE, 0, 1000);
+        eventJournal.open();
+        eventJournal.replay(new EventJournal.RecordHandler() {
+            public void handle(JournalRecord record) {
+            }
+        });
+        EventBrokerHolder.getInstance().registerEventJournal(eventJournal);
+        try {
+            createCircuitHoldingQueue(1);
+            Subscription subscription = createSubscription("sub1");
+            List<Message> messages = new ArrayList<Message>();
+            for (Message message : createMessages(2)) {
+                messages.addAll(eventJournal.append(1, "/a", 0, Collections.singletonList(message)));
+            }
+            eventJournal.track(subscription, messages);
+            eventJournal.dispatched(messages);
+            tripCircuit();
+            new Worker(this.notificationManager, messages, subscription).run();
+
+            // stopped before the circuit closes, neither the held one nor the retried one is acknowledged
+            this.circuitHoldingQueue.shutdown();
+            this.retryScheduler.shutdown();
+            eventJournal.close();
+
+            eventJournal = new EventJournal(directory, EventJournal.DEFAULT_SEGMENT_SIZE, 0, 1000);
+            eventJournal.open();
+            final List<JournalRecord> records = new ArrayList<JournalRecord>();
+            eventJournal.replay(new EventJournal.RecordHandler() {
+                public void handle(JournalRecord record) {
+                    records.add(record);
+                }
+            });
+            eventJournal.close();
+            assertEquals(2, records.size());
+            assertEquals(0, this.notificationManager.calls);
+        } finally {
+            EventBrokerHolder.getInstance().registerEventJournal(null);
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private void createCircuitHoldingQueue(int maxHeldPerEndpoint) {
+        this.circuitHoldingQueue = new CircuitHoldingQueue(maxHeldPerEndpoint, 1);
+        this.circuitHoldingQueue.setNotificationManager(this.notificationManager);
+        EventBrokerHolder.getInstance().registerCircuitHoldingQueue(this.circuitHoldingQueue);
+    }
+
+    private void tripCircuit() {
+        for (int i = 0; i < 4; i++) {
+            this.circuitBreakerRegistry.recordFailure(1, SINK_URL, FAST);
+        }
+    }
+
+    private Subscription createSubscription(String id) {
+        Subscription subscription = new Subscription();
+        subscription.setId(id);
+        subscription.setTenantId(1);
+        subscription.setTopicName("/a");
+        subscription.setEventSinkURL(SINK_URL);
+        return subscription;
+    }
+
+    private List<Message> createMessages(int count) {
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < count; i++) {
+            Message message = new Message();
+            message.addProperty("id", Integer.toString(i));
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private void waitForDelivered(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((this.notificationManager.delivered.size() < count) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            expected.add(Integer.toString(i));
+        }
+        assertEquals(expected, this.notificationManager.delivered);
+    }
+
+    /**
+     * sends through the circuit breaker as the ws event dispatcher does
+     */
+    private static class CircuitNotificationManager implements NotificationManager {
+
+        private final CircuitBreakerRegistry circuitBreakerRegistry;
+        private final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> threadNames = Collections.synchronizedList(new ArrayList<String>());
+        private volatile int calls;
+        private volatile boolean tripBeforeNextSend;
+
+        private CircuitNotificationManager(CircuitBreakerRegistry circuitBreakerRegistry) {
+            this.circuitBreakerRegistry = circuitBreakerRegistry;
+        }
+
+        public void sendNotification(Message message, Subscription subscription) throws EventBrokerException {
+            if (this.tripBeforeNextSend) {
+                this.tripBeforeNextSend = false;
+                for (int i = 0; i < 4; i++) {
+                    this.circuitBreakerRegistry.recordFailure(subscription.getTenantId(), SINK_URL, FAST);
+                }
+            }
+            if (!this.circuitBreakerRegistry.allowRequest(subscription.getTenantId(), SINK_URL)) {
+                throw new CircuitOpenException("Circuit of " + SINK_URL + " is open");
+            }
+            this.calls++;
+            this.threadNames.add(Thread.currentThread().getName());
+            this.delivered.add(message.getProperty("id"));
+            this.circuitBreakerRegistry.recordSuccess(subscription.getTenantId(), SINK_URL, FAST);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+import junit.framework.TestCase;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.subscription.EventFilter;
+import org.wso2.carbon.event.core.subscription.Subscription;
+import org.wso2.carbon.event.core.util.EventBrokerConstants;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Deprecated
+public class EventFilterEngineTest extends TestCase {
+
+    private static Subscription createSubscription(String dialect, String value) {
+        Subscription subscription = new Subscription();
+        subscription.setId("subscription-" + value);
+        subscription.setEventFilter(new EventFilter(dialect, value));
+        return subscription;
+    }
+
+    private static Message createMessage(String payload) throws Exception {
+        Message message = new Message();
+        message.setMessage(AXIOMUtil.stringToOM(payload));
+        return message;
+    }
+
+    public void testXPathFilter() throws Exception {
+        EventFilterEngine engine = new EventFilterEngine();
+        Subscription subscription = createSubscription(EventBrokerConstants.EB_FILTER_DIALECT_XPATH_URI,
+                                                       "/order[price > 100]");
+        engine.compile(subscription);
+        Message expensive = createMessage("<order><price>150</price></order>");
+        Message cheap = createMessage("<order><price>50</price></order>");
+        assertTrue(engine.isMatching(subscription, expensive));
+        assertFalse(engine.isMatching(subscription, cheap));
+
+        List<Message> matching = engine.getMatchingMessages(subscription, Arrays.asList(cheap, expensive));
+        assertEquals(1, matching.size());
+        assertSame(expensive, matching.get(0));
+    }
+
+    public void testInvalidFilterRejected() {
+        EventFilterEngine engine = new EventFilterEngine();
+        try {
+            engine.compile(createSubscription(EventBrokerConstants.EB_FILTER_DIALECT_XPATH_URI, "/order[["));
+            fail("invalid expression accepted");
+        } catch (EventBrokerException e) {
+            // expected
+        }
+        assertEquals(0, engine.getCompiledFilterCount());
+    }
+
+    public void testShortXPathDialect() throws Exception {
+        EventFilterEngine engine = new EventFilterEngine();
+        Subscription subscription = createSubscription(EventBrokerConstants.EB_FILTER_DIALECT_XPATH,
+                                                       "/order[price > 100]");
+        engine.compile(subscription);
+        assertEquals(1, engine.getCompiledFilterCount());
+        assertTrue(engine.isMatching(subscription, createMessage("<order><price>150</price></order>")));
+        assertFalse(engine.isMatching(subscription, createMessage("<order><price>50</price></order>")));
+    }
+
+    public void testTopicDialect() throws Exception {
+        EventFilterEngine engine = new EventFilterEngine();
+        // the value of the other dialects is the topic name, not an expression
+        Subscription subscription = createSubscription("urn:someurl", "/foo/bar");
+        engine.compile(subscription);
+        assertEquals(0, engine.getCompiledFilterCount());
+        assertTrue(engine.isMatching(subscription, createMessage("<order/>")));
+    }
+
+    public void testCompiledFiltersBounded() throws Exception {
+        EventFilterEngine engine = new EventFilterEngine(2);
+        Subscription first = createSubscription(EventBrokerConstants.EB_FILTER_DIALECT_XPATH_URI, "/a");
+        Subscription second = createSubscription(EventBrokerConstants.EB_FILTER_DIALECT_XPATH_URI, "/b");
+        Subscription third = createSubscription(EventBrokerConstants.EB_FILTER_DIALECT_XPATH_URI, "/c");
+        engine.compile(first);
+        engine.compile(second);
+        engine.compile(third);
+        assertEquals(2, engine.getCompiledFilterCount());
+        assertTrue(engine.isCompiled("/c"));
+
+        // dropped expressions are compiled again when used
+        assertTrue(engine.isMatching(first, createMessage("<a/>")));
+        assertTrue(engine.isMatching(second, createMessage("<b/>")));
+        assertEquals(2, engine.getCompiledFilterCount());
+        assertTrue(engine.isCompiled("/b"));
+    }
+}
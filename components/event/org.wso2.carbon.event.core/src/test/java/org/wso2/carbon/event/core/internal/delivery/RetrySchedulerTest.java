@@ -0,0 +1,384 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.delivery.DeadLetter;
+import org.wso2.carbon.event.core.delivery.DeadLetterStore;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.exception.SendRejectedException;
+import org.wso2.carbon.event.core.internal.journal.EventJournal;
+import org.wso2.carbon.event.core.internal.journal.JournalRecord;
+import org.wso2.carbon.event.core.internal.subscription.inmemory.InMemorySubscriptionManager;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.notify.NotificationManager;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Deprecated
+public class RetrySchedulerTest extends TestCase {
+
+    private static final String SINK_URL = "http://localhost:9763/services/EventSink";
+
+    private RetryScheduler retryScheduler;
+    private InMemorySubscriptionManager subscriptionManager;
+    private CountingNotificationManager notificationManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.subscriptionManager = new InMemorySubscriptionManager();
+        this.notificationManager = new CountingNotificationManager();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (this.retryScheduler != null) {
+            this.retryScheduler.shutdown();
+        }
+    }
+
+    public void testBackoff() {
+        RetryScheduler scheduler = createRetryScheduler(100, 1000, 5, 10, 10);
+        assertBetween(50, 100, scheduler.getDelay(1));
+        assertBetween(100, 200, scheduler.getDelay(2));
+        assertBetween(200, 400, scheduler.getDelay(3));
+        // capped at the maximum delay, also when the shift overflows
+        assertBetween(500, 1000, scheduler.getDelay(5));
+        assertBetween(500, 1000, scheduler.getDelay(40));
+    }
+
+    public void testJitter() {
+        RetryScheduler scheduler = createRetryScheduler(100, 100000, 5, 10, 10);
+        Set<Long> delays = new HashSet<Long>();
+        for (int i = 0; i < 100; i++) {
+            long delay = scheduler.getDelay(5);
+            assertBetween(800, 1600, delay);
+            delays.add(delay);
+        }
+        // retries failed at the same time are spread out
+        assertTrue(delays.size() > 10);
+    }
+
+    public void testDeadLetterAfterMaxAttempts() throws Exception {
+        this.notificationManager.failures = Integer.MAX_VALUE;
+        RetryScheduler scheduler = createRetryScheduler(1, 4, 3, 10, 10);
+        Subscription subscription = addSubscription("sub1", 1);
+        scheduler.retry(createMessage("1"), subscription, new EventBrokerException("failed"));
+
+        DeadLetterStore deadLetterStore = scheduler.getDeadLetterStore();
+        waitForDeadLetters(deadLetterStore, 1);
+        // the first attempt was made by the worker
+        assertEquals(2, this.notificationManager.calls.get());
+        List<DeadLetter> deadLetters = deadLetterStore.getDeadLetters(1);
+        assertEquals(1, deadLetters.size());
+        assertEquals(3, deadLetters.get(0).getAttempts());
+        assertEquals("1", deadLetters.get(0).getMessage().getProperty("id"));
+        // dead letters are only visible to their own tenant
+        assertEquals(0, deadLetterStore.getDeadLetters(2).size());
+        assertNull(deadLetterStore.getDeadLetter(2, deadLetters.get(0).getId()));
+    }
+
+    public void testDeliveredOnRetry() throws Exception {
+        this.notificationManager.failures = 1;
+        RetryScheduler scheduler = createRetryScheduler(1, 4, 3, 10, 10);
+        Subscription subscription = addSubscription("sub1", 1);
+        scheduler.retry(createMessage("1"), subscription, new EventBrokerException("failed"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((this.notificationManager.delivered.get() == 0) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, this.notificationManager.delivered.get());
+        assertEquals(2, this.notificationManager.calls.get());
+        assertEquals(0, scheduler.getDeadLetterStore().getDeadLetters(1).size());
+    }
+
+    public void testRetriesKeepOrder() throws Exception {
+        this.notificationManager.failures = 2;
+        RetryScheduler scheduler = createRetryScheduler(1, 4, 5, 10, 10);
+        Subscription subscription = addSubscription("sub1", 1);
+        assertFalse(scheduler.isRetrying(subscription));
+        scheduler.retry(createMessage("1"), subscription, new EventBrokerException("failed"));
+        assertTrue(scheduler.isRetrying(subscription));
+        // later notifications wait behind the failed one
+        scheduler.park(createMessage("2"), subscription, "earlier notifications are being retried");
+        scheduler.park(createMessage("3"), subscription, "earlier notifications are being retried");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((this.notificationManager.delivered.get() < 3) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, this.notificationManager.delivered.get());
+        assertEquals(Arrays.asList("1", "2", "3"), this.notificationManager.deliveredIds);
+        assertFalse(scheduler.isRetrying(subscription));
+    }
+
+    public void testParkedNotificationHasAllAttempts() throws Exception {
+        this.notificationManager.failures = Integer.MAX_VALUE;
+        RetryScheduler scheduler = createRetryScheduler(1, 4, 3, 10, 10);
+        scheduler.park(createMessage("1"), addSubscription("sub1", 1), "delivery queue is full");
+
+        DeadLetterStore deadLetterStore = scheduler.getDeadLetterStore();
+        waitForDeadLetters(deadLetterStore, 1);
+        // it was never sent before it was parked
+        assertEquals(3, this.notificationManager.calls.get());
+        assertEquals(3, deadLetterStore.getDeadLetters(1).get(0).getAttempts());
+    }
+
+    public void testRejectedSendKeepsAttempts() throws Exception {
+        this.notificationManager.rejections.set(3);
+        this.notificationManager.failures = Integer.MAX_VALUE;
+        RetryScheduler scheduler = createRetryScheduler(1, 4, 3, 10, 10);
+        scheduler.retry(createMessage("1"), addSubscription("sub1", 1), new EventBrokerException("failed"));
+
+        DeadLetterStore deadLetterStore = scheduler.getDeadLetterStore();
+        waitForDeadLetters(deadLetterStore, 1);
+        // the rejected sends never reached the sink
+        assertEquals(5, this.notificationManager.calls.get());
+        assertEquals(3, deadLetterStore.getDeadLetters(1).get(0).getAttempts());
+    }
+
+    public void testRetryBudgetOfSubscriber() throws Exception {
+        // the retries wait long enough to hold the budget of the subscriber
+        RetryScheduler scheduler = createRetryScheduler(60000, 60000, 3, 2, 10);
+        Subscription subscription = addSubscription("sub1", 1);
+        Subscription otherSubscription = addSubscription("sub2", 1);
+        for (int i = 0; i < 3; i++) {
+            scheduler.retry(createMessage(Integer.toString(i)), subscription, new EventBrokerException("failed"));
+        }
+        scheduler.retry(createMessage("3"), otherSubscription, new EventBrokerException("failed"));
+
+        // only the one over the budget is moved to the dead letter store, without waiting
+        List<DeadLetter> deadLetters = scheduler.getDeadLetterStore().getDeadLetters(1);
+        assertEquals(1, deadLetters.size());
+        assertEquals("2", deadLetters.get(0).getMessage().getProperty("id"));
+        assertEquals("sub1", deadLetters.get(0).getSubscription().getId());
+        assertEquals(1, deadLetters.get(0).getAttempts());
+        assertTrue(deadLetters.get(0).getFailureReason().startsWith("Retry limit"));
+        assertEquals(0, this.notificationManager.calls.get());
+    }
+
+    public void testOldestDeadLetterIsDropped() throws Exception {
+        // no retries are allowed, every failed notification is a dead letter
+        RetryScheduler scheduler = createRetryScheduler(1, 4, 3, 0, 2);
+        Subscription subscription = addSubscription("sub1", 1);
+        for (int i = 0; i < 3; i++) {
+            scheduler.retry(createMessage(Integer.toString(i)), subscription, new EventBrokerException("failed"));
+        }
+        List<DeadLetter> deadLetters = scheduler.getDeadLetterStore().getDeadLetters(1);
+        assertEquals(2, deadLetters.size());
+        assertEquals("1", deadLetters.get(0).getMessage().getProperty("id"));
+        assertEquals("2", deadLetters.get(1).getMessage().getProperty("id"));
+    }
+
+    public void testRemove() throws Exception {
+        RetryScheduler scheduler = createRetryScheduler(1, 4, 3, 0, 10);
+        scheduler.retry(createMessage("1"), addSubscription("sub1", 1), new EventBrokerException("failed"));
+        DeadLetterStore deadLetterStore = scheduler.getDeadLetterStore();
+        String id = deadLetterStore.getDeadLetters(1).get(0).getId();
+
+        assertFalse(deadLetterStore.remove(2, id));
+        assertTrue(deadLetterStore.remove(1, id));
+        assertFalse(deadLetterStore.remove(1, id));
+        assertEquals(0, deadLetterStore.getDeadLetters(1).size());
+        assertFalse(deadLetterStore.redeliver(1, id));
+    }
+
+    public void testRedeliverToCurrentSubscription() throws Exception {
+        this.notificationManager.failures = Integer.MAX_VALUE;
+        RetryScheduler scheduler = createRetryScheduler(1, 4, 2, 10, 10);
+        scheduler.retry(createMessage("1"), addSubscription("sub1", 1), new EventBrokerException("failed"));
+        DeadLetterStore deadLetterStore = scheduler.getDeadLetterStore();
+        waitForDeadLetters(deadLetterStore, 1);
+        String id = deadLetterStore.getDeadLetters(1).get(0).getId();
+
+        // the subscriber moved its sink since the notification failed
+        this.notificationManager.failures = 0;
+        addSubscription("sub1", 1).setEventSinkURL(SINK_URL + "2");
+        assertTrue(deadLetterStore.redeliver(1, id));
+        assertNull(deadLetterStore.getDeadLetter(1, id));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((this.notificationManager.delivered.get() == 0) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, this.notificationManager.delivered.get());
+        assertEquals(SINK_URL + "2", this.notificationManager.sinkURLs.get(1));
+        assertEquals(0, deadLetterStore.getDeadLetters(1).size());
+    }
+
+    public void testRedeliverRemovedSubscription() throws Exception {
+        RetryScheduler scheduler = createRetryScheduler(1, 4, 3, 0, 10);
+        Subscription subscription = addSubscription("sub1", 1);
+        scheduler.retry(createMessage("1"), subscription, new EventBrokerException("failed"));
+        DeadLetterStore deadLetterStore = scheduler.getDeadLetterStore();
+        String id = deadLetterStore.getDeadLetters(1).get(0).getId();
+
+        this.subscriptionManager.unSubscribe("sub1");
+        try {
+            deadLetterStore.redeliver(1, id);
+            fail("Dead letter of a removed subscription is sent");
+        } catch (EventBrokerException e) {
+            // the dead letter is kept
+        }
+        assertNotNull(deadLetterStore.getDeadLetter(1, id));
+        assertEquals(0, this.notificationManager.calls.get());
+    }
+
+    public void testRedeliverExpiredSubscription() throws Exception {
+        RetryScheduler scheduler = createRetryScheduler(1, 4, 3, 0, 10);
+        Subscription subscription = addSubscription("sub1", 1);
+        scheduler.retry(createMessage("1"), subscription, new EventBrokerException("failed"));
+        DeadLetterStore deadLetterStore = scheduler.getDeadLetterStore();
+        String id = deadLetterStore.getDeadLetters(1).get(0).getId();
+
+        Calendar expires = Calendar.getInstance();
+        expires.add(Calendar.MINUTE, -1);
+        subscription.setExpires(expires);
+        try {
+            deadLetterStore.redeliver(1, id);
+            fail("Dead letter of an expired subscription is sent");
+        } catch (EventBrokerException e) {
+            // the dead letter is kept
+        }
+        assertNotNull(deadLetterStore.getDeadLetter(1, id));
+    }
+
+    public void testDeadLettersStayJournaled() throws Exception {
+        File directory = File.createTempFile("event-journal", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Can not create " + directory);
+        }
+        EventJournal eventJournal = new EventJournal(directory, EventJournal.DEFAULT_SEGMENT_SIZE, 0, 1000);
+        eventJournal.open();
+        eventJournal.replay(new EventJournal.RecordHandler() {
+            public void handle(JournalRecord record) {
+            }
+        });
+        EventBrokerHolder.getInstance().registerEventJournal(eventJournal);
+        try {
+            RetryScheduler scheduler = createRetryScheduler(1, 4, 3, 0, 1);
+            Subscription subscription = addSubscription("sub1", 1);
+            List<Message> messages = new ArrayList<Message>();
+            for (int i = 0; i < 3; i++) {
+                messages.addAll(eventJournal.append(1, "/a", 0,
+                                                    Collections.singletonList(createMessage(Integer.toString(i)))));
+            }
+            eventJournal.track(subscription, messages);
+            eventJournal.dispatched(messages);
+
+            // the first one is dropped from the full store, the second one is removed
+            scheduler.retry(messages.get(0), subscription, new EventBrokerException("failed"));
+            scheduler.retry(messages.get(1), subscription, new EventBrokerException("failed"));
+            DeadLetterStore deadLetterStore = scheduler.getDeadLetterStore();
+            assertTrue(deadLetterStore.remove(1, deadLetterStore.getDeadLetters(1).get(0).getId()));
+            scheduler.retry(messages.get(2), subscription, new EventBrokerException("failed"));
+            eventJournal.close();
+
+            // the dead letter which is still in the store is sent again after a restart
+            eventJournal = new EventJournal(directory, EventJournal.DEFAULT_SEGMENT_SIZE, 0, 1000);
+            eventJournal.open();
+            final List<JournalRecord> records = new ArrayList<JournalRecord>();
+            eventJournal.replay(new EventJournal.RecordHandler() {
+                public void handle(JournalRecord record) {
+                    records.add(record);
+                }
+            });
+            eventJournal.close();
+            assertEquals(1, records.size());
+            assertEquals("2", records.get(0).getMessage().getProperty("id"));
+        } finally {
+            EventBrokerHolder.getInstance().registerEventJournal(null);
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private RetryScheduler createRetryScheduler(long initialDelay, long maxDelay, int maxAttempts,
+                                                int maxRetriesPerSubscriber, int deadLetterCapacity) {
+        this.retryScheduler = new RetryScheduler(initialDelay, maxDelay, maxAttempts, maxRetriesPerSubscriber,
+                                                 1, deadLetterCapacity);
+        this.retryScheduler.setNotificationManager(this.notificationManager);
+        this.retryScheduler.setSubscriptionManager(this.subscriptionManager);
+        return this.retryScheduler;
+    }
+
+    private Subscription addSubscription(String id, int tenantId) {
+        Subscription subscription = new Subscription();
+        subscription.setId(id);
+        subscription.setTenantId(tenantId);
+        subscription.setTopicName("/a");
+        subscription.setEventSinkURL(SINK_URL);
+        this.subscriptionManager.addSubscription(subscription);
+        return subscription;
+    }
+
+    private Message createMessage(String id) {
+        Message message = new Message();
+        message.addProperty("id", id);
+        return message;
+    }
+
+    private void waitForDeadLetters(DeadLetterStore deadLetterStore, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((deadLetterStore.getDeadLetters(1).size() != count) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, deadLetterStore.getDeadLetters(1).size());
+    }
+
+    private static void assertBetween(long min, long max, long value) {
+        assertTrue(value + " is not between " + min + " and " + max, (value >= min) && (value <= max));
+    }
+
+    private static class CountingNotificationManager implements NotificationManager {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger delivered = new AtomicInteger();
+        private final List<String> sinkURLs = Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> deliveredIds = Collections.synchronizedList(new ArrayList<String>());
+        private volatile int failures;
+        private final AtomicInteger rejections = new AtomicInteger();
+
+        public void sendNotification(Message message, Subscription subscription) throws EventBrokerException {
+            this.sinkURLs.add(subscription.getEventSinkURL());
+            if (this.rejections.getAndDecrement() > 0) {
+                this.calls.incrementAndGet();
+                throw new SendRejectedException("Too many notifications are being sent");
+            }
+            if (this.calls.incrementAndGet() <= this.failures) {
+                throw new EventBrokerException("Can not send the notification");
+            }
+            this.deliveredIds.add(message.getProperty("id"));
+            this.delivered.incrementAndGet();
+        }
+    }
+}
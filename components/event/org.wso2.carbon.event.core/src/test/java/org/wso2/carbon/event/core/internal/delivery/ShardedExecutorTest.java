@@ -0,0 +1,181 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@Deprecated
+public class ShardedExecutorTest extends TestCase {
+
+    private static final long TIMEOUT = 10;
+
+    public void testOrderPerKey() throws Exception {
+        ShardedExecutor shardedExecutor = new ShardedExecutor(4, 1000);
+        final Map<String, List<Integer>> keyOrderMap = new HashMap<String, List<Integer>>();
+        final CountDownLatch done = new CountDownLatch(800);
+        for (int i = 0; i < 8; i++) {
+            keyOrderMap.put("sub" + i, Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 8; j++) {
+                final String key = "sub" + j;
+                final int sequence = i;
+                shardedExecutor.execute(key, new Runnable() {
+                    public void run() {
+                        keyOrderMap.get(key).add(sequence);
+                        done.countDown();
+                    }
+                });
+            }
+        }
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        for (List<Integer> order : keyOrderMap.values()) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, order.get(i).intValue());
+            }
+        }
+        shardedExecutor.shutdown();
+        assertTrue(shardedExecutor.awaitTermination(TIMEOUT, TimeUnit.SECONDS));
+        // a task is counted after it returns, which is after it counted down the latch
+        assertEquals(800, shardedExecutor.getCompletedCount());
+    }
+
+    public void testRejectWhenShardIsFull() throws Exception {
+        ShardedExecutor shardedExecutor = new ShardedExecutor(1, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        shardedExecutor.execute("sub", new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(TIMEOUT, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        shardedExecutor.execute("sub", new NoOpTask());
+        assertEquals(1, shardedExecutor.getShardQueueDepth(0));
+        try {
+            shardedExecutor.execute("sub", new NoOpTask());
+            fail("task must be rejected when the shard is full");
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, shardedExecutor.getRejectedCount());
+        }
+        release.countDown();
+        shardedExecutor.shutdown();
+        assertTrue(shardedExecutor.awaitTermination(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(2, shardedExecutor.getCompletedCount());
+    }
+
+    public void testQueueCapacityIsShared() throws Exception {
+        ShardedExecutor shardedExecutor = new ShardedExecutor(2, 3);
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            // keeps both shard threads busy
+            shardedExecutor.execute(null, new Runnable() {
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await(TIMEOUT, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        // each shard queues 2 of the 3 tasks, rounded up
+        int accepted = 0;
+        for (int i = 0; i < 6; i++) {
+            try {
+                shardedExecutor.execute(null, new NoOpTask());
+                accepted++;
+            } catch (RejectedExecutionException e) {
+                // the shard is full
+            }
+        }
+        assertEquals(4, accepted);
+        assertEquals(4, shardedExecutor.getQueueDepth());
+        release.countDown();
+        shardedExecutor.shutdown();
+        assertTrue(shardedExecutor.awaitTermination(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(6, shardedExecutor.getCompletedCount());
+    }
+
+    public void testStalledTaskLeavesShard() throws Exception {
+        ShardedExecutor shardedExecutor = new ShardedExecutor(1, 10, 50, 1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch otherDone = new CountDownLatch(1);
+        final CountDownLatch slowDone = new CountDownLatch(1);
+        shardedExecutor.execute("slow", new Runnable() {
+            public void run() {
+                try {
+                    release.await(TIMEOUT, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                order.add("slow1");
+            }
+        });
+        shardedExecutor.execute("slow", new Runnable() {
+            public void run() {
+                order.add("slow2");
+                slowDone.countDown();
+            }
+        });
+        shardedExecutor.execute("other", new Runnable() {
+            public void run() {
+                order.add("other");
+                otherDone.countDown();
+            }
+        });
+
+        // the other subscriber does not wait for the slow one
+        assertTrue(otherDone.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(1, shardedExecutor.getStalledThreadCount());
+        assertEquals(Collections.singletonList("other"), order);
+
+        // the later task of the slow subscriber still runs after its stalled task
+        release.countDown();
+        assertTrue(slowDone.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("other", "slow1", "slow2"), order);
+        shardedExecutor.shutdown();
+        assertTrue(shardedExecutor.awaitTermination(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(3, shardedExecutor.getCompletedCount());
+        assertEquals(0, shardedExecutor.getStalledThreadCount());
+    }
+
+    private static class NoOpTask implements Runnable {
+
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery.inmemory;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.Calendar;
+
+@Deprecated
+public class SubscriptionExpiryWheelTest extends TestCase {
+
+    private static final long TICK_DURATION = 1000;
+    private static final int WHEEL_SIZE = 4;
+
+    private SubscriptionStorage subscriptionStorage;
+    private SubscriptionExpiryWheel subscriptionExpiryWheel;
+    private long startTime;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.subscriptionStorage = new TrieSubscriptionStorage();
+        this.subscriptionExpiryWheel = new SubscriptionExpiryWheel(TICK_DURATION, WHEEL_SIZE);
+        this.startTime = System.currentTimeMillis();
+    }
+
+    public void testExpiry() {
+        // the second one is beyond the first level and is moved down before it expires
+        schedule("sub1", this.startTime + 2500);
+        schedule("sub2", this.startTime + 30500);
+        schedule("sub3", null);
+        assertEquals(2, this.subscriptionExpiryWheel.size());
+
+        this.subscriptionExpiryWheel.advance(this.startTime + 2000);
+        assertEquals(3, this.subscriptionStorage.getMatchingSubscriptions("/a").size());
+
+        this.subscriptionExpiryWheel.advance(this.startTime + 4000);
+        assertEquals(2, this.subscriptionStorage.getMatchingSubscriptions("/a").size());
+
+        this.subscriptionExpiryWheel.advance(this.startTime + 30000);
+        assertEquals(2, this.subscriptionStorage.getMatchingSubscriptions("/a").size());
+
+        this.subscriptionExpiryWheel.advance(this.startTime + 32000);
+        assertEquals(1, this.subscriptionStorage.getMatchingSubscriptions("/a").size());
+        assertEquals(0, this.subscriptionExpiryWheel.size());
+    }
+
+    public void testRenewAndCancel() {
+        schedule("sub1", this.startTime + 2500);
+        schedule("sub2", this.startTime + 2500);
+
+        // renewed
+        schedule("sub1", this.startTime + 10500);
+        this.subscriptionExpiryWheel.cancel("sub2");
+
+        this.subscriptionExpiryWheel.advance(this.startTime + 4000);
+        assertEquals(2, this.subscriptionStorage.getMatchingSubscriptions("/a").size());
+
+        this.subscriptionExpiryWheel.advance(this.startTime + 12000);
+        assertEquals(1, this.subscriptionStorage.getMatchingSubscriptions("/a").size());
+    }
+
+    private void schedule(String id, Long expiryTime) {
+        Subscription subscription = new Subscription();
+        subscription.setId(id);
+        subscription.setTopicName("/a");
+        if (expiryTime != null) {
+            Calendar expires = Calendar.getInstance();
+            expires.setTimeInMillis(expiryTime);
+            subscription.setExpires(expires);
+        }
+        this.subscriptionStorage.addSubscription(subscription);
+        this.subscriptionExpiryWheel.schedule(this.subscriptionStorage, subscription);
+    }
+}
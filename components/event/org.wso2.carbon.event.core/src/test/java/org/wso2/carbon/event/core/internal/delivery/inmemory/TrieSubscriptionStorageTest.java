@@ -0,0 +1,100 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery.inmemory;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Deprecated
+public class TrieSubscriptionStorageTest extends TestCase {
+
+    private static final String[] SUBSCRIBED_TOPICS = {"/", "/#", "/*", "a", "/a/#", "/a/*", "/a/b",
+            "/a/b/#", "/a/b/*", "/a/b/c/", "/x/y", "/a/*/c"};
+
+    private static final String[] PUBLISHED_TOPICS = {"/", "a", "/a", "/a/", "/a/b", "/a/b/c",
+            "/a/b/c/d", "/a/x", "/x", "/x/y", "/a/*/c"};
+
+    private TrieSubscriptionStorage trieStorage;
+    private InMemorySubscriptionStorage hashStorage;
+
+    protected void setUp() throws Exception {
+        this.trieStorage = new TrieSubscriptionStorage();
+        this.hashStorage = new InMemorySubscriptionStorage();
+        for (int i = 0; i < SUBSCRIBED_TOPICS.length; i++) {
+            this.trieStorage.addSubscription(createSubscription("sub" + i, SUBSCRIBED_TOPICS[i]));
+            this.hashStorage.addSubscription(createSubscription("sub" + i, SUBSCRIBED_TOPICS[i]));
+        }
+    }
+
+    public void testMatchingSameAsHashStorage() {
+        for (String topic : PUBLISHED_TOPICS) {
+            assertEquals("Matching subscriptions differ for topic " + topic,
+                    getIds(this.hashStorage.getMatchingSubscriptions(topic)),
+                    getIds(this.trieStorage.getMatchingSubscriptions(topic)));
+        }
+    }
+
+    public void testUnSubscribe() throws EventBrokerException {
+        for (int i = 0; i < SUBSCRIBED_TOPICS.length; i += 2) {
+            this.trieStorage.unSubscribe("sub" + i);
+            this.hashStorage.unSubscribe("sub" + i);
+        }
+        testMatchingSameAsHashStorage();
+
+        try {
+            this.trieStorage.unSubscribe("sub0");
+            fail("Removing an unknown subscription should fail");
+        } catch (EventBrokerException e) {
+            // expected
+        }
+    }
+
+    public void testRenewSubscription() throws EventBrokerException {
+        Subscription renewed = createSubscription("sub6", "/a/b");
+        renewed.addProperty("key", "value");
+        this.trieStorage.renewSubscription(renewed);
+
+        for (Subscription subscription : this.trieStorage.getMatchingSubscriptions("/a/b")) {
+            if (subscription.getId().equals("sub6")) {
+                assertEquals("value", subscription.getProperties().get("key"));
+                return;
+            }
+        }
+        fail("Renewed subscription is not found");
+    }
+
+    private Subscription createSubscription(String id, String topicName) {
+        Subscription subscription = new Subscription();
+        subscription.setId(id);
+        subscription.setTopicName(topicName);
+        return subscription;
+    }
+
+    private List<String> getIds(List<Subscription> subscriptions) {
+        List<String> ids = new ArrayList<String>();
+        for (Subscription subscription : subscriptions) {
+            ids.add(subscription.getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+}
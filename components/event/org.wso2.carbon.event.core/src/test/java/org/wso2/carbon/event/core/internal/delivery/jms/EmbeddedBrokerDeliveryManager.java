@@ -0,0 +1,116 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery.jms;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+
+import javax.jms.JMSException;
+import javax.jms.Topic;
+import javax.jms.TopicConnection;
+import javax.jms.TopicConnectionFactory;
+import javax.jms.TopicSession;
+import javax.naming.InitialContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * jms delivery manager connected to an embedded, non persistent ActiveMQ broker. It keeps the
+ * connections it creates so that the tests can check which of them are closed.
+ */
+@Deprecated
+public class EmbeddedBrokerDeliveryManager extends JMSDeliveryManager {
+
+    private final BrokerService brokerService;
+    private final ActiveMQConnectionFactory connectionFactory;
+    private final List<TopicConnection> connections =
+            Collections.synchronizedList(new ArrayList<TopicConnection>());
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    public EmbeddedBrokerDeliveryManager(String brokerName) throws Exception {
+        this.brokerService = new BrokerService();
+        this.brokerService.setBrokerName(brokerName);
+        this.brokerService.setPersistent(false);
+        this.brokerService.setUseJmx(false);
+        this.brokerService.start();
+        this.connectionFactory = new ActiveMQConnectionFactory("vm://" + brokerName + "?create=false");
+    }
+
+    public void stop() throws Exception {
+        cleanUpConnections();
+        this.brokerService.stop();
+        this.brokerService.waitUntilStopped();
+    }
+
+    public TopicConnectionFactory getConnectionFactory() {
+        return this.connectionFactory;
+    }
+
+    public List<TopicConnection> getConnections() {
+        synchronized (this.connections) {
+            return new ArrayList<TopicConnection>(this.connections);
+        }
+    }
+
+    @Override
+    public TopicConnection getTopicConnection(String userName) throws EventBrokerException {
+        try {
+            TopicConnection topicConnection = this.connectionFactory.createTopicConnection();
+            // durable subscribers need a client id
+            topicConnection.setClientID(userName + "-" + this.connectionCount.incrementAndGet());
+            topicConnection.start();
+            this.connections.add(topicConnection);
+            return topicConnection;
+        } catch (JMSException e) {
+            throw new EventBrokerException("Can not create topic connection", e);
+        }
+    }
+
+    @Override
+    protected Topic createTopic(TopicSession topicSession, String topicName) throws JMSException {
+        return topicSession.createTopic(topicName);
+    }
+
+    @Override
+    protected Properties getInitialContextProperties(String userName, String password) {
+        return new Properties();
+    }
+
+    @Override
+    protected TopicConnectionFactory getTopicConnectionFactory(InitialContext initialContext) {
+        return this.connectionFactory;
+    }
+
+    @Override
+    protected String getTopicName(String topicName) {
+        return topicName.replaceAll("/", ".");
+    }
+
+    private void cleanUpConnections() {
+        for (TopicConnection topicConnection : getConnections()) {
+            try {
+                topicConnection.close();
+            } catch (JMSException ignore) {
+                // closing the broker anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.delivery.jms;
+
+import junit.framework.TestCase;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.exception.PartialPublishException;
+
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.jms.TopicConnection;
+import javax.jms.TopicSession;
+import javax.jms.TopicSubscriber;
+import java.util.Arrays;
+
+/**
+ * publishes batches through the jms delivery manager to an embedded message broker
+ */
+@Deprecated
+public class JMSBatchPublishTest extends TestCase {
+
+    private static final String TOPIC = "test/batch";
+    private static final long TIMEOUT = 5000;
+
+    private EmbeddedBrokerDeliveryManager deliveryManager;
+    private TopicConnection consumerConnection;
+    private TopicSubscriber topicSubscriber;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.deliveryManager = new EmbeddedBrokerDeliveryManager("batchPublishTest");
+        this.consumerConnection = this.deliveryManager.getConnectionFactory().createTopicConnection();
+        TopicSession topicSession = this.consumerConnection.createTopicSession(false, Session.AUTO_ACKNOWLEDGE);
+        this.topicSubscriber = topicSession.createSubscriber(topicSession.createTopic("test.batch"));
+        this.consumerConnection.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.consumerConnection.close();
+        this.deliveryManager.stop();
+    }
+
+    public void testBatchIsPublishedInOrder() throws Exception {
+        this.deliveryManager.publish(Arrays.asList(createMessage("1"), createMessage("2"), createMessage("3")),
+                                     TOPIC, javax.jms.Message.DEFAULT_DELIVERY_MODE);
+        assertReceived("1");
+        assertReceived("2");
+        assertReceived("3");
+        // the publisher of the topic is reused for the whole batch
+        assertEquals(1, this.deliveryManager.getConnections().size());
+    }
+
+    public void testPartialFailure() throws Exception {
+        // a message without a payload can not be sent
+        Message invalidMessage = new Message();
+        Message lastMessage = createMessage("3");
+        try {
+            this.deliveryManager.publish(Arrays.asList(createMessage("1"), invalidMessage, lastMessage),
+                                         TOPIC, javax.jms.Message.DEFAULT_DELIVERY_MODE);
+            fail("failed message must be reported");
+        } catch (PartialPublishException e) {
+            assertEquals(1, e.getPublishedCount());
+            assertEquals(Arrays.asList(invalidMessage, lastMessage), e.getUnpublishedMessages());
+        }
+        assertReceived("1");
+        // messages after the failed one are not sent
+        assertNull(this.topicSubscriber.receive(500));
+    }
+
+    private static Message createMessage(String id) throws Exception {
+        Message message = new Message();
+        message.setMessage(AXIOMUtil.stringToOM("<event><id>" + id + "</id></event>"));
+        return message;
+    }
+
+    private void assertReceived(String id) throws Exception {
+        TextMessage textMessage = (TextMessage) this.topicSubscriber.receive(TIMEOUT);
+        assertNotNull(textMessage);
+        assertTrue(textMessage.getText(), textMessage.getText().contains("<id>" + id + "</id>"));
+    }
+}
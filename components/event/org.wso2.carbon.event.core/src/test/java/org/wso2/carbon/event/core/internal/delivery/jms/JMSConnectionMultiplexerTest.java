@@ -0,0 +1,190 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery.jms;
+
+import junit.framework.TestCase;
+import org.apache.activemq.ActiveMQConnection;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.notify.NotificationManager;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import javax.jms.JMSException;
+import javax.jms.Session;
+import javax.jms.TopicConnection;
+import javax.jms.TopicPublisher;
+import javax.jms.TopicSession;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * subscribes through the connection multiplexer to an embedded message broker
+ */
+@Deprecated
+public class JMSConnectionMultiplexerTest extends TestCase {
+
+    private static final String USER = "admin";
+    private static final String SLOW_USER = "slow";
+    private static final String FAILING_USER = "failing";
+    private static final long TIMEOUT = 5000;
+
+    private CountDownLatch slowConnectLatch;
+    private EmbeddedBrokerDeliveryManager deliveryManager;
+    private BlockingQueue<Message> notifications;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.slowConnectLatch = new CountDownLatch(1);
+        this.deliveryManager = new EmbeddedBrokerDeliveryManager("multiplexerTest") {
+            @Override
+            public TopicConnection getTopicConnection(String userName) throws EventBrokerException {
+                if (FAILING_USER.equals(userName)) {
+                    throw new EventBrokerException("Can not create topic connection");
+                }
+                if (SLOW_USER.equals(userName)) {
+                    try {
+                        slowConnectLatch.await();
+                    } catch (InterruptedException e) {
+                        throw new EventBrokerException("Interrupted", e);
+                    }
+                }
+                return super.getTopicConnection(userName);
+            }
+        };
+        this.notifications = new LinkedBlockingQueue<Message>();
+        this.deliveryManager.setNotificationManager(new NotificationManager() {
+            public void sendNotification(Message message, Subscription subscription) {
+                notifications.add(message);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.slowConnectLatch.countDown();
+        this.deliveryManager.cleanUp();
+        this.deliveryManager.stop();
+    }
+
+    public void testSubscriptionsShareConnection() throws Exception {
+        this.deliveryManager.subscribe(createSubscription("1"));
+        this.deliveryManager.subscribe(createSubscription("2"));
+        assertEquals(1, this.deliveryManager.getConnections().size());
+        ActiveMQConnection connection = (ActiveMQConnection) this.deliveryManager.getConnections().get(0);
+
+        this.deliveryManager.unSubscribe("1");
+        assertFalse(connection.isClosed());
+        publish("<a/>");
+        assertNotNull(this.notifications.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        this.deliveryManager.unSubscribe("2");
+        assertTrue(connection.isClosed());
+    }
+
+    public void testConnectionCreatedOutsideLock() throws Exception {
+        final JMSConnectionMultiplexer multiplexer = new JMSConnectionMultiplexer(this.deliveryManager);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<JMSConnectionMultiplexer.SharedConnection> acquireSlow =
+                    new Callable<JMSConnectionMultiplexer.SharedConnection>() {
+                        public JMSConnectionMultiplexer.SharedConnection call() throws Exception {
+                            return multiplexer.acquire(SLOW_USER);
+                        }
+                    };
+            Future<JMSConnectionMultiplexer.SharedConnection> first = executor.submit(acquireSlow);
+            Future<JMSConnectionMultiplexer.SharedConnection> second = executor.submit(acquireSlow);
+
+            // other users are not held by the connection being created
+            JMSConnectionMultiplexer.SharedConnection connection = multiplexer.acquire(USER);
+            assertFalse(first.isDone());
+            assertFalse(second.isDone());
+
+            this.slowConnectLatch.countDown();
+            assertSame(first.get(TIMEOUT, TimeUnit.MILLISECONDS), second.get(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertEquals(2, multiplexer.getConnectionCount());
+            assertEquals(2, this.deliveryManager.getConnections().size());
+
+            connection.release();
+            first.get().release();
+            second.get().release();
+            assertEquals(0, multiplexer.getConnectionCount());
+        } finally {
+            executor.shutdownNow();
+            multiplexer.close();
+        }
+    }
+
+    public void testFailedConnectIsNotCached() throws Exception {
+        JMSConnectionMultiplexer multiplexer = new JMSConnectionMultiplexer(this.deliveryManager);
+        try {
+            multiplexer.acquire(FAILING_USER);
+            fail("connection of the failing user is created");
+        } catch (EventBrokerException expected) {
+            assertEquals(0, multiplexer.getConnectionCount());
+        } finally {
+            multiplexer.close();
+        }
+    }
+
+    public void testFailedConnectionIsReplaced() throws Exception {
+        this.deliveryManager.subscribe(createSubscription("1"));
+        ActiveMQConnection failedConnection =
+                (ActiveMQConnection) this.deliveryManager.getConnections().get(0);
+
+        failedConnection.getExceptionListener().onException(new JMSException("connection lost"));
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while ((this.deliveryManager.getConnections().size() < 2) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, this.deliveryManager.getConnections().size());
+        assertTrue(failedConnection.isClosed());
+
+        // the subscriber is created again with the new connection
+        publish("<a/>");
+        Message notification = this.notifications.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(notification);
+        assertEquals("a", notification.getMessage().getLocalName());
+
+        this.deliveryManager.unSubscribe("1");
+        assertTrue(((ActiveMQConnection) this.deliveryManager.getConnections().get(1)).isClosed());
+    }
+
+    private Subscription createSubscription(String id) {
+        Subscription subscription = new Subscription();
+        subscription.setId(id);
+        subscription.setTopicName("test/topic");
+        subscription.setOwner(USER);
+        return subscription;
+    }
+
+    private void publish(String text) throws Exception {
+        TopicConnection connection = this.deliveryManager.getConnectionFactory().createTopicConnection();
+        try {
+            TopicSession session = connection.createTopicSession(false, Session.AUTO_ACKNOWLEDGE);
+            TopicPublisher publisher = session.createPublisher(session.createTopic("test.topic"));
+            publisher.publish(session.createTextMessage(text));
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.delivery.jms;
+
+import junit.framework.TestCase;
+import org.apache.activemq.ActiveMQConnection;
+
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.jms.TopicConnection;
+import javax.jms.TopicSession;
+import javax.jms.TopicSubscriber;
+
+/**
+ * publishes through the publisher cache to an embedded message broker
+ */
+@Deprecated
+public class JMSPublisherCacheTest extends TestCase {
+
+    private static final String USER = "admin";
+    private static final String TOPIC = "test.topic";
+    private static final long TIMEOUT = 5000;
+
+    private EmbeddedBrokerDeliveryManager deliveryManager;
+    private JMSPublisherCache publisherCache;
+    private TopicConnection consumerConnection;
+    private TopicSubscriber topicSubscriber;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.deliveryManager = new EmbeddedBrokerDeliveryManager("publisherCacheTest");
+        this.publisherCache = new JMSPublisherCache(this.deliveryManager, 60000, 10);
+        this.consumerConnection = this.deliveryManager.getConnectionFactory().createTopicConnection();
+        TopicSession topicSession = this.consumerConnection.createTopicSession(false, Session.AUTO_ACKNOWLEDGE);
+        this.topicSubscriber = topicSession.createSubscriber(topicSession.createTopic(TOPIC));
+        this.consumerConnection.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.publisherCache.close();
+        this.consumerConnection.close();
+        this.deliveryManager.stop();
+    }
+
+    public void testPublisherReuse() throws Exception {
+        JMSPublisherCache.CachedPublisher cachedPublisher = this.publisherCache.borrowPublisher(USER, TOPIC);
+        publish(cachedPublisher, "1");
+        this.publisherCache.returnPublisher(cachedPublisher, false);
+
+        JMSPublisherCache.CachedPublisher reusedPublisher = this.publisherCache.borrowPublisher(USER, TOPIC);
+        assertSame(cachedPublisher, reusedPublisher);
+        publish(reusedPublisher, "2");
+        this.publisherCache.returnPublisher(reusedPublisher, false);
+
+        assertReceived("1");
+        assertReceived("2");
+        assertEquals(1, this.deliveryManager.getConnections().size());
+    }
+
+    public void testFailureDoesNotCloseBorrowedPublishers() throws Exception {
+        JMSPublisherCache.CachedPublisher failedPublisher = this.publisherCache.borrowPublisher(USER, TOPIC);
+        JMSPublisherCache.CachedPublisher otherPublisher = this.publisherCache.borrowPublisher(USER, TOPIC);
+        ActiveMQConnection brokenConnection = (ActiveMQConnection) this.deliveryManager.getConnections().get(0);
+
+        this.publisherCache.returnPublisher(failedPublisher, true);
+        // the connection is not used for new publishers, but is kept open for the borrowed one
+        assertEquals(0, this.publisherCache.getConnectionCount());
+        assertFalse(brokenConnection.isClosed());
+        publish(otherPublisher, "1");
+        assertReceived("1");
+
+        this.publisherCache.returnPublisher(otherPublisher, false);
+        assertTrue(brokenConnection.isClosed());
+
+        JMSPublisherCache.CachedPublisher newPublisher = this.publisherCache.borrowPublisher(USER, TOPIC);
+        publish(newPublisher, "2");
+        this.publisherCache.returnPublisher(newPublisher, false);
+        assertReceived("2");
+        assertEquals(2, this.deliveryManager.getConnections().size());
+    }
+
+    public void testPublisherReturnedAfterEviction() throws Exception {
+        JMSPublisherCache.CachedPublisher idlePublisher = this.publisherCache.borrowPublisher(USER, TOPIC);
+        JMSPublisherCache.CachedPublisher borrowedPublisher = this.publisherCache.borrowPublisher(USER, TOPIC);
+        this.publisherCache.returnPublisher(idlePublisher, false);
+
+        // closes the idle publisher and drops the empty pool of the topic
+        this.publisherCache.evictIdle(System.currentTimeMillis() + 1);
+        this.publisherCache.returnPublisher(borrowedPublisher, false);
+
+        JMSPublisherCache.CachedPublisher reusedPublisher = this.publisherCache.borrowPublisher(USER, TOPIC);
+        assertSame(borrowedPublisher, reusedPublisher);
+        publish(reusedPublisher, "1");
+        this.publisherCache.returnPublisher(reusedPublisher, false);
+        assertReceived("1");
+    }
+
+    private void publish(JMSPublisherCache.CachedPublisher cachedPublisher, String text) throws Exception {
+        cachedPublisher.getTopicPublisher().publish(cachedPublisher.getTopicSession().createTextMessage(text));
+    }
+
+    private void assertReceived(String text) throws Exception {
+        TextMessage textMessage = (TextMessage) this.topicSubscriber.receive(TIMEOUT);
+        assertNotNull(textMessage);
+        assertEquals(text, textMessage.getText());
+    }
+}
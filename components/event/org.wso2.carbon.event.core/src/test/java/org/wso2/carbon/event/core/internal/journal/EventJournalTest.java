@@ -0,0 +1,182 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.journal;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+@Deprecated
+public class EventJournalTest extends TestCase {
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.directory = File.createTempFile("event-journal", "");
+        if (!this.directory.delete() || !this.directory.mkdir()) {
+            throw new IOException("Can not create " + this.directory);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File file : this.directory.listFiles()) {
+            file.delete();
+        }
+        this.directory.delete();
+    }
+
+    public void testReplayUndeliveredMessages() throws Exception {
+        EventJournal eventJournal = openJournal(EventJournal.DEFAULT_SEGMENT_SIZE);
+        List<Message> messages =
+                eventJournal.append(1, "/a", 0, Arrays.asList(createMessage("1"), createMessage("2"),
+                                                              createMessage("3")));
+        assertEquals(3, eventJournal.track(createSubscription("sub1"), messages).size());
+        assertEquals(1, eventJournal.track(createSubscription("sub2"), messages.subList(0, 1)).size());
+        eventJournal.dispatched(messages);
+        eventJournal.acknowledge("sub1", messages.get(0));
+        eventJournal.acknowledge("sub1", messages.get(1));
+        eventJournal.acknowledge("sub2", messages.get(0));
+        eventJournal.close();
+
+        // only the third message was not delivered to sub1
+        eventJournal = new EventJournal(this.directory, EventJournal.DEFAULT_SEGMENT_SIZE, 0, 1000);
+        eventJournal.open();
+        List<JournalRecord> records = replay(eventJournal);
+        assertEquals(1, records.size());
+        assertEquals(1, records.get(0).getTenantId());
+        assertEquals("/a", records.get(0).getTopicName());
+        assertEquals("3", records.get(0).getMessage().getProperty("id"));
+
+        List<Message> replayedMessages = Collections.<Message>singletonList(records.get(0).getMessage());
+        assertEquals(1, eventJournal.track(createSubscription("sub1"), replayedMessages).size());
+        // sub2 did not get it before the restart either, since it was not matching
+        assertEquals(0, eventJournal.track(createSubscription("sub2"), replayedMessages).size());
+        eventJournal.close();
+    }
+
+    public void testSegmentsAreDeletedAfterDelivery() throws Exception {
+        EventJournal eventJournal = openJournal(100);
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < 5; i++) {
+            messages.addAll(eventJournal.append(1, "/a", 0, Collections.singletonList(createMessage("1"))));
+        }
+        assertTrue(this.directory.list().length > 2);
+        eventJournal.track(createSubscription("sub1"), messages);
+        eventJournal.dispatched(messages);
+        for (Message message : messages) {
+            eventJournal.acknowledge("sub1", message);
+        }
+        eventJournal.close();
+        // the checkpoint and the segment new messages are appended to
+        assertEquals(2, this.directory.list().length);
+
+        eventJournal = new EventJournal(this.directory, 100, 0, 1000);
+        eventJournal.open();
+        assertEquals(0, replay(eventJournal).size());
+        List<Message> newMessages =
+                eventJournal.append(1, "/a", 0, Collections.singletonList(createMessage("2")));
+        assertEquals(1, eventJournal.track(createSubscription("sub1"), newMessages).size());
+        eventJournal.close();
+    }
+
+    public void testExpiredSubscriberIsNotTracked() throws Exception {
+        EventJournal eventJournal = openJournal(EventJournal.DEFAULT_SEGMENT_SIZE);
+        List<Message> messages =
+                eventJournal.append(1, "/a", 0, Collections.singletonList(createMessage("1")));
+        Subscription expiredSubscription = createSubscription("sub1");
+        Calendar expires = Calendar.getInstance();
+        expires.add(Calendar.MINUTE, -1);
+        expiredSubscription.setExpires(expires);
+        eventJournal.track(expiredSubscription, messages);
+        eventJournal.dispatched(messages);
+        eventJournal.close();
+
+        // the message was never delivered, but the subscription has expired
+        eventJournal = new EventJournal(this.directory, EventJournal.DEFAULT_SEGMENT_SIZE, 0, 1000);
+        eventJournal.open();
+        assertEquals(0, replay(eventJournal).size());
+        eventJournal.close();
+    }
+
+    public void testPartlyWrittenRecordIsCleared() throws Exception {
+        JournalSegment segment = new JournalSegment(this.directory, 0, 1000);
+        segment.append(new byte[]{1, 2, 3});
+        long endOffset = segment.getEndOffset();
+        segment.close();
+
+        // the crc and part of the payload of the next record, without its length
+        RandomAccessFile file = new RandomAccessFile(new File(this.directory, JournalSegment.getFileName(0)), "rw");
+        try {
+            file.seek(endOffset + 4);
+            file.write(new byte[]{9, 9, 9, 9, 5, 5});
+        } finally {
+            file.close();
+        }
+
+        segment = new JournalSegment(this.directory, 0, 1000);
+        assertEquals(endOffset, segment.getEndOffset());
+        for (int position = (int) endOffset; position < 1000; position += 4) {
+            assertEquals(0, segment.getRecordLength(position));
+        }
+        segment.append(new byte[]{4, 5});
+        assertEquals(2, segment.getRecordLength((int) endOffset));
+        assertTrue(Arrays.equals(new byte[]{4, 5}, segment.readPayload((int) endOffset, 2)));
+        segment.delete();
+    }
+
+    private EventJournal openJournal(int segmentSize) throws Exception {
+        EventJournal eventJournal = new EventJournal(this.directory, segmentSize, 0, 1000);
+        eventJournal.open();
+        assertEquals(0, replay(eventJournal).size());
+        return eventJournal;
+    }
+
+    private List<JournalRecord> replay(final EventJournal eventJournal) throws Exception {
+        final List<JournalRecord> records = new ArrayList<JournalRecord>();
+        eventJournal.replay(new EventJournal.RecordHandler() {
+            public void handle(JournalRecord record) {
+                records.add(record);
+                eventJournal.dispatched(Collections.<Message>singletonList(record.getMessage()));
+            }
+        });
+        return records;
+    }
+
+    private Subscription createSubscription(String id) {
+        Subscription subscription = new Subscription();
+        subscription.setId(id);
+        return subscription;
+    }
+
+    private Message createMessage(String id) {
+        Message message = new Message();
+        message.addProperty("id", id);
+        return message;
+    }
+}
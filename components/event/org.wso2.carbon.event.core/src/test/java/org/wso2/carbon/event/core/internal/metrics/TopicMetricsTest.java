@@ -0,0 +1,108 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.core.internal.metrics;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.topic.TopicStatistics;
+import org.wso2.carbon.event.core.util.LatencyHistogram;
+
+import java.util.List;
+
+@Deprecated
+public class TopicMetricsTest extends TestCase {
+
+    public void testPercentiles() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        assertEquals(0, latencyHistogram.getPercentile(50), 0);
+        for (int i = 0; i < 99; i++) {
+            // 100 micro seconds, in the bucket up to 128 micro seconds
+            latencyHistogram.record(100000);
+        }
+        latencyHistogram.record(50000000);
+
+        assertEquals(100, latencyHistogram.getCount());
+        assertEquals(0.128, latencyHistogram.getPercentile(50), 0.0001);
+        assertEquals(0.128, latencyHistogram.getPercentile(99), 0.0001);
+        // bounded by the longest duration instead of the bucket bound
+        assertEquals(50, latencyHistogram.getPercentile(100), 0.0001);
+        assertEquals(50, latencyHistogram.getMax(), 0.0001);
+    }
+
+    public void testMaxTopics() {
+        TickingTopicMetrics topicMetrics = new TickingTopicMetrics(2);
+        topicMetrics.published(1, "/a", 2);
+        topicMetrics.published(1, "/b", 1);
+        topicMetrics.published(1, "/a", 1);
+        topicMetrics.delivered(1, "/a", 1000);
+        topicMetrics.failed(1, "/a", 1000);
+        // evicts the least recently used topic
+        topicMetrics.published(2, "/c", 1);
+
+        assertEquals(2, topicMetrics.getTrackedTopicCount());
+        assertEquals(3, topicMetrics.getPublishCount(1, "/a"));
+        assertEquals(1, topicMetrics.getDeliveryCount(1, "/a"));
+        assertEquals(1, topicMetrics.getFailureCount(1, "/a"));
+        assertEquals(1, topicMetrics.getOverflowPublishCount());
+        try {
+            topicMetrics.getPublishCount(1, "/b");
+            fail("evicted topic should not be tracked");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        List<TopicStatistics> topicStatistics = topicMetrics.getTopicStatistics(1);
+        assertEquals(2, topicStatistics.size());
+        assertEquals("/a", topicStatistics.get(0).getTopicName());
+        assertEquals(TopicMetrics.OVERFLOW_TOPIC_NAME, topicStatistics.get(1).getTopicName());
+        assertEquals(1, topicStatistics.get(1).getPublishCount());
+        assertEquals(1, topicMetrics.getTopicStatistics(2).size());
+
+        // a topic seen again is tracked again and the counts of the evicted one are kept
+        topicMetrics.published(1, "/b", 1);
+        assertEquals(4, topicMetrics.getOverflowPublishCount());
+        topicStatistics = topicMetrics.getTopicStatistics(1);
+        assertEquals(2, topicStatistics.size());
+        assertEquals("/b", topicStatistics.get(0).getTopicName());
+        TopicStatistics overflowStatistics = topicStatistics.get(1);
+        assertEquals(4, overflowStatistics.getPublishCount());
+        assertEquals(1, overflowStatistics.getDeliveryCount());
+        assertEquals(1, overflowStatistics.getFailureCount());
+        assertEquals(0.001, overflowStatistics.getMaxSendTime(), 0.0001);
+
+        topicMetrics.resetStatistics();
+        assertEquals(0, topicMetrics.getOverflowPublishCount());
+        assertTrue(topicMetrics.getTopicStatistics(1).isEmpty());
+    }
+
+    /**
+     * each topic use is one nano second after the previous one, so the least recently used
+     * topic does not depend on the resolution of the system timer
+     */
+    private static final class TickingTopicMetrics extends TopicMetrics {
+
+        private long time;
+
+        private TickingTopicMetrics(int maxTopics) {
+            super(maxTopics);
+        }
+
+        @Override
+        long nanoTime() {
+            return ++this.time;
+        }
+    }
+}
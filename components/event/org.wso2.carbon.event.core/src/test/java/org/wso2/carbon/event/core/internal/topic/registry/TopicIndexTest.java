@@ -0,0 +1,242 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.topic.registry;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.internal.util.EventBrokerHolder;
+import org.wso2.carbon.event.core.subscription.Subscription;
+import org.wso2.carbon.event.core.topic.TopicNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Deprecated
+public class TopicIndexTest extends TestCase {
+
+    private static final int TENANT_ID = 1;
+    private static final String SINK = "http://localhost/Sink";
+
+    private TopicIndex topicIndex;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.topicIndex = new TopicIndex();
+        Map<String, List<Subscription>> topicWSSubscriptionsMap = new HashMap<String, List<Subscription>>();
+        topicWSSubscriptionsMap.put("/a", createSubscriptions("sub1", "/a"));
+        topicWSSubscriptionsMap.put("a/b", createSubscriptions("sub2", "a/b/#"));
+        topicWSSubscriptionsMap.put("ab", createSubscriptions("sub3", "ab"));
+        Map<String, List<Subscription>> topicJMSSubscriptionsMap = new HashMap<String, List<Subscription>>();
+        topicJMSSubscriptionsMap.put("a/", createSubscriptions("jms1", null));
+        this.topicIndex.load(TENANT_ID, this.topicIndex.getModificationCount(TENANT_ID),
+                             Arrays.asList("/a", "/a/c", "/a/b", "/d", "ab"),
+                             topicWSSubscriptionsMap, topicJMSSubscriptionsMap);
+    }
+
+    public void testTopicTree() {
+        assertTrue(this.topicIndex.isLoaded(TENANT_ID));
+        this.topicIndex.addTopic(TENANT_ID, "e/f/g");
+        this.topicIndex.removeTopic(TENANT_ID, "/a/");
+
+        TopicNode root = this.topicIndex.getTopicTree(TENANT_ID);
+        assertEquals(3, root.getChildCount());
+        assertEquals("ab", root.getChildren()[0].getTopicName());
+        assertEquals("d", root.getChildren()[1].getTopicName());
+        TopicNode e = root.getChildren()[2];
+        assertEquals("e/f", e.getChildren()[0].getTopicName());
+        assertEquals("e/f/g", e.getChildren()[0].getChildren()[0].getTopicName());
+
+        // other tenants are not affected
+        assertFalse(this.topicIndex.isLoaded(2));
+        assertEquals(0, this.topicIndex.getTopicTree(2).getChildren().length);
+    }
+
+    public void testChildrenPages() {
+        TopicNode[] children = this.topicIndex.getChildren(TENANT_ID, "/", 0, 1);
+        assertEquals(1, children.length);
+        assertEquals("a", children[0].getTopicName());
+        assertEquals(2, children[0].getChildCount());
+        assertNull(children[0].getChildren());
+
+        children = this.topicIndex.getChildren(TENANT_ID, "a", 1, 10);
+        assertEquals(1, children.length);
+        assertEquals("a/c", children[0].getTopicName());
+        assertEquals(0, this.topicIndex.getChildren(TENANT_ID, "x", 0, 10).length);
+    }
+
+    public void testSubscriptions() {
+        assertEquals(1, this.topicIndex.getWSSubscriptions(TENANT_ID, "a", false).size());
+        assertEquals(2, this.topicIndex.getWSSubscriptions(TENANT_ID, "/a", true).size());
+        assertEquals(3, this.topicIndex.getWSSubscriptions(TENANT_ID, "/", true).size());
+        assertEquals("jms1", this.topicIndex.getJMSSubscriptions(TENANT_ID, "a").get(0).getId());
+
+        this.topicIndex.removeTopic(TENANT_ID, "a");
+        assertEquals(1, this.topicIndex.getWSSubscriptions(TENANT_ID, "/", true).size());
+        assertTrue(this.topicIndex.getJMSSubscriptions(TENANT_ID, "a").isEmpty());
+        assertNull(this.topicIndex.getSubscription(TENANT_ID, "a", SINK, "admin"));
+    }
+
+    public void testLookup() {
+        // by the topic name it was subscribed to
+        assertEquals("sub2", this.topicIndex.getSubscription(TENANT_ID, "/a/b/#", "HTTP://localhost/Sink",
+                                                             "admin").getId());
+        assertNull(this.topicIndex.getSubscription(TENANT_ID, "a/b", SINK, "admin"));
+        assertNull(this.topicIndex.getSubscription(TENANT_ID, "a", SINK, "user"));
+        assertNull(this.topicIndex.getSubscription(2, "a", SINK, "admin"));
+
+        // a renewed subscription replaces the earlier one
+        Subscription renewed = createSubscriptions("sub1", "a").get(0);
+        this.topicIndex.putWSSubscription(TENANT_ID, "a", renewed);
+        assertSame(renewed, this.topicIndex.getSubscription(TENANT_ID, "a", SINK, "admin"));
+        assertEquals(1, this.topicIndex.getWSSubscriptions(TENANT_ID, "a", false).size());
+    }
+
+    public void testRemoveKeepsNewerSubscription() {
+        this.topicIndex.putWSSubscription(TENANT_ID, "a", createSubscriptions("sub4", "a").get(0));
+        this.topicIndex.removeSubscription(TENANT_ID, "sub1");
+        assertEquals("sub4", this.topicIndex.getSubscription(TENANT_ID, "a", SINK, "admin").getId());
+
+        this.topicIndex.removeSubscription(TENANT_ID, "sub4");
+        assertNull(this.topicIndex.getSubscription(TENANT_ID, "a", SINK, "admin"));
+        assertTrue(this.topicIndex.getWSSubscriptions(TENANT_ID, "a", false).isEmpty());
+    }
+
+    public void testModifiedWhileLoading() {
+        long modificationCount = this.topicIndex.getModificationCount(TENANT_ID);
+        this.topicIndex.putWSSubscription(TENANT_ID, "x", createSubscriptions("sub4", "x").get(0));
+        load(modificationCount);
+        // the tenant must be read again from the registry
+        assertFalse(this.topicIndex.isLoaded(TENANT_ID));
+    }
+
+    public void testUnchangedWhileLoading() {
+        long modificationCount = this.topicIndex.getModificationCount(TENANT_ID);
+        // e.g. subscriptions put under existing topics while the registry is read
+        this.topicIndex.addTopic(TENANT_ID, "/a/b");
+        this.topicIndex.removeTopic(TENANT_ID, "x/y");
+        this.topicIndex.removeSubscription(TENANT_ID, "sub5");
+        assertEquals(modificationCount, this.topicIndex.getModificationCount(TENANT_ID));
+        load(modificationCount);
+        assertTrue(this.topicIndex.isLoaded(TENANT_ID));
+    }
+
+    public void testEnsureLoaded() throws Exception {
+        TopicIndex topicIndex = new TopicIndex();
+        try {
+            topicIndex.ensureLoaded(TENANT_ID);
+            fail("loaded without a loader");
+        } catch (EventBrokerException e) {
+            // expected
+        }
+        final int[] loadCount = new int[1];
+        topicIndex.setLoader(new TopicIndex.Loader() {
+            public void loadTenant(TopicIndex topicIndex, int tenantId) {
+                loadCount[0]++;
+                topicIndex.load(tenantId, topicIndex.getModificationCount(tenantId), Arrays.asList("a"),
+                                new HashMap<String, List<Subscription>>(),
+                                new HashMap<String, List<Subscription>>());
+            }
+        });
+        topicIndex.ensureLoaded(TENANT_ID);
+        topicIndex.ensureLoaded(TENANT_ID);
+        assertEquals(1, loadCount[0]);
+        assertEquals(1, topicIndex.getTopicTree(TENANT_ID).getChildCount());
+    }
+
+    public void testReadAgainAfterRebuildInterval() throws Exception {
+        final long[] time = new long[]{1000};
+        TopicIndex topicIndex = new TopicIndex(100) {
+            @Override
+            long currentTimeMillis() {
+                return time[0];
+            }
+        };
+        final int[] loadCount = new int[1];
+        topicIndex.setLoader(new TopicIndex.Loader() {
+            public void loadTenant(TopicIndex topicIndex, int tenantId) {
+                loadCount[0]++;
+                topicIndex.load(tenantId, topicIndex.getModificationCount(tenantId), Arrays.asList("a"),
+                                new HashMap<String, List<Subscription>>(),
+                                new HashMap<String, List<Subscription>>());
+            }
+        });
+        topicIndex.ensureLoaded(TENANT_ID);
+        time[0] += 99;
+        topicIndex.ensureLoaded(TENANT_ID);
+        assertEquals(1, loadCount[0]);
+
+        time[0] += 1;
+        assertFalse(topicIndex.isLoaded(TENANT_ID));
+        // the earlier index is still used until it is read again
+        assertEquals(1, topicIndex.getTopicTree(TENANT_ID).getChildCount());
+        topicIndex.ensureLoaded(TENANT_ID);
+        assertEquals(2, loadCount[0]);
+        assertTrue(topicIndex.isLoaded(TENANT_ID));
+
+        topicIndex.setRebuildInterval(0);
+        time[0] += 1000000;
+        assertTrue(topicIndex.isLoaded(TENANT_ID));
+    }
+
+    public void testClusterMessages() throws Exception {
+        TopicIndex registeredTopicIndex = EventBrokerHolder.getInstance().getTopicIndex();
+        EventBrokerHolder.getInstance().registerTopicIndex(this.topicIndex);
+        try {
+            TopicIndexClusterMessage.addTopic(TENANT_ID, "e").execute(null);
+            TopicIndexClusterMessage.putSubscription(TENANT_ID, "e", createSubscriptions("sub4", "e").get(0), false)
+                    .execute(null);
+            TopicIndexClusterMessage.putSubscription(TENANT_ID, "e", createSubscriptions("jms2", null).get(0), true)
+                    .execute(null);
+            TopicIndexClusterMessage.removeSubscription(TENANT_ID, "sub1").execute(null);
+            TopicIndexClusterMessage.removeTopic(TENANT_ID, "d").execute(null);
+            // tenants which are not read on this node are left to be read from the registry
+            TopicIndexClusterMessage.addTopic(2, "e").execute(null);
+
+            assertEquals("sub4", this.topicIndex.getSubscription(TENANT_ID, "e", SINK, "admin").getId());
+            assertEquals(1, this.topicIndex.getJMSSubscriptions(TENANT_ID, "e").size());
+            assertNull(this.topicIndex.getSubscription(TENANT_ID, "a", SINK, "admin"));
+            assertEquals(0, this.topicIndex.getChildren(TENANT_ID, "d", 0, 10).length);
+            assertEquals(3, this.topicIndex.getTopicTree(TENANT_ID).getChildCount());
+            assertFalse(this.topicIndex.hasTenant(2));
+        } finally {
+            EventBrokerHolder.getInstance().registerTopicIndex(registeredTopicIndex);
+        }
+    }
+
+    private void load(long modificationCount) {
+        this.topicIndex.load(TENANT_ID, modificationCount, Arrays.asList("a", "a/b", "d"),
+                             new HashMap<String, List<Subscription>>(),
+                             new HashMap<String, List<Subscription>>());
+    }
+
+    private List<Subscription> createSubscriptions(String id, String topicName) {
+        Subscription subscription = new Subscription();
+        subscription.setId(id);
+        subscription.setTopicName(topicName);
+        if (topicName != null) {
+            subscription.setEventSinkURL(SINK);
+            subscription.setOwner("admin");
+        }
+        List<Subscription> subscriptions = new ArrayList<Subscription>();
+        subscriptions.add(subscription);
+        return subscriptions;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.internal.util;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.subscription.EventFilter;
+import org.wso2.carbon.event.core.subscription.Subscription;
+import org.wso2.carbon.event.core.util.EventBrokerConstants;
+import org.wso2.carbon.registry.core.ResourceImpl;
+
+@Deprecated
+public class JavaUtilTest extends TestCase {
+
+    private static Subscription createSubscription() {
+        Subscription subscription = new Subscription();
+        subscription.setId("subscription-1");
+        subscription.setTopicName("/orders");
+        subscription.setEventSinkURL("http://localhost:9763/services/EventSink");
+        subscription.setEventDispatcherName("wsEventDispatcher");
+        subscription.setOwner("admin");
+        subscription.addProperty("custom", "value");
+        return subscription;
+    }
+
+    public void testSubscriptionRoundTrip() {
+        Subscription subscription = createSubscription();
+        subscription.setEventFilter(new EventFilter(EventBrokerConstants.EB_FILTER_DIALECT_XPATH_URI,
+                                                    "/order[price > 100]"));
+        ResourceImpl resource = new ResourceImpl();
+        JavaUtil.setSubscriptionProperties(resource, subscription);
+
+        Subscription stored = JavaUtil.getSubscription(resource);
+        assertEquals("/orders", stored.getTopicName());
+        assertEquals("http://localhost:9763/services/EventSink", stored.getEventSinkURL());
+        assertEquals("wsEventDispatcher", stored.getEventDispatcherName());
+        assertEquals("admin", stored.getOwner());
+        assertEquals("value", stored.getProperties().get("custom"));
+        assertNotNull(stored.getEventFilter());
+        assertEquals(EventBrokerConstants.EB_FILTER_DIALECT_XPATH_URI, stored.getEventFilter().getDialect());
+        assertEquals("/order[price > 100]", stored.getEventFilter().getValue());
+        assertTrue(stored.getEventFilter().isXPathDialect());
+        // the filter is not a custom property of the subscription
+        assertEquals(1, stored.getProperties().size());
+    }
+
+    public void testSubscriptionWithoutFilter() {
+        ResourceImpl resource = new ResourceImpl();
+        JavaUtil.setSubscriptionProperties(resource, createSubscription());
+        assertNull(JavaUtil.getSubscription(resource).getEventFilter());
+    }
+}
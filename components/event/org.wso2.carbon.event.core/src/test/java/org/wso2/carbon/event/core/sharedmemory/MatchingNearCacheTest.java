@@ -0,0 +1,126 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.event.core.sharedmemory;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.subscription.Subscription;
+
+import java.util.Collections;
+import java.util.List;
+
+@Deprecated
+public class MatchingNearCacheTest extends TestCase {
+
+    private static final int TENANT_ID = 1;
+
+    public void testInvalidation() {
+        MatchingNearCache matchingNearCache = new MatchingNearCache(-1, 10);
+        List<Subscription> subscriptions = Collections.singletonList(new Subscription());
+        matchingNearCache.put(TENANT_ID, "/a", matchingNearCache.getVersion(TENANT_ID), subscriptions);
+        assertEquals(subscriptions, matchingNearCache.get(TENANT_ID, "/a"));
+        assertNull(matchingNearCache.get(2, "/a"));
+
+        matchingNearCache.invalidate(TENANT_ID);
+        assertNull(matchingNearCache.get(TENANT_ID, "/a"));
+    }
+
+    public void testTopicInvalidation() {
+        MatchingNearCache matchingNearCache = new MatchingNearCache(-1, 10);
+        put(matchingNearCache, "/a/b");
+        put(matchingNearCache, "/a/c");
+        put(matchingNearCache, "/d");
+
+        // only the topics matched by the changed subscription topic are dropped
+        matchingNearCache.invalidate(TENANT_ID, "/a/b");
+        assertNull(matchingNearCache.get(TENANT_ID, "/a/b"));
+        assertNotNull(matchingNearCache.get(TENANT_ID, "/a/c"));
+        assertNotNull(matchingNearCache.get(TENANT_ID, "/d"));
+
+        matchingNearCache.invalidate(TENANT_ID, "a/#");
+        assertNull(matchingNearCache.get(TENANT_ID, "/a/c"));
+        assertNotNull(matchingNearCache.get(TENANT_ID, "/d"));
+    }
+
+    public void testRemoteInvalidation() {
+        MatchingNearCache matchingNearCache = new MatchingNearCache(-1, 10);
+        long version = matchingNearCache.getVersion(TENANT_ID);
+        put(matchingNearCache, "/a");
+
+        // the version of the other node is merged, the results cached before are dropped
+        assertEquals(version + 100, matchingNearCache.invalidate(TENANT_ID, "/a", version + 100));
+        assertEquals(version + 100, matchingNearCache.getVersion(TENANT_ID));
+        assertNull(matchingNearCache.get(TENANT_ID, "/a"));
+
+        // an older version still drops the results cached since
+        put(matchingNearCache, "/a");
+        assertEquals(version + 101, matchingNearCache.invalidate(TENANT_ID, "/a", version + 1));
+        assertNull(matchingNearCache.get(TENANT_ID, "/a"));
+    }
+
+    public void testResultComputedWhileInvalidated() {
+        MatchingNearCache matchingNearCache = new MatchingNearCache(-1, 10);
+        long version = matchingNearCache.getVersion(TENANT_ID);
+        matchingNearCache.invalidate(TENANT_ID);
+        matchingNearCache.put(TENANT_ID, "/a", version, Collections.<Subscription>emptyList());
+        assertNull(matchingNearCache.get(TENANT_ID, "/a"));
+        assertEquals(0, matchingNearCache.size(TENANT_ID));
+    }
+
+    public void testMaxTopics() {
+        MatchingNearCache matchingNearCache = new TickingMatchingNearCache(2);
+        put(matchingNearCache, "/a");
+        put(matchingNearCache, "/b");
+        assertNotNull(matchingNearCache.get(TENANT_ID, "/a"));
+        // evicts only the least recently used topic
+        put(matchingNearCache, "/c");
+        assertEquals(2, matchingNearCache.size(TENANT_ID));
+        assertNotNull(matchingNearCache.get(TENANT_ID, "/a"));
+        assertNull(matchingNearCache.get(TENANT_ID, "/b"));
+        assertNotNull(matchingNearCache.get(TENANT_ID, "/c"));
+
+        // caching a topic again does not evict another one
+        put(matchingNearCache, "/c");
+        assertEquals(2, matchingNearCache.size(TENANT_ID));
+        assertNotNull(matchingNearCache.get(TENANT_ID, "/a"));
+    }
+
+    private void put(MatchingNearCache matchingNearCache, String topicName) {
+        matchingNearCache.put(TENANT_ID, topicName, matchingNearCache.getVersion(TENANT_ID),
+                              Collections.<Subscription>emptyList());
+    }
+
+    /**
+     * each use of a result is one nano second after the previous one, so the least recently used
+     * result does not depend on the resolution of the system timer
+     */
+    private static final class TickingMatchingNearCache extends MatchingNearCache {
+
+        private long time;
+
+        private TickingMatchingNearCache(int maxTopics) {
+            super(-1, maxTopics);
+        }
+
+        @Override
+        long nanoTime() {
+            return ++this.time;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.event.core.sharedmemory.partition;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+@Deprecated
+public class ConsistentHashRingTest extends TestCase {
+
+    private static final int KEY_COUNT = 10000;
+
+    public void testOwners() {
+        ConsistentHashRing consistentHashRing = new ConsistentHashRing();
+        assertNull(consistentHashRing.getOwner("-1234:/a"));
+
+        consistentHashRing.setMembers(Arrays.asList("m1", "m2", "m3"));
+        Map<String, Integer> memberIDKeyCountMap = new HashMap<String, Integer>();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String owner = consistentHashRing.getOwner("-1234:/topic" + i);
+            Integer keyCount = memberIDKeyCountMap.get(owner);
+            memberIDKeyCountMap.put(owner, (keyCount == null) ? 1 : keyCount + 1);
+        }
+        assertEquals(3, memberIDKeyCountMap.size());
+        for (int keyCount : memberIDKeyCountMap.values()) {
+            assertTrue("keys are not spread evenly " + memberIDKeyCountMap, keyCount > KEY_COUNT / 5);
+        }
+
+        // the same members give the same owners on every member
+        ConsistentHashRing otherConsistentHashRing = new ConsistentHashRing();
+        otherConsistentHashRing.setMembers(Arrays.asList("m3", "m1", "m2"));
+        assertEquals(consistentHashRing.getOwner("-1234:/a"), otherConsistentHashRing.getOwner("-1234:/a"));
+    }
+
+    public void testMembershipChanges() {
+        ConsistentHashRing consistentHashRing = new ConsistentHashRing();
+        consistentHashRing.setMembers(Arrays.asList("m1", "m2", "m3"));
+        String[] owners = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            owners[i] = consistentHashRing.getOwner("-1234:/topic" + i);
+        }
+
+        // only the keys of the removed member move
+        consistentHashRing.removeMember("m2");
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String owner = consistentHashRing.getOwner("-1234:/topic" + i);
+            if (!"m2".equals(owners[i])) {
+                assertEquals(owners[i], owner);
+            }
+        }
+
+        // only keys moving to the added member move
+        consistentHashRing.addMember("m2");
+        consistentHashRing.addMember("m4");
+        int movedKeyCount = 0;
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String owner = consistentHashRing.getOwner("-1234:/topic" + i);
+            if (!owners[i].equals(owner)) {
+                assertEquals("m4", owner);
+                movedKeyCount++;
+            }
+        }
+        assertTrue(movedKeyCount < KEY_COUNT / 2);
+    }
+}
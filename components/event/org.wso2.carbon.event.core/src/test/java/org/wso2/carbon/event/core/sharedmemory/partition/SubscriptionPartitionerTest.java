@@ -0,0 +1,230 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.event.core.sharedmemory.partition;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import junit.framework.TestCase;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Deprecated
+public class SubscriptionPartitionerTest extends TestCase {
+
+    private static final int TENANT_ID = 1;
+    private static final int TOPIC_COUNT = 100;
+    private static final long TIMEOUT = 30000;
+
+    private List<HazelcastInstance> hazelcastInstances = new ArrayList<HazelcastInstance>();
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (HazelcastInstance hazelcastInstance : this.hazelcastInstances) {
+            hazelcastInstance.getLifecycleService().terminate();
+        }
+    }
+
+    public void testOwnership() throws Exception {
+        SubscriptionPartitioner first = startPartitioner();
+        SubscriptionPartitioner second = startPartitioner();
+        awaitOwners(first, first.getLocalMemberId(), second.getLocalMemberId());
+        awaitOwners(second, first.getLocalMemberId(), second.getLocalMemberId());
+
+        // every member agrees on the owner of a topic
+        for (String topicName : getTopicNames()) {
+            assertEquals(first.getOwner(TENANT_ID, topicName), second.getOwner(TENANT_ID, topicName));
+        }
+
+        // calls run on the given member
+        Future<String> memberId = first.submit(second.getLocalMemberId(), new MemberIdCall());
+        assertEquals(second.getLocalMemberId(), memberId.get(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNull(first.submit("unknown", new MemberIdCall()));
+    }
+
+    public void testForwardedCalls() throws Exception {
+        SubscriptionPartitioner first = startPartitioner(1000);
+        SubscriptionPartitioner second = startPartitioner(1000);
+        awaitOwners(first, first.getLocalMemberId(), second.getLocalMemberId());
+
+        // the callback is told of the result without waiting for it
+        RecordingCallback<String> memberId = new RecordingCallback<String>();
+        assertTrue(first.submit(second.getLocalMemberId(), new MemberIdCall(), memberId));
+        assertTrue(memberId.latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(second.getLocalMemberId(), memberId.response);
+        assertNull(memberId.failure);
+
+        // and of a timeout if the member does not run the call in time
+        RecordingCallback<String> slow = new RecordingCallback<String>();
+        assertTrue(first.submit(second.getLocalMemberId(), new SlowCall(TIMEOUT), slow));
+        assertTrue(slow.latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(slow.failure instanceof TimeoutException);
+        assertFalse(first.submit("unknown", new MemberIdCall(), new RecordingCallback<String>()));
+    }
+
+    public void testRebalance() throws Exception {
+        SubscriptionPartitioner first = startPartitioner();
+        SubscriptionPartitioner second = startPartitioner();
+        awaitOwners(first, first.getLocalMemberId(), second.getLocalMemberId());
+
+        // the topics of the member which left are taken over
+        this.hazelcastInstances.remove(1).getLifecycleService().terminate();
+        awaitOwners(first, first.getLocalMemberId());
+        first.getOwnedSubscriptions(TENANT_ID, getTopicNames());
+        assertEquals(TOPIC_COUNT, first.getOwnedTopicCount(TENANT_ID));
+
+        // and the topics moving to a new member are dropped
+        SubscriptionPartitioner third = startPartitioner();
+        awaitOwners(first, first.getLocalMemberId(), third.getLocalMemberId());
+        int ownedTopicCount = 0;
+        for (String topicName : getTopicNames()) {
+            if (first.isLocal(first.getOwner(TENANT_ID, topicName))) {
+                ownedTopicCount++;
+            }
+        }
+        assertTrue(ownedTopicCount < TOPIC_COUNT);
+        assertEquals(ownedTopicCount, first.getOwnedTopicCount(TENANT_ID));
+    }
+
+    private SubscriptionPartitioner startPartitioner() {
+        return startPartitioner(SubscriptionPartitioner.DEFAULT_FORWARD_TIMEOUT);
+    }
+
+    private SubscriptionPartitioner startPartitioner(long forwardTimeout) {
+        Config config = new Config();
+        config.setProperty("hazelcast.logging.type", "none");
+        config.setProperty("hazelcast.wait.seconds.before.join", "0");
+        config.getGroupConfig().setName(getClass().getName());
+        JoinConfig joinConfig = config.getNetworkConfig().getJoin();
+        joinConfig.getMulticastConfig().setEnabled(false);
+        joinConfig.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+        HazelcastInstance hazelcastInstance = Hazelcast.newHazelcastInstance(config);
+        this.hazelcastInstances.add(hazelcastInstance);
+        SubscriptionPartitioner subscriptionPartitioner = new SubscriptionPartitioner(
+                hazelcastInstance, ConsistentHashRing.DEFAULT_VIRTUAL_NODES, -1, forwardTimeout);
+        subscriptionPartitioner.start();
+        return subscriptionPartitioner;
+    }
+
+    private static List<String> getTopicNames() {
+        List<String> topicNames = new ArrayList<String>();
+        for (int i = 0; i < TOPIC_COUNT; i++) {
+            topicNames.add("/topic" + i);
+        }
+        return topicNames;
+    }
+
+    /**
+     * waits until the topics are owned by exactly the given members
+     */
+    private static void awaitOwners(SubscriptionPartitioner subscriptionPartitioner, String... memberIds)
+            throws InterruptedException {
+        Set<String> expectedOwners = new HashSet<String>();
+        for (String memberId : memberIds) {
+            expectedOwners.add(memberId);
+        }
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        Set<String> owners = new HashSet<String>();
+        while (System.currentTimeMillis() < deadline) {
+            owners.clear();
+            for (String topicName : getTopicNames()) {
+                owners.add(subscriptionPartitioner.getOwner(TENANT_ID, topicName));
+            }
+            if (owners.equals(expectedOwners)) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail("Topics are owned by " + owners + " instead of " + expectedOwners);
+    }
+
+    /**
+     * returns the id of the member it runs on
+     */
+    private static final class MemberIdCall implements Callable<String>, HazelcastInstanceAware, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient HazelcastInstance hazelcastInstance;
+
+        @Override
+        public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+            this.hazelcastInstance = hazelcastInstance;
+        }
+
+        @Override
+        public String call() {
+            return this.hazelcastInstance.getCluster().getLocalMember().getUuid();
+        }
+    }
+
+    /**
+     * sleeps before returning
+     */
+    private static final class SlowCall implements Callable<String>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private long sleepTime;
+
+        private SlowCall(long sleepTime) {
+            this.sleepTime = sleepTime;
+        }
+
+        @Override
+        public String call() throws InterruptedException {
+            Thread.sleep(this.sleepTime);
+            return null;
+        }
+    }
+
+    /**
+     * keeps the first result it is told of
+     */
+    private static final class RecordingCallback<T> implements ExecutionCallback<T> {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile T response;
+        private volatile Throwable failure;
+
+        @Override
+        public void onResponse(T response) {
+            this.response = response;
+            this.latch.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            this.failure = t;
+            this.latch.countDown();
+        }
+    }
+}
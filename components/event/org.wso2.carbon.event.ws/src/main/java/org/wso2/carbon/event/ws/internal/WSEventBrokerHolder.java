@@ -16,10 +16,17 @@
 
 package org.wso2.carbon.event.ws.internal;
 
+import org.apache.axiom.om.OMElement;
 import org.wso2.carbon.event.core.EventBroker;
 import org.wso2.carbon.event.core.util.EventBrokerConstants;
+import org.wso2.carbon.event.ws.internal.notify.EndpointSendLimiter;
+import org.wso2.carbon.event.ws.internal.notify.EndpointSendMetrics;
+import org.wso2.carbon.event.ws.internal.notify.ServiceClientPool;
 import org.wso2.carbon.event.ws.internal.notify.WSEventDispatcher;
+import org.wso2.carbon.event.ws.internal.util.EventBrokerUtils;
+import org.wso2.carbon.event.ws.internal.util.EventingConstants;
 import org.wso2.carbon.utils.ConfigurationContextService;
+import org.wso2.carbon.utils.MBeanRegistrar;
 
 @Deprecated
 public class WSEventBrokerHolder {
@@ -30,6 +37,8 @@ public class WSEventBrokerHolder {
 
     private ConfigurationContextService configurationContextService;
 
+    private ServiceClientPool serviceClientPool;
+
     public static WSEventBrokerHolder getInstance(){
         return wsEventBrokerHolder;
     }
@@ -51,8 +60,57 @@ public class WSEventBrokerHolder {
     }
 
     public void registerWSEventDispatcher(){
-        WSEventDispatcher wsEventDispatcher = new WSEventDispatcher();
+        // the dispatcher is configured with an eventDispatcher element in the event broker
+        // configuration, the defaults are used if there is none
+        OMElement config = this.eventBroker.getEventDispatcherConfig(
+                EventBrokerConstants.WS_EVENT_DISPATCHER_NAME);
+        int maxConcurrentSends = Integer.parseInt(EventBrokerUtils.getConfigValue(config,
+                EventingConstants.DISPATCHER_MAX_CONCURRENT_SENDS,
+                String.valueOf(EndpointSendLimiter.DEFAULT_MAX_CONCURRENT_SENDS)));
+        int maxConcurrentSendsPerEndpoint = Integer.parseInt(EventBrokerUtils.getConfigValue(config,
+                EventingConstants.DISPATCHER_MAX_CONCURRENT_SENDS_PER_ENDPOINT,
+                String.valueOf(EndpointSendLimiter.DEFAULT_MAX_CONCURRENT_SENDS_PER_ENDPOINT)));
+        long permitTimeout = Long.parseLong(EventBrokerUtils.getConfigValue(config,
+                EventingConstants.DISPATCHER_PERMIT_TIMEOUT,
+                String.valueOf(EndpointSendLimiter.DEFAULT_PERMIT_TIMEOUT)));
+        int maxEndpoints = Integer.parseInt(EventBrokerUtils.getConfigValue(config,
+                EventingConstants.DISPATCHER_MAX_ENDPOINTS,
+                String.valueOf(EndpointSendMetrics.DEFAULT_MAX_ENDPOINTS)));
+        int maxConnectionsPerHost = Integer.parseInt(EventBrokerUtils.getConfigValue(config,
+                EventingConstants.DISPATCHER_MAX_CONNECTIONS_PER_HOST,
+                String.valueOf(ServiceClientPool.DEFAULT_MAX_CONNECTIONS_PER_HOST)));
+        int maxTotalConnections = Integer.parseInt(EventBrokerUtils.getConfigValue(config,
+                EventingConstants.DISPATCHER_MAX_TOTAL_CONNECTIONS,
+                String.valueOf(ServiceClientPool.DEFAULT_MAX_TOTAL_CONNECTIONS)));
+        long connectionIdleTimeout = Long.parseLong(EventBrokerUtils.getConfigValue(config,
+                EventingConstants.DISPATCHER_CONNECTION_IDLE_TIMEOUT,
+                String.valueOf(ServiceClientPool.DEFAULT_IDLE_TIMEOUT)));
+        long connectionWaitTimeout = Long.parseLong(EventBrokerUtils.getConfigValue(config,
+                EventingConstants.DISPATCHER_CONNECTION_WAIT_TIMEOUT,
+                String.valueOf(ServiceClientPool.DEFAULT_CONNECTION_WAIT_TIMEOUT)));
+
+        EndpointSendLimiter endpointSendLimiter = new EndpointSendLimiter(
+                maxConcurrentSends, maxConcurrentSendsPerEndpoint, permitTimeout);
+        EndpointSendMetrics endpointSendMetrics = new EndpointSendMetrics(maxEndpoints, endpointSendLimiter);
+        MBeanRegistrar.registerMBean(endpointSendMetrics);
+        this.serviceClientPool = new ServiceClientPool(
+                this.configurationContextService.getClientConfigContext(),
+                maxConnectionsPerHost, maxTotalConnections, connectionIdleTimeout, connectionWaitTimeout);
+        this.serviceClientPool.start();
+        WSEventDispatcher wsEventDispatcher =
+                new WSEventDispatcher(endpointSendLimiter, endpointSendMetrics, this.serviceClientPool,
+                                      this.eventBroker.getEndpointCircuitBreaker());
         this.eventBroker.registerEventDispatcher(
                 EventBrokerConstants.WS_EVENT_DISPATCHER_NAME, wsEventDispatcher);
     }
+
+    /**
+     * closes the clients and connections kept to send the notifications
+     */
+    public void shutdownWSEventDispatcher() {
+        if (this.serviceClientPool != null) {
+            this.serviceClientPool.shutdown();
+            this.serviceClientPool = null;
+        }
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.ws.internal.notify;
+
+import org.wso2.carbon.event.core.exception.SendRejectedException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * bounds the number of notifications sent at the same time, in total and to each endpoint, so a
+ * slow subscriber can only hold its own share of the delivery threads. a send waits up to the
+ * permit timeout for its permits. one which does not get them is rejected, it was not sent, so the
+ * notification is sent again later without using up an attempt. a value of 0 or less removes the
+ * bound.
+ */
+@Deprecated
+public class EndpointSendLimiter {
+
+    public static final int DEFAULT_MAX_CONCURRENT_SENDS = 100;
+    public static final int DEFAULT_MAX_CONCURRENT_SENDS_PER_ENDPOINT = 10;
+    public static final long DEFAULT_PERMIT_TIMEOUT = 1000;
+
+    private final int maxConcurrentSends;
+    private final int maxConcurrentSendsPerEndpoint;
+    private final long permitTimeout;
+    private final Semaphore permits;
+    private final ConcurrentMap<String, Semaphore> endpointPermits =
+            new ConcurrentHashMap<String, Semaphore>();
+
+    public EndpointSendLimiter() {
+        this(DEFAULT_MAX_CONCURRENT_SENDS, DEFAULT_MAX_CONCURRENT_SENDS_PER_ENDPOINT,
+             DEFAULT_PERMIT_TIMEOUT);
+    }
+
+    /**
+     * @param maxConcurrentSends            notifications sent at the same time to all the endpoints
+     * @param maxConcurrentSendsPerEndpoint notifications sent at the same time to one endpoint
+     * @param permitTimeout                 milli seconds to wait for the permits of a send
+     */
+    public EndpointSendLimiter(int maxConcurrentSends, int maxConcurrentSendsPerEndpoint,
+                               long permitTimeout) {
+        this.maxConcurrentSends = maxConcurrentSends;
+        this.maxConcurrentSendsPerEndpoint = maxConcurrentSendsPerEndpoint;
+        this.permitTimeout = permitTimeout;
+        this.permits = (maxConcurrentSends > 0) ? new Semaphore(maxConcurrentSends, true) : null;
+    }
+
+    /**
+     * takes a permit to send a notification to the endpoint. release must be called once the
+     * notification is sent.
+     *
+     * @param endpoint address of the subscriber
+     * @throws SendRejectedException if too many notifications are being sent until the permit
+     *                               timeout
+     */
+    public void acquire(String endpoint) throws SendRejectedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.permitTimeout);
+        Semaphore endpointSemaphore = getEndpointPermits(endpoint);
+        if ((endpointSemaphore != null) && !tryAcquire(endpointSemaphore, deadline)) {
+            throw new SendRejectedException(this.maxConcurrentSendsPerEndpoint
+                    + " notifications are already being sent to " + endpoint);
+        }
+        if ((this.permits != null) && !tryAcquire(this.permits, deadline)) {
+            if (endpointSemaphore != null) {
+                endpointSemaphore.release();
+            }
+            throw new SendRejectedException(this.maxConcurrentSends
+                    + " notifications are already being sent, can not send to " + endpoint);
+        }
+    }
+
+    /**
+     * @param endpoint address of the subscriber given to acquire
+     */
+    public void release(String endpoint) {
+        if (this.permits != null) {
+            this.permits.release();
+        }
+        Semaphore endpointSemaphore = getEndpointPermits(endpoint);
+        if (endpointSemaphore != null) {
+            endpointSemaphore.release();
+        }
+    }
+
+    /**
+     * @return number of notifications being sent, 0 if the total is not bounded
+     */
+    public int getActiveSendCount() {
+        return (this.permits != null) ? this.maxConcurrentSends - this.permits.availablePermits() : 0;
+    }
+
+    /**
+     * @param endpoint address of the subscriber
+     * @return number of notifications being sent to the endpoint, 0 if it is not bounded
+     */
+    public int getActiveSendCount(String endpoint) {
+        Semaphore endpointSemaphore = this.endpointPermits.get(endpoint);
+        return (endpointSemaphore != null) ?
+               this.maxConcurrentSendsPerEndpoint - endpointSemaphore.availablePermits() : 0;
+    }
+
+    private boolean tryAcquire(Semaphore semaphore, long deadline) {
+        try {
+            return semaphore.tryAcquire(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Semaphore getEndpointPermits(String endpoint) {
+        if (this.maxConcurrentSendsPerEndpoint <= 0) {
+            return null;
+        }
+        // the permits are kept for the endpoints which are not used any more as well, as
+        // there are only as many of them as the subscribers
+        Semaphore endpointSemaphore = this.endpointPermits.get(endpoint);
+        if (endpointSemaphore == null) {
+            Semaphore newSemaphore = new Semaphore(this.maxConcurrentSendsPerEndpoint);
+            endpointSemaphore = this.endpointPermits.putIfAbsent(endpoint, newSemaphore);
+            if (endpointSemaphore == null) {
+                endpointSemaphore = newSemaphore;
+            }
+        }
+        return endpointSemaphore;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.ws.internal.notify;
+
+import org.wso2.carbon.event.core.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * send counts and latency histograms of the subscriber endpoints. Each endpoint has its own
+ * statistics until maxEndpoints endpoints are tracked, the endpoints seen after that are counted
+ * together in an overflow entry.
+ */
+@Deprecated
+public class EndpointSendMetrics implements EndpointSendMetricsMBean {
+
+    public static final int DEFAULT_MAX_ENDPOINTS = 1000;
+
+    private final int maxEndpoints;
+    private final EndpointSendLimiter endpointSendLimiter;
+    private final ConcurrentMap<String, Statistics> endpointStatisticsMap =
+            new ConcurrentHashMap<String, Statistics>();
+    private final AtomicInteger trackedEndpointCount = new AtomicInteger();
+    private final Statistics overflowStatistics = new Statistics();
+
+    /**
+     * @param maxEndpoints        maximum number of endpoints tracked separately
+     * @param endpointSendLimiter limiter of the notifications, to report the active sends
+     */
+    public EndpointSendMetrics(int maxEndpoints, EndpointSendLimiter endpointSendLimiter) {
+        this.maxEndpoints = maxEndpoints;
+        this.endpointSendLimiter = endpointSendLimiter;
+    }
+
+    /**
+     * @param nanos time taken to send the notification
+     */
+    public void sent(String endpoint, long nanos) {
+        Statistics statistics = getStatistics(endpoint);
+        statistics.sendCount.incrementAndGet();
+        statistics.sendTime.record(nanos);
+    }
+
+    /**
+     * @param nanos time taken until the notification failed
+     */
+    public void failed(String endpoint, long nanos) {
+        Statistics statistics = getStatistics(endpoint);
+        statistics.failureCount.incrementAndGet();
+        statistics.sendTime.record(nanos);
+    }
+
+    public void rejected(String endpoint) {
+        getStatistics(endpoint).rejectedCount.incrementAndGet();
+    }
+
+    private Statistics getStatistics(String endpoint) {
+        Statistics statistics = this.endpointStatisticsMap.get(endpoint);
+        if (statistics != null) {
+            return statistics;
+        }
+        if (this.trackedEndpointCount.get() >= this.maxEndpoints) {
+            return this.overflowStatistics;
+        }
+        Statistics newStatistics = new Statistics();
+        statistics = this.endpointStatisticsMap.putIfAbsent(endpoint, newStatistics);
+        if (statistics != null) {
+            return statistics;
+        }
+        this.trackedEndpointCount.incrementAndGet();
+        return newStatistics;
+    }
+
+    private Statistics getExistingStatistics(String endpoint) {
+        Statistics statistics = this.endpointStatisticsMap.get(endpoint);
+        if (statistics == null) {
+            throw new IllegalArgumentException("Endpoint " + endpoint + " is not tracked");
+        }
+        return statistics;
+    }
+
+    public String[] getEndpoints() {
+        List<String> endpoints = new ArrayList<String>(this.endpointStatisticsMap.keySet());
+        return endpoints.toArray(new String[endpoints.size()]);
+    }
+
+    public int getTrackedEndpointCount() {
+        return this.trackedEndpointCount.get();
+    }
+
+    public int getMaxEndpoints() {
+        return this.maxEndpoints;
+    }
+
+    public int getActiveSendCount() {
+        return this.endpointSendLimiter.getActiveSendCount();
+    }
+
+    public long getSendCount(String endpoint) {
+        return getExistingStatistics(endpoint).sendCount.get();
+    }
+
+    public long getFailureCount(String endpoint) {
+        return getExistingStatistics(endpoint).failureCount.get();
+    }
+
+    public long getRejectedCount(String endpoint) {
+        return getExistingStatistics(endpoint).rejectedCount.get();
+    }
+
+    public double getSendTime(String endpoint, double percentile) {
+        return getExistingStatistics(endpoint).sendTime.getPercentile(percentile);
+    }
+
+    public String[] getSlowEndpoints(double percentile, double threshold) {
+        final Map<String, Double> sendTimes = new HashMap<String, Double>();
+        for (Map.Entry<String, Statistics> entry : this.endpointStatisticsMap.entrySet()) {
+            double sendTime = entry.getValue().sendTime.getPercentile(percentile);
+            if (sendTime > threshold) {
+                sendTimes.put(entry.getKey(), sendTime);
+            }
+        }
+        List<String> endpoints = new ArrayList<String>(sendTimes.keySet());
+        Collections.sort(endpoints, new Comparator<String>() {
+            public int compare(String endpoint1, String endpoint2) {
+                return Double.compare(sendTimes.get(endpoint2), sendTimes.get(endpoint1));
+            }
+        });
+        return endpoints.toArray(new String[endpoints.size()]);
+    }
+
+    public void resetStatistics() {
+        this.endpointStatisticsMap.clear();
+        this.trackedEndpointCount.set(0);
+        this.overflowStatistics.reset();
+    }
+
+    private static final class Statistics {
+
+        private final AtomicLong sendCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final AtomicLong rejectedCount = new AtomicLong();
+        private final LatencyHistogram sendTime = new LatencyHistogram();
+
+        private void reset() {
+            this.sendCount.set(0);
+            this.failureCount.set(0);
+            this.rejectedCount.set(0);
+            this.sendTime.reset();
+        }
+    }
+}
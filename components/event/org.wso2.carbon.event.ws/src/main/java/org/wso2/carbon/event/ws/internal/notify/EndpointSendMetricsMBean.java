@@ -0,0 +1,72 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.ws.internal.notify;
+
+/**
+ * MBean interface of the per endpoint send metrics of the WS-Eventing notifications. times are in
+ * milli seconds.
+ */
+@Deprecated
+public interface EndpointSendMetricsMBean {
+
+    /**
+     * @return addresses of the tracked endpoints
+     */
+    String[] getEndpoints();
+
+    /**
+     * @return number of endpoints tracked separately
+     */
+    int getTrackedEndpointCount();
+
+    /**
+     * @return maximum number of endpoints tracked separately, the others are counted together
+     */
+    int getMaxEndpoints();
+
+    /**
+     * @return number of notifications being sent
+     */
+    int getActiveSendCount();
+
+    long getSendCount(String endpoint);
+
+    long getFailureCount(String endpoint);
+
+    /**
+     * @return number of notifications not sent since too many were being sent at the same time
+     */
+    long getRejectedCount(String endpoint);
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return time taken to send a notification to the endpoint
+     */
+    double getSendTime(String endpoint, double percentile);
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @param threshold  send time in milli seconds
+     * @return endpoints whose send time at the percentile is above the threshold, the slowest first
+     */
+    String[] getSlowEndpoints(double percentile, double threshold);
+
+    /**
+     * forgets all the endpoints and their statistics
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.ws.internal.notify;
+
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.addressing.EndpointReference;
+import org.apache.axis2.client.Options;
+import org.apache.axis2.client.ServiceClient;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.transport.http.HTTPConstants;
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.event.ws.internal.util.EventingConstants;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * keeps the service clients used to send the notifications, configured for their endpoint, so
+ * that they are not created for each notification. all the clients share one http client whose
+ * connection manager keeps the connections to the subscribers alive, up to maxConnectionsPerHost
+ * per subscriber host. an endpoint keeps as many idle clients as it can have connections. clients
+ * and connections not used for idleTimeout milli seconds are closed. a send which can not get a
+ * connection within connectionWaitTimeout milli seconds fails, see {@link #isConnectionWaitTimeout}.
+ */
+@Deprecated
+public class ServiceClientPool {
+
+    private static final Log log = LogFactory.getLog(ServiceClientPool.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 10;
+    public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 100;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+    public static final long DEFAULT_CONNECTION_WAIT_TIMEOUT = 1000;
+
+    private final ConfigurationContext configurationContext;
+    private final MultiThreadedHttpConnectionManager connectionManager;
+    private final HttpClient httpClient;
+    private final int maxIdleClientsPerEndpoint;
+    private final long idleTimeout;
+    private final ConcurrentMap<String, EndpointClients> endpointClientsMap =
+            new ConcurrentHashMap<String, EndpointClients>();
+    private ScheduledExecutorService evictionExecutor;
+
+    /**
+     * @param configurationContext  client configuration context of the service clients
+     * @param maxConnectionsPerHost connections kept to one host
+     * @param maxTotalConnections   connections kept to all the hosts
+     * @param idleTimeout           milli seconds after which an unused client or connection is closed
+     * @param connectionWaitTimeout milli seconds a send waits for a free connection
+     */
+    public ServiceClientPool(ConfigurationContext configurationContext, int maxConnectionsPerHost,
+                             int maxTotalConnections, long idleTimeout, long connectionWaitTimeout) {
+        this.configurationContext = configurationContext;
+        this.maxIdleClientsPerEndpoint = maxConnectionsPerHost;
+        this.idleTimeout = idleTimeout;
+        this.connectionManager = new MultiThreadedHttpConnectionManager();
+        HttpConnectionManagerParams params = this.connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+        params.setMaxTotalConnections(maxTotalConnections);
+        this.httpClient = new HttpClient(this.connectionManager);
+        // without it a send waits for a connection as long as the other sends to the host take
+        this.httpClient.getParams().setConnectionManagerTimeout(connectionWaitTimeout);
+    }
+
+    /**
+     * @param e failure of a send
+     * @return true if the send failed since no connection got free within the connection wait
+     *         timeout, so it was never sent to the endpoint
+     */
+    public static boolean isConnectionWaitTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectionPoolTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * starts closing the idle clients and connections
+     */
+    public synchronized void start() {
+        if (this.evictionExecutor != null) {
+            return;
+        }
+        this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "WSEventDispatcher-ClientEviction");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long interval = Math.max(this.idleTimeout / 2, 1000);
+        this.evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    evictIdleClients(System.currentTimeMillis());
+                } catch (Throwable e) {
+                    log.error("Can not close the idle notification clients", e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * closes all the clients and connections
+     */
+    public synchronized void shutdown() {
+        if (this.evictionExecutor != null) {
+            this.evictionExecutor.shutdownNow();
+            this.evictionExecutor = null;
+        }
+        for (Iterator<EndpointClients> iterator = this.endpointClientsMap.values().iterator();
+             iterator.hasNext();) {
+            EndpointClients endpointClients = iterator.next();
+            iterator.remove();
+            endpointClients.closeAll();
+        }
+        this.connectionManager.shutdown();
+    }
+
+    /**
+     * takes an idle client of the endpoint or creates a new one. the client must be given back
+     * with returnClient, or with invalidateClient if it failed.
+     *
+     * @param endpoint address of the subscriber
+     * @return client to send messages to the endpoint
+     * @throws AxisFault if a new client can not be created
+     */
+    public ServiceClient borrowClient(String endpoint) throws AxisFault {
+        ServiceClient serviceClient = getEndpointClients(endpoint).poll();
+        return (serviceClient != null) ? serviceClient : createServiceClient(endpoint);
+    }
+
+    /**
+     * releases the connection of the client and keeps it for the next message to the endpoint
+     */
+    public void returnClient(String endpoint, ServiceClient serviceClient) {
+        try {
+            serviceClient.cleanupTransport();
+        } catch (AxisFault e) {
+            invalidateClient(serviceClient);
+            return;
+        }
+        serviceClient.removeHeaders();
+        if (!getEndpointClients(endpoint).offer(serviceClient)) {
+            close(serviceClient);
+        }
+    }
+
+    /**
+     * closes a client which could not send its message, so that it is not used again
+     */
+    public void invalidateClient(ServiceClient serviceClient) {
+        try {
+            serviceClient.cleanupTransport();
+        } catch (AxisFault e) {
+            log.debug("Can not release the connection of the notification client", e);
+        }
+        close(serviceClient);
+    }
+
+    /**
+     * @return number of idle clients of all the endpoints
+     */
+    public int getIdleClientCount() {
+        int idleClientCount = 0;
+        for (EndpointClients endpointClients : this.endpointClientsMap.values()) {
+            idleClientCount += endpointClients.idleCount.get();
+        }
+        return idleClientCount;
+    }
+
+    /**
+     * @return number of connections kept open to the subscribers
+     */
+    public int getConnectionCount() {
+        return this.connectionManager.getConnectionsInPool();
+    }
+
+    protected ServiceClient createServiceClient(String endpoint) throws AxisFault {
+        ServiceClient serviceClient = new ServiceClient(this.configurationContext, null);
+        Options options = new Options();
+        options.setTo(new EndpointReference(endpoint));
+        options.setAction(EventingConstants.WSE_PUBLISH);
+        // the shared http client keeps the connections alive between the notifications
+        options.setProperty(HTTPConstants.REUSE_HTTP_CLIENT, Boolean.TRUE);
+        options.setProperty(HTTPConstants.CACHED_HTTP_CLIENT, this.httpClient);
+        serviceClient.setOptions(options);
+        return serviceClient;
+    }
+
+    void evictIdleClients(long currentTime) {
+        for (Map.Entry<String, EndpointClients> entry : this.endpointClientsMap.entrySet()) {
+            EndpointClients endpointClients = entry.getValue();
+            if (currentTime - endpointClients.lastUsedTime > this.idleTimeout) {
+                // a client returned after this is closed with the removed entry
+                this.endpointClientsMap.remove(entry.getKey(), endpointClients);
+                endpointClients.closeAll();
+            }
+        }
+        this.connectionManager.closeIdleConnections(this.idleTimeout);
+    }
+
+    private EndpointClients getEndpointClients(String endpoint) {
+        EndpointClients endpointClients = this.endpointClientsMap.get(endpoint);
+        if (endpointClients == null) {
+            EndpointClients newEndpointClients = new EndpointClients();
+            endpointClients = this.endpointClientsMap.putIfAbsent(endpoint, newEndpointClients);
+            if (endpointClients == null) {
+                endpointClients = newEndpointClients;
+            }
+        }
+        return endpointClients;
+    }
+
+    private static void close(ServiceClient serviceClient) {
+        try {
+            serviceClient.cleanup();
+        } catch (AxisFault e) {
+            log.debug("Can not clean up the notification client", e);
+        }
+    }
+
+    private final class EndpointClients {
+
+        private final Queue<ServiceClient> idleClients = new ConcurrentLinkedQueue<ServiceClient>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+        private volatile long lastUsedTime = System.currentTimeMillis();
+        private volatile boolean closed;
+
+        private ServiceClient poll() {
+            this.lastUsedTime = System.currentTimeMillis();
+            ServiceClient serviceClient = this.idleClients.poll();
+            if (serviceClient != null) {
+                this.idleCount.decrementAndGet();
+            }
+            return serviceClient;
+        }
+
+        private boolean offer(ServiceClient serviceClient) {
+            this.lastUsedTime = System.currentTimeMillis();
+            if (this.idleCount.incrementAndGet() > maxIdleClientsPerEndpoint) {
+                this.idleCount.decrementAndGet();
+                return false;
+            }
+            this.idleClients.offer(serviceClient);
+            if (this.closed) {
+                // closeAll may have run before the client was added
+                closeAll();
+            }
+            return true;
+        }
+
+        private void closeAll() {
+            this.closed = true;
+            ServiceClient serviceClient;
+            while ((serviceClient = this.idleClients.poll()) != null) {
+                this.idleCount.decrementAndGet();
+                close(serviceClient);
+            }
+        }
+    }
+}
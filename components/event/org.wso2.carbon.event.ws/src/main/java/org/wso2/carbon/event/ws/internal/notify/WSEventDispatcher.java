@@ -20,6 +20,7 @@ import org.apache.axiom.om.OMAbstractFactory;
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.OMFactory;
 import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.om.ds.ByteArrayDataSource;
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.addressing.EndpointReference;
 import org.apache.axis2.client.Options;
@@ -28,18 +29,56 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.event.ws.internal.util.EventingConstants;
 import org.wso2.carbon.event.ws.internal.WSEventBrokerHolder;
-import org.wso2.carbon.event.core.subscription.EventDispatcher;
+import org.wso2.carbon.event.core.subscription.ReliableEventDispatcher;
 import org.wso2.carbon.event.core.subscription.Subscription;
 import org.wso2.carbon.event.core.Message;
+import org.wso2.carbon.event.core.SerializedMessage;
+import org.wso2.carbon.event.core.delivery.EndpointCircuitBreaker;
+import org.wso2.carbon.event.core.exception.CircuitOpenException;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.exception.SendRejectedException;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 import org.wso2.carbon.utils.ConfigurationContextService;
 
 @Deprecated
-public class WSEventDispatcher implements EventDispatcher {
+public class WSEventDispatcher implements ReliableEventDispatcher {
 
      private static Log log = LogFactory.getLog(WSEventDispatcher.class);
 
+    private final EndpointSendLimiter endpointSendLimiter;
+    private final EndpointSendMetrics endpointSendMetrics;
+    private final ServiceClientPool serviceClientPool;
+    private final EndpointCircuitBreaker endpointCircuitBreaker;
+
+    public WSEventDispatcher() {
+        this(new EndpointSendLimiter(), null, null, null);
+    }
+
+    /**
+     * @param endpointSendLimiter    bounds the notifications sent at the same time
+     * @param endpointSendMetrics    per endpoint send metrics or null if they are not collected
+     * @param serviceClientPool      pool of the clients or null to create a client per notification
+     * @param endpointCircuitBreaker health of the endpoints or null if their circuits are not used
+     */
+    public WSEventDispatcher(EndpointSendLimiter endpointSendLimiter,
+                             EndpointSendMetrics endpointSendMetrics,
+                             ServiceClientPool serviceClientPool,
+                             EndpointCircuitBreaker endpointCircuitBreaker) {
+        this.endpointSendLimiter = endpointSendLimiter;
+        this.endpointSendMetrics = endpointSendMetrics;
+        this.serviceClientPool = serviceClientPool;
+        this.endpointCircuitBreaker = endpointCircuitBreaker;
+    }
+
     public void notify(Message message, Subscription subscription) {
+        try {
+            send(message, subscription);
+        } catch (EventBrokerException e) {
+            log.error("Unable to send message", e);
+        }
+    }
+
+    public void send(Message message, Subscription subscription) throws EventBrokerException {
 
         String endpoint = subscription.getEventSinkURL();
 
@@ -61,16 +100,77 @@ public class WSEventDispatcher implements EventDispatcher {
 
 
 
-        OMElement payload = message.getMessage().cloneOMElement();
+        OMElement payload = createPayload(factory, message);
 
+        // notifications are sent in parallel by the delivery threads, the limiter keeps a slow
+        // endpoint from taking all of them
+        try {
+            this.endpointSendLimiter.acquire(endpoint);
+        } catch (SendRejectedException e) {
+            if (this.endpointSendMetrics != null) {
+                this.endpointSendMetrics.rejected(endpoint);
+            }
+            throw e;
+        }
+        // an endpoint which keeps failing is not sent to until its circuit lets a trial through
+        int tenantId = subscription.getTenantId();
+        if ((this.endpointCircuitBreaker != null)
+            && !this.endpointCircuitBreaker.allowRequest(tenantId, endpoint)) {
+            this.endpointSendLimiter.release(endpoint);
+            throw new CircuitOpenException("Circuit of " + endpoint + " is open");
+        }
+        long startTime = System.nanoTime();
         try {
             sendNotification(topicEle, domainElement, payload, endpoint);
+            long sendTime = System.nanoTime() - startTime;
+            if (this.endpointSendMetrics != null) {
+                this.endpointSendMetrics.sent(endpoint, sendTime);
+            }
+            if (this.endpointCircuitBreaker != null) {
+                this.endpointCircuitBreaker.recordSuccess(tenantId, endpoint, sendTime);
+            }
         } catch (Exception e) {
-            log.error("Unable to send message", e);
+            if (ServiceClientPool.isConnectionWaitTimeout(e)) {
+                // like a send the limiter rejects, nothing reached the endpoint, so its health is
+                // not affected
+                if (this.endpointSendMetrics != null) {
+                    this.endpointSendMetrics.rejected(endpoint);
+                }
+                throw new SendRejectedException("No connection to " + endpoint + " got free in time", e);
+            }
+            long sendTime = System.nanoTime() - startTime;
+            if (this.endpointSendMetrics != null) {
+                this.endpointSendMetrics.failed(endpoint, sendTime);
+            }
+            if (this.endpointCircuitBreaker != null) {
+                this.endpointCircuitBreaker.recordFailure(tenantId, endpoint, sendTime);
+            }
+            throw new EventBrokerException("Unable to send message to " + endpoint, e);
+        } finally {
+            this.endpointSendLimiter.release(endpoint);
+        }
+    }
+
+    /**
+     * creates the payload from the serialized message shared by all the subscribers, instead of
+     * cloning the message tree for each of them. The bytes are written as they are unless the
+     * payload is expanded.
+     */
+    private OMElement createPayload(OMFactory factory, Message message) throws EventBrokerException {
+        OMElement messageElement = message.getMessage();
+        SerializedMessage serializedMessage = message.getSerializedMessage();
+        OMNamespace namespace = null;
+        if (messageElement.getNamespace() != null) {
+            namespace = factory.createOMNamespace(messageElement.getNamespace().getNamespaceURI(),
+                                                  messageElement.getNamespace().getPrefix());
         }
+        return factory.createOMElement(
+                new ByteArrayDataSource(serializedMessage.getBytes(),
+                                        serializedMessage.getCharsetEncoding()),
+                messageElement.getLocalName(), namespace);
     }
 
-    protected synchronized void sendNotification(OMElement topicHeader,
+    protected void sendNotification(OMElement topicHeader,
                                     OMElement tenantDomainHeader,
                                     OMElement payload,
                                     String endpoint)
@@ -78,6 +178,10 @@ public class WSEventDispatcher implements EventDispatcher {
         // The parameter args is used as a mechanism to pass any argument into this method, which
         // is used by the implementations that extend the behavior of the default Carbon Event
         // Dispatcher.
+        if (this.serviceClientPool != null) {
+            sendPooledNotification(topicHeader, tenantDomainHeader, payload, endpoint);
+            return;
+        }
         ConfigurationContextService configurationContextService =
                 WSEventBrokerHolder.getInstance().getConfigurationContextService();
 
@@ -97,6 +201,29 @@ public class WSEventDispatcher implements EventDispatcher {
         serviceClient.fireAndForget(payload);
     }
 
+    private void sendPooledNotification(OMElement topicHeader,
+                                        OMElement tenantDomainHeader,
+                                        OMElement payload,
+                                        String endpoint)
+            throws AxisFault {
+        ServiceClient serviceClient = this.serviceClientPool.borrowClient(endpoint);
+        try {
+            serviceClient.addHeader(topicHeader);
+            if (tenantDomainHeader != null) {
+                serviceClient.addHeader(tenantDomainHeader);
+            }
+            serviceClient.fireAndForget(payload);
+        } catch (AxisFault e) {
+            // the connection may be broken, so the client is not used again
+            this.serviceClientPool.invalidateClient(serviceClient);
+            throw e;
+        } catch (RuntimeException e) {
+            this.serviceClientPool.invalidateClient(serviceClient);
+            throw e;
+        }
+        this.serviceClientPool.returnClient(endpoint, serviceClient);
+    }
+
     protected void sendNotification(OMElement topicHeader,
                                     OMElement payload,
                                     String endpoint)
@@ -35,6 +35,7 @@ import org.wso2.carbon.event.ws.internal.WSEventBrokerHolder;
 import org.wso2.carbon.event.ws.internal.exception.WSEventException;
 import org.wso2.carbon.event.ws.internal.util.EventingConstants;
 import org.wso2.carbon.event.ws.internal.util.EventBrokerUtils;
+import org.wso2.carbon.event.ws.internal.util.TopicExtractor;
 import org.wso2.carbon.event.core.EventBroker;
 import org.wso2.carbon.event.core.Message;
 import org.wso2.carbon.event.core.util.EventBrokerConstants;
@@ -125,7 +126,12 @@ public class CarbonEventingMessageReceiver extends AbstractMessageReceiver {
             if (subscription != null) {
                 // set the topic name using the url
                 String toAddress = mc.getOptions().getTo().getAddress();
-                String topicName = subscription.getEventFilter().getValue();
+                String topicName = null;
+                // an XPath filter selects the messages by content, then the topic is given by the url.
+                // The value of the other dialects is the topic name
+                if (!subscription.getEventFilter().isXPathDialect()) {
+                    topicName = subscription.getEventFilter().getValue();
+                }
 
                 if ((topicName == null) || (topicName.equals(""))) {
                     // we take string after the service name as the topic name
@@ -366,7 +372,7 @@ public class CarbonEventingMessageReceiver extends AbstractMessageReceiver {
     }
 
     protected void handleEvent(MessageContext mc) throws AxisFault, WSEventException {
-        String topic = EventBrokerUtils.extractTopicFromMessage(mc);
+        String topic = TopicExtractor.extractTopic(mc);
         if (topic == null) {
             // No topic, just drop the message.
             return;
@@ -29,8 +29,8 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.event.ws.internal.builders.utils.BuilderUtils;
 import org.wso2.carbon.event.ws.internal.WSEventBrokerHolder;
 import org.wso2.carbon.event.ws.internal.exception.WSEventException;
-import org.wso2.carbon.event.ws.internal.util.EventBrokerUtils;
 import org.wso2.carbon.event.ws.internal.util.EventingConstants;
+import org.wso2.carbon.event.ws.internal.util.TopicExtractor;
 import org.wso2.carbon.event.core.EventBroker;
 import org.wso2.carbon.event.core.Message;
 import org.wso2.carbon.event.core.exception.EventBrokerException;
@@ -64,7 +64,7 @@ public class PublishOnlyMessageReceiver extends AbstractMessageReceiver {
 
 
     protected void handleEvent(MessageContext mc) throws AxisFault, WSEventException {
-        String topic = EventBrokerUtils.extractTopicFromMessage(mc);
+        String topic = TopicExtractor.extractTopic(mc);
         try {
             Message message = new Message();
             message.setMessage(mc.getEnvelope().getBody().getFirstElement());
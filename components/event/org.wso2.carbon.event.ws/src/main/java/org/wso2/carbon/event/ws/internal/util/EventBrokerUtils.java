@@ -19,20 +19,18 @@
 package org.wso2.carbon.event.ws.internal.util;
 
 import org.apache.axiom.om.OMElement;
-import org.apache.axiom.om.xpath.AXIOMXPath;
 import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.axiom.soap.SOAPFactory;
 import org.apache.axiom.soap.impl.llom.soap12.SOAP12Factory;
 import org.apache.axis2.context.ConfigurationContext;
 import org.apache.axis2.context.MessageContext;
 import org.apache.axis2.engine.AxisConfiguration;
-import org.jaxen.JaxenException;
 import org.wso2.carbon.context.CarbonContext;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.event.ws.internal.exception.EventBrokerException;
 import org.wso2.carbon.event.ws.internal.exception.WSEventException;
 
-import java.util.regex.Matcher;
+import javax.xml.namespace.QName;
 
 @Deprecated
 public class EventBrokerUtils {
@@ -87,35 +85,27 @@ public class EventBrokerUtils {
         return role.equals("admin");
     }
 
+    /**
+     * @deprecated use {@link TopicExtractor#extractTopic(MessageContext)}, which does not
+     *             evaluate an xpath for each message
+     */
     public static String extractTopicFromMessage(MessageContext mc) throws WSEventException {
-        String topic = null;
-        if (mc.getTo() != null && mc.getTo().getAddress() != null) {
-            String toaddress = mc.getTo().getAddress();
-            if (toaddress.contains("/publish/")) {
-                Matcher matcher = EventingConstants.TO_ADDRESS_PATTERN.matcher(toaddress);
-                if (matcher.matches()) {
-                    topic = matcher.group(1);
-                }
-            }
-        }
-
-        if ((topic == null) || (topic.trim().length() == 0)) {
-            try {
-                AXIOMXPath topicXPath = new AXIOMXPath(
-                        "s11:Header/ns:" + EventingConstants.TOPIC_HEADER_NAME
-                                + " | s12:Header/ns:" + EventingConstants.TOPIC_HEADER_NAME);
-                topicXPath.addNamespace("s11", "http://schemas.xmlsoap.org/soap/envelope/");
-                topicXPath.addNamespace("s12", "http://www.w3.org/2003/05/soap-envelope");
-                topicXPath.addNamespace("ns", EventingConstants.TOPIC_HEADER_NS);
+        return TopicExtractor.extractTopic(mc);
+    }
 
-                OMElement topicNode = (OMElement) topicXPath.selectSingleNode(mc.getEnvelope());
-                if (topicNode != null) {
-                    topic = topicNode.getText();
-                }
-            } catch (JaxenException e) {
-                throw new WSEventException("can not process the xpath ", e);
-            }
+    /**
+     * returns the text of the given child element or the default value if the configuration or
+     * the element is not given
+     */
+    public static String getConfigValue(OMElement config, String localPart, String defaultValue) {
+        if (config == null) {
+            return defaultValue;
+        }
+        OMElement childElement = config.getFirstChildWithName(
+                new QName(config.getNamespace().getNamespaceURI(), localPart));
+        if ((childElement == null) || (childElement.getText().trim().length() == 0)) {
+            return defaultValue;
         }
-        return topic;
+        return childElement.getText().trim();
     }
 }
@@ -118,4 +118,13 @@ public interface EventingConstants {
     String BROKER_SERVICE_NAME = "EventBrokerService";
 
     Pattern TO_ADDRESS_PATTERN = Pattern.compile("/services/.*/publish/(.*)");
+
+    String DISPATCHER_MAX_CONCURRENT_SENDS = "maxConcurrentSends";
+    String DISPATCHER_MAX_CONCURRENT_SENDS_PER_ENDPOINT = "maxConcurrentSendsPerEndpoint";
+    String DISPATCHER_PERMIT_TIMEOUT = "permitTimeout";
+    String DISPATCHER_MAX_ENDPOINTS = "maxEndpoints";
+    String DISPATCHER_MAX_CONNECTIONS_PER_HOST = "maxConnectionsPerHost";
+    String DISPATCHER_MAX_TOTAL_CONNECTIONS = "maxTotalConnections";
+    String DISPATCHER_CONNECTION_IDLE_TIMEOUT = "connectionIdleTimeout";
+    String DISPATCHER_CONNECTION_WAIT_TIMEOUT = "connectionWaitTimeout";
 }
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.event.ws.internal.util;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMException;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axiom.soap.SOAPHeader;
+import org.apache.axis2.addressing.EndpointReference;
+import org.apache.axis2.context.MessageContext;
+import org.wso2.carbon.event.ws.internal.exception.WSEventException;
+
+import javax.xml.namespace.QName;
+import java.util.regex.Matcher;
+
+/**
+ * finds the topic of a published event, from the publish address or from the topic header. the
+ * header block is read child by child from the underlying parser and the body is not built, so
+ * the cost does not depend on the size of the event. the extractor has no state and can be used
+ * by any number of threads.
+ */
+@Deprecated
+public final class TopicExtractor {
+
+    private static final QName TOPIC_HEADER =
+            new QName(EventingConstants.TOPIC_HEADER_NS, EventingConstants.TOPIC_HEADER_NAME);
+    private static final String PUBLISH_PATH = "/publish/";
+
+    private TopicExtractor() {
+    }
+
+    /**
+     * @param mc message context of the published event
+     * @return the topic or null if the message does not give one
+     * @throws WSEventException if the header of the message can not be read
+     */
+    public static String extractTopic(MessageContext mc) throws WSEventException {
+        String topic = extractTopic(mc.getTo());
+        if ((topic == null) || (topic.trim().length() == 0)) {
+            try {
+                topic = extractTopic(mc.getEnvelope());
+            } catch (OMException e) {
+                throw new WSEventException("can not read the topic header ", e);
+            }
+        }
+        return topic;
+    }
+
+    /**
+     * @param to address the event was published to
+     * @return the topic given in the address after /publish/ or null if there is none
+     */
+    public static String extractTopic(EndpointReference to) {
+        if ((to == null) || (to.getAddress() == null) || !to.getAddress().contains(PUBLISH_PATH)) {
+            return null;
+        }
+        Matcher matcher = EventingConstants.TO_ADDRESS_PATTERN.matcher(to.getAddress());
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * @param envelope envelope of the event
+     * @return text of the topic header or null if there is none
+     */
+    public static String extractTopic(SOAPEnvelope envelope) {
+        if (envelope == null) {
+            return null;
+        }
+        // the header comes before the body, so getting it does not read the body
+        SOAPHeader header = envelope.getHeader();
+        if (header == null) {
+            return null;
+        }
+        OMElement topicElement = header.getFirstChildWithName(TOPIC_HEADER);
+        return (topicElement != null) ? topicElement.getText() : null;
+    }
+}
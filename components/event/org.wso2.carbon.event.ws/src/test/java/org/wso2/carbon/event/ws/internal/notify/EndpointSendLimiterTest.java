@@ -0,0 +1,92 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.event.ws.internal.notify;
+
+import junit.framework.TestCase;
+import org.wso2.carbon.event.core.exception.EventBrokerException;
+import org.wso2.carbon.event.core.exception.SendRejectedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@Deprecated
+public class EndpointSendLimiterTest extends TestCase {
+
+    private static final String SLOW_ENDPOINT = "http://localhost:9763/services/SlowSink";
+    private static final String FAST_ENDPOINT = "http://localhost:9763/services/FastSink";
+
+    public void testEndpointBound() throws Exception {
+        EndpointSendLimiter endpointSendLimiter = new EndpointSendLimiter(10, 2, 0);
+        endpointSendLimiter.acquire(SLOW_ENDPOINT);
+        endpointSendLimiter.acquire(SLOW_ENDPOINT);
+        try {
+            endpointSendLimiter.acquire(SLOW_ENDPOINT);
+            fail("the endpoint can not have more than 2 notifications being sent");
+        } catch (EventBrokerException e) {
+            assertEquals(2, endpointSendLimiter.getActiveSendCount(SLOW_ENDPOINT));
+        }
+
+        // the other endpoints are not affected
+        endpointSendLimiter.acquire(FAST_ENDPOINT);
+        assertEquals(3, endpointSendLimiter.getActiveSendCount());
+
+        endpointSendLimiter.release(SLOW_ENDPOINT);
+        endpointSendLimiter.acquire(SLOW_ENDPOINT);
+        assertEquals(2, endpointSendLimiter.getActiveSendCount(SLOW_ENDPOINT));
+    }
+
+    public void testEndpointPermitIsWaitedFor() throws Exception {
+        final EndpointSendLimiter endpointSendLimiter = new EndpointSendLimiter(10, 1, 10000);
+        endpointSendLimiter.acquire(SLOW_ENDPOINT);
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread sender = new Thread() {
+            public void run() {
+                try {
+                    endpointSendLimiter.acquire(SLOW_ENDPOINT);
+                    acquired.countDown();
+                } catch (SendRejectedException e) {
+                    // the latch is not counted down
+                }
+            }
+        };
+        sender.start();
+
+        // the next send waits for the running one instead of failing
+        endpointSendLimiter.release(SLOW_ENDPOINT);
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        assertEquals(1, endpointSendLimiter.getActiveSendCount(SLOW_ENDPOINT));
+    }
+
+    public void testTotalBound() throws Exception {
+        EndpointSendLimiter endpointSendLimiter = new EndpointSendLimiter(2, 2, 10);
+        endpointSendLimiter.acquire(SLOW_ENDPOINT);
+        endpointSendLimiter.acquire(SLOW_ENDPOINT);
+        try {
+            endpointSendLimiter.acquire(FAST_ENDPOINT);
+            fail("no more than 2 notifications can be sent at the same time");
+        } catch (EventBrokerException e) {
+            // the permit of the endpoint is given back
+            assertEquals(0, endpointSendLimiter.getActiveSendCount(FAST_ENDPOINT));
+        }
+
+        endpointSendLimiter.release(SLOW_ENDPOINT);
+        endpointSendLimiter.acquire(FAST_ENDPOINT);
+        assertEquals(2, endpointSendLimiter.getActiveSendCount());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.event.ws.internal.notify;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMNamespace;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.client.ServiceClient;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.context.ConfigurationContextFactory;
+import org.wso2.carbon.event.ws.internal.util.EventingConstants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * sends notifications to a local http endpoint, which records the client port of each request
+ * to find out how many connections were used.
+ */
+@Deprecated
+public class ServiceClientPoolTest extends TestCase {
+
+    private static final String SINK_CONTEXT = "/services/EventSink";
+    private static final String SLOW_SINK_CONTEXT = "/services/SlowEventSink";
+
+    private HttpServer server;
+    private ConfigurationContext configurationContext;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    private final CountDownLatch slowSinkReceived = new CountDownLatch(1);
+    private final CountDownLatch slowSinkReleased = new CountDownLatch(1);
+
+    @Override
+    protected void setUp() throws Exception {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext(SINK_CONTEXT, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream requestBody = exchange.getRequestBody();
+                byte[] buffer = new byte[1024];
+                while (requestBody.read(buffer) != -1) {
+                    // the request must be read to keep the connection open
+                }
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                requestCount.incrementAndGet();
+                exchange.sendResponseHeaders(202, -1);
+                exchange.close();
+            }
+        });
+        this.server.createContext(SLOW_SINK_CONTEXT, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                slowSinkReceived.countDown();
+                try {
+                    slowSinkReleased.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(202, -1);
+                exchange.close();
+            }
+        });
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+        this.configurationContext =
+                ConfigurationContextFactory.createConfigurationContextFromFileSystem(null, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.slowSinkReleased.countDown();
+        this.server.stop(0);
+        this.configurationContext.terminate();
+    }
+
+    public void testConnectionReuse() throws Exception {
+        ServiceClientPool serviceClientPool =
+                new ServiceClientPool(this.configurationContext, 2, 10, 60000, 1000);
+        String endpoint = "http://localhost:" + this.server.getAddress().getPort() + SINK_CONTEXT;
+
+        for (int i = 0; i < 5; i++) {
+            ServiceClient serviceClient = serviceClientPool.borrowClient(endpoint);
+            serviceClient.addHeader(createElement(EventingConstants.WSE_EN_TOPIC, "/a"));
+            serviceClient.fireAndForget(createElement("event", String.valueOf(i)));
+            serviceClientPool.returnClient(endpoint, serviceClient);
+        }
+        assertEquals(5, this.requestCount.get());
+        // all the notifications are sent by one client over one connection
+        assertEquals(1, this.clientPorts.size());
+        assertEquals(1, serviceClientPool.getIdleClientCount());
+
+        serviceClientPool.evictIdleClients(System.currentTimeMillis() + 120000);
+        assertEquals(0, serviceClientPool.getIdleClientCount());
+        serviceClientPool.shutdown();
+    }
+
+    public void testConnectionWaitTimeout() throws Exception {
+        final ServiceClientPool serviceClientPool =
+                new ServiceClientPool(this.configurationContext, 1, 10, 60000, 200);
+        final String slowEndpoint = "http://localhost:" + this.server.getAddress().getPort() + SLOW_SINK_CONTEXT;
+
+        // takes the only connection to the host until the sink is released
+        Thread sender = new Thread() {
+            public void run() {
+                try {
+                    ServiceClient serviceClient = serviceClientPool.borrowClient(slowEndpoint);
+                    serviceClient.fireAndForget(createElement("event", "slow"));
+                    serviceClientPool.returnClient(slowEndpoint, serviceClient);
+                } catch (AxisFault e) {
+                    // checked by the request count
+                }
+            }
+        };
+        sender.start();
+        assertTrue(this.slowSinkReceived.await(10, TimeUnit.SECONDS));
+
+        String endpoint = "http://localhost:" + this.server.getAddress().getPort() + SINK_CONTEXT;
+        ServiceClient serviceClient = serviceClientPool.borrowClient(endpoint);
+        long startTime = System.currentTimeMillis();
+        try {
+            serviceClient.fireAndForget(createElement("event", "waiting"));
+            fail("send should not get a connection");
+        } catch (AxisFault e) {
+            assertTrue(ServiceClientPool.isConnectionWaitTimeout(e));
+            assertTrue(System.currentTimeMillis() - startTime < 5000);
+            serviceClientPool.invalidateClient(serviceClient);
+        }
+        assertEquals(0, this.requestCount.get());
+        assertFalse(ServiceClientPool.isConnectionWaitTimeout(new AxisFault("Connection refused")));
+
+        this.slowSinkReleased.countDown();
+        sender.join(10000);
+        serviceClientPool.shutdown();
+    }
+
+    private OMElement createElement(String localName, String text) {
+        OMFactory factory = OMAbstractFactory.getOMFactory();
+        OMNamespace namespace = factory.createOMNamespace(EventingConstants.NOTIFICATION_NS_URI,
+                                                          EventingConstants.NOTIFICATION_NS_PREFIX);
+        OMElement element = factory.createOMElement(localName, namespace);
+        element.setText(text);
+        return element;
+    }
+}
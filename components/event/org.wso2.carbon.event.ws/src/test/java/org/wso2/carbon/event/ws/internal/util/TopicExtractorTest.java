@@ -0,0 +1,60 @@
+/*
+ *  Copyright (c) 2005-2009, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.event.ws.internal.util;
+
+import junit.framework.TestCase;
+import org.apache.axiom.om.impl.llom.factory.OMXMLBuilderFactory;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axiom.soap.impl.llom.soap12.SOAP12Factory;
+import org.apache.axis2.addressing.EndpointReference;
+
+import javax.xml.stream.XMLInputFactory;
+import java.io.StringReader;
+
+@Deprecated
+public class TopicExtractorTest extends TestCase {
+
+    protected final String EVENT_SOAP12 =
+            "<s12:Envelope xmlns:s12=\"http://www.w3.org/2003/05/soap-envelope\">\n" +
+            "  <s12:Header>\n" +
+            "    <ns:topic xmlns:ns=\"http://wso2.org/ns/2009/09/eventing/notify\">weather/colombo</ns:topic>\n" +
+            "  </s12:Header>\n" +
+            "  <s12:Body>\n" +
+            "    <ow:WindReport xmlns:ow=\"http://www.example.org/oceanwatch\">\n" +
+            "      <ow:Speed>65</ow:Speed>\n" +
+            "    </ow:WindReport>\n" +
+            "  </s12:Body>\n" +
+            "</s12:Envelope>";
+
+    public void testTopicHeader() throws Exception {
+        SOAPEnvelope envelope = OMXMLBuilderFactory.createStAXSOAPModelBuilder(new SOAP12Factory(),
+                XMLInputFactory.newInstance().createXMLStreamReader(
+                        new StringReader(EVENT_SOAP12))).getSOAPEnvelope();
+        assertEquals("weather/colombo", TopicExtractor.extractTopic(envelope));
+        // the body is not read to find the topic
+        assertFalse(envelope.getBody().isComplete());
+    }
+
+    public void testPublishAddress() {
+        assertEquals("weather/colombo", TopicExtractor.extractTopic(
+                new EndpointReference("/services/EventBrokerService/publish/weather/colombo")));
+        assertNull(TopicExtractor.extractTopic(
+                new EndpointReference("/services/EventBrokerService")));
+    }
+}